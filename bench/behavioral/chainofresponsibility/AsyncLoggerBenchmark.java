@@ -0,0 +1,61 @@
+package behavioral.chainofresponsibility;
+
+import benchmark.SilentConsole;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caller-side throughput of the synchronous chain versus {@link AsyncLogger}
+ * with four threads logging through the demo chain
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class AsyncLoggerBenchmark {
+    @Param({"BLOCK", "DROP_NEWEST"})
+    public OverflowPolicy overflowPolicy;
+
+    private Logger chain;
+    private AsyncLogger asyncLogger;
+
+    @Setup
+    public void setUp() {
+        SilentConsole.silence();
+        chain = new ConsoleLogger(LogLevel.INFO);
+        chain.setNext(new FileLogger(LogLevel.DEBUG)).setNext(new ErrorLogger(LogLevel.ERROR));
+        asyncLogger = new AsyncLogger(chain, 1 << 16, overflowPolicy);
+    }
+
+    @TearDown
+    public void tearDown() {
+        asyncLogger.close();
+        SilentConsole.restore();
+    }
+
+    @Benchmark
+    public void synchronous() {
+        chain.logMessage("benchmark message", LogLevel.DEBUG);
+    }
+
+    @Benchmark
+    public void asynchronous() {
+        asyncLogger.logMessage("benchmark message", LogLevel.DEBUG);
+    }
+}
@@ -0,0 +1,93 @@
+package behavioral.chainofresponsibility;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CPU time per event of plain-text log lines versus {@link BinaryLogEncoder} events
+ * The bytes written per event are printed at the end of each trial
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BinaryLogBenchmark {
+    private static final String TEMPLATE = "request {} from {} took {} ms";
+    private static final String[] USERS = {"alice", "bob", "carol", "dave"};
+
+    private CountingStream textBytes;
+    private CountingStream binaryBytes;
+    private Writer textWriter;
+    private BinaryLogEncoder encoder;
+    private int loggerId;
+    private int sequence;
+    private long textEvents;
+    private long binaryEvents;
+
+    @Setup
+    public void setUp() throws IOException {
+        textBytes = new CountingStream();
+        binaryBytes = new CountingStream();
+        textWriter = new OutputStreamWriter(textBytes, StandardCharsets.UTF_8);
+        encoder = new BinaryLogEncoder(binaryBytes);
+        loggerId = encoder.registerLogger("app");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        textWriter.close();
+        encoder.close();
+        System.out.printf("%ntext %.1f B/event, binary %.1f B/event%n",
+                (double) textBytes.count / Math.max(1, textEvents),
+                (double) binaryBytes.count / Math.max(1, binaryEvents));
+    }
+
+    @Benchmark
+    public void text() throws IOException {
+        int i = sequence++;
+        String message = MessageFormatter.format(TEMPLATE, new Object[] {i, USERS[i & 3], (long) (i % 250)});
+        textWriter.write(Instant.ofEpochMilli(System.currentTimeMillis()) + " INFO [app] " + message + "\n");
+        textEvents++;
+    }
+
+    @Benchmark
+    public void binary() throws IOException {
+        int i = sequence++;
+        encoder.encode(System.currentTimeMillis(), LogLevel.INFO, loggerId, TEMPLATE,
+                new Object[] {i, USERS[i & 3], (long) (i % 250)});
+        binaryEvents++;
+    }
+
+    private static class CountingStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
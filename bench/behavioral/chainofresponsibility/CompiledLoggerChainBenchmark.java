@@ -0,0 +1,79 @@
+package behavioral.chainofresponsibility;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recursive Logger.logMessage walk versus {@link CompiledLoggerChain} on deep chains
+ *
+ * Loggers only count what they receive, so the numbers show dispatch overhead alone.
+ * Most loggers handle ERROR only, the case where the recursive walk visits many
+ * loggers that never fire.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CompiledLoggerChainBenchmark {
+    @Param({"10", "25", "50", "100"})
+    public int depth;
+
+    private Logger head;
+    private CompiledLoggerChain compiled;
+
+    @Setup
+    public void setUp() {
+        head = new CountingLogger(LogLevel.INFO);
+        Logger tail = head;
+        for (int i = 1; i < depth; i++) {
+            tail = tail.setNext(new CountingLogger(i % 10 == 0 ? LogLevel.DEBUG : LogLevel.ERROR));
+        }
+        compiled = CompiledLoggerChain.compile(head);
+    }
+
+    @Benchmark
+    public void recursiveInfo() {
+        head.logMessage("message", LogLevel.INFO);
+    }
+
+    @Benchmark
+    public void compiledInfo() {
+        compiled.logMessage("message", LogLevel.INFO);
+    }
+
+    @Benchmark
+    public void recursiveError() {
+        head.logMessage("message", LogLevel.ERROR);
+    }
+
+    @Benchmark
+    public void compiledError() {
+        compiled.logMessage("message", LogLevel.ERROR);
+    }
+
+    static class CountingLogger extends Logger {
+        long count;
+
+        CountingLogger(LogLevel level) {
+            super(level);
+        }
+
+        @Override
+        protected void writeMessage(String message) {
+            count++;
+        }
+    }
+}
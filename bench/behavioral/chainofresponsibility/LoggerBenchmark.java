@@ -0,0 +1,66 @@
+package behavioral.chainofresponsibility;
+
+import benchmark.SilentConsole;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of Logger.logMessage on the demo chain (console, file and error loggers)
+ * for a level every logger writes, and for levels no logger accepts
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LoggerBenchmark {
+    private Logger chain;
+    private Logger errorOnlyChain;
+    private int requestId;
+
+    @Setup
+    public void setUp() {
+        SilentConsole.silence();
+        chain = new ConsoleLogger(LogLevel.INFO);
+        chain.setNext(new FileLogger(LogLevel.DEBUG)).setNext(new ErrorLogger(LogLevel.ERROR));
+        errorOnlyChain = new ConsoleLogger(LogLevel.ERROR);
+        errorOnlyChain.setNext(new ErrorLogger(LogLevel.ERROR));
+    }
+
+    @TearDown
+    public void tearDown() {
+        SilentConsole.restore();
+    }
+
+    @Benchmark
+    public void logEnabled() {
+        chain.logMessage("This is an error message", LogLevel.ERROR);
+    }
+
+    @Benchmark
+    public void logDisabled() {
+        errorOnlyChain.logMessage("This is a debug message", LogLevel.DEBUG);
+    }
+
+    @Benchmark
+    public void logConcatenatedDisabled() {
+        errorOnlyChain.logMessage("request " + (requestId++) + " handled", LogLevel.DEBUG);
+    }
+
+    @Benchmark
+    public void logTemplateDisabled() {
+        errorOnlyChain.logMessage("request {} handled", requestId++, LogLevel.DEBUG);
+    }
+}
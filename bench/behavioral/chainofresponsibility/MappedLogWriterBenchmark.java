@@ -0,0 +1,89 @@
+package behavioral.chainofresponsibility;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lines per second a {@link FileLogger} backed by a {@link MappedLogWriter} can persist
+ * Segments are deleted after every iteration to bound disk usage
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MappedLogWriterBenchmark {
+    private static final int BATCH_SIZE = 256;
+
+    @Param({"NEVER", "INTERVAL"})
+    public FsyncPolicy fsyncPolicy;
+
+    private Path directory;
+    private FileLogger logger;
+    private final String[] batch = new String[BATCH_SIZE];
+    private final LogLevel[] levels = new LogLevel[BATCH_SIZE];
+
+    @Setup(Level.Trial)
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("mapped-log-bench");
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch[i] = "2024-01-01T00:00:00Z INFO request handled in 42 ms by worker " + i;
+        }
+        Arrays.fill(levels, LogLevel.INFO);
+    }
+
+    @Setup(Level.Iteration)
+    public void openLogger() throws IOException {
+        logger = new FileLogger(LogLevel.INFO, new MappedLogWriter.MappedLogWriterBuilder(directory)
+                .setSegmentSize(64 * 1024 * 1024)
+                .setFsyncPolicy(fsyncPolicy)
+                .build());
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeLogger() throws IOException {
+        logger.close();
+        File[] files = directory.toFile().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteDirectory() {
+        directory.toFile().delete();
+    }
+
+    @Benchmark
+    public void singleLine() {
+        logger.logMessage(batch[0], LogLevel.INFO);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void batchOf256() {
+        logger.writeBatch(batch, levels, BATCH_SIZE);
+    }
+}
@@ -0,0 +1,119 @@
+package behavioral.command;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Button push throughput with 1, 4 and 16 producer threads, comparing the
+ * lock-free CommandDispatcher with a RemoteControl guarded by a monitor
+ *
+ * The dispatcher queue is bounded, so once it fills up the producers run at the
+ * rate the executor thread drains it and the score reflects end-to-end throughput.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CommandDispatcherBenchmark {
+    private RemoteControl lockedRemote;
+    private CommandDispatcher dispatcher;
+
+    @Setup
+    public void setUp() {
+        lockedRemote = new RemoteControl();
+        RemoteControl dispatchedRemote = new RemoteControl();
+        for (int slot = 0; slot < lockedRemote.getSlotCount(); slot++) {
+            lockedRemote.setCommand(slot, new CountingCommand(), new CountingCommand());
+            dispatchedRemote.setCommand(slot, new CountingCommand(), new CountingCommand());
+        }
+        dispatcher = new CommandDispatcher(dispatchedRemote);
+    }
+
+    @TearDown
+    public void tearDown() {
+        dispatcher.close();
+    }
+
+    @State(Scope.Thread)
+    public static class Producer {
+        int slot;
+
+        @Setup
+        public void setUp(CommandDispatcherBenchmark benchmark) {
+            slot = (int) (Thread.currentThread().getId() % benchmark.lockedRemote.getSlotCount());
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void dispatcher1(Producer producer) {
+        dispatcher.onButtonWasPushed(producer.slot);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void dispatcher4(Producer producer) {
+        dispatcher.onButtonWasPushed(producer.slot);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void dispatcher16(Producer producer) {
+        dispatcher.onButtonWasPushed(producer.slot);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void locked1(Producer producer) {
+        pushLocked(producer.slot);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void locked4(Producer producer) {
+        pushLocked(producer.slot);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void locked16(Producer producer) {
+        pushLocked(producer.slot);
+    }
+
+    private void pushLocked(int slot) {
+        synchronized (lockedRemote) {
+            lockedRemote.onButtonWasPushed(slot);
+        }
+    }
+
+    /**
+     * Command whose only work is bumping a counter, so the queue dominates the cost
+     */
+    static class CountingCommand implements Command {
+        long count;
+
+        @Override
+        public void execute() {
+            count++;
+        }
+
+        @Override
+        public void undo() {
+            count--;
+        }
+    }
+}
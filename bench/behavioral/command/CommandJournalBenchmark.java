@@ -0,0 +1,110 @@
+package behavioral.command;
+
+import benchmark.SilentConsole;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Cost of journaling a command, and time to recover a journal of 10 million records
+ */
+@Fork(1)
+public class CommandJournalBenchmark {
+    private static final int RECOVERY_RECORDS = 10_000_000;
+
+    @State(Scope.Benchmark)
+    public static class Appending {
+        Path directory;
+        CommandJournal journal;
+        Command lightOn;
+
+        @Setup
+        public void setUp() throws IOException {
+            SilentConsole.silence();
+            directory = Files.createTempDirectory("journal-bench");
+            journal = new CommandJournal.CommandJournalBuilder(directory)
+                    .setSyncOnCommit(false)
+                    .build();
+            Light light = new Light("Living Room");
+            journal.register(light);
+            lightOn = journal.journaled(new LightOnCommand(light), light);
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            journal.close();
+            deleteRecursively(directory);
+            SilentConsole.restore();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Recovering {
+        Path directory;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            directory = Files.createTempDirectory("journal-bench");
+            Fan fan = new Fan("Living Room");
+            try (CommandJournal journal = new CommandJournal.CommandJournalBuilder(directory)
+                    .setFileSize(RECOVERY_RECORDS * 13 + 1024 * 1024)
+                    .setSyncOnCommit(false)
+                    .build()) {
+                journal.register(fan);
+                // Journal the same record repeatedly: only the replay is being measured
+                Command high = journal.journaled(new NoCommand(), fan);
+                for (int i = 0; i < RECOVERY_RECORDS; i++) {
+                    high.execute();
+                }
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            deleteRecursively(directory);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    public void journaledLightOn(Appending state) {
+        state.lightOn.execute();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    public long recoverTenMillionRecords(Recovering state) throws IOException {
+        try (CommandJournal journal = new CommandJournal.CommandJournalBuilder(state.directory).build()) {
+            journal.register(new Fan("Living Room"));
+            return journal.getRecoveredRecordCount();
+        }
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
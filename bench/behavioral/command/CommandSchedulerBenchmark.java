@@ -0,0 +1,81 @@
+package behavioral.command;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of scheduling and cancelling a delayed command while many others are pending,
+ * timing wheel versus the heap behind ScheduledThreadPoolExecutor
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CommandSchedulerBenchmark {
+    @Param({"1000", "1000000"})
+    int pending;
+
+    private final Command command = new NoCommand();
+    private final Runnable task = command::execute;
+    private CommandScheduler scheduler;
+    private ScheduledThreadPoolExecutor executor;
+    private long[] delays;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        scheduler = new CommandScheduler(new RemoteControl());
+        executor = new ScheduledThreadPoolExecutor(1);
+        executor.setRemoveOnCancelPolicy(true);
+        Random random = new Random(42);
+        delays = new long[1024];
+        for (int i = 0; i < delays.length; i++) {
+            delays[i] = 1 + random.nextInt(24 * 60);
+        }
+        // Background load that stays pending for the whole run
+        for (int i = 0; i < pending; i++) {
+            long delay = 60 + random.nextInt(24 * 60);
+            scheduler.schedule(command, delay, TimeUnit.MINUTES);
+            executor.schedule(task, delay, TimeUnit.MINUTES);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        scheduler.close();
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public boolean timingWheel() {
+        ScheduledCommand handle = scheduler.schedule(command, nextDelay(), TimeUnit.MINUTES);
+        return handle.cancel();
+    }
+
+    @Benchmark
+    public boolean scheduledThreadPoolExecutor() {
+        ScheduledFuture<?> future = executor.schedule(task, nextDelay(), TimeUnit.MINUTES);
+        return future.cancel(false);
+    }
+
+    private long nextDelay() {
+        return delays[next++ & delays.length - 1];
+    }
+}
@@ -0,0 +1,82 @@
+package behavioral.command;
+
+import benchmark.SilentConsole;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of executing light and fan commands with each kind of event sink
+ * The console sink prints to a discarding stream; the buffered and async sinks
+ * forward to the no-op sink so only their own overhead is measured
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DeviceEventSinkBenchmark {
+    @Param({"console", "noop", "buffered", "async"})
+    public String sink;
+
+    private AsyncEventSink async;
+    private Command lightOn;
+    private Command lightOff;
+    private Command fanHigh;
+
+    @Setup
+    public void setUp() {
+        SilentConsole.silence();
+        DeviceRegistry registry = new DeviceRegistry();
+        switch (sink) {
+            case "console":
+                registry.setEventSink(DeviceEventSink.CONSOLE);
+                break;
+            case "noop":
+                registry.setEventSink(DeviceEventSink.NO_OP);
+                break;
+            case "buffered":
+                registry.setEventSink(new BufferedEventSink(DeviceEventSink.NO_OP, 1024));
+                break;
+            default:
+                async = new AsyncEventSink(DeviceEventSink.NO_OP, 65536);
+                registry.setEventSink(async);
+        }
+        Light light = registry.addLight("Living Room");
+        Fan fan = registry.addFan("Living Room");
+        lightOn = new LightOnCommand(light);
+        lightOff = new LightOffCommand(light);
+        fanHigh = new FanHighCommand(fan);
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (async != null) {
+            async.close();
+        }
+        SilentConsole.restore();
+    }
+
+    @Benchmark
+    public void lightOnOff() {
+        lightOn.execute();
+        lightOff.execute();
+    }
+
+    @Benchmark
+    public void fanHigh() {
+        fanHigh.execute();
+    }
+}
@@ -0,0 +1,90 @@
+package behavioral.command;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A "party mode" macro over many independent devices, each of which takes a
+ * fixed time to respond, run by MacroCommand and by ParallelMacroCommand
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParallelMacroCommandBenchmark {
+    @Param({"8", "32"})
+    public int devices;
+
+    @Param({"50000"})
+    public long deviceLatencyNanos;
+
+    private ForkJoinPool pool;
+    private MacroCommand sequential;
+    private ParallelMacroCommand parallel;
+
+    @Setup
+    public void setUp() {
+        pool = new ForkJoinPool(devices);
+        Command[] commands = new Command[devices];
+        ParallelMacroCommand.ParallelMacroCommandBuilder builder =
+                new ParallelMacroCommand.ParallelMacroCommandBuilder().setPool(pool);
+        for (int i = 0; i < devices; i++) {
+            commands[i] = new SlowDeviceCommand(deviceLatencyNanos);
+            builder.addCommand(commands[i]);
+        }
+        sequential = new MacroCommand(commands);
+        parallel = builder.build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public void sequentialMacro() {
+        sequential.execute();
+    }
+
+    @Benchmark
+    public void parallelMacro() {
+        parallel.execute();
+    }
+
+    /**
+     * Command that waits as long as a networked device takes to acknowledge
+     */
+    static class SlowDeviceCommand implements Command {
+        private final long latencyNanos;
+
+        SlowDeviceCommand(long latencyNanos) {
+            this.latencyNanos = latencyNanos;
+        }
+
+        @Override
+        public void execute() {
+            LockSupport.parkNanos(latencyNanos);
+        }
+
+        @Override
+        public void undo() {
+            LockSupport.parkNanos(latencyNanos);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package behavioral.command;
+
+import benchmark.SilentConsole;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of RemoteControl.onButtonWasPushed for an empty slot and for a slot
+ * driving a real Light receiver (whose console output is discarded)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RemoteControlBenchmark {
+    private RemoteControl remote;
+
+    @Setup
+    public void setUp() {
+        SilentConsole.silence();
+        remote = new RemoteControl();
+        Light light = new Light("Living Room");
+        remote.setCommand(0, new LightOnCommand(light), new LightOffCommand(light));
+    }
+
+    @TearDown
+    public void tearDown() {
+        SilentConsole.restore();
+    }
+
+    @Benchmark
+    public void emptySlot() {
+        remote.onButtonWasPushed(6);
+    }
+
+    @Benchmark
+    public void lightOn() {
+        remote.onButtonWasPushed(0);
+    }
+}
@@ -0,0 +1,82 @@
+package behavioral.interpreter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One formula over ten million rows: column-at-a-time BatchEvaluator against
+ * binding the Context and calling interpret() for each row
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchEvaluatorBenchmark {
+    private static final int ROWS = 10_000_000;
+    private static final String FORMULA = "(a * b + c) % 1000 - d / 3 + a * 2 - (c - 7) * -b";
+
+    private Context context;
+    private Expression expression;
+    private BatchEvaluator evaluator;
+    private Batch batch;
+    private int[] a;
+    private int[] b;
+    private int[] c;
+    private long[] d;
+    private int[] output;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        a = new int[ROWS];
+        b = new int[ROWS];
+        c = new int[ROWS];
+        d = new long[ROWS];
+        for (int row = 0; row < ROWS; row++) {
+            a[row] = random.nextInt(1_000_000);
+            b[row] = random.nextInt(1_000);
+            c[row] = random.nextInt();
+            d[row] = random.nextInt(1 << 30);
+        }
+        context = new Context();
+        expression = ExpressionParser.parse(FORMULA, context);
+        evaluator = new BatchEvaluator(expression);
+        batch = new Batch(ROWS);
+        batch.bind("a", a);
+        batch.bind("b", b);
+        batch.bind("c", c);
+        batch.bind("d", d);
+        output = new int[ROWS];
+    }
+
+    @Benchmark
+    public int[] interpretPerRow() {
+        for (int row = 0; row < ROWS; row++) {
+            context.set("a", a[row]);
+            context.set("b", b[row]);
+            context.set("c", c[row]);
+            context.set("d", (int) d[row]);
+            output[row] = expression.interpret();
+        }
+        return output;
+    }
+
+    @Benchmark
+    public int[] evaluateBatch() {
+        evaluator.evaluate(batch, output);
+        return output;
+    }
+}
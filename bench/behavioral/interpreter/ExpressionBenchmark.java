@@ -0,0 +1,93 @@
+package behavioral.interpreter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of Expression.interpret on generated trees of alternating additions
+ * and subtractions, either balanced or left-deep, walked as objects, compiled
+ * by ExpressionCompiler or run as a PostfixExpression program
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExpressionBenchmark {
+    @Param({"15", "1023", "8191"})
+    public int nodes;
+
+    private Expression balanced;
+    private Expression leftDeep;
+    private Expression compiledBalanced;
+    private Expression compiledLeftDeep;
+    private Expression postfixBalanced;
+    private Expression postfixLeftDeep;
+
+    @Setup
+    public void setUp() {
+        balanced = balanced(nodes, 1);
+        Expression tree = new NumberExpression(1);
+        for (int i = 1; i < (nodes + 1) / 2; i++) {
+            Expression leaf = new NumberExpression(i);
+            tree = i % 2 == 0 ? new AddExpression(tree, leaf) : new SubtractExpression(tree, leaf);
+        }
+        leftDeep = tree;
+        compiledBalanced = ExpressionCompiler.compile(balanced);
+        compiledLeftDeep = ExpressionCompiler.compile(leftDeep);
+        postfixBalanced = new PostfixExpression(balanced);
+        postfixLeftDeep = new PostfixExpression(leftDeep);
+    }
+
+    private static Expression balanced(int nodes, int seed) {
+        if (nodes <= 1) {
+            return new NumberExpression(seed);
+        }
+        int half = (nodes - 1) / 2;
+        Expression left = balanced(half, seed * 2);
+        Expression right = balanced(half, seed * 2 + 1);
+        return seed % 2 == 0 ? new AddExpression(left, right) : new SubtractExpression(left, right);
+    }
+
+    @Benchmark
+    public int interpretBalanced() {
+        return balanced.interpret();
+    }
+
+    @Benchmark
+    public int interpretLeftDeep() {
+        return leftDeep.interpret();
+    }
+
+    @Benchmark
+    public int compiledBalanced() {
+        return compiledBalanced.interpret();
+    }
+
+    @Benchmark
+    public int compiledLeftDeep() {
+        return compiledLeftDeep.interpret();
+    }
+
+    @Benchmark
+    public int postfixBalanced() {
+        return postfixBalanced.interpret();
+    }
+
+    @Benchmark
+    public int postfixLeftDeep() {
+        return postfixLeftDeep.interpret();
+    }
+}
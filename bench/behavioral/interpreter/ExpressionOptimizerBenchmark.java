@@ -0,0 +1,83 @@
+package behavioral.interpreter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluation of generated formulas with constant subtrees and repeated terms,
+ * before and after ExpressionOptimizer, interpreted and as postfix programs
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExpressionOptimizerBenchmark {
+    private static final String[] TERMS = {
+        "(a * b + (c - 2 * 3)) * (d % 7 + 1)",
+        "(a * b + (c - 2 * 3)) - (a - b) * 1",
+        "(d % 7 + 1) * (4 * 5 - 20 + c)",
+        "(a - b) * (a - b) + 0 * 9",
+        "(c - 2 * 3) / (d % 7 + 1)",
+    };
+
+    @Param({"10", "100"})
+    public int terms;
+
+    private Context context;
+    private Expression original;
+    private Expression optimized;
+    private Expression postfixOriginal;
+    private Expression postfixOptimized;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        StringBuilder text = new StringBuilder(TERMS[0]);
+        for (int i = 1; i < terms; i++) {
+            text.append(random.nextBoolean() ? " + " : " - ").append(TERMS[random.nextInt(TERMS.length)]);
+        }
+        context = new Context();
+        context.set("a", 17);
+        context.set("b", 5);
+        context.set("c", 41);
+        context.set("d", 100);
+        original = ExpressionParser.parse(text.toString(), context);
+        optimized = ExpressionOptimizer.optimize(original);
+        postfixOriginal = new PostfixExpression(original);
+        postfixOptimized = new PostfixExpression(optimized);
+    }
+
+    @Benchmark
+    public int interpretOriginal() {
+        return original.interpret();
+    }
+
+    @Benchmark
+    public int interpretOptimized() {
+        return optimized.interpret();
+    }
+
+    @Benchmark
+    public int postfixOriginal() {
+        return postfixOriginal.interpret();
+    }
+
+    @Benchmark
+    public int postfixOptimized() {
+        return postfixOptimized.interpret();
+    }
+}
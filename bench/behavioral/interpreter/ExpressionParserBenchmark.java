@@ -0,0 +1,80 @@
+package behavioral.interpreter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parse throughput in tokens per second on a generated formula mixing numbers,
+ * variables, all operators and parentheses
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExpressionParserBenchmark {
+    private static final int TOKENS = 10_000;
+    private static final String[] OPERATORS = {"+", "-", "*", "/", "%"};
+
+    private String formula;
+    private Context context;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        StringBuilder text = new StringBuilder();
+        int tokens = 0;
+        int open = 0;
+        while (tokens < TOKENS - 8) {
+            if (random.nextInt(8) == 0) {
+                text.append('(');
+                open++;
+                tokens++;
+            }
+            if (random.nextBoolean()) {
+                text.append(random.nextInt(100_000));
+            } else {
+                text.append("var").append(random.nextInt(32));
+            }
+            tokens++;
+            if (open > 0 && random.nextInt(6) == 0) {
+                text.append(')');
+                open--;
+                tokens++;
+            }
+            text.append(' ').append(OPERATORS[random.nextInt(OPERATORS.length)]).append(' ');
+            tokens++;
+        }
+        text.append('1');
+        tokens++;
+        while (open-- > 0) {
+            text.append(')');
+            tokens++;
+        }
+        // Pad with unary plus signs so every invocation parses exactly TOKENS tokens
+        while (tokens++ < TOKENS) {
+            text.insert(0, '+');
+        }
+        formula = text.toString();
+        context = new Context();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public Expression parse() {
+        return ExpressionParser.parse(formula, context);
+    }
+}
@@ -0,0 +1,91 @@
+package behavioral.interpreter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Incremental updates: each operation sets one of 64 variables and evaluates a
+ * balanced sum of 256 terms, each term using three of the variables, with and
+ * without MemoizedExpression
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MemoizedExpressionBenchmark {
+    private static final int VARIABLES = 64;
+    private static final int TERMS = 256;
+    private static final int UPDATES = 4096;
+
+    @Param({"64", "1024"})
+    public int capacity;
+
+    private Context context;
+    private Expression expression;
+    private MemoizedExpression memoized;
+    private String[] names;
+    private int[] updatedNames;
+    private int[] updatedValues;
+    private int update;
+
+    @Setup
+    public void setUp() {
+        context = new Context();
+        names = new String[VARIABLES];
+        for (int i = 0; i < VARIABLES; i++) {
+            names[i] = "v" + i;
+            context.set(names[i], i * 31);
+        }
+        expression = ExpressionParser.parse(sum(0, TERMS), context);
+        memoized = new MemoizedExpression(expression, capacity);
+        Random random = new Random(42);
+        updatedNames = new int[UPDATES];
+        updatedValues = new int[UPDATES];
+        for (int i = 0; i < UPDATES; i++) {
+            updatedNames[i] = random.nextInt(VARIABLES);
+            updatedValues[i] = random.nextInt(1000);
+        }
+    }
+
+    @Benchmark
+    public int interpretOriginal() {
+        nextUpdate();
+        return expression.interpret();
+    }
+
+    @Benchmark
+    public int interpretMemoized() {
+        nextUpdate();
+        return memoized.interpret();
+    }
+
+    private void nextUpdate() {
+        int i = update++ & (UPDATES - 1);
+        context.set(names[updatedNames[i]], updatedValues[i]);
+    }
+
+    private String sum(int from, int to) {
+        if (to - from == 1) {
+            String a = names[from * 7 % VARIABLES];
+            String b = names[(from * 13 + 5) % VARIABLES];
+            String c = names[(from * 29 + 11) % VARIABLES];
+            return "((" + a + " * " + b + " + " + c + ") % 97 * (" + a + " - 3) + " + b + " / 5)";
+        }
+        int middle = (from + to) >>> 1;
+        return "(" + sum(from, middle) + " + " + sum(middle, to) + ")";
+    }
+}
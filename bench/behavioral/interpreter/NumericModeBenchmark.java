@@ -0,0 +1,78 @@
+package behavioral.interpreter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A sum of 1000 added and subtracted amounts evaluated with int, long and
+ * fixed-point decimal arithmetic, with and without overflow checks
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NumericModeBenchmark {
+    private static final int TERMS = 1000;
+    private static final int SCALE = 2;
+
+    private Expression integers;
+    private Expression decimals;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        for (int i = 0; i < TERMS; i++) {
+            long cents = random.nextInt(10_000_000);
+            Expression integer = new NumberExpression((int) (cents / 100));
+            Expression decimal = new NumberExpression(cents, SCALE);
+            if (i == 0) {
+                integers = integer;
+                decimals = decimal;
+            } else if (random.nextInt(4) == 0) {
+                integers = new SubtractExpression(integers, integer);
+                decimals = new SubtractExpression(decimals, decimal);
+            } else {
+                integers = new AddExpression(integers, integer);
+                decimals = new AddExpression(decimals, decimal);
+            }
+        }
+    }
+
+    @Benchmark
+    public int interpretInt() {
+        return integers.interpret();
+    }
+
+    @Benchmark
+    public long interpretLong() {
+        return integers.interpretLong(false);
+    }
+
+    @Benchmark
+    public long interpretLongExact() {
+        return integers.interpretLong(true);
+    }
+
+    @Benchmark
+    public long interpretDecimal() {
+        return decimals.interpretDecimal(SCALE, false);
+    }
+
+    @Benchmark
+    public long interpretDecimalExact() {
+        return decimals.interpretDecimal(SCALE, true);
+    }
+}
@@ -0,0 +1,103 @@
+package behavioral.iterator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A catalog of four million topics in a file: opening it as a MappedTopicList
+ * against reading it into a TopicList, then iterating each, and random access
+ * through the offsets index
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MappedTopicListBenchmark {
+    private static final int TOPICS = 4_000_000;
+
+    private Path file;
+    private MappedTopicList mapped;
+    private TopicList loaded;
+    private long position;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = Files.createTempFile("topics", ".txt");
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < TOPICS; i++) {
+                out.write("Topic number " + i);
+                out.newLine();
+            }
+        }
+        mapped = new MappedTopicList(file, MappedTopicList.Format.LINES);
+        mapped.size();
+        loaded = load();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.delete(file);
+    }
+
+    // Single shots: mappings are only released by garbage collection, so opening in a loop exhausts memory
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    public MappedTopicList openMapped() throws IOException {
+        return new MappedTopicList(file, MappedTopicList.Format.LINES);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    public TopicList loadIntoHeap() throws IOException {
+        return load();
+    }
+
+    @Benchmark
+    public long iterateMapped() {
+        return totalLength(mapped.getIterator());
+    }
+
+    @Benchmark
+    public long iterateLoaded() {
+        return totalLength(loaded.getIterator());
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public String getMapped() {
+        position = (position + 999_983) % TOPICS;
+        return mapped.get(position);
+    }
+
+    private TopicList load() throws IOException {
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        return new TopicList(lines.toArray(new String[0]));
+    }
+
+    private static long totalLength(Iterator<String> iterator) {
+        long length = 0;
+        while (iterator.hasNext()) {
+            length += iterator.next().length();
+        }
+        return length;
+    }
+}
@@ -0,0 +1,94 @@
+package behavioral.iterator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Traversal of four million elements: topics through the pattern's Iterator
+ * and through sequential and parallel streams, and numbers through the
+ * primitive containers and through a boxed List
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TopicListBenchmark {
+    private static final int SIZE = 4_000_000;
+
+    private TopicList topics;
+    private IntList numbers;
+    private List<Integer> boxedNumbers;
+
+    @Setup
+    public void setUp() {
+        String[] names = new String[SIZE];
+        int[] values = new int[SIZE];
+        Integer[] boxed = new Integer[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            names[i] = "Topic " + i;
+            values[i] = i;
+            boxed[i] = i;
+        }
+        topics = new TopicList(names);
+        numbers = new IntList(values);
+        boxedNumbers = Arrays.asList(boxed);
+    }
+
+    @Benchmark
+    public long topicIterator() {
+        long length = 0;
+        Iterator<String> iterator = topics.getIterator();
+        while (iterator.hasNext()) {
+            length += iterator.next().length();
+        }
+        return length;
+    }
+
+    @Benchmark
+    public long topicStream() {
+        return topics.stream().mapToLong(String::length).sum();
+    }
+
+    @Benchmark
+    public long topicParallelStream() {
+        return topics.parallelStream().mapToLong(String::length).sum();
+    }
+
+    @Benchmark
+    public long intIterator() {
+        long sum = 0;
+        IntIterator iterator = numbers.getIterator();
+        while (iterator.hasNext()) {
+            sum += iterator.next();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long intParallelStream() {
+        return numbers.parallelStream().asLongStream().sum();
+    }
+
+    @Benchmark
+    public long boxedIterator() {
+        long sum = 0;
+        for (Integer number : boxedNumbers) {
+            sum += number;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,68 @@
+package behavioral.mediator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of ChatRoom.sendMessage fanning a message out to every other user
+ * Users hand received messages to a Blackhole instead of printing them
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ChatRoomBenchmark {
+    @Param({"10", "100"})
+    public int users;
+
+    private ChatRoom chatRoom;
+    private User sender;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        chatRoom = new ChatRoom();
+        for (int i = 0; i < users; i++) {
+            User user = new SilentUser(blackhole);
+            chatRoom.addUser(user);
+            if (i == 0) {
+                sender = user;
+            }
+        }
+    }
+
+    @Benchmark
+    public void sendMessage() {
+        chatRoom.sendMessage("Hello everyone!", sender);
+    }
+
+    private static class SilentUser implements User {
+        private final Blackhole blackhole;
+
+        SilentUser(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void send(String message) {
+        }
+
+        @Override
+        public void receive(String message) {
+            blackhole.consume(message);
+        }
+    }
+}
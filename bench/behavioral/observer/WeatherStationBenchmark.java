@@ -0,0 +1,50 @@
+package behavioral.observer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of WeatherStation.setMeasurements notifying its observers
+ * Observers hand the readings to a Blackhole instead of printing them
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WeatherStationBenchmark {
+    @Param({"1", "10", "100"})
+    public int observers;
+
+    private WeatherStation station;
+    private float temperature;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        station = new WeatherStation();
+        for (int i = 0; i < observers; i++) {
+            station.addObserver((t, h) -> {
+                blackhole.consume(t);
+                blackhole.consume(h);
+            });
+        }
+    }
+
+    @Benchmark
+    public void setMeasurements() {
+        station.setMeasurements(temperature++, 65.0f);
+    }
+}
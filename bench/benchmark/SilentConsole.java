@@ -0,0 +1,44 @@
+package benchmark;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * Swaps System.out for a stream that discards everything
+ * Many pattern classes print on every call; silencing them keeps terminal speed
+ * out of the measurements while still paying for formatting and PrintStream locking
+ */
+public final class SilentConsole {
+    private static PrintStream original;
+
+    private SilentConsole() {
+    }
+
+    /**
+     * Redirects System.out to a discarding stream
+     */
+    public static synchronized void silence() {
+        if (original == null) {
+            original = System.out;
+            System.setOut(new PrintStream(new OutputStream() {
+                @Override
+                public void write(int b) {
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                }
+            }));
+        }
+    }
+
+    /**
+     * Puts the original System.out back
+     */
+    public static synchronized void restore() {
+        if (original != null) {
+            System.setOut(original);
+            original = null;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package structural.composite;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of Directory.getSize on a generated directory tree
+ * Every directory holds the given number of files and subdirectories
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DirectoryBenchmark {
+    @Param({"4", "8"})
+    public int fanout;
+
+    @Param({"3", "5"})
+    public int depth;
+
+    private Directory root;
+
+    @Setup
+    public void setUp() {
+        root = build("root", "", depth);
+    }
+
+    private Directory build(String name, String path, int level) {
+        Directory directory = new Directory(name, path);
+        for (int i = 0; i < fanout; i++) {
+            directory.add(new File("file" + i, path + "/" + name, 100 + i, "txt"));
+            if (level > 1) {
+                directory.add(build("dir" + i, path + "/" + name, level - 1));
+            }
+        }
+        return directory;
+    }
+
+    @Benchmark
+    public long getSize() {
+        return root.getSize();
+    }
+}
@@ -0,0 +1,46 @@
+package structural.flyweight;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of TextFormatFactory.getFormat for a format that is already cached
+ * and for cycling through a small set of cached formats
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TextFormatFactoryBenchmark {
+    private static final String[] FONTS = {"Arial", "Times New Roman", "Courier", "Verdana"};
+
+    private int next;
+
+    @Setup
+    public void setUp() {
+        TextFormatFactory.clearCache();
+    }
+
+    @Benchmark
+    public TextFormat sameFormat() {
+        return TextFormatFactory.getFormat("Arial", 12, true, false);
+    }
+
+    @Benchmark
+    public TextFormat cycleFormats() {
+        int i = next++;
+        return TextFormatFactory.getFormat(FONTS[i & 3], 10 + (i >> 2 & 3), (i & 16) != 0, (i & 32) != 0);
+    }
+}
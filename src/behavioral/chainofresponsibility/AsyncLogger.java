@@ -0,0 +1,307 @@
+package behavioral.chainofresponsibility;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous front end for a chain of loggers
+ *
+ * logMessage() only places the message in a bounded lock-free ring buffer and returns,
+ * so the calling thread never waits on console or file I/O. A dedicated drain thread
+ * takes the queued messages in batches and, for every logger in the chain, hands over
+ * the messages that logger accepts through {@link Logger#writeBatch(String[], LogLevel[], long[], int)},
+ * together with the time each one was logged.
+ *
+ * Each logger sees its messages in the order they were queued, but unlike the
+ * synchronous chain one logger may receive a whole batch before the next one does.
+ *
+ * When the queue runs empty the drain thread calls {@link Logger#onIdle()} once and
+ * parks with a growing timeout, up to the earliest deadline the loggers returned.
+ * A producer that finds it parked wakes it up.
+ */
+public class AsyncLogger implements AutoCloseable {
+    public static final int DEFAULT_CAPACITY = 8192;
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    private static final long MIN_IDLE_PARK_NANOS = 100_000L;
+    private static final long MAX_IDLE_PARK_NANOS = 1_000_000_000L;
+    // Retry delay for a logger whose onIdle() failed
+    private static final long IDLE_RETRY_MILLIS = 1000L;
+    private static final long WAIT_PARK_NANOS = 10_000L;
+
+    private final Logger chain;
+    private final LogRingBuffer buffer;
+    private final OverflowPolicy overflowPolicy;
+    private final int batchSize;
+    private final Thread drainThread;
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final Object closeLock = new Object();
+
+    private volatile long drainedUpTo;
+    private volatile boolean closed;
+    private volatile boolean drainParked;
+
+    /**
+     * Creates an asynchronous logger with the default capacity that blocks when full
+     * @param chain The first logger of the chain messages are delivered to
+     */
+    public AsyncLogger(Logger chain) {
+        this(chain, DEFAULT_CAPACITY, OverflowPolicy.BLOCK);
+    }
+
+    /**
+     * Creates an asynchronous logger with the default batch size
+     * @param chain The first logger of the chain messages are delivered to
+     * @param capacity Ring buffer size, must be a power of two
+     * @param overflowPolicy What to do when the ring buffer is full
+     */
+    public AsyncLogger(Logger chain, int capacity, OverflowPolicy overflowPolicy) {
+        this(chain, capacity, overflowPolicy, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Creates an asynchronous logger and starts its drain thread
+     * @param chain The first logger of the chain messages are delivered to
+     * @param capacity Ring buffer size, must be a power of two
+     * @param overflowPolicy What to do when the ring buffer is full
+     * @param batchSize Maximum number of messages handed to a logger at once
+     */
+    public AsyncLogger(Logger chain, int capacity, OverflowPolicy overflowPolicy, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.chain = chain;
+        this.buffer = new LogRingBuffer(capacity);
+        this.overflowPolicy = overflowPolicy;
+        this.batchSize = batchSize;
+        this.drainThread = new Thread(this::drainLoop, "async-logger-drain");
+        this.drainThread.setDaemon(true);
+        this.drainThread.start();
+    }
+
+    /**
+     * Queues the message for the drain thread
+     * Once the logger is closed messages are written synchronously instead
+     * @param message The message to be logged
+     * @param level The level at which to log the message
+     */
+    public void logMessage(String message, LogLevel level) {
+        if (closed) {
+            writeSynchronously(message, level);
+            return;
+        }
+        long timestamp = System.currentTimeMillis();
+        while (!buffer.offer(message, level, timestamp)) {
+            switch (overflowPolicy) {
+                case DROP_NEWEST:
+                    droppedCount.incrementAndGet();
+                    return;
+                case DROP_OLDEST:
+                    if (buffer.discardOldest()) {
+                        droppedCount.incrementAndGet();
+                    }
+                    break;
+                default:
+                    // The drain thread also stops if a logger throws an Error
+                    if (closed || !drainThread.isAlive()) {
+                        writeSynchronously(message, level);
+                        return;
+                    }
+                    LockSupport.parkNanos(WAIT_PARK_NANOS);
+            }
+        }
+        if (drainParked) {
+            LockSupport.unpark(drainThread);
+        }
+        if (closed && !drainThread.isAlive()) {
+            // Raced with close(): the drain thread may already have exited
+            drainRemaining();
+        }
+    }
+
+    /**
+     * Waits until every message queued before this call has been written or dropped
+     */
+    public void flush() {
+        long target = buffer.producerPosition();
+        LockSupport.unpark(drainThread);
+        while (drainedUpTo < target && drainThread.isAlive()) {
+            LockSupport.parkNanos(WAIT_PARK_NANOS);
+        }
+    }
+
+    /**
+     * Writes out all queued messages and stops the drain thread
+     * Safe to call more than once
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(drainThread);
+        boolean interrupted = false;
+        while (drainThread.isAlive()) {
+            try {
+                drainThread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        drainRemaining();
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Gets the number of messages discarded by the overflow policy
+     * @return The dropped message count
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * Gets the number of messages waiting in the ring buffer
+     * @return The approximate queue length
+     */
+    public long getQueuedCount() {
+        return Math.max(0, buffer.producerPosition() - buffer.consumerPosition());
+    }
+
+    /**
+     * Checks whether close() has been called
+     * @return true if the logger is closed
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    private void drainLoop() {
+        String[] messages = new String[batchSize];
+        LogLevel[] levels = new LogLevel[batchSize];
+        long[] timestamps = new long[batchSize];
+        String[] accepted = new String[batchSize];
+        LogLevel[] acceptedLevels = new LogLevel[batchSize];
+        long[] acceptedTimestamps = new long[batchSize];
+        boolean[] stopped = new boolean[batchSize];
+        boolean idle = false;
+        long idleDeadline = Long.MAX_VALUE;
+        long parkNanos = MIN_IDLE_PARK_NANOS;
+        while (true) {
+            boolean closing = closed;
+            int count = buffer.drainTo(messages, levels, timestamps, batchSize);
+            if (count > 0) {
+                dispatch(messages, levels, timestamps, count, accepted, acceptedLevels, acceptedTimestamps, stopped);
+                idle = false;
+                parkNanos = MIN_IDLE_PARK_NANOS;
+            }
+            drainedUpTo = buffer.consumerPosition();
+            if (count == 0) {
+                if (closing) {
+                    return;
+                }
+                long now = System.currentTimeMillis();
+                if (!idle || now >= idleDeadline) {
+                    // Just ran empty, or a logger asked to be called again by now
+                    idleDeadline = notifyIdle();
+                    idle = true;
+                    now = System.currentTimeMillis();
+                }
+                parkIdle(Math.min(parkNanos, nanosUntil(idleDeadline, now)));
+                parkNanos = Math.min(parkNanos * 2, MAX_IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    private void parkIdle(long nanos) {
+        drainParked = true;
+        // Check again after announcing the park, so a message queued meanwhile is not missed
+        if (!closed && buffer.producerPosition() == buffer.consumerPosition()) {
+            LockSupport.parkNanos(this, nanos);
+        }
+        drainParked = false;
+    }
+
+    private static long nanosUntil(long deadline, long now) {
+        if (deadline == Long.MAX_VALUE) {
+            return MAX_IDLE_PARK_NANOS;
+        }
+        long millis = Math.max(0, Math.min(deadline - now, MAX_IDLE_PARK_NANOS / 1_000_000L));
+        return Math.max(MIN_IDLE_PARK_NANOS, millis * 1_000_000L);
+    }
+
+    private void drainRemaining() {
+        synchronized (closeLock) {
+            String[] messages = new String[batchSize];
+            LogLevel[] levels = new LogLevel[batchSize];
+            long[] timestamps = new long[batchSize];
+            String[] accepted = new String[batchSize];
+            LogLevel[] acceptedLevels = new LogLevel[batchSize];
+            long[] acceptedTimestamps = new long[batchSize];
+            boolean[] stopped = new boolean[batchSize];
+            int count;
+            while ((count = buffer.drainTo(messages, levels, timestamps, batchSize)) > 0) {
+                dispatch(messages, levels, timestamps, count, accepted, acceptedLevels, acceptedTimestamps, stopped);
+            }
+            drainedUpTo = buffer.consumerPosition();
+        }
+    }
+
+    private void dispatch(String[] messages, LogLevel[] levels, long[] timestamps, int count,
+                          String[] accepted, LogLevel[] acceptedLevels, long[] acceptedTimestamps,
+                          boolean[] stopped) {
+        Arrays.fill(stopped, 0, count, false);
+        for (Logger logger = chain; logger != null; logger = logger.getNext()) {
+            int acceptedCount = 0;
+            for (int i = 0; i < count; i++) {
+                if (stopped[i]) {
+                    continue;
+                }
+                if (!logger.passes(levels[i])) {
+                    // Dropped by a filtering stage: hidden from the rest of the chain
+                    stopped[i] = true;
+                } else if (logger.accepts(levels[i])) {
+                    accepted[acceptedCount] = messages[i];
+                    acceptedLevels[acceptedCount] = levels[i];
+                    acceptedTimestamps[acceptedCount++] = timestamps[i];
+                }
+            }
+            if (acceptedCount > 0) {
+                try {
+                    logger.writeBatch(accepted, acceptedLevels, acceptedTimestamps, acceptedCount);
+                } catch (RuntimeException e) {
+                    // A failing logger must not stop delivery to the rest of the chain
+                    System.err.println("AsyncLogger: " + logger.getClass().getSimpleName() + " failed: " + e);
+                }
+            }
+        }
+        Arrays.fill(messages, 0, count, null);
+        Arrays.fill(levels, 0, count, null);
+        Arrays.fill(accepted, 0, count, null);
+        Arrays.fill(acceptedLevels, 0, count, null);
+    }
+
+    private long notifyIdle() {
+        long deadline = Long.MAX_VALUE;
+        for (Logger logger = chain; logger != null; logger = logger.getNext()) {
+            try {
+                deadline = Math.min(deadline, logger.onIdle());
+            } catch (RuntimeException e) {
+                System.err.println("AsyncLogger: " + logger.getClass().getSimpleName() + " failed: " + e);
+                deadline = Math.min(deadline, System.currentTimeMillis() + IDLE_RETRY_MILLIS);
+            }
+        }
+        return deadline;
+    }
+
+    private void writeSynchronously(String message, LogLevel level) {
+        synchronized (closeLock) {
+            if (!drainThread.isAlive()) {
+                // Write what is still queued first to keep the order
+                drainRemaining();
+            }
+            chain.logMessage(message, level);
+        }
+    }
+}
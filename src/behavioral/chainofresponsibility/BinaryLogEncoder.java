@@ -0,0 +1,226 @@
+package behavioral.chainofresponsibility;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+
+/**
+ * Writes {@link LogEvent}s as a compact binary stream
+ *
+ * The stream starts with the magic bytes "CLOG" and a version byte, followed by records
+ * that each begin with a one byte tag:
+ * <pre>
+ * TEMPLATE  id:varint  text:string          sent the first time a template is used
+ * LOGGER    id:varint  name:string          sent when a logger registers
+ * EVENT     timestampDelta:zigzag-varlong  level:byte  logger:varint  template:varint
+ *           argCount:varint  (argTag:byte  value)*
+ * </pre>
+ * Strings are a varint byte length followed by UTF-8. Integers use zigzag varints,
+ * so small values take one or two bytes; timestamps are stored as the difference to
+ * the previous event. Events are buffered in memory until flush() or until the buffer fills.
+ */
+public class BinaryLogEncoder implements Flushable, Closeable {
+    static final byte[] MAGIC = {'C', 'L', 'O', 'G'};
+    static final byte VERSION = 1;
+
+    // Readers reject larger template ids, which only a corrupt stream would hold
+    static final int MAX_TEMPLATES = 1 << 20;
+
+    static final byte RECORD_TEMPLATE = 1;
+    static final byte RECORD_LOGGER = 2;
+    static final byte RECORD_EVENT = 3;
+
+    static final byte ARG_NULL = 0;
+    static final byte ARG_INT = 1;
+    static final byte ARG_LONG = 2;
+    static final byte ARG_DOUBLE = 3;
+    static final byte ARG_STRING = 4;
+    static final byte ARG_TRUE = 5;
+    static final byte ARG_FALSE = 6;
+
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+    private final OutputStream out;
+    private final TemplateDictionary dictionary;
+    private final BitSet writtenTemplates = new BitSet();
+    private int nextLoggerId;
+    private ByteBuffer buffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    private long lastTimestamp;
+
+    /**
+     * Creates an encoder with its own template dictionary
+     * @param out Stream the encoded records are written to
+     */
+    public BinaryLogEncoder(OutputStream out) throws IOException {
+        this(out, new TemplateDictionary());
+    }
+
+    /**
+     * Creates an encoder and writes the stream header
+     * @param out Stream the encoded records are written to
+     * @param dictionary Dictionary that assigns template ids, may be shared between encoders;
+     *                   a stream then only defines the ids it uses, so they can skip
+     */
+    public BinaryLogEncoder(OutputStream out, TemplateDictionary dictionary) throws IOException {
+        this.out = out;
+        this.dictionary = dictionary;
+        buffer.put(MAGIC).put(VERSION);
+        flush();
+    }
+
+    /**
+     * Registers a logger name and writes its definition to the stream
+     * @param name Name shown by the reader for events of this logger
+     * @return The id to use in events from that logger
+     */
+    public synchronized int registerLogger(String name) {
+        int id = nextLoggerId++;
+        ensureCapacity(1 + 5 + 5 + Utf8.length(name));
+        buffer.put(RECORD_LOGGER);
+        putVarInt(id);
+        putString(name);
+        return id;
+    }
+
+    /**
+     * Encodes one event, resolving its template through the dictionary
+     * @param timestamp Milliseconds since the epoch
+     * @param level The level the message was logged at
+     * @param loggerId Id returned by {@link #registerLogger(String)}
+     * @param template The "{}" message template
+     * @param args The template arguments, may be null
+     */
+    public synchronized void encode(long timestamp, LogLevel level, int loggerId, String template, Object[] args)
+            throws IOException {
+        encodeEvent(timestamp, level, loggerId, dictionary.idOf(template), args);
+    }
+
+    /**
+     * Encodes an event whose template id comes from this encoder's dictionary
+     * @param event The event to encode
+     */
+    public synchronized void encode(LogEvent event) throws IOException {
+        encodeEvent(event.getTimestamp(), event.getLevel(), event.getLoggerId(), event.getTemplateId(), event.getArgs());
+    }
+
+    /**
+     * Gets the dictionary used to assign template ids
+     * @return The template dictionary
+     */
+    public TemplateDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * Writes all buffered records to the underlying stream
+     */
+    @Override
+    public synchronized void flush() throws IOException {
+        if (buffer.position() > 0) {
+            out.write(buffer.array(), 0, buffer.position());
+            buffer.clear();
+        }
+        out.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        flush();
+        out.close();
+    }
+
+    private void encodeEvent(long timestamp, LogLevel level, int loggerId, int templateId, Object[] args)
+            throws IOException {
+        if (!writtenTemplates.get(templateId)) {
+            if (templateId >= MAX_TEMPLATES) {
+                throw new IllegalArgumentException("Template id " + templateId + " exceeds " + (MAX_TEMPLATES - 1));
+            }
+            String template = dictionary.templateOf(templateId);
+            if (template == null) {
+                throw new IllegalArgumentException("Unknown template id " + templateId);
+            }
+            ensureCapacity(1 + 5 + 5 + Utf8.length(template));
+            buffer.put(RECORD_TEMPLATE);
+            putVarInt(templateId);
+            putString(template);
+            writtenTemplates.set(templateId);
+        }
+
+        int argCount = args == null ? 0 : args.length;
+        ensureCapacity(1 + 10 + 1 + 5 + 5 + 5 + argCount * 11);
+        buffer.put(RECORD_EVENT);
+        putVarLong(zigzag(timestamp - lastTimestamp));
+        lastTimestamp = timestamp;
+        buffer.put((byte) level.ordinal());
+        putVarInt(loggerId);
+        putVarInt(templateId);
+        putVarInt(argCount);
+        for (int i = 0; i < argCount; i++) {
+            putArgument(args[i]);
+        }
+        if (buffer.position() >= INITIAL_BUFFER_SIZE) {
+            flush();
+        }
+    }
+
+    private void putArgument(Object arg) {
+        if (arg == null) {
+            buffer.put(ARG_NULL);
+        } else if (arg instanceof Integer || arg instanceof Short || arg instanceof Byte) {
+            buffer.put(ARG_INT);
+            putVarLong(zigzag(((Number) arg).intValue()));
+        } else if (arg instanceof Long) {
+            buffer.put(ARG_LONG);
+            putVarLong(zigzag((Long) arg));
+        } else if (arg instanceof Double || arg instanceof Float) {
+            buffer.put(ARG_DOUBLE);
+            buffer.putDouble(((Number) arg).doubleValue());
+        } else if (arg instanceof Boolean) {
+            buffer.put((Boolean) arg ? ARG_TRUE : ARG_FALSE);
+        } else {
+            String text = String.valueOf(arg);
+            ensureCapacity(1 + 5 + Utf8.length(text));
+            buffer.put(ARG_STRING);
+            putString(text);
+        }
+    }
+
+    private void putString(String text) {
+        putVarInt(Utf8.length(text));
+        Utf8.encode(text, buffer);
+    }
+
+    private void putVarInt(int value) {
+        putVarLong(value & 0xFFFFFFFFL);
+    }
+
+    private void putVarLong(long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    /**
+     * Makes sure at least the given number of bytes fit, in addition to a margin
+     * for the fixed-size fields written alongside
+     */
+    private void ensureCapacity(int bytes) {
+        int needed = bytes + 16;
+        if (buffer.remaining() >= needed) {
+            return;
+        }
+        ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + needed));
+        buffer.flip();
+        larger.put(buffer);
+        buffer = larger;
+    }
+}
@@ -0,0 +1,240 @@
+package behavioral.chainofresponsibility;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Decodes a stream written by {@link BinaryLogEncoder} back into events and text
+ *
+ * Can also be run as a tool that prints binary log files as plain text lines:
+ * java behavioral.chainofresponsibility.BinaryLogReader file...
+ */
+public class BinaryLogReader implements Closeable {
+    private static final LogLevel[] LEVELS = LogLevel.values();
+    // Buffers grow at most this far ahead of the bytes actually read, so a corrupt
+    // length ends in EOFException rather than a huge allocation
+    private static final int READ_CHUNK = 64 * 1024;
+
+    private final DataInputStream in;
+    private final TemplateDictionary dictionary = new TemplateDictionary();
+    private final List<String> loggerNames = new ArrayList<>();
+    private long lastTimestamp;
+    private byte[] stringBuffer = new byte[256];
+
+    /**
+     * Opens a binary log stream and checks its header
+     * @param in The stream to read
+     * @throws IOException if the stream is not a binary log of a supported version
+     */
+    public BinaryLogReader(InputStream in) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(in, 64 * 1024));
+        byte[] magic = new byte[BinaryLogEncoder.MAGIC.length];
+        this.in.readFully(magic);
+        if (!Arrays.equals(magic, BinaryLogEncoder.MAGIC)) {
+            throw new IOException("Not a binary log stream");
+        }
+        int version = this.in.readUnsignedByte();
+        if (version != BinaryLogEncoder.VERSION) {
+            throw new IOException("Unsupported binary log version " + version);
+        }
+    }
+
+    /**
+     * Reads the next event, applying any template or logger definitions on the way
+     * @return The next event, or null at the end of the stream
+     */
+    public LogEvent readEvent() throws IOException {
+        while (true) {
+            int tag = in.read();
+            if (tag < 0) {
+                return null;
+            }
+            switch (tag) {
+                case BinaryLogEncoder.RECORD_TEMPLATE:
+                    defineTemplate(readCount("template id"), readString());
+                    break;
+                case BinaryLogEncoder.RECORD_LOGGER:
+                    defineLogger(readCount("logger id"), readString());
+                    break;
+                case BinaryLogEncoder.RECORD_EVENT:
+                    return readEventBody();
+                default:
+                    throw new IOException("Corrupt binary log: unknown record tag " + tag);
+            }
+        }
+    }
+
+    /**
+     * Renders an event as a line of text
+     * @param event An event returned by this reader
+     * @return Timestamp, level, logger name and the rendered message
+     */
+    public String format(LogEvent event) {
+        String template = dictionary.templateOf(event.getTemplateId());
+        return Instant.ofEpochMilli(event.getTimestamp()) + " " + event.getLevel()
+                + " [" + getLoggerName(event.getLoggerId()) + "] "
+                + MessageFormatter.format(template == null ? "?" : template, event.getArgs());
+    }
+
+    /**
+     * Gets the name a logger registered with
+     * @param loggerId The logger id stored in events
+     * @return The logger name, or a placeholder for unknown ids
+     */
+    public String getLoggerName(int loggerId) {
+        if (loggerId >= 0 && loggerId < loggerNames.size() && loggerNames.get(loggerId) != null) {
+            return loggerNames.get(loggerId);
+        }
+        return "logger-" + loggerId;
+    }
+
+    /**
+     * Gets the templates read so far
+     * @return The dictionary rebuilt from the stream
+     */
+    public TemplateDictionary getDictionary() {
+        return dictionary;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private LogEvent readEventBody() throws IOException {
+        long timestamp = lastTimestamp + unzigzag(readVarLong());
+        lastTimestamp = timestamp;
+        int ordinal = in.readUnsignedByte();
+        if (ordinal >= LEVELS.length) {
+            throw new IOException("Corrupt binary log: unknown level " + ordinal);
+        }
+        LogLevel level = LEVELS[ordinal];
+        int loggerId = readVarInt();
+        int templateId = readVarInt();
+        int argCount = readCount("argument count");
+        Object[] args = new Object[Math.min(argCount, READ_CHUNK)];
+        for (int i = 0; i < argCount; i++) {
+            if (i == args.length) {
+                args = Arrays.copyOf(args, (int) Math.min(argCount, (long) args.length * 2));
+            }
+            args[i] = readArgument();
+        }
+        return new LogEvent(timestamp, level, loggerId, templateId, args);
+    }
+
+    private Object readArgument() throws IOException {
+        int tag = in.readUnsignedByte();
+        switch (tag) {
+            case BinaryLogEncoder.ARG_NULL:
+                return null;
+            case BinaryLogEncoder.ARG_INT:
+                return (int) unzigzag(readVarLong());
+            case BinaryLogEncoder.ARG_LONG:
+                return unzigzag(readVarLong());
+            case BinaryLogEncoder.ARG_DOUBLE:
+                return in.readDouble();
+            case BinaryLogEncoder.ARG_STRING:
+                return readString();
+            case BinaryLogEncoder.ARG_TRUE:
+                return Boolean.TRUE;
+            case BinaryLogEncoder.ARG_FALSE:
+                return Boolean.FALSE;
+            default:
+                throw new IOException("Corrupt binary log: unknown argument tag " + tag);
+        }
+    }
+
+    private void defineTemplate(int id, String template) throws IOException {
+        // Ids skip when encoders share a dictionary, so only their range is checked
+        if (id >= BinaryLogEncoder.MAX_TEMPLATES) {
+            throw new IOException("Corrupt binary log: template id " + id + " out of range");
+        }
+        dictionary.define(id, template);
+    }
+
+    private void defineLogger(int id, String name) throws IOException {
+        // The encoder numbers its loggers in order, so an id never skips ahead
+        if (id > loggerNames.size()) {
+            throw new IOException("Corrupt binary log: logger id " + id + " out of sequence");
+        }
+        while (loggerNames.size() <= id) {
+            loggerNames.add(null);
+        }
+        loggerNames.set(id, name);
+    }
+
+    private String readString() throws IOException {
+        int length = readCount("string length");
+        int read = 0;
+        while (read < length) {
+            if (stringBuffer.length == read) {
+                stringBuffer = Arrays.copyOf(stringBuffer,
+                        (int) Math.min(length, (long) read + Math.max(read, READ_CHUNK)));
+            }
+            int chunk = Math.min(length, stringBuffer.length) - read;
+            in.readFully(stringBuffer, read, chunk);
+            read += chunk;
+        }
+        return new String(stringBuffer, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private int readCount(String what) throws IOException {
+        long value = readVarLong();
+        if (value < 0 || value > Integer.MAX_VALUE) {
+            throw new IOException("Corrupt binary log: " + what + " " + value);
+        }
+        return (int) value;
+    }
+
+    private int readVarInt() throws IOException {
+        return (int) readVarLong();
+    }
+
+    private long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Truncated binary log record");
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Corrupt binary log: varint too long");
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Prints the given binary log files as text
+     * @param args Paths of the files to decode
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: BinaryLogReader <file>...");
+            return;
+        }
+        for (String path : args) {
+            try (BinaryLogReader reader = new BinaryLogReader(new FileInputStream(path))) {
+                LogEvent event;
+                while ((event = reader.readEvent()) != null) {
+                    System.out.println(reader.format(event));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package behavioral.chainofresponsibility;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Concrete handler that writes structured binary events instead of text lines
+ * Parameterized messages keep their template and arguments; plain messages are
+ * stored as the argument of a single "{}" template
+ *
+ * Single events stay in the encoder's buffer until it fills up, a batch is
+ * written, {@link #flush()} is called or the logger is closed.
+ */
+public class BinaryLogger extends Logger implements AutoCloseable {
+    private static final String PLAIN_TEMPLATE = "{}";
+
+    private final BinaryLogEncoder encoder;
+    private final int loggerId;
+
+    /**
+     * Creates a binary logger and registers its name with the encoder
+     * @param level The minimum level this logger handles
+     * @param name Name the reader shows for this logger's events
+     * @param encoder The encoder events are written to
+     */
+    public BinaryLogger(LogLevel level, String name, BinaryLogEncoder encoder) {
+        super(level);
+        this.encoder = encoder;
+        this.loggerId = encoder.registerLogger(name);
+    }
+
+    @Override
+    protected void writeMessage(String message) {
+        writeMessage(message, level);
+    }
+
+    @Override
+    protected void writeMessage(String message, LogLevel level) {
+        try {
+            encoder.encode(System.currentTimeMillis(), level, loggerId, PLAIN_TEMPLATE, new Object[] {message});
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    protected boolean writeTemplate(String template, Object[] args, LogLevel level) {
+        try {
+            encoder.encode(System.currentTimeMillis(), level, loggerId, template, args);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return true;
+    }
+
+    /**
+     * Encodes the whole batch stamped with the current time and flushes the encoder once
+     */
+    @Override
+    protected void writeBatch(String[] messages, LogLevel[] levels, int count) {
+        long now = System.currentTimeMillis();
+        try {
+            for (int i = 0; i < count; i++) {
+                encoder.encode(now, levels[i], loggerId, PLAIN_TEMPLATE, new Object[] {messages[i]});
+            }
+            encoder.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Encodes the whole batch with the time each message was logged and flushes the encoder once
+     */
+    @Override
+    protected void writeBatch(String[] messages, LogLevel[] levels, long[] timestamps, int count) {
+        try {
+            for (int i = 0; i < count; i++) {
+                encoder.encode(timestamps[i], levels[i], loggerId, PLAIN_TEMPLATE, new Object[] {messages[i]});
+            }
+            encoder.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes the buffered events to the output stream
+     * @throws IOException if writing fails
+     */
+    public void flush() throws IOException {
+        encoder.flush();
+    }
+
+    /**
+     * Flushes and closes the encoder
+     */
+    @Override
+    public void close() throws IOException {
+        encoder.close();
+    }
+}
@@ -15,12 +15,12 @@ public class ChainOfResponsibilityDemo {
 
         // Test the chain with different log levels
         System.out.println("Logging INFO level message:");
-        consoleLogger.log(LogLevel.INFO, "This is an information message");
+        consoleLogger.logMessage("This is an information message", LogLevel.INFO);
         
         System.out.println("\nLogging DEBUG level message:");
-        consoleLogger.log(LogLevel.DEBUG, "This is a debug message");
+        consoleLogger.logMessage("This is a debug message", LogLevel.DEBUG);
         
         System.out.println("\nLogging ERROR level message:");
-        consoleLogger.log(LogLevel.ERROR, "This is an error message");
+        consoleLogger.logMessage("This is an error message", LogLevel.ERROR);
     }
 }
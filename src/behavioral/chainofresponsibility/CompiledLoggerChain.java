@@ -0,0 +1,125 @@
+package behavioral.chainofresponsibility;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Flattened, precomputed form of a logger chain
+ *
+ * The linked chain built with setNext() is walked once and, for every {@link LogLevel},
+ * the loggers that accept it are stored in a plain array. Dispatching a message is then
+ * one array lookup and a loop over the loggers that will actually write it, with no
+ * recursion and no level comparisons.
+ *
+ * A filtering logger, one that overrides passes() such as {@link ThrottlingLogger},
+ * stays in the arrays at its position in the chain for every level and stops the
+ * loop when it drops a message.
+ *
+ * The table is a snapshot: changes made to the chain or its loggers after compile()
+ * are not seen until the chain is compiled again.
+ */
+public final class CompiledLoggerChain {
+    private static final Logger[] NO_LOGGERS = new Logger[0];
+
+    private final Logger[][] loggersByLevel;
+
+    private CompiledLoggerChain(Logger[][] loggersByLevel) {
+        this.loggersByLevel = loggersByLevel;
+    }
+
+    /**
+     * Builds the dispatch table for the chain starting at the given logger
+     * @param head The first logger of the chain
+     * @return The compiled chain
+     * @throws IllegalArgumentException if the chain loops back on itself
+     */
+    public static CompiledLoggerChain compile(Logger head) {
+        List<Logger> chain = new ArrayList<>();
+        Set<Logger> seen = Collections.newSetFromMap(new IdentityHashMap<Logger, Boolean>());
+        for (Logger logger = head; logger != null; logger = logger.getNext()) {
+            if (!seen.add(logger)) {
+                throw new IllegalArgumentException("Logger chain contains a cycle at " + logger.getClass().getSimpleName());
+            }
+            chain.add(logger);
+        }
+        return compile(chain);
+    }
+
+    /**
+     * Builds the dispatch table for loggers given in chain order, ignoring their setNext() links
+     * @param chain The loggers in the order they should fire
+     * @return The compiled chain
+     */
+    static CompiledLoggerChain compile(List<Logger> chain) {
+        LogLevel[] levels = LogLevel.values();
+        Logger[][] table = new Logger[levels.length][];
+        for (LogLevel level : levels) {
+            List<Logger> accepting = new ArrayList<>();
+            for (Logger logger : chain) {
+                if (logger.accepts(level) || logger.isFilter()) {
+                    accepting.add(logger);
+                }
+            }
+            table[level.ordinal()] = accepting.isEmpty() ? NO_LOGGERS : accepting.toArray(new Logger[0]);
+        }
+        return new CompiledLoggerChain(table);
+    }
+
+    /**
+     * Writes the message to every logger in the chain that accepts its level,
+     * in chain order
+     * @param message The message to be logged
+     * @param level The level at which to log the message
+     */
+    public void logMessage(String message, LogLevel level) {
+        Logger[] loggers = loggersByLevel[level.ordinal()];
+        for (int i = 0; i < loggers.length; i++) {
+            Logger logger = loggers[i];
+            if (logger.isFilter()) {
+                if (!logger.passes(level)) {
+                    return;
+                }
+                if (!logger.accepts(level)) {
+                    continue;
+                }
+            }
+            logger.writeMessage(message, level);
+        }
+    }
+
+    /**
+     * Checks whether any logger in the chain would write a message of this level
+     * @param level The level to check
+     * @return true if at least one logger accepts the level
+     */
+    public boolean isEnabled(LogLevel level) {
+        for (Logger logger : loggersByLevel[level.ordinal()]) {
+            if (writes(logger, level)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the number of loggers that write messages of the given level
+     * @param level The level to check
+     * @return How many loggers will fire for that level, not counting filters that only pass or drop it
+     */
+    public int getLoggerCount(LogLevel level) {
+        int count = 0;
+        for (Logger logger : loggersByLevel[level.ordinal()]) {
+            if (writes(logger, level)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static boolean writes(Logger logger, LogLevel level) {
+        return !logger.isFilter() || logger.accepts(level);
+    }
+}
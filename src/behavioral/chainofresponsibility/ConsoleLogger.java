@@ -12,4 +12,17 @@ public class ConsoleLogger extends Logger {
     protected void writeMessage(String message) {
         System.out.println("Console Logger: " + message);
     }
+
+    /**
+     * Writes the whole batch with a single print so stdout is locked once per batch
+     */
+    @Override
+    protected void writeBatch(String[] messages, LogLevel[] levels, int count) {
+        StringBuilder batch = new StringBuilder(count * 64);
+        String lineSeparator = System.lineSeparator();
+        for (int i = 0; i < count; i++) {
+            batch.append("Console Logger: ").append(messages[i]).append(lineSeparator);
+        }
+        System.out.print(batch);
+    }
 }
@@ -1,16 +1,102 @@
 package behavioral.chainofresponsibility;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
 /**
  * Concrete handler for file logging
+ * Without a writer it only echoes to the console; with a {@link MappedLogWriter}
+ * every message is appended to memory-mapped segment files on disk
  */
-public class FileLogger extends Logger {
+public class FileLogger extends Logger implements AutoCloseable {
+    private final MappedLogWriter writer;
+
     public FileLogger(LogLevel level) {
+        this(level, null);
+    }
+
+    /**
+     * Creates a file logger that persists messages
+     * @param level The minimum level this logger handles
+     * @param writer The segment writer records are appended to
+     */
+    public FileLogger(LogLevel level, MappedLogWriter writer) {
         super(level);
+        this.writer = writer;
     }
 
     @Override
     protected void writeMessage(String message) {
-        System.out.println("File Logger: " + message);
-        // In a real implementation, this would write to a file
+        if (writer == null) {
+            System.out.println("File Logger: " + message);
+            return;
+        }
+        try {
+            writer.append(message);
+            writer.endBatch();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Appends the whole batch and applies the fsync policy once at the end
+     * A message too large for a segment is skipped and reported after the rest
+     * of the batch has been written
+     */
+    @Override
+    protected void writeBatch(String[] messages, LogLevel[] levels, int count) {
+        if (writer == null) {
+            super.writeBatch(messages, levels, count);
+            return;
+        }
+        IllegalArgumentException rejected = null;
+        try {
+            for (int i = 0; i < count; i++) {
+                try {
+                    writer.append(messages[i]);
+                } catch (IllegalArgumentException e) {
+                    if (rejected == null) {
+                        rejected = e;
+                    } else {
+                        rejected.addSuppressed(e);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            // Sync what was appended even if the batch stopped early
+            writer.endBatch();
+        }
+        if (rejected != null) {
+            throw rejected;
+        }
+    }
+
+    /**
+     * Lets the writer sync and roll on time while no messages arrive
+     */
+    @Override
+    protected long onIdle() {
+        if (writer == null) {
+            return Long.MAX_VALUE;
+        }
+        try {
+            writer.checkDeadlines();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return writer.nextDeadline();
+    }
+
+    /**
+     * Closes the underlying writer, if any
+     */
+    @Override
+    public void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+        }
     }
 }
@@ -0,0 +1,21 @@
+package behavioral.chainofresponsibility;
+
+/**
+ * Decides when a {@link MappedLogWriter} forces written records to disk
+ */
+public enum FsyncPolicy {
+    /**
+     * Never force explicitly, leave it to the operating system
+     */
+    NEVER,
+
+    /**
+     * Force at the end of every batch handed to the writer
+     */
+    PER_BATCH,
+
+    /**
+     * Force at the end of a batch once the configured interval has elapsed
+     */
+    INTERVAL
+}
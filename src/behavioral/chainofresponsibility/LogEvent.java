@@ -0,0 +1,49 @@
+package behavioral.chainofresponsibility;
+
+/**
+ * One structured log record: when, how severe, who logged it, and which
+ * template with which arguments, kept apart instead of rendered to text
+ */
+public final class LogEvent {
+    private final long timestamp;
+    private final LogLevel level;
+    private final int loggerId;
+    private final int templateId;
+    private final Object[] args;
+
+    /**
+     * Creates a log event
+     * @param timestamp Milliseconds since the epoch
+     * @param level The level the message was logged at
+     * @param loggerId Id of the logger that wrote the event
+     * @param templateId Id of the message template in the {@link TemplateDictionary}
+     * @param args The template arguments
+     */
+    public LogEvent(long timestamp, LogLevel level, int loggerId, int templateId, Object[] args) {
+        this.timestamp = timestamp;
+        this.level = level;
+        this.loggerId = loggerId;
+        this.templateId = templateId;
+        this.args = args;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public LogLevel getLevel() {
+        return level;
+    }
+
+    public int getLoggerId() {
+        return loggerId;
+    }
+
+    public int getTemplateId() {
+        return templateId;
+    }
+
+    public Object[] getArgs() {
+        return args;
+    }
+}
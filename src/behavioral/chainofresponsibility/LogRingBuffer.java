@@ -0,0 +1,149 @@
+package behavioral.chainofresponsibility;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free queue of log records used by {@link AsyncLogger}
+ *
+ * Each slot carries a sequence number that tells producers when the slot is free
+ * and consumers when it has been published, so claiming a slot is a single CAS
+ * on the tail (or head) counter and no thread ever takes a lock.
+ * Several threads may offer and poll concurrently; the drain thread is the usual
+ * consumer, while producers poll only to discard the oldest record on overflow.
+ */
+final class LogRingBuffer {
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final String[] messages;
+    private final LogLevel[] levels;
+    private final long[] timestamps;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * Creates an empty ring buffer
+     * @param capacity Number of slots, must be a power of two
+     */
+    LogRingBuffer(int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        this.mask = capacity - 1;
+        this.sequences = new AtomicLongArray(capacity);
+        this.messages = new String[capacity];
+        this.levels = new LogLevel[capacity];
+        this.timestamps = new long[capacity];
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Appends a record if there is a free slot
+     * @param message The message to queue
+     * @param level The level of the message
+     * @param timestamp When the message was logged, in milliseconds since the epoch
+     * @return true if the record was queued, false if the buffer is full
+     */
+    boolean offer(String message, LogLevel level, long timestamp) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    messages[index] = message;
+                    levels[index] = level;
+                    timestamps[index] = timestamp;
+                    sequences.lazySet(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Moves up to {@code max} published records into the given arrays
+     * @param messageOut Receives the messages
+     * @param levelOut Receives the matching levels
+     * @param timestampOut Receives the matching timestamps
+     * @param max Maximum number of records to move
+     * @return The number of records moved
+     */
+    int drainTo(String[] messageOut, LogLevel[] levelOut, long[] timestampOut, int max) {
+        int count = 0;
+        while (count < max) {
+            long position = claimHead();
+            if (position < 0) {
+                break;
+            }
+            int index = (int) (position & mask);
+            messageOut[count] = messages[index];
+            levelOut[count] = levels[index];
+            timestampOut[count] = timestamps[index];
+            release(position);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Removes the oldest published record without returning it
+     * @return true if a record was discarded
+     */
+    boolean discardOldest() {
+        long position = claimHead();
+        if (position < 0) {
+            return false;
+        }
+        release(position);
+        return true;
+    }
+
+    /**
+     * Gets the number of slots ever claimed by producers
+     * @return The tail position
+     */
+    long producerPosition() {
+        return tail.get();
+    }
+
+    /**
+     * Gets the number of records ever removed by consumers
+     * @return The head position
+     */
+    long consumerPosition() {
+        return head.get();
+    }
+
+    private long claimHead() {
+        long position = head.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - (position + 1);
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    return position;
+                }
+                position = head.get();
+            } else if (difference < 0) {
+                return -1;
+            } else {
+                position = head.get();
+            }
+        }
+    }
+
+    private void release(long position) {
+        int index = (int) (position & mask);
+        messages[index] = null;
+        levels[index] = null;
+        sequences.lazySet(index, position + mask + 1);
+    }
+}
@@ -1,13 +1,20 @@
 package behavioral.chainofresponsibility;
 
+import java.util.function.Supplier;
+
 /**
  * Abstract base class for the Chain of Responsibility pattern
  * Implements the basic chain functionality and defines the logging contract
  * Each concrete logger will handle specific log levels and pass others to the next handler
  */
 public abstract class Logger {
-    protected LogLevel level;
-    protected Logger nextLogger;
+    // volatile so a logger reconfigured by one thread is seen consistently by the others
+    protected volatile LogLevel level;
+    protected volatile Logger nextLogger;
+    // Whether this logger's class overrides writeTemplate, so template messages must reach it unrendered
+    private final boolean structured;
+    // Whether this logger's class overrides passes, so it may stop messages on their way down the chain
+    private final boolean filter;
 
     /**
      * Constructs a logger with a specific log level
@@ -15,6 +22,8 @@ public abstract class Logger {
      */
     public Logger(LogLevel level) {
         this.level = level;
+        this.structured = overrides(getClass(), "writeTemplate", String.class, Object[].class, LogLevel.class);
+        this.filter = overrides(getClass(), "passes", LogLevel.class);
     }
 
     /**
@@ -27,6 +36,61 @@ public abstract class Logger {
         return nextLogger;
     }
 
+    /**
+     * Gets the next logger in the chain
+     * @return The next logger, or null if this is the last one
+     */
+    public Logger getNext() {
+        return nextLogger;
+    }
+
+    /**
+     * Gets the minimum level this logger handles
+     * @return The logger's level
+     */
+    public LogLevel getLevel() {
+        return level;
+    }
+
+    /**
+     * Changes the minimum level this logger handles
+     * A {@link LoggerChain} containing this logger should be updated through
+     * {@link LoggerChain#setLevel(Logger, LogLevel)} so its dispatch table follows
+     * @param level The new minimum level
+     */
+    public void setLevel(LogLevel level) {
+        this.level = level;
+    }
+
+    /**
+     * Checks whether this logger handles messages of the given level
+     * @param level The level of the message
+     * @return true if this logger writes messages at that level
+     */
+    public boolean accepts(LogLevel level) {
+        return this.level.ordinal() <= level.ordinal();
+    }
+
+    /**
+     * Decides whether a message may continue past this point of the chain
+     * Filtering stages such as {@link ThrottlingLogger} override this;
+     * ordinary loggers let every message through
+     * @param level The level of the message
+     * @return true if this logger and the ones after it should see the message
+     */
+    protected boolean passes(LogLevel level) {
+        return true;
+    }
+
+    /**
+     * Checks whether this logger overrides {@link #passes(LogLevel)}
+     * A compiled chain keeps such loggers at their position even for levels they do not write
+     * @return true if this logger may stop messages from reaching the rest of the chain
+     */
+    boolean isFilter() {
+        return filter;
+    }
+
     /**
      * Handles the message if appropriate for this logger's level,
      * otherwise passes it to the next logger in the chain
@@ -34,18 +98,256 @@ public abstract class Logger {
      * @param level The level at which to log the message
      */
     public void logMessage(String message, LogLevel level) {
-        if (this.level.ordinal() <= level.ordinal()) {
-            write(message);
+        if (!passes(level)) {
+            return;
+        }
+        if (accepts(level)) {
+            writeMessage(message, level);
         }
         if (nextLogger != null) {
             nextLogger.logMessage(message, level);
         }
     }
 
+    /**
+     * Checks whether this logger or any logger after it would write a message of this level
+     * Filtering stages are not consulted, so a message may still be dropped by one
+     * @param level The level to check
+     * @return true if at least one logger in the rest of the chain accepts the level
+     */
+    public boolean isEnabled(LogLevel level) {
+        for (Logger logger = this; logger != null; logger = logger.nextLogger) {
+            if (logger.accepts(level)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Logs a message that is only built if some logger in the chain accepts the level
+     * A non-capturing lambda or method reference costs nothing when the level is disabled
+     * @param message Supplies the message text
+     * @param level The level at which to log the message
+     */
+    public void logMessage(Supplier<String> message, LogLevel level) {
+        if (isEnabled(level)) {
+            logMessage(message.get(), level);
+        }
+    }
+
+    /**
+     * Logs a "{}" template with one argument, rendered only if the level is enabled
+     * @param template Message text where "{}" marks the argument
+     * @param arg The argument
+     * @param level The level at which to log the message
+     */
+    public void logMessage(String template, Object arg, LogLevel level) {
+        if (!isEnabled(level)) {
+            return;
+        }
+        if (hasStructuredLogger(level)) {
+            logTemplate(template, new Object[] {arg}, level);
+        } else {
+            logMessage(MessageFormatter.format(template, arg), level);
+        }
+    }
+
+    /**
+     * Logs a "{}" template with two arguments, rendered only if the level is enabled
+     * @param template Message text where each "{}" marks an argument
+     * @param arg1 The first argument
+     * @param arg2 The second argument
+     * @param level The level at which to log the message
+     */
+    public void logMessage(String template, Object arg1, Object arg2, LogLevel level) {
+        if (!isEnabled(level)) {
+            return;
+        }
+        if (hasStructuredLogger(level)) {
+            logTemplate(template, new Object[] {arg1, arg2}, level);
+        } else {
+            logMessage(MessageFormatter.format(template, arg1, arg2), level);
+        }
+    }
+
+    /**
+     * Logs a "{}" template with an int argument, boxed only for structured loggers
+     * @param template Message text where "{}" marks the argument
+     * @param arg The argument
+     * @param level The level at which to log the message
+     */
+    public void logMessage(String template, int arg, LogLevel level) {
+        if (!isEnabled(level)) {
+            return;
+        }
+        if (hasStructuredLogger(level)) {
+            logTemplate(template, new Object[] {arg}, level);
+        } else {
+            logMessage(MessageFormatter.format(template, arg), level);
+        }
+    }
+
+    /**
+     * Logs a "{}" template with a long argument, boxed only for structured loggers
+     * @param template Message text where "{}" marks the argument
+     * @param arg The argument
+     * @param level The level at which to log the message
+     */
+    public void logMessage(String template, long arg, LogLevel level) {
+        if (!isEnabled(level)) {
+            return;
+        }
+        if (hasStructuredLogger(level)) {
+            logTemplate(template, new Object[] {arg}, level);
+        } else {
+            logMessage(MessageFormatter.format(template, arg), level);
+        }
+    }
+
+    /**
+     * Logs a "{}" template with a double argument, boxed only for structured loggers
+     * @param template Message text where "{}" marks the argument
+     * @param arg The argument
+     * @param level The level at which to log the message
+     */
+    public void logMessage(String template, double arg, LogLevel level) {
+        if (!isEnabled(level)) {
+            return;
+        }
+        if (hasStructuredLogger(level)) {
+            logTemplate(template, new Object[] {arg}, level);
+        } else {
+            logMessage(MessageFormatter.format(template, arg), level);
+        }
+    }
+
+    /**
+     * Logs a "{}" template with any number of arguments
+     * Prefer the fixed-arity overloads on hot paths: the caller allocates this array
+     * even when the level is disabled
+     * @param template Message text where each "{}" marks an argument
+     * @param args The arguments, in placeholder order
+     * @param level The level at which to log the message
+     */
+    public void logMessage(String template, Object[] args, LogLevel level) {
+        if (isEnabled(level)) {
+            logTemplate(template, args, level);
+        }
+    }
+
+    /**
+     * Checks whether a structured logger from here on would receive a message of this level
+     * When none does, the fixed-arity overloads render the text directly instead of
+     * allocating an argument array
+     */
+    private boolean hasStructuredLogger(LogLevel level) {
+        for (Logger logger = this; logger != null; logger = logger.nextLogger) {
+            if (logger.structured && logger.accepts(level)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean overrides(Class<?> type, String name, Class<?>... parameterTypes) {
+        for (Class<?> c = type; c != Logger.class; c = c.getSuperclass()) {
+            try {
+                c.getDeclaredMethod(name, parameterTypes);
+                return true;
+            } catch (NoSuchMethodException e) {
+                // Not declared here, look further up
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Delivers a template message to every accepting logger from here on
+     * Structured loggers get the template and arguments; the others get the text,
+     * which is rendered at most once however many of them accept the level
+     */
+    private void logTemplate(String template, Object[] args, LogLevel level) {
+        String rendered = null;
+        for (Logger logger = this; logger != null; logger = logger.nextLogger) {
+            if (!logger.passes(level)) {
+                return;
+            }
+            if (logger.accepts(level) && !logger.writeTemplate(template, args, level)) {
+                if (rendered == null) {
+                    rendered = MessageFormatter.format(template, args);
+                }
+                logger.writeMessage(rendered, level);
+            }
+        }
+    }
+
     /**
      * Abstract method to be implemented by concrete loggers
      * Defines how the actual logging should be performed
      * @param message The message to be written to the log
      */
-    protected abstract void write(String message);
+    protected abstract void writeMessage(String message);
+
+    /**
+     * Writes a message together with its level
+     * Loggers that record the level override this; the default ignores it
+     * @param message The message to be written to the log
+     * @param level The level the message was logged at
+     */
+    protected void writeMessage(String message, LogLevel level) {
+        writeMessage(message);
+    }
+
+    /**
+     * Writes a parameterized message without rendering it
+     * Structured loggers override this to keep the template and arguments apart
+     * @param template The "{}" message template
+     * @param args The template arguments
+     * @param level The level the message was logged at
+     * @return true if the message was written, false to receive the rendered text instead
+     */
+    protected boolean writeTemplate(String template, Object[] args, LogLevel level) {
+        return false;
+    }
+
+    /**
+     * Writes a batch of messages already accepted for this logger
+     * Used by {@link AsyncLogger} so a logger can amortize its I/O over many messages;
+     * the default simply writes them one at a time
+     * @param messages Buffer holding the messages, in arrival order
+     * @param levels The level of each message
+     * @param count Number of valid entries at the start of the buffers
+     */
+    protected void writeBatch(String[] messages, LogLevel[] levels, int count) {
+        for (int i = 0; i < count; i++) {
+            writeMessage(messages[i], levels[i]);
+        }
+    }
+
+    /**
+     * Writes a batch of messages together with the time each one was logged
+     * Used by {@link AsyncLogger}, which hands batches over some time after the
+     * messages were logged; loggers that record timestamps override this, the
+     * default ignores them
+     * @param messages Buffer holding the messages, in arrival order
+     * @param levels The level of each message
+     * @param timestamps When each message was logged, in milliseconds since the epoch
+     * @param count Number of valid entries at the start of the buffers
+     */
+    protected void writeBatch(String[] messages, LogLevel[] levels, long[] timestamps, int count) {
+        writeBatch(messages, levels, count);
+    }
+
+    /**
+     * Called by the {@link AsyncLogger} drain thread when its queue runs empty, and
+     * again while it stays empty once the returned deadline has passed
+     * Loggers with time-based work, such as a pending fsync, override this;
+     * the default does nothing
+     * @return When to be called again at the latest, in milliseconds since the epoch,
+     *         or Long.MAX_VALUE if nothing is due until new messages arrive
+     */
+    protected long onIdle() {
+        return Long.MAX_VALUE;
+    }
 }
@@ -0,0 +1,183 @@
+package behavioral.chainofresponsibility;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Logger chain that can be reconfigured while other threads are logging
+ *
+ * The chain is held as an immutable snapshot: the ordered loggers plus their
+ * {@link CompiledLoggerChain} dispatch table. Logging threads read the current snapshot
+ * from a volatile field and never lock. Changing a level or adding/removing a logger
+ * builds a new snapshot and publishes it in one write, so every message is dispatched
+ * either entirely by the old chain or entirely by the new one.
+ *
+ * Writers are serialized with a lock, which only reconfiguration ever takes.
+ * The loggers' own setNext() links are not used or changed by this class.
+ */
+public class LoggerChain {
+    private final Object writeLock = new Object();
+    private volatile Snapshot snapshot;
+
+    /**
+     * Creates a chain from the given loggers, in the order they should fire
+     * @param loggers The loggers of the chain, each at most once
+     */
+    public LoggerChain(Logger... loggers) {
+        List<Logger> checked = new ArrayList<>(loggers.length);
+        for (Logger logger : loggers) {
+            checkNotInChain(checked, logger);
+            checked.add(logger);
+        }
+        this.snapshot = new Snapshot(checked);
+    }
+
+    /**
+     * Creates a chain holding the loggers currently linked from the given head
+     * @param head The first logger of a chain built with setNext()
+     * @return A reconfigurable copy of that chain
+     */
+    public static LoggerChain from(Logger head) {
+        List<Logger> loggers = new ArrayList<>();
+        Set<Logger> seen = Collections.newSetFromMap(new IdentityHashMap<Logger, Boolean>());
+        for (Logger logger = head; logger != null; logger = logger.getNext()) {
+            if (!seen.add(logger)) {
+                throw new IllegalArgumentException("Logger chain contains a cycle at " + logger.getClass().getSimpleName());
+            }
+            loggers.add(logger);
+        }
+        return new LoggerChain(loggers.toArray(new Logger[0]));
+    }
+
+    /**
+     * Writes the message to every logger of the current snapshot that accepts its level
+     * @param message The message to be logged
+     * @param level The level at which to log the message
+     */
+    public void logMessage(String message, LogLevel level) {
+        snapshot.compiled.logMessage(message, level);
+    }
+
+    /**
+     * Logs a message that is only built if some logger accepts the level
+     * @param message Supplies the message text
+     * @param level The level at which to log the message
+     */
+    public void logMessage(Supplier<String> message, LogLevel level) {
+        CompiledLoggerChain compiled = snapshot.compiled;
+        if (compiled.isEnabled(level)) {
+            compiled.logMessage(message.get(), level);
+        }
+    }
+
+    /**
+     * Checks whether any logger would write a message of this level
+     * @param level The level to check
+     * @return true if at least one logger accepts the level
+     */
+    public boolean isEnabled(LogLevel level) {
+        return snapshot.compiled.isEnabled(level);
+    }
+
+    /**
+     * Atomically changes the level of a logger in this chain
+     * @param logger The logger to change
+     * @param level The new minimum level
+     * @throws IllegalArgumentException if the logger is not part of the chain
+     */
+    public void setLevel(Logger logger, LogLevel level) {
+        synchronized (writeLock) {
+            List<Logger> loggers = snapshot.loggers;
+            if (indexOf(loggers, logger) < 0) {
+                throw new IllegalArgumentException("Logger is not part of this chain");
+            }
+            logger.setLevel(level);
+            snapshot = new Snapshot(loggers);
+        }
+    }
+
+    /**
+     * Atomically appends a logger to the end of the chain
+     * @param logger The logger to add
+     */
+    public void add(Logger logger) {
+        synchronized (writeLock) {
+            insert(snapshot.loggers.size(), logger);
+        }
+    }
+
+    /**
+     * Atomically inserts a logger at a position in the chain
+     * @param index Position of the new logger, 0 for the front
+     * @param logger The logger to insert
+     */
+    public void insert(int index, Logger logger) {
+        synchronized (writeLock) {
+            List<Logger> loggers = new ArrayList<>(snapshot.loggers);
+            checkNotInChain(loggers, logger);
+            loggers.add(index, logger);
+            snapshot = new Snapshot(loggers);
+        }
+    }
+
+    /**
+     * Atomically removes a logger from the chain
+     * @param logger The logger to remove
+     * @return true if the logger was part of the chain
+     */
+    public boolean remove(Logger logger) {
+        synchronized (writeLock) {
+            List<Logger> loggers = new ArrayList<>(snapshot.loggers);
+            int index = indexOf(loggers, logger);
+            if (index < 0) {
+                return false;
+            }
+            loggers.remove(index);
+            snapshot = new Snapshot(loggers);
+            return true;
+        }
+    }
+
+    /**
+     * Gets the loggers of the current snapshot
+     * @return An unmodifiable list in chain order
+     */
+    public List<Logger> getLoggers() {
+        return snapshot.loggers;
+    }
+
+    private static void checkNotInChain(List<Logger> loggers, Logger logger) {
+        if (logger == null) {
+            throw new IllegalArgumentException("Logger must not be null");
+        }
+        if (indexOf(loggers, logger) >= 0) {
+            throw new IllegalArgumentException("Logger is already part of this chain");
+        }
+    }
+
+    private static int indexOf(List<Logger> loggers, Logger logger) {
+        for (int i = 0; i < loggers.size(); i++) {
+            if (loggers.get(i) == logger) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Immutable view of the chain at one point in time
+     */
+    private static final class Snapshot {
+        final List<Logger> loggers;
+        final CompiledLoggerChain compiled;
+
+        Snapshot(List<Logger> loggers) {
+            this.loggers = Collections.unmodifiableList(new ArrayList<>(loggers));
+            this.compiled = CompiledLoggerChain.compile(this.loggers);
+        }
+    }
+}
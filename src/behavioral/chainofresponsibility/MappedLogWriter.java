@@ -0,0 +1,309 @@
+package behavioral.chainofresponsibility;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+/**
+ * Appends UTF-8 log records to pre-allocated memory-mapped segment files
+ *
+ * Every segment is mapped once when it is created, so appending a record is a copy
+ * into memory with no system call. A new segment is started when the next record
+ * does not fit or when the current one has been open longer than the roll interval.
+ * Finished segments are truncated to the bytes actually written.
+ *
+ * Segments are named {@code <baseName>-000001.log}, {@code <baseName>-000002.log}, ...
+ * and numbering continues after any segments already present in the directory.
+ *
+ * The fsync interval and the roll interval are checked when records are written
+ * and by {@link #checkDeadlines()}. An {@link AsyncLogger} calls it through
+ * {@link FileLogger} when its queue runs empty and again at {@link #nextDeadline()},
+ * so an idle writer still syncs its last records and rolls its segment; used
+ * synchronously, call it periodically or the deadlines only apply on the next write.
+ */
+public class MappedLogWriter implements Closeable {
+    private static final String SUFFIX = ".log";
+
+    private final Path directory;
+    private final String baseName;
+    private final int segmentSize;
+    private final long rollIntervalMillis;
+    private final FsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalMillis;
+
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private Path segmentPath;
+    private int segmentIndex;
+    private long segmentOpenedAt;
+    private long lastForcedAt;
+    private boolean dirty;
+    private boolean closed;
+
+    private MappedLogWriter(MappedLogWriterBuilder builder) throws IOException {
+        this.directory = builder.directory;
+        this.baseName = builder.baseName;
+        this.segmentSize = builder.segmentSize;
+        this.rollIntervalMillis = builder.rollIntervalMillis;
+        this.fsyncPolicy = builder.fsyncPolicy;
+        this.fsyncIntervalMillis = builder.fsyncIntervalMillis;
+
+        Files.createDirectories(directory);
+        this.segmentIndex = lastExistingSegment();
+        openNextSegment();
+    }
+
+    /**
+     * Appends one record followed by a newline
+     * @param record The text to append
+     * @throws IOException if a new segment cannot be created
+     */
+    public synchronized void append(CharSequence record) throws IOException {
+        if (closed) {
+            throw new IOException("Writer is closed");
+        }
+        int length = Utf8.length(record) + 1;
+        if (length > segmentSize) {
+            throw new IllegalArgumentException("Record of " + length + " bytes exceeds segment size " + segmentSize);
+        }
+        if (length > segment.remaining() || rollIntervalElapsed()) {
+            roll();
+        }
+        Utf8.encode(record, segment);
+        segment.put((byte) '\n');
+        dirty = true;
+    }
+
+    /**
+     * Marks the end of a batch of records and applies the fsync policy
+     */
+    public synchronized void endBatch() {
+        if (closed || !dirty) {
+            return;
+        }
+        if (fsyncPolicy == FsyncPolicy.PER_BATCH) {
+            force();
+        } else if (fsyncPolicy == FsyncPolicy.INTERVAL
+                && System.currentTimeMillis() - lastForcedAt >= fsyncIntervalMillis) {
+            force();
+        }
+    }
+
+    /**
+     * Applies the fsync interval and the roll interval without writing anything,
+     * for a writer that has gone idle
+     * @throws IOException if a new segment cannot be created
+     */
+    public synchronized void checkDeadlines() throws IOException {
+        if (closed) {
+            return;
+        }
+        if (rollIntervalElapsed()) {
+            roll();
+        } else if (dirty && fsyncPolicy == FsyncPolicy.INTERVAL
+                && System.currentTimeMillis() - lastForcedAt >= fsyncIntervalMillis) {
+            force();
+        }
+    }
+
+    /**
+     * Gets the time at which {@link #checkDeadlines()} next has work to do
+     * @return Milliseconds since the epoch, or Long.MAX_VALUE if no deadline is pending
+     */
+    public synchronized long nextDeadline() {
+        long deadline = Long.MAX_VALUE;
+        if (closed) {
+            return deadline;
+        }
+        if (rollIntervalMillis > 0 && segment.position() > 0) {
+            deadline = after(segmentOpenedAt, rollIntervalMillis);
+        }
+        if (dirty && fsyncPolicy == FsyncPolicy.INTERVAL) {
+            deadline = Math.min(deadline, after(lastForcedAt, fsyncIntervalMillis));
+        }
+        return deadline;
+    }
+
+    /**
+     * Forces everything written so far to disk regardless of the fsync policy
+     */
+    public synchronized void sync() {
+        if (!closed && dirty) {
+            force();
+        }
+    }
+
+    /**
+     * Gets the segment currently being written
+     * @return Path of the active segment file
+     */
+    public synchronized Path getCurrentSegment() {
+        return segmentPath;
+    }
+
+    /**
+     * Finishes the active segment and releases the file
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            finishSegment();
+        }
+    }
+
+    private static long after(long time, long interval) {
+        long deadline = time + interval;
+        return deadline < time ? Long.MAX_VALUE : deadline;
+    }
+
+    private boolean rollIntervalElapsed() {
+        return rollIntervalMillis > 0 && segment.position() > 0
+                && System.currentTimeMillis() - segmentOpenedAt >= rollIntervalMillis;
+    }
+
+    private void roll() throws IOException {
+        openNextSegment();
+    }
+
+    /**
+     * Creates and maps the next segment, then finishes the current one
+     * If the new segment cannot be created the current one stays active, and the
+     * next attempt moves on to the following segment number
+     */
+    private void openNextSegment() throws IOException {
+        segmentIndex++;
+        Path nextPath = directory.resolve(segmentName(segmentIndex));
+        FileChannel nextChannel = FileChannel.open(nextPath, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer nextSegment;
+        try {
+            nextSegment = nextChannel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        } catch (IOException | RuntimeException e) {
+            nextChannel.close();
+            Files.deleteIfExists(nextPath);
+            throw e;
+        }
+        try {
+            if (segment != null) {
+                finishSegment();
+            }
+        } finally {
+            channel = nextChannel;
+            segment = nextSegment;
+            segmentPath = nextPath;
+            segmentOpenedAt = System.currentTimeMillis();
+            lastForcedAt = segmentOpenedAt;
+            dirty = false;
+        }
+    }
+
+    private void finishSegment() throws IOException {
+        if (fsyncPolicy != FsyncPolicy.NEVER && dirty) {
+            force();
+        }
+        int written = segment.position();
+        segment = null;
+        try {
+            // Drop the unused pre-allocated tail; platforms that refuse to truncate
+            // a mapped file leave zero padding that readers can ignore
+            channel.truncate(written);
+        } catch (IOException e) {
+            // keep the padded segment
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void force() {
+        segment.force();
+        lastForcedAt = System.currentTimeMillis();
+        dirty = false;
+    }
+
+    private String segmentName(int index) {
+        return String.format(Locale.ROOT, "%s-%06d%s", baseName, index, SUFFIX);
+    }
+
+    private int lastExistingSegment() {
+        int last = 0;
+        File[] files = directory.toFile().listFiles();
+        if (files == null) {
+            return last;
+        }
+        String prefix = baseName + "-";
+        for (File file : files) {
+            String name = file.getName();
+            if (name.startsWith(prefix) && name.endsWith(SUFFIX)) {
+                try {
+                    int index = Integer.parseInt(name.substring(prefix.length(), name.length() - SUFFIX.length()));
+                    last = Math.max(last, index);
+                } catch (NumberFormatException e) {
+                    // not one of our segments
+                }
+            }
+        }
+        return last;
+    }
+
+    /**
+     * Builder for MappedLogWriter
+     * Only the directory is required
+     */
+    public static class MappedLogWriterBuilder {
+        private final Path directory;
+        private String baseName = "app";
+        private int segmentSize = 64 * 1024 * 1024;
+        private long rollIntervalMillis;
+        private FsyncPolicy fsyncPolicy = FsyncPolicy.NEVER;
+        private long fsyncIntervalMillis = 1000;
+
+        public MappedLogWriterBuilder(Path directory) {
+            this.directory = directory;
+        }
+
+        public MappedLogWriterBuilder setBaseName(String baseName) {
+            this.baseName = baseName;
+            return this;
+        }
+
+        public MappedLogWriterBuilder setSegmentSize(int segmentSize) {
+            if (segmentSize < 2) {
+                throw new IllegalArgumentException("Segment size too small: " + segmentSize);
+            }
+            this.segmentSize = segmentSize;
+            return this;
+        }
+
+        /**
+         * @param rollIntervalMillis Maximum age of a segment, 0 to roll on size only
+         */
+        public MappedLogWriterBuilder setRollIntervalMillis(long rollIntervalMillis) {
+            this.rollIntervalMillis = rollIntervalMillis;
+            return this;
+        }
+
+        public MappedLogWriterBuilder setFsyncPolicy(FsyncPolicy fsyncPolicy) {
+            this.fsyncPolicy = fsyncPolicy;
+            return this;
+        }
+
+        /**
+         * @param fsyncIntervalMillis Minimum time between forces under {@link FsyncPolicy#INTERVAL}
+         */
+        public MappedLogWriterBuilder setFsyncIntervalMillis(long fsyncIntervalMillis) {
+            this.fsyncIntervalMillis = fsyncIntervalMillis;
+            return this;
+        }
+
+        public MappedLogWriter build() throws IOException {
+            return new MappedLogWriter(this);
+        }
+    }
+}
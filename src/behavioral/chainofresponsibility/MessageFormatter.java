@@ -0,0 +1,164 @@
+package behavioral.chainofresponsibility;
+
+/**
+ * Renders "{}" message templates for the parameterized Logger API
+ *
+ * Rendering happens in a StringBuilder reused per thread, so the only object
+ * created for a message is the final String. A message rendered while another is
+ * in progress on the same thread, e.g. by an argument's toString() that logs,
+ * gets a fresh StringBuilder instead. Each "{}" is replaced by the next
+ * argument; placeholders without an argument are kept as "{}" and surplus
+ * arguments are ignored.
+ */
+final class MessageFormatter {
+    private static final String PLACEHOLDER = "{}";
+    private static final int MAX_RETAINED_CAPACITY = 4096;
+
+    private static final ThreadLocal<Buffer> BUFFER = ThreadLocal.withInitial(Buffer::new);
+
+    /**
+     * The reusable StringBuilder of a thread and whether a message is being rendered into it
+     */
+    private static final class Buffer {
+        StringBuilder builder = new StringBuilder(256);
+        boolean inUse;
+    }
+
+    private MessageFormatter() {
+    }
+
+    static String format(String template, Object arg) {
+        StringBuilder buffer = acquire();
+        try {
+            int from = appendUntilPlaceholder(buffer, template, 0);
+            if (from >= 0) {
+                buffer.append(arg);
+                appendRest(buffer, template, from);
+            }
+            return buffer.toString();
+        } finally {
+            release(buffer);
+        }
+    }
+
+    static String format(String template, int arg) {
+        StringBuilder buffer = acquire();
+        try {
+            int from = appendUntilPlaceholder(buffer, template, 0);
+            if (from >= 0) {
+                buffer.append(arg);
+                appendRest(buffer, template, from);
+            }
+            return buffer.toString();
+        } finally {
+            release(buffer);
+        }
+    }
+
+    static String format(String template, long arg) {
+        StringBuilder buffer = acquire();
+        try {
+            int from = appendUntilPlaceholder(buffer, template, 0);
+            if (from >= 0) {
+                buffer.append(arg);
+                appendRest(buffer, template, from);
+            }
+            return buffer.toString();
+        } finally {
+            release(buffer);
+        }
+    }
+
+    static String format(String template, double arg) {
+        StringBuilder buffer = acquire();
+        try {
+            int from = appendUntilPlaceholder(buffer, template, 0);
+            if (from >= 0) {
+                buffer.append(arg);
+                appendRest(buffer, template, from);
+            }
+            return buffer.toString();
+        } finally {
+            release(buffer);
+        }
+    }
+
+    static String format(String template, Object arg1, Object arg2) {
+        StringBuilder buffer = acquire();
+        try {
+            int from = appendUntilPlaceholder(buffer, template, 0);
+            if (from >= 0) {
+                buffer.append(arg1);
+                from = appendUntilPlaceholder(buffer, template, from);
+                if (from >= 0) {
+                    buffer.append(arg2);
+                    appendRest(buffer, template, from);
+                }
+            }
+            return buffer.toString();
+        } finally {
+            release(buffer);
+        }
+    }
+
+    static String format(String template, Object[] args) {
+        StringBuilder buffer = acquire();
+        try {
+            int from = 0;
+            int count = args == null ? 0 : args.length;
+            for (int i = 0; i < count && from >= 0; i++) {
+                from = appendUntilPlaceholder(buffer, template, from);
+                if (from >= 0) {
+                    buffer.append(args[i]);
+                }
+            }
+            if (from >= 0) {
+                appendRest(buffer, template, from);
+            }
+            return buffer.toString();
+        } finally {
+            release(buffer);
+        }
+    }
+
+    /**
+     * Appends the template up to the next placeholder
+     * @return The index just past the placeholder, or -1 if the rest of the template was appended
+     */
+    private static int appendUntilPlaceholder(StringBuilder buffer, String template, int from) {
+        int at = template.indexOf(PLACEHOLDER, from);
+        if (at < 0) {
+            buffer.append(template, from, template.length());
+            return -1;
+        }
+        buffer.append(template, from, at);
+        return at + PLACEHOLDER.length();
+    }
+
+    private static void appendRest(StringBuilder buffer, String template, int from) {
+        buffer.append(template, from, template.length());
+    }
+
+    private static StringBuilder acquire() {
+        Buffer buffer = BUFFER.get();
+        if (buffer.inUse) {
+            // Rendering an argument started another message on this thread
+            return new StringBuilder(256);
+        }
+        buffer.inUse = true;
+        buffer.builder.setLength(0);
+        return buffer.builder;
+    }
+
+    private static void release(StringBuilder builder) {
+        Buffer buffer = BUFFER.get();
+        if (buffer.builder != builder) {
+            return;
+        }
+        buffer.inUse = false;
+        if (builder.capacity() > MAX_RETAINED_CAPACITY) {
+            // Do not keep a huge buffer alive because of one oversized message
+            buffer.builder = new StringBuilder(256);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package behavioral.chainofresponsibility;
+
+/**
+ * Decides what an {@link AsyncLogger} does when its ring buffer is full
+ */
+public enum OverflowPolicy {
+    /**
+     * The logging thread waits until the drain thread frees a slot
+     */
+    BLOCK,
+
+    /**
+     * The oldest queued message is discarded to make room for the new one
+     */
+    DROP_OLDEST,
+
+    /**
+     * The new message is discarded and the queued ones are kept
+     */
+    DROP_NEWEST
+}
@@ -0,0 +1,72 @@
+package behavioral.chainofresponsibility;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Two-way mapping between message templates and small integer ids
+ * Binary log streams store the id with every event and each template text only once
+ */
+public class TemplateDictionary {
+    private final ConcurrentMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private final List<String> templates = new ArrayList<>();
+
+    /**
+     * Gets the id of a template, assigning the next free id the first time it is seen
+     * @param template The template text
+     * @return The template id
+     */
+    public int idOf(String template) {
+        Integer id = ids.get(template);
+        if (id != null) {
+            return id;
+        }
+        synchronized (templates) {
+            id = ids.get(template);
+            if (id == null) {
+                id = templates.size();
+                templates.add(template);
+                ids.put(template, id);
+            }
+            return id;
+        }
+    }
+
+    /**
+     * Registers a template under a known id, as read back from a binary stream
+     * @param id The template id
+     * @param template The template text
+     */
+    public void define(int id, String template) {
+        synchronized (templates) {
+            while (templates.size() <= id) {
+                templates.add(null);
+            }
+            templates.set(id, template);
+            ids.put(template, id);
+        }
+    }
+
+    /**
+     * Gets the template registered under an id
+     * @param id The template id
+     * @return The template text, or null if the id is unknown
+     */
+    public String templateOf(int id) {
+        synchronized (templates) {
+            return id >= 0 && id < templates.size() ? templates.get(id) : null;
+        }
+    }
+
+    /**
+     * Gets the number of ids handed out
+     * @return The dictionary size
+     */
+    public int size() {
+        synchronized (templates) {
+            return templates.size();
+        }
+    }
+}
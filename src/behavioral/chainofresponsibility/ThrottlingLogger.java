@@ -0,0 +1,179 @@
+package behavioral.chainofresponsibility;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Filtering stage that can be placed anywhere in a logger chain
+ *
+ * It writes nothing itself; it decides, per {@link LogLevel}, whether a message may reach
+ * the loggers after it. Each level can be sampled (only a random fraction passes) and
+ * rate limited (a token bucket with a sustained rate and a burst size). Levels that are
+ * not configured always pass.
+ *
+ * The token bucket is kept as a single "theoretical arrival time" per level that is
+ * advanced with compareAndSet, and the pass/drop counters are LongAdders, so many
+ * threads can log through the stage without a lock or a shared hot counter.
+ */
+public final class ThrottlingLogger extends Logger {
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final double[] sampleRates;
+    private final long[] emissionIntervals;
+    private final long[] burstTolerances;
+    private final AtomicLongArray arrivalTimes;
+    private final LongAdder[] passedCounts;
+    private final LongAdder[] droppedCounts;
+
+    private ThrottlingLogger(ThrottlingLoggerBuilder builder) {
+        super(LogLevel.INFO);
+        int levels = LogLevel.values().length;
+        this.sampleRates = builder.sampleRates.clone();
+        this.emissionIntervals = builder.emissionIntervals.clone();
+        this.burstTolerances = builder.burstTolerances.clone();
+        this.arrivalTimes = new AtomicLongArray(levels);
+        this.passedCounts = new LongAdder[levels];
+        this.droppedCounts = new LongAdder[levels];
+        long now = System.nanoTime();
+        for (int i = 0; i < levels; i++) {
+            arrivalTimes.set(i, now);
+            passedCounts[i] = new LongAdder();
+            droppedCounts[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * A throttling stage never writes messages itself
+     */
+    @Override
+    public boolean accepts(LogLevel level) {
+        return false;
+    }
+
+    @Override
+    protected void writeMessage(String message) {
+        // nothing to write, see passes()
+    }
+
+    /**
+     * Applies sampling and then the rate limit for the message's level
+     */
+    @Override
+    protected boolean passes(LogLevel level) {
+        int index = level.ordinal();
+        boolean passed = sampled(index) && withinRate(index);
+        (passed ? passedCounts : droppedCounts)[index].increment();
+        return passed;
+    }
+
+    /**
+     * Gets how many messages of a level went through this stage
+     * @param level The level to report
+     * @return The passed message count
+     */
+    public long getPassedCount(LogLevel level) {
+        return passedCounts[level.ordinal()].sum();
+    }
+
+    /**
+     * Gets how many messages of a level were dropped by sampling or rate limiting
+     * @param level The level to report
+     * @return The dropped message count
+     */
+    public long getDroppedCount(LogLevel level) {
+        return droppedCounts[level.ordinal()].sum();
+    }
+
+    /**
+     * Gets the total number of messages dropped across all levels
+     * @return The dropped message count
+     */
+    public long getDroppedCount() {
+        long total = 0;
+        for (LongAdder count : droppedCounts) {
+            total += count.sum();
+        }
+        return total;
+    }
+
+    private boolean sampled(int index) {
+        double rate = sampleRates[index];
+        return rate >= 1.0 || (rate > 0.0 && ThreadLocalRandom.current().nextDouble() < rate);
+    }
+
+    private boolean withinRate(int index) {
+        long interval = emissionIntervals[index];
+        if (interval == 0) {
+            return true;
+        }
+        long tolerance = burstTolerances[index];
+        long now = System.nanoTime();
+        while (true) {
+            long arrival = arrivalTimes.get(index);
+            long start = arrival - now > 0 ? arrival : now;
+            if (start - now > tolerance) {
+                return false;
+            }
+            if (arrivalTimes.compareAndSet(index, arrival, start + interval)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Builder for ThrottlingLogger
+     * Every level starts unsampled and unlimited
+     */
+    public static class ThrottlingLoggerBuilder {
+        private final double[] sampleRates = new double[LogLevel.values().length];
+        private final long[] emissionIntervals = new long[LogLevel.values().length];
+        private final long[] burstTolerances = new long[LogLevel.values().length];
+
+        public ThrottlingLoggerBuilder() {
+            Arrays.fill(sampleRates, 1.0);
+        }
+
+        /**
+         * Lets only a random fraction of a level's messages through
+         * @param level The level to sample
+         * @param rate Fraction between 0 (drop all) and 1 (keep all)
+         */
+        public ThrottlingLoggerBuilder setSampleRate(LogLevel level, double rate) {
+            if (rate < 0.0 || rate > 1.0) {
+                throw new IllegalArgumentException("Sample rate must be between 0 and 1: " + rate);
+            }
+            sampleRates[level.ordinal()] = rate;
+            return this;
+        }
+
+        /**
+         * Limits a level with a token bucket
+         * @param level The level to limit
+         * @param permitsPerSecond Sustained number of messages per second
+         * @param burst Number of messages that may pass at once after a quiet period
+         * @throws IllegalArgumentException if the burst at this rate spans more nanoseconds than a long holds
+         */
+        public ThrottlingLoggerBuilder setRateLimit(LogLevel level, double permitsPerSecond, int burst) {
+            if (!(permitsPerSecond > 0) || burst < 1) {
+                throw new IllegalArgumentException("Rate and burst must be positive");
+            }
+            long interval = Math.max(1L, (long) (NANOS_PER_SECOND / permitsPerSecond));
+            // The next arrival time runs up to interval * burst ahead of now
+            try {
+                Math.multiplyExact(interval, (long) burst);
+            } catch (ArithmeticException e) {
+                throw new IllegalArgumentException("Burst of " + burst + " at " + permitsPerSecond
+                        + " per second is too long to track");
+            }
+            emissionIntervals[level.ordinal()] = interval;
+            burstTolerances[level.ordinal()] = interval * (burst - 1);
+            return this;
+        }
+
+        public ThrottlingLogger build() {
+            return new ThrottlingLogger(this);
+        }
+    }
+}
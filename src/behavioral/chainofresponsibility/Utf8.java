@@ -0,0 +1,66 @@
+package behavioral.chainofresponsibility;
+
+import java.nio.ByteBuffer;
+
+/**
+ * UTF-8 helpers shared by the file and binary loggers
+ * Text is encoded straight into a ByteBuffer so no temporary byte arrays are created
+ */
+final class Utf8 {
+    private Utf8() {
+    }
+
+    /**
+     * Counts the bytes needed to encode the text as UTF-8
+     */
+    static int length(CharSequence text) {
+        int length = 0;
+        for (int i = 0, n = text.length(); i < n; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(text.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Encodes the text as UTF-8 straight into the buffer without intermediate arrays
+     * Unpaired surrogates are written as U+FFFD, the replacement character
+     */
+    static void encode(CharSequence text, ByteBuffer out) {
+        for (int i = 0, n = text.length(); i < n; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                out.put((byte) c);
+            } else if (c < 0x800) {
+                out.put((byte) (0xC0 | (c >> 6)));
+                out.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(text.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                    out.put((byte) (0xF0 | (codePoint >> 18)));
+                    out.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                    out.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                    out.put((byte) (0x80 | (codePoint & 0x3F)));
+                } else {
+                    // Three bytes, like any other char of the basic plane in length()
+                    out.put((byte) 0xEF);
+                    out.put((byte) 0xBF);
+                    out.put((byte) 0xBD);
+                }
+            } else {
+                out.put((byte) (0xE0 | (c >> 12)));
+                out.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                out.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package behavioral.command;
+
+/**
+ * Event sink that hands events to another sink on a background thread
+ *
+ * onEvent() only places the event in a bounded lock-free ring buffer, so a slow
+ * target such as the console never holds up the thread executing commands.
+ * Events from any number of threads are delivered one at a time, in the order
+ * they were queued. A full buffer makes the reporting thread wait. The ring and
+ * its delivery thread work like those of {@link CommandDispatcher}.
+ */
+public class AsyncEventSink implements DeviceEventSink, AutoCloseable {
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    private final DeviceEventSink target;
+    private final MpscRing ring;
+    private final DeviceEvent[] events;
+    private final String[] locations;
+    private final double[] values;
+    private final RingDrainer delivery;
+
+    /**
+     * Creates an asynchronous sink with the default capacity
+     * @param target The sink events are delivered to
+     */
+    public AsyncEventSink(DeviceEventSink target) {
+        this(target, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an asynchronous sink and starts its delivery thread
+     * @param target The sink events are delivered to
+     * @param capacity Ring buffer size, must be a power of two
+     */
+    public AsyncEventSink(DeviceEventSink target, int capacity) {
+        this.target = target;
+        this.ring = new MpscRing(capacity);
+        this.events = new DeviceEvent[capacity];
+        this.locations = new String[capacity];
+        this.values = new double[capacity];
+        this.delivery = new RingDrainer(ring, "device-event-delivery", this::deliverNext);
+    }
+
+    /**
+     * Queues the event for the delivery thread
+     * Once the sink is closed, or a target Error has killed the delivery thread,
+     * events are delivered synchronously instead
+     */
+    @Override
+    public void onEvent(DeviceEvent event, String location, double value) {
+        while (!delivery.isStopped()) {
+            if (offer(event, location, value)) {
+                // Raced with close(): the delivery thread may already have exited
+                delivery.published();
+                return;
+            }
+            delivery.awaitSpace();
+        }
+        // The buffer has a single consumer, so the delivery thread finishes first
+        delivery.runAfterClose(() -> target.onEvent(event, location, value));
+    }
+
+    /**
+     * Waits until every event queued before this call has been delivered
+     */
+    public void flush() {
+        delivery.flush();
+    }
+
+    /**
+     * Delivers all queued events and stops the delivery thread
+     */
+    @Override
+    public void close() {
+        delivery.close();
+    }
+
+    private boolean offer(DeviceEvent event, String location, double value) {
+        long position = ring.claim();
+        if (position < 0) {
+            return false;
+        }
+        int index = ring.index(position);
+        events[index] = event;
+        locations[index] = location;
+        values[index] = value;
+        ring.publish(position);
+        return true;
+    }
+
+    private boolean deliverNext() {
+        long position = ring.peek();
+        if (position < 0) {
+            return false;
+        }
+        int index = ring.index(position);
+        DeviceEvent event = events[index];
+        String location = locations[index];
+        double value = values[index];
+        events[index] = null;
+        locations[index] = null;
+        ring.release(position);
+        try {
+            target.onEvent(event, location, value);
+        } catch (RuntimeException e) {
+            // A failing sink must not stop delivery of later events
+            System.err.println("AsyncEventSink: " + e);
+        }
+        return true;
+    }
+}
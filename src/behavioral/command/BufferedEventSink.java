@@ -0,0 +1,63 @@
+package behavioral.command;
+
+import java.util.Arrays;
+
+/**
+ * Event sink that collects events and hands them to another sink in batches
+ *
+ * Events are stored in preallocated arrays and forwarded when the buffer is full
+ * or when {@link #flush()} is called, so the devices only pay for a few array
+ * stores per change. Not thread-safe, like the devices themselves.
+ */
+public class BufferedEventSink implements DeviceEventSink {
+    private final DeviceEventSink target;
+    private final DeviceEvent[] events;
+    private final String[] locations;
+    private final double[] values;
+    private int size;
+
+    /**
+     * Creates a buffering sink
+     * @param target The sink events are forwarded to
+     * @param capacity Number of events held before they are forwarded
+     */
+    public BufferedEventSink(DeviceEventSink target, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.target = target;
+        this.events = new DeviceEvent[capacity];
+        this.locations = new String[capacity];
+        this.values = new double[capacity];
+    }
+
+    @Override
+    public void onEvent(DeviceEvent event, String location, double value) {
+        events[size] = event;
+        locations[size] = location;
+        values[size] = value;
+        if (++size == events.length) {
+            flush();
+        }
+    }
+
+    /**
+     * Forwards every buffered event to the target sink in order
+     */
+    public void flush() {
+        for (int i = 0; i < size; i++) {
+            target.onEvent(events[i], locations[i], values[i]);
+        }
+        Arrays.fill(events, 0, size, null);
+        Arrays.fill(locations, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * Gets the number of events waiting to be forwarded
+     * @return The buffered event count
+     */
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,27 @@
+package behavioral.command;
+
+/**
+ * Command that a {@link CommandCoalescer} may merge with a later command
+ *
+ * Two commands are merged when they act on the same receiver and set the same
+ * property of it, such as a fan's speed or a stereo's volume: the later one wins.
+ */
+public interface CoalescableCommand extends Command {
+    /**
+     * Gets the device this command acts on
+     * @return The receiver
+     */
+    Object getReceiver();
+
+    /**
+     * Gets the name of the receiver property this command sets, e.g. "power" or "volume"
+     * @return The property name
+     */
+    String getProperty();
+
+    /**
+     * Checks whether executing this command now would leave the receiver unchanged
+     * @return true if the command would have no effect
+     */
+    boolean isNoOp();
+}
@@ -0,0 +1,193 @@
+package behavioral.command;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stage in front of a {@link RemoteControl} that collapses bursts of redundant commands
+ *
+ * Commands are held for up to the coalescing window before they run. While a
+ * {@link CoalescableCommand} is held, a later one for the same receiver and
+ * property replaces it (last write wins), so a burst of volume or speed changes
+ * runs only its final value. If the held command then would not change the
+ * receiver at all, as with "on" followed by "off" for a light that was off, it is
+ * dropped as well and the pair cancels out.
+ *
+ * Only consecutive commands for a receiver are merged. Any other command, such
+ * as a macro, may act on every device, so once one is held the commands held
+ * before it are no longer merged with later ones, and nothing is cancelled out
+ * until it has run.
+ *
+ * Only the commands that actually run reach the remote's undo history, and each
+ * of them remembers the state from before the whole burst, so undo returns the
+ * device to where it was before the burst. Pressing undo runs the held commands
+ * first.
+ *
+ * Held commands run when a later submission finds them older than the window,
+ * on {@link #flushExpired()} or on {@link #flush()}.
+ */
+public class CommandCoalescer {
+    private final RemoteControl remote;
+    private final long windowNanos;
+    private final ArrayDeque<Pending> pending = new ArrayDeque<>();
+    private final Map<Object, Pending> lastByReceiver = new HashMap<>();
+    private int heldOpaqueCount;
+    private long collapsedCount;
+
+    /**
+     * Creates a coalescing stage
+     * @param remote The remote control that runs the surviving commands
+     * @param windowMillis How long a command is held waiting for a later one to merge with
+     */
+    public CommandCoalescer(RemoteControl remote, long windowMillis) {
+        if (windowMillis < 0) {
+            throw new IllegalArgumentException("Window must not be negative: " + windowMillis);
+        }
+        this.remote = remote;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+    }
+
+    /**
+     * Submits the "on" command bound to a slot of the remote
+     * @param slot The slot number (0-6)
+     */
+    public void onButtonWasPushed(int slot) {
+        submit(remote.getOnCommand(slot));
+    }
+
+    /**
+     * Submits the "off" command bound to a slot of the remote
+     * @param slot The slot number (0-6)
+     */
+    public void offButtonWasPushed(int slot) {
+        submit(remote.getOffCommand(slot));
+    }
+
+    /**
+     * Runs every held command, then undoes the last command that ran
+     */
+    public synchronized void undoButtonWasPushed() {
+        flush();
+        remote.undoButtonWasPushed();
+    }
+
+    /**
+     * Submits a command, merging it with a held command where possible
+     * @param command The command to run
+     */
+    public void submit(Command command) {
+        submit(command, System.nanoTime());
+    }
+
+    /**
+     * Runs the held commands that have waited for the whole window
+     * Call periodically when submissions may stop arriving
+     */
+    public void flushExpired() {
+        flushExpired(System.nanoTime());
+    }
+
+    /**
+     * Runs every held command in submission order
+     */
+    public synchronized void flush() {
+        runHeld(true, 0);
+    }
+
+    /**
+     * Gets the number of commands that were merged away or cancelled out
+     * @return The collapsed command count
+     */
+    public synchronized long getCollapsedCount() {
+        return collapsedCount;
+    }
+
+    /**
+     * Gets the number of commands currently held
+     * @return The pending command count
+     */
+    public synchronized int getPendingCount() {
+        int count = 0;
+        for (Pending entry : pending) {
+            if (entry.command != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    synchronized void submit(Command command, long now) {
+        flushExpired(now);
+        if (!(command instanceof CoalescableCommand)) {
+            lastByReceiver.clear();
+            heldOpaqueCount++;
+            append(command, null, now);
+            return;
+        }
+        CoalescableCommand coalescable = (CoalescableCommand) command;
+        Object receiver = coalescable.getReceiver();
+        Pending previous = lastByReceiver.get(receiver);
+        if (previous == null || !sameProperty(previous.command, coalescable)) {
+            append(command, receiver, now);
+            return;
+        }
+        previous.command = command;
+        collapsedCount++;
+        if (previous.onlyForReceiver && coalescable.isNoOp()) {
+            // Nothing else held can act on this receiver, so the receiver's current
+            // state is the state the merged command would run against
+            previous.command = null;
+            lastByReceiver.remove(receiver);
+            collapsedCount++;
+        }
+    }
+
+    synchronized void flushExpired(long now) {
+        runHeld(false, now);
+    }
+
+    private void runHeld(boolean all, long now) {
+        while (!pending.isEmpty() && (all || now - pending.peekFirst().submittedAt >= windowNanos)) {
+            Pending entry = pending.pollFirst();
+            if (entry.receiver == null) {
+                heldOpaqueCount--;
+            } else if (lastByReceiver.get(entry.receiver) == entry) {
+                lastByReceiver.remove(entry.receiver);
+            }
+            if (entry.command != null) {
+                remote.execute(entry.command);
+            }
+        }
+    }
+
+    private void append(Command command, Object receiver, long now) {
+        Pending entry = new Pending(command, receiver, now);
+        if (receiver != null) {
+            entry.onlyForReceiver = lastByReceiver.put(receiver, entry) == null && heldOpaqueCount == 0;
+        }
+        pending.addLast(entry);
+    }
+
+    private static boolean sameProperty(Command held, CoalescableCommand next) {
+        return held instanceof CoalescableCommand
+                && ((CoalescableCommand) held).getProperty().equals(next.getProperty());
+    }
+
+    /**
+     * A held command; command is null once it has been cancelled out
+     */
+    private static final class Pending {
+        Command command;
+        final Object receiver;
+        final long submittedAt;
+        boolean onlyForReceiver;
+
+        Pending(Command command, Object receiver, long submittedAt) {
+            this.command = command;
+            this.receiver = receiver;
+            this.submittedAt = submittedAt;
+        }
+    }
+}
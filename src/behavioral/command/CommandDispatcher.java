@@ -0,0 +1,165 @@
+package behavioral.command;
+
+/**
+ * Thread-safe front end for a {@link RemoteControl}
+ *
+ * Button pushes from any number of threads are placed in a bounded lock-free
+ * queue and return immediately; a single executor thread owned by the dispatcher
+ * takes them in order and applies them to the remote control. Because every
+ * command of the device runs on that one thread, pushes for the same slot run in
+ * the order they were queued, and undo always reverses the command that the
+ * executor ran last rather than whichever thread happened to write the undo
+ * field most recently.
+ *
+ * The wrapped remote control must not be used directly while the dispatcher is open.
+ */
+public class CommandDispatcher implements AutoCloseable {
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final RemoteControl remote;
+    private final CommandQueue queue;
+    private final RingDrainer executor;
+
+    /**
+     * Creates a dispatcher with the default queue capacity
+     * @param remote The remote control whose commands are executed
+     */
+    public CommandDispatcher(RemoteControl remote) {
+        this(remote, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a dispatcher and starts its executor thread
+     * @param remote The remote control whose commands are executed
+     * @param capacity Queue size, must be a power of two
+     */
+    public CommandDispatcher(RemoteControl remote, int capacity) {
+        this.remote = remote;
+        this.queue = new CommandQueue(capacity);
+        this.executor = new RingDrainer(queue.ring(), "command-dispatcher", this::executeNext);
+    }
+
+    /**
+     * Queues a command pair change for a specific slot
+     * @param slot The slot number (0-6)
+     * @param onCommand The command to execute when turned on
+     * @param offCommand The command to execute when turned off
+     */
+    public void setCommand(int slot, Command onCommand, Command offCommand) {
+        submit(CommandQueue.SET, checkSlot(slot), onCommand, offCommand);
+    }
+
+    /**
+     * Queues the "on" command for a specific slot
+     * @param slot The slot number (0-6)
+     */
+    public void onButtonWasPushed(int slot) {
+        submit(CommandQueue.ON, checkSlot(slot), null, null);
+    }
+
+    /**
+     * Queues the "off" command for a specific slot
+     * @param slot The slot number (0-6)
+     */
+    public void offButtonWasPushed(int slot) {
+        submit(CommandQueue.OFF, checkSlot(slot), null, null);
+    }
+
+    /**
+     * Queues an undo of the last command the executor will have run by then
+     */
+    public void undoButtonWasPushed() {
+        submit(CommandQueue.UNDO, 0, null, null);
+    }
+
+    /**
+     * Queues a redo of the command most recently undone by the executor
+     */
+    public void redoButtonWasPushed() {
+        submit(CommandQueue.REDO, 0, null, null);
+    }
+
+    /**
+     * Queues a command that is not bound to a slot
+     * It runs on the executor thread and is recorded in the undo history like a button push
+     * @param command The command to run
+     */
+    public void execute(Command command) {
+        if (command == null) {
+            throw new IllegalArgumentException("Command must not be null");
+        }
+        submit(CommandQueue.EXECUTE, 0, command, null);
+    }
+
+    /**
+     * Waits until every push queued before this call has been executed
+     */
+    public void flush() {
+        executor.flush();
+    }
+
+    /**
+     * Executes all queued pushes and stops the executor thread
+     * Pushes made after closing, or after a command killed the executor thread
+     * with an Error, run synchronously on the calling thread
+     */
+    @Override
+    public void close() {
+        executor.close();
+    }
+
+    /**
+     * Gets the number of pushes waiting to be executed
+     * @return The approximate queue length
+     */
+    public long getQueuedCount() {
+        return Math.max(0, queue.producerPosition() - queue.consumerPosition());
+    }
+
+    /**
+     * Checks whether close() has been called
+     * @return true if the dispatcher is closed
+     */
+    public boolean isClosed() {
+        return executor.isClosed();
+    }
+
+    private void submit(byte op, int slot, Command onCommand, Command offCommand) {
+        // The executor thread also stops if a command throws an Error
+        if (executor.isStopped()) {
+            executeSynchronously(op, slot, onCommand, offCommand);
+            return;
+        }
+        while (!queue.offer(op, slot, onCommand, offCommand)) {
+            if (executor.isStopped()) {
+                executeSynchronously(op, slot, onCommand, offCommand);
+                return;
+            }
+            executor.awaitSpace();
+        }
+        // Raced with close(): the executor may already have exited
+        executor.published();
+    }
+
+    private int checkSlot(int slot) {
+        if (slot < 0 || slot >= remote.getSlotCount()) {
+            throw new IndexOutOfBoundsException("No such slot: " + slot);
+        }
+        return slot;
+    }
+
+    private boolean executeNext() {
+        try {
+            return queue.poll(remote);
+        } catch (RuntimeException e) {
+            // A failing command must not stop the device from taking further pushes
+            System.err.println("CommandDispatcher: command failed: " + e);
+            return true;
+        }
+    }
+
+    private void executeSynchronously(byte op, int slot, Command onCommand, Command offCommand) {
+        // The queue has a single consumer, so the executor finishes first
+        executor.runAfterClose(() -> CommandQueue.apply(remote, op, slot, onCommand, offCommand));
+    }
+}
@@ -0,0 +1,107 @@
+package behavioral.command;
+
+/**
+ * Fixed-capacity undo/redo history used by {@link RemoteControl}
+ *
+ * Executed commands live in a single circular array. The entries before the
+ * cursor can be undone and the entries after it can be redone; executing a new
+ * command discards the redo entries, and once the array is full the oldest
+ * entry is overwritten. Every operation is O(1) and none of them allocate.
+ */
+final class CommandHistory {
+    private final Command[] commands;
+    private int start;
+    private int undoCount;
+    private int redoCount;
+
+    /**
+     * Creates an empty history
+     * @param capacity Maximum number of commands that can be undone
+     */
+    CommandHistory(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("History capacity must be positive: " + capacity);
+        }
+        this.commands = new Command[capacity];
+    }
+
+    /**
+     * Records a command that has just been executed
+     * @param command The executed command
+     */
+    void push(Command command) {
+        commands[index(undoCount)] = command;
+        if (undoCount == commands.length) {
+            start = index(1);
+        } else {
+            undoCount++;
+        }
+        // Stale redo entries are overwritten by later pushes rather than cleared,
+        // which would cost O(redoCount)
+        redoCount = 0;
+    }
+
+    /**
+     * Moves the cursor back over the most recent command
+     * @return The command to undo, or null if there is nothing to undo
+     */
+    Command undo() {
+        if (undoCount == 0) {
+            return null;
+        }
+        undoCount--;
+        redoCount++;
+        return commands[index(undoCount)];
+    }
+
+    /**
+     * Moves the cursor forward over the most recently undone command
+     * @return The command to execute again, or null if there is nothing to redo
+     */
+    Command redo() {
+        if (redoCount == 0) {
+            return null;
+        }
+        Command command = commands[index(undoCount)];
+        undoCount++;
+        redoCount--;
+        return command;
+    }
+
+    /**
+     * Gets the command the next undo would reverse
+     * @return The most recent command, or null if there is nothing to undo
+     */
+    Command peekUndo() {
+        return undoCount == 0 ? null : commands[index(undoCount - 1)];
+    }
+
+    /**
+     * Gets the number of commands that can currently be undone
+     * @return The undo depth
+     */
+    int undoCount() {
+        return undoCount;
+    }
+
+    /**
+     * Gets the number of commands that can currently be redone
+     * @return The redo depth
+     */
+    int redoCount() {
+        return redoCount;
+    }
+
+    /**
+     * Gets the maximum number of commands kept
+     * @return The history capacity
+     */
+    int capacity() {
+        return commands.length;
+    }
+
+    private int index(int offset) {
+        int index = start + offset;
+        return index >= commands.length ? index - commands.length : index;
+    }
+}
@@ -0,0 +1,577 @@
+package behavioral.command;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Durable record of what commands did to the devices, with recovery on startup
+ *
+ * Devices are registered under their kind and location. Commands wrapped with
+ * {@link #journaled(Command, Light)} and its overloads append a fixed-size binary
+ * record holding the device's state after every execute() and undo(). With
+ * sync-on-commit enabled the record is on disk before execute() or undo() returns;
+ * threads that commit together share a single force of the file (group commit).
+ *
+ * The journal is a pre-allocated memory-mapped file. When it is full, or when
+ * {@link #snapshot()} is called, the latest state of every device is written to a
+ * snapshot file and a new, empty journal generation is started.
+ *
+ * Building a journal replays the snapshot and the current generation. Registering
+ * a device afterwards puts it back into its recovered state without running any
+ * command, so recovery costs one pass over the file regardless of what the
+ * commands print or compute.
+ *
+ * Files in the directory: {@code snapshot.bin} and {@code journal-000001.log}, ...
+ */
+public class CommandJournal implements Closeable {
+    static final byte END = 0;
+    static final byte REGISTER = 1;
+    static final byte EXECUTED = 2;
+    static final byte UNDONE = 3;
+
+    private static final int JOURNAL_MAGIC = 0x434A4E4C;   // "CJNL"
+    private static final int SNAPSHOT_MAGIC = 0x43534E50;  // "CSNP"
+    // Version 2 stores the stereo frequency in hundredths of MHz
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 8;
+    private static final int STATE_RECORD_SIZE = 1 + 4 + 8;
+    private static final int REGISTER_HEADER_SIZE = 1 + 1 + 4 + 8 + 2;
+    private static final String SNAPSHOT_NAME = "snapshot.bin";
+    private static final String JOURNAL_PREFIX = "journal-";
+    private static final String JOURNAL_SUFFIX = ".log";
+
+    private final Path directory;
+    private final int fileSize;
+    private final boolean syncOnCommit;
+    private final long recoveredRecordCount;
+    private final Object appendLock = new Object();
+    private final Object syncLock = new Object();
+
+    // Guarded by appendLock
+    private final Map<String, Long> recoveredStates;
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<Object> devices = new ArrayList<>();
+    private long[] lastStates = new long[16];
+    private long generation;
+    private FileChannel channel;
+    private MappedByteBuffer journal;
+    private int position;
+    private long appendedCount;
+    private boolean closed;
+
+    private volatile long durableCount;
+
+    private CommandJournal(CommandJournalBuilder builder) throws IOException {
+        this.directory = builder.directory;
+        this.fileSize = builder.fileSize;
+        this.syncOnCommit = builder.syncOnCommit;
+
+        Files.createDirectories(directory);
+        this.recoveredStates = new HashMap<>();
+        this.generation = readSnapshot(recoveredStates);
+        deleteOtherJournals(generation);
+        this.recoveredRecordCount = openJournal();
+    }
+
+    /**
+     * Registers a light and restores its recovered state, if any
+     * @param light The light to register
+     */
+    public void register(Light light) {
+        registerDevice(light);
+    }
+
+    /**
+     * Registers a fan and restores its recovered state, if any
+     * @param fan The fan to register
+     */
+    public void register(Fan fan) {
+        registerDevice(fan);
+    }
+
+    /**
+     * Registers a stereo and restores its recovered state, if any
+     * @param stereo The stereo to register
+     */
+    public void register(Stereo stereo) {
+        registerDevice(stereo);
+    }
+
+    /**
+     * Wraps a command so that the light's state is journaled after it runs
+     * @param command The command that acts on the light
+     * @param light The registered light
+     * @return The journaling command
+     */
+    public Command journaled(Command command, Light light) {
+        return new JournaledCommand(command, light, idOf(light));
+    }
+
+    /**
+     * Wraps a command so that the fan's state is journaled after it runs
+     * @param command The command that acts on the fan
+     * @param fan The registered fan
+     * @return The journaling command
+     */
+    public Command journaled(Command command, Fan fan) {
+        return new JournaledCommand(command, fan, idOf(fan));
+    }
+
+    /**
+     * Wraps a command so that the stereo's state is journaled after it runs
+     * @param command The command that acts on the stereo
+     * @param stereo The registered stereo
+     * @return The journaling command
+     */
+    public Command journaled(Command command, Stereo stereo) {
+        return new JournaledCommand(command, stereo, idOf(stereo));
+    }
+
+    /**
+     * Writes the state of every device to the snapshot file and starts a new
+     * journal generation, so the next recovery has nothing to replay
+     * @throws IOException if the snapshot or the new journal cannot be written
+     */
+    public void snapshot() throws IOException {
+        synchronized (appendLock) {
+            checkOpen();
+            roll();
+        }
+    }
+
+    /**
+     * Forces every record appended so far to disk
+     * Only needed when sync-on-commit is disabled
+     */
+    public void sync() {
+        long target;
+        synchronized (appendLock) {
+            checkOpen();
+            target = appendedCount;
+        }
+        awaitDurable(target);
+    }
+
+    /**
+     * Gets the number of records replayed from the journal when it was opened
+     * @return The recovered record count, not counting the snapshot
+     */
+    public long getRecoveredRecordCount() {
+        return recoveredRecordCount;
+    }
+
+    /**
+     * Gets the number of the journal file currently appended to
+     * @return The journal generation
+     */
+    public long getGeneration() {
+        synchronized (appendLock) {
+            return generation;
+        }
+    }
+
+    /**
+     * Forces the journal to disk and closes it
+     * Journaled commands fail with IllegalStateException afterwards
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (appendLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            journal.force();
+            channel.close();
+        }
+    }
+
+    private int registerDevice(Object device) {
+        byte kind = DeviceState.kindOf(device);
+        String key = key(kind, DeviceState.locationOf(device));
+        int id;
+        long target;
+        synchronized (appendLock) {
+            checkOpen();
+            if (ids.containsKey(key)) {
+                throw new IllegalArgumentException("Device already registered: " + key);
+            }
+            Long recovered = recoveredStates.remove(key);
+            if (recovered != null) {
+                DeviceState.restore(device, recovered);
+            }
+            id = devices.size();
+            devices.add(device);
+            ids.put(key, id);
+            if (id == lastStates.length) {
+                lastStates = Arrays.copyOf(lastStates, id * 2);
+            }
+            lastStates[id] = DeviceState.encode(device);
+            try {
+                byte[] name = DeviceState.locationOf(device).getBytes(StandardCharsets.UTF_8);
+                if (position + REGISTER_HEADER_SIZE + name.length > journal.capacity()) {
+                    roll();
+                } else {
+                    putRegister(id, kind, name);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            target = appendedCount;
+        }
+        if (syncOnCommit) {
+            awaitDurable(target);
+        }
+        return id;
+    }
+
+    private int idOf(Object device) {
+        String key = key(DeviceState.kindOf(device), DeviceState.locationOf(device));
+        synchronized (appendLock) {
+            Integer id = ids.get(key);
+            if (id == null || !devices.get(id).equals(device)) {
+                throw new IllegalArgumentException("Device not registered: " + key);
+            }
+            return id;
+        }
+    }
+
+    private void append(byte tag, int id, long state) {
+        long target;
+        synchronized (appendLock) {
+            checkOpen();
+            lastStates[id] = state;
+            if (position + STATE_RECORD_SIZE > journal.capacity()) {
+                try {
+                    // The new generation starts from a snapshot that already holds this state
+                    roll();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            } else {
+                journal.putInt(position + 1, id);
+                journal.putLong(position + 5, state);
+                // The tag goes in last so a torn record reads as the end of the journal
+                journal.put(position, tag);
+                position += STATE_RECORD_SIZE;
+                appendedCount++;
+            }
+            target = appendedCount;
+        }
+        if (syncOnCommit) {
+            awaitDurable(target);
+        }
+    }
+
+    private void awaitDurable(long target) {
+        if (durableCount >= target) {
+            return;
+        }
+        synchronized (syncLock) {
+            if (durableCount >= target) {
+                // Another thread's force covered this record as well
+                return;
+            }
+            MappedByteBuffer buffer;
+            long upTo;
+            synchronized (appendLock) {
+                buffer = journal;
+                upTo = appendedCount;
+            }
+            buffer.force();
+            durableCount = upTo;
+        }
+    }
+
+    private void putRegister(int id, byte kind, byte[] name) {
+        int start = position;
+        journal.put(start + 1, kind);
+        journal.putInt(start + 2, id);
+        journal.putLong(start + 6, lastStates[id]);
+        journal.putShort(start + 14, (short) name.length);
+        for (int i = 0; i < name.length; i++) {
+            journal.put(start + REGISTER_HEADER_SIZE + i, name[i]);
+        }
+        journal.put(start, REGISTER);
+        position = start + REGISTER_HEADER_SIZE + name.length;
+        appendedCount++;
+    }
+
+    private void roll() throws IOException {
+        journal.force();
+        Path previous = journalPath(generation);
+        writeSnapshot(generation + 1);
+        channel.close();
+        generation++;
+        openJournal();
+        for (int id = 0; id < devices.size(); id++) {
+            Object device = devices.get(id);
+            byte[] name = DeviceState.locationOf(device).getBytes(StandardCharsets.UTF_8);
+            putRegister(id, DeviceState.kindOf(device), name);
+        }
+        Files.deleteIfExists(previous);
+    }
+
+    /**
+     * Maps the journal of the current generation, creating it if needed,
+     * and replays any records it already holds
+     * @return The number of state records replayed
+     */
+    private long openJournal() throws IOException {
+        Path path = journalPath(generation);
+        boolean exists = Files.exists(path);
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = exists ? Math.max(channel.size(), fileSize) : fileSize;
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Journal too large to map: " + path);
+        }
+        journal = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        if (journal.getInt(0) == 0) {
+            journal.putInt(0, JOURNAL_MAGIC);
+            journal.putInt(4, VERSION);
+            position = HEADER_SIZE;
+            return 0;
+        }
+        if (journal.getInt(0) != JOURNAL_MAGIC || journal.getInt(4) != VERSION) {
+            throw new IOException("Not a command journal: " + path);
+        }
+        return replay();
+    }
+
+    private long replay() {
+        List<String> keys = new ArrayList<>();
+        long[] states = new long[16];
+        long count = 0;
+        int limit = journal.capacity();
+        int at = HEADER_SIZE;
+        while (at < limit) {
+            byte tag = journal.get(at);
+            if ((tag == EXECUTED || tag == UNDONE) && at + STATE_RECORD_SIZE <= limit) {
+                int id = journal.getInt(at + 1);
+                if (id < 0 || id >= keys.size() || keys.get(id) == null) {
+                    break;
+                }
+                states[id] = journal.getLong(at + 5);
+                at += STATE_RECORD_SIZE;
+                count++;
+            } else if (tag == REGISTER && at + REGISTER_HEADER_SIZE <= limit) {
+                byte kind = journal.get(at + 1);
+                int id = journal.getInt(at + 2);
+                int length = journal.getShort(at + 14) & 0xFFFF;
+                if (id < 0 || at + REGISTER_HEADER_SIZE + length > limit) {
+                    break;
+                }
+                byte[] name = new byte[length];
+                for (int i = 0; i < length; i++) {
+                    name[i] = journal.get(at + REGISTER_HEADER_SIZE + i);
+                }
+                while (keys.size() <= id) {
+                    keys.add(null);
+                }
+                if (id >= states.length) {
+                    states = Arrays.copyOf(states, Math.max(states.length * 2, id + 1));
+                }
+                if (keys.get(id) != null) {
+                    // The id now names another device, so settle the old one first
+                    recoveredStates.put(keys.get(id), states[id]);
+                }
+                keys.set(id, key(kind, new String(name, StandardCharsets.UTF_8)));
+                states[id] = journal.getLong(at + 6);
+                at += REGISTER_HEADER_SIZE + length;
+            } else {
+                break;
+            }
+        }
+        for (int id = 0; id < keys.size(); id++) {
+            if (keys.get(id) != null) {
+                recoveredStates.put(keys.get(id), states[id]);
+            }
+        }
+        if (at < limit && journal.get(at) != END) {
+            // Clear a torn or corrupt tail so that new records are not followed by garbage
+            for (int i = at; i < limit; i++) {
+                journal.put(i, END);
+            }
+        }
+        position = at;
+        return count;
+    }
+
+    private long readSnapshot(Map<String, Long> states) throws IOException {
+        Path path = directory.resolve(SNAPSHOT_NAME);
+        if (!Files.exists(path)) {
+            return 1;
+        }
+        try (InputStream file = Files.newInputStream(path);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(file))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a command journal snapshot: " + path);
+            }
+            long snapshotGeneration = in.readLong();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                byte kind = in.readByte();
+                String location = in.readUTF();
+                states.put(key(kind, location), in.readLong());
+            }
+            return snapshotGeneration;
+        }
+    }
+
+    private void writeSnapshot(long nextGeneration) throws IOException {
+        Map<String, Long> states = new HashMap<>(recoveredStates);
+        for (int id = 0; id < devices.size(); id++) {
+            Object device = devices.get(id);
+            states.put(key(DeviceState.kindOf(device), DeviceState.locationOf(device)), lastStates[id]);
+        }
+        Path temporary = directory.resolve(SNAPSHOT_NAME + ".tmp");
+        try (FileChannel file = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            OutputStream stream = Channels.newOutputStream(file);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(nextGeneration);
+            out.writeInt(states.size());
+            for (Map.Entry<String, Long> entry : states.entrySet()) {
+                out.writeByte(kindOfKey(entry.getKey()));
+                out.writeUTF(locationOfKey(entry.getKey()));
+                out.writeLong(entry.getValue());
+            }
+            out.flush();
+            file.force(true);
+        }
+        Files.move(temporary, directory.resolve(SNAPSHOT_NAME),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void deleteOtherJournals(long keep) throws IOException {
+        String keepName = journalPath(keep).getFileName().toString();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, JOURNAL_PREFIX + "*" + JOURNAL_SUFFIX)) {
+            for (Path path : stream) {
+                if (!path.getFileName().toString().equals(keepName)) {
+                    // Left behind by a crash after the snapshot that replaced it was written
+                    Files.delete(path);
+                }
+            }
+        }
+    }
+
+    private Path journalPath(long journalGeneration) {
+        return directory.resolve(String.format(Locale.ROOT, "%s%06d%s", JOURNAL_PREFIX, journalGeneration, JOURNAL_SUFFIX));
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Journal is closed");
+        }
+    }
+
+    private static String key(byte kind, String location) {
+        return kind + ":" + location;
+    }
+
+    private static byte kindOfKey(String key) {
+        return Byte.parseByte(key.substring(0, key.indexOf(':')));
+    }
+
+    private static String locationOfKey(String key) {
+        return key.substring(key.indexOf(':') + 1);
+    }
+
+    /**
+     * Decorator that journals the device state after the wrapped command runs
+     */
+    private final class JournaledCommand implements Command {
+        private final Command command;
+        private final Object device;
+        private final int id;
+
+        JournaledCommand(Command command, Object device, int id) {
+            this.command = command;
+            this.device = device;
+            this.id = id;
+        }
+
+        @Override
+        public void execute() {
+            command.execute();
+            append(EXECUTED, id, DeviceState.encode(device));
+        }
+
+        @Override
+        public void undo() {
+            command.undo();
+            append(UNDONE, id, DeviceState.encode(device));
+        }
+    }
+
+    /**
+     * Builder for CommandJournal
+     * Defaults to 64 MB journal files and a sync on every commit
+     */
+    public static class CommandJournalBuilder {
+        private final Path directory;
+        private int fileSize = 64 * 1024 * 1024;
+        private boolean syncOnCommit = true;
+
+        /**
+         * Creates a builder for a journal kept in the given directory
+         * @param directory Directory holding the snapshot and journal files
+         */
+        public CommandJournalBuilder(Path directory) {
+            this.directory = directory;
+        }
+
+        /**
+         * Sets the size each journal file is pre-allocated to
+         * @param fileSize Size in bytes
+         */
+        public CommandJournalBuilder setFileSize(int fileSize) {
+            if (fileSize < 1024) {
+                throw new IllegalArgumentException("Journal file size too small: " + fileSize);
+            }
+            this.fileSize = fileSize;
+            return this;
+        }
+
+        /**
+         * Sets whether every journaled command waits for its record to reach the disk
+         * @param syncOnCommit false to leave flushing to the operating system and {@link CommandJournal#sync()}
+         */
+        public CommandJournalBuilder setSyncOnCommit(boolean syncOnCommit) {
+            this.syncOnCommit = syncOnCommit;
+            return this;
+        }
+
+        /**
+         * Opens the journal and replays what it holds
+         * @throws IOException if the files cannot be read or created
+         */
+        public CommandJournal build() throws IOException {
+            return new CommandJournal(this);
+        }
+    }
+}
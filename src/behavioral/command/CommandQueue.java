@@ -0,0 +1,136 @@
+package behavioral.command;
+
+/**
+ * Bounded lock-free multi-producer, single-consumer queue of button pushes
+ * used by {@link CommandDispatcher}
+ *
+ * The entries are kept in parallel arrays sequenced by an {@link MpscRing}; only
+ * the executor thread consumes.
+ */
+final class CommandQueue {
+    static final byte ON = 0;
+    static final byte OFF = 1;
+    static final byte UNDO = 2;
+    static final byte REDO = 3;
+    static final byte SET = 4;
+    static final byte EXECUTE = 5;
+
+    private final MpscRing ring;
+    private final byte[] ops;
+    private final int[] slots;
+    private final Command[] onCommands;
+    private final Command[] offCommands;
+
+    /**
+     * Creates an empty queue
+     * @param capacity Number of entries, must be a power of two
+     */
+    CommandQueue(int capacity) {
+        this.ring = new MpscRing(capacity);
+        this.ops = new byte[capacity];
+        this.slots = new int[capacity];
+        this.onCommands = new Command[capacity];
+        this.offCommands = new Command[capacity];
+    }
+
+    /**
+     * Appends an entry if there is a free slot
+     * @param op One of ON, OFF, UNDO, REDO, SET or EXECUTE
+     * @param slot The remote control slot the entry refers to
+     * @param onCommand The new on command for SET entries, the command to run for EXECUTE, otherwise null
+     * @param offCommand The new off command for SET entries, otherwise null
+     * @return true if the entry was queued, false if the queue is full
+     */
+    boolean offer(byte op, int slot, Command onCommand, Command offCommand) {
+        long position = ring.claim();
+        if (position < 0) {
+            return false;
+        }
+        int index = ring.index(position);
+        ops[index] = op;
+        slots[index] = slot;
+        onCommands[index] = onCommand;
+        offCommands[index] = offCommand;
+        ring.publish(position);
+        return true;
+    }
+
+    /**
+     * Applies the entry at the head to the remote control and frees its slot
+     * Must only be called by the consumer
+     * @param remote The remote control the entry is applied to
+     * @return true if an entry was applied, false if the queue is empty
+     */
+    boolean poll(RemoteControl remote) {
+        long position = ring.peek();
+        if (position < 0) {
+            return false;
+        }
+        int index = ring.index(position);
+        byte op = ops[index];
+        int slot = slots[index];
+        Command onCommand = onCommands[index];
+        Command offCommand = offCommands[index];
+        onCommands[index] = null;
+        offCommands[index] = null;
+        ring.release(position);
+        // The slot is free again before the command runs, so a slow command
+        // does not keep a producer waiting on this entry
+        apply(remote, op, slot, onCommand, offCommand);
+        return true;
+    }
+
+    /**
+     * Performs one button push or slot change on the remote control
+     * @param remote The remote control to act on
+     * @param op One of ON, OFF, UNDO, REDO, SET or EXECUTE
+     * @param slot The slot the push refers to
+     * @param onCommand The new on command for SET, the command to run for EXECUTE, otherwise ignored
+     * @param offCommand The new off command for SET, otherwise ignored
+     */
+    static void apply(RemoteControl remote, byte op, int slot, Command onCommand, Command offCommand) {
+        switch (op) {
+            case ON:
+                remote.onButtonWasPushed(slot);
+                break;
+            case OFF:
+                remote.offButtonWasPushed(slot);
+                break;
+            case UNDO:
+                remote.undoButtonWasPushed();
+                break;
+            case REDO:
+                remote.redoButtonWasPushed();
+                break;
+            case EXECUTE:
+                remote.execute(onCommand);
+                break;
+            default:
+                remote.setCommand(slot, onCommand, offCommand);
+        }
+    }
+
+    /**
+     * Gets the number of entries ever claimed by producers
+     * @return The tail position
+     */
+    long producerPosition() {
+        return ring.producerPosition();
+    }
+
+    /**
+     * Gets the number of entries ever taken by the consumer
+     * @return The head position
+     */
+    long consumerPosition() {
+        return ring.consumerPosition();
+    }
+
+    /**
+     * Gets the ring sequencing the entries
+     * @return The ring
+     */
+    MpscRing ring() {
+        return ring;
+    }
+}
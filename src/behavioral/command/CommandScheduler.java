@@ -0,0 +1,374 @@
+package behavioral.command;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Runs commands after a delay or repeatedly, e.g. "turn off the light in 30 minutes"
+ *
+ * Pending commands are kept in a hierarchical timing wheel instead of a priority
+ * queue. Time advances in ticks; each level of the wheel has 64 buckets, and a
+ * bucket of level n covers 64^n ticks. A command is linked into the bucket of the
+ * highest level on which its deadline differs from the current tick, and buckets
+ * of the higher levels are redistributed to the lower ones as time reaches them.
+ * Scheduling and cancelling a command are O(1) whatever the number of pending
+ * commands, and each tick only looks at the buckets that are due.
+ *
+ * Deadlines are rounded up to whole ticks. The scheduler owns one timer thread
+ * that runs the due commands; when it is built on a {@link RemoteControl} the
+ * commands run through {@link RemoteControl#execute(Command)} on that thread, so
+ * they can be undone with the remote's undo button. If the remote is also used
+ * from other threads, build the scheduler on a {@link CommandDispatcher} instead.
+ */
+public class CommandScheduler implements AutoCloseable {
+    public static final long DEFAULT_TICK_MILLIS = 10;
+
+    private static final int WHEEL_BITS = 6;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    // Enough levels to cover every 64-bit tick number
+    private static final int LEVELS = (Long.SIZE + WHEEL_BITS - 1) / WHEEL_BITS;
+
+    private final Consumer<Command> executor;
+    private final long tickNanos;
+    private final LongSupplier clock;
+    private final long startNanos;
+    private final ScheduledCommand[] buckets = new ScheduledCommand[LEVELS * WHEEL_SIZE];
+    private final int[] levelCounts = new int[LEVELS];
+    private final List<ScheduledCommand> due = new ArrayList<>();
+    private final Thread timerThread;
+
+    private long currentTick;
+    private int pendingCount;
+    private volatile boolean closed;
+
+    /**
+     * Creates a scheduler with the default tick of 10 milliseconds
+     * @param remote The remote control that runs the commands
+     */
+    public CommandScheduler(RemoteControl remote) {
+        this(remote, DEFAULT_TICK_MILLIS);
+    }
+
+    /**
+     * Creates a scheduler and starts its timer thread
+     * @param remote The remote control that runs the commands
+     * @param tickMillis The timer resolution in milliseconds
+     */
+    public CommandScheduler(RemoteControl remote, long tickMillis) {
+        this(remote::execute, toTickNanos(tickMillis), System::nanoTime, true);
+    }
+
+    /**
+     * Creates a scheduler that queues due commands on a dispatcher
+     * @param dispatcher The dispatcher whose executor thread runs the commands
+     * @param tickMillis The timer resolution in milliseconds
+     */
+    public CommandScheduler(CommandDispatcher dispatcher, long tickMillis) {
+        this(dispatcher::execute, toTickNanos(tickMillis), System::nanoTime, true);
+    }
+
+    /**
+     * Creates a scheduler, without a timer thread if time is advanced by the caller
+     */
+    CommandScheduler(Consumer<Command> executor, long tickNanos, LongSupplier clock, boolean startTimer) {
+        this.executor = executor;
+        this.tickNanos = tickNanos;
+        this.clock = clock;
+        this.startNanos = clock.getAsLong();
+        if (startTimer) {
+            timerThread = new Thread(this::timerLoop, "command-scheduler");
+            timerThread.setDaemon(true);
+            timerThread.start();
+        } else {
+            timerThread = null;
+        }
+    }
+
+    /**
+     * Runs a command once after a delay
+     * @param command The command to run
+     * @param delay How long to wait, rounded up to whole ticks
+     * @param unit The unit of the delay
+     * @return A handle to cancel or undo the command
+     */
+    public ScheduledCommand schedule(Command command, long delay, TimeUnit unit) {
+        return schedule(command, delay, 0, unit);
+    }
+
+    /**
+     * Runs a command repeatedly
+     * A run that falls more than a period behind is skipped rather than run late
+     * @param command The command to run
+     * @param initialDelay How long to wait before the first run
+     * @param period The time between the starts of two runs, at least one tick
+     * @param unit The unit of the delay and the period
+     * @return A handle to stop the runs or undo the last one
+     */
+    public ScheduledCommand scheduleAtFixedRate(Command command, long initialDelay, long period, TimeUnit unit) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Period must be positive: " + period);
+        }
+        return schedule(command, initialDelay, period, unit);
+    }
+
+    /**
+     * Gets the number of commands waiting in the wheel
+     * @return The pending command count; a periodic command counts once
+     */
+    public synchronized int getPendingCount() {
+        return pendingCount;
+    }
+
+    /**
+     * Stops the timer thread
+     * Commands that have not run yet are dropped
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (timerThread != null && Thread.currentThread() != timerThread) {
+            LockSupport.unpark(timerThread);
+            boolean interrupted = false;
+            while (timerThread.isAlive()) {
+                try {
+                    timerThread.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Checks whether close() has been called
+     * @return true if the scheduler is closed
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Runs every command that is due by the clock's current time
+     * Called by the timer thread, or by tests that own the clock
+     */
+    void advance() {
+        long target = (clock.getAsLong() - startNanos) / tickNanos;
+        synchronized (this) {
+            while (currentTick < target) {
+                if (pendingCount == 0) {
+                    currentTick = target;
+                    break;
+                }
+                // While the low levels are empty only the next cascade can do anything
+                int level = 0;
+                while (levelCounts[level] == 0) {
+                    level++;
+                }
+                if (level > 0) {
+                    int shift = level * WHEEL_BITS;
+                    long beforeCascade = ((currentTick >>> shift) + 1 << shift) - 1;
+                    currentTick = Math.min(target, beforeCascade < currentTick ? Long.MAX_VALUE : beforeCascade);
+                    if (currentTick == target) {
+                        break;
+                    }
+                }
+                currentTick++;
+                cascade();
+                collect(buckets[(int) (currentTick & WHEEL_MASK)]);
+            }
+            for (ScheduledCommand entry : due) {
+                if (entry.periodTicks > 0 && !entry.isCancelled()) {
+                    entry.deadline = Math.max(entry.deadline + entry.periodTicks, currentTick + 1);
+                    insert(entry);
+                }
+            }
+        }
+        for (int i = 0; i < due.size(); i++) {
+            run(due.get(i));
+        }
+        due.clear();
+    }
+
+    synchronized boolean cancel(ScheduledCommand entry) {
+        if (entry.isCancelled() || entry.isDone()) {
+            return false;
+        }
+        entry.markCancelled();
+        if (entry.bucket >= 0) {
+            unlink(entry);
+        }
+        return true;
+    }
+
+    synchronized boolean undo(ScheduledCommand entry) {
+        cancel(entry);
+        if (!entry.markUndone()) {
+            return false;
+        }
+        // Runs on the timer thread after the command's own run, never alongside it
+        insert(new ScheduledCommand(this, new UndoCommand(entry.command), currentTick + 1, 0));
+        LockSupport.unpark(timerThread);
+        return true;
+    }
+
+    private ScheduledCommand schedule(Command command, long delay, long period, TimeUnit unit) {
+        if (command == null) {
+            throw new IllegalArgumentException("Command must not be null");
+        }
+        if (delay < 0) {
+            throw new IllegalArgumentException("Delay must not be negative: " + delay);
+        }
+        long periodTicks = period > 0 ? Math.max(1, toTicks(period, unit)) : 0;
+        long now = (clock.getAsLong() - startNanos) / tickNanos;
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("Scheduler is closed");
+            }
+            long base = Math.max(now, currentTick);
+            long deadline = base + Math.min(Math.max(1, toTicks(delay, unit)), Long.MAX_VALUE - base);
+            ScheduledCommand entry = new ScheduledCommand(this, command, deadline, periodTicks);
+            insert(entry);
+            return entry;
+        }
+    }
+
+    private long toTicks(long duration, TimeUnit unit) {
+        long nanos = unit.toNanos(duration);
+        return nanos / tickNanos + (nanos % tickNanos == 0 ? 0 : 1);
+    }
+
+    /**
+     * Moves the commands of the higher-level buckets that the current tick has
+     * reached down the wheel, from the highest level to the lowest, so that
+     * entries can move down several levels in one tick
+     */
+    private void cascade() {
+        int top = Math.min(LEVELS - 1, Long.numberOfTrailingZeros(currentTick) / WHEEL_BITS);
+        for (int level = top; level > 0; level--) {
+            int index = level * WHEEL_SIZE + (int) (currentTick >>> level * WHEEL_BITS & WHEEL_MASK);
+            ScheduledCommand entry = buckets[index];
+            buckets[index] = null;
+            while (entry != null) {
+                ScheduledCommand next = entry.next;
+                entry.bucket = -1;
+                pendingCount--;
+                levelCounts[level]--;
+                insert(entry);
+                entry = next;
+            }
+        }
+    }
+
+    private void collect(ScheduledCommand head) {
+        ScheduledCommand entry = head;
+        while (entry != null) {
+            ScheduledCommand next = entry.next;
+            unlink(entry);
+            due.add(entry);
+            entry = next;
+        }
+    }
+
+    private void insert(ScheduledCommand entry) {
+        long deadline = entry.deadline;
+        if (deadline <= currentTick) {
+            due.add(entry);
+            return;
+        }
+        // The highest 6-bit digit in which the deadline differs from now picks the level
+        int level = (63 - Long.numberOfLeadingZeros(deadline ^ currentTick)) / WHEEL_BITS;
+        int index = level * WHEEL_SIZE + (int) (deadline >>> level * WHEEL_BITS & WHEEL_MASK);
+        ScheduledCommand head = buckets[index];
+        entry.prev = null;
+        entry.next = head;
+        if (head != null) {
+            head.prev = entry;
+        }
+        buckets[index] = entry;
+        entry.bucket = index;
+        pendingCount++;
+        levelCounts[level]++;
+    }
+
+    private void unlink(ScheduledCommand entry) {
+        if (entry.prev != null) {
+            entry.prev.next = entry.next;
+        } else {
+            buckets[entry.bucket] = entry.next;
+        }
+        if (entry.next != null) {
+            entry.next.prev = entry.prev;
+        }
+        levelCounts[entry.bucket / WHEEL_SIZE]--;
+        entry.prev = null;
+        entry.next = null;
+        entry.bucket = -1;
+        pendingCount--;
+    }
+
+    private void run(ScheduledCommand entry) {
+        synchronized (this) {
+            if (entry.isCancelled()) {
+                return;
+            }
+            entry.markRun();
+        }
+        try {
+            executor.accept(entry.command);
+        } catch (RuntimeException e) {
+            // A failing command must not stop the commands scheduled after it
+            System.err.println("CommandScheduler: command failed: " + e);
+        }
+    }
+
+    private void timerLoop() {
+        while (!closed) {
+            long nextTick;
+            synchronized (this) {
+                nextTick = startNanos + (currentTick + 1) * tickNanos;
+            }
+            long wait = nextTick - clock.getAsLong();
+            if (wait > 0) {
+                LockSupport.parkNanos(this, wait);
+            } else {
+                advance();
+            }
+        }
+    }
+
+    private static long toTickNanos(long tickMillis) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("Tick must be positive: " + tickMillis);
+        }
+        return TimeUnit.MILLISECONDS.toNanos(tickMillis);
+    }
+
+    /**
+     * Reverses a command that ran: executing it undoes the command, and undoing it runs the command again
+     */
+    private static final class UndoCommand implements Command {
+        private final Command command;
+
+        UndoCommand(Command command) {
+            this.command = command;
+        }
+
+        @Override
+        public void execute() {
+            command.undo();
+        }
+
+        @Override
+        public void undo() {
+            command.execute();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package behavioral.command;
+
+import java.io.PrintStream;
+
+/**
+ * Event sink that prints each state change as a line of text
+ */
+public class ConsoleEventSink implements DeviceEventSink {
+    private static final String[] FAN_SPEEDS = {"off", "on low", "on medium", "on high"};
+
+    private final PrintStream out;
+
+    /**
+     * Creates a sink that prints to System.out as it is at the time of each event
+     */
+    public ConsoleEventSink() {
+        this(null);
+    }
+
+    /**
+     * Creates a sink that prints to the given stream
+     * @param out The stream to print to
+     */
+    public ConsoleEventSink(PrintStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void onEvent(DeviceEvent event, String location, double value) {
+        PrintStream stream = out != null ? out : System.out;
+        switch (event) {
+            case LIGHT_ON:
+                stream.println(location + " light is now ON");
+                break;
+            case LIGHT_OFF:
+                stream.println(location + " light is now OFF");
+                break;
+            case FAN_SPEED:
+                stream.println(location + " fan is " + FAN_SPEEDS[(int) value]);
+                break;
+            case STEREO_ON:
+                stream.println(location + " stereo is ON");
+                break;
+            case STEREO_OFF:
+                stream.println(location + " stereo is OFF");
+                break;
+            case STEREO_CD:
+                stream.println(location + " stereo is set for CD input");
+                break;
+            case STEREO_DVD:
+                stream.println(location + " stereo is set for DVD input");
+                break;
+            case STEREO_RADIO:
+                stream.println(location + " stereo is set for Radio input");
+                stream.println("Current frequency: " + value + " MHz");
+                break;
+            case STEREO_VOLUME:
+                stream.println(location + " stereo volume set to " + (int) value);
+                break;
+            default:
+                stream.println(location + " radio frequency set to " + value + " MHz");
+        }
+    }
+}
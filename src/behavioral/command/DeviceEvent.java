@@ -0,0 +1,21 @@
+package behavioral.command;
+
+/**
+ * State changes reported by lights, fans and stereos to a {@link DeviceEventSink}
+ */
+public enum DeviceEvent {
+    LIGHT_ON,
+    LIGHT_OFF,
+    /** Value is the new speed */
+    FAN_SPEED,
+    STEREO_ON,
+    STEREO_OFF,
+    STEREO_CD,
+    STEREO_DVD,
+    /** Value is the current radio frequency in MHz */
+    STEREO_RADIO,
+    /** Value is the new volume */
+    STEREO_VOLUME,
+    /** Value is the new radio frequency in MHz */
+    STEREO_FREQUENCY
+}
@@ -0,0 +1,28 @@
+package behavioral.command;
+
+/**
+ * Receives the state changes of devices
+ *
+ * Devices report every change to the sink of their {@link DeviceRegistry}
+ * instead of printing it. Events are passed as plain arguments so that
+ * reporting one allocates nothing unless the sink itself does.
+ */
+public interface DeviceEventSink {
+    /**
+     * Discards every event
+     */
+    DeviceEventSink NO_OP = (event, location, value) -> { };
+
+    /**
+     * Prints every event the way the devices always have
+     */
+    DeviceEventSink CONSOLE = new ConsoleEventSink();
+
+    /**
+     * Handles one state change
+     * @param event What changed
+     * @param location The location of the device that changed
+     * @param value The new speed, volume or frequency where the event has one, otherwise 0
+     */
+    void onEvent(DeviceEvent event, String location, double value);
+}
@@ -0,0 +1,316 @@
+package behavioral.command;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Compact store for the state of many lights, fans and stereos
+ *
+ * Instead of one object per device, the state of every device of a kind lives in
+ * parallel primitive arrays indexed by the device number (struct of arrays):
+ * <ul>
+ *   <li>Light: one boolean for on/off</li>
+ *   <li>Fan: one byte holding the speed and the previous speed</li>
+ *   <li>Stereo: one boolean for on/off, and a byte each for source and volume, and a short for the frequency in hundredths of MHz</li>
+ * </ul>
+ * Locations are stored once in a dictionary and referenced by number, so devices
+ * sharing a location do not repeat it.
+ *
+ * {@link Light}, {@link Fan} and {@link Stereo} objects obtained from a registry
+ * are views holding only the registry and an index; they can be created on demand
+ * and thrown away, and two views of the same device are equal. Commands work on
+ * them unchanged.
+ *
+ * Devices report their state changes to the registry's {@link DeviceEventSink},
+ * which prints them to the console unless another sink is set.
+ *
+ * A device created with its public constructor gets a registry of its own, which
+ * allocates only the arrays for that one device and no location dictionary; to
+ * save memory, create large numbers of devices through one shared registry.
+ * Like the device classes, a registry is not thread-safe: adding devices and
+ * changing one device from several threads need outside synchronization. Every
+ * device keeps its state in array elements of its own, so different devices of
+ * one registry can be changed from different threads, as a
+ * {@link ParallelMacroCommand} does.
+ */
+public class DeviceRegistry {
+    private static final String[] SOURCES = {"CD", "DVD", "Radio"};
+    private static final short DEFAULT_FREQUENCY = 8750;
+    private static final boolean[] EMPTY_BOOLEANS = {};
+    private static final int[] EMPTY_INTS = {};
+    private static final byte[] EMPTY_BYTES = {};
+    private static final short[] EMPTY_SHORTS = {};
+    private static final String[] EMPTY_STRINGS = {};
+
+    private DeviceEventSink eventSink = DeviceEventSink.CONSOLE;
+
+    // Created with the second location, so a registry holding one device needs no map
+    private Map<String, Integer> locationIds;
+    private String[] locations = EMPTY_STRINGS;
+    private int locationCount;
+
+    private boolean[] lightOn = EMPTY_BOOLEANS;
+    private int[] lightLocations = EMPTY_INTS;
+    private int lightCount;
+
+    private byte[] fanSpeeds = EMPTY_BYTES;
+    private int[] fanLocations = EMPTY_INTS;
+    private int fanCount;
+
+    private boolean[] stereoOn = EMPTY_BOOLEANS;
+    private byte[] stereoSources = EMPTY_BYTES;
+    private byte[] stereoVolumes = EMPTY_BYTES;
+    private short[] stereoFrequencies = EMPTY_SHORTS;
+    private int[] stereoLocations = EMPTY_INTS;
+    private int stereoCount;
+
+    /**
+     * Adds a light that is off
+     * @param location The location of the light
+     * @return A view of the new light
+     */
+    public Light addLight(String location) {
+        return new Light(this, allocateLight(location));
+    }
+
+    /**
+     * Adds a fan that is off
+     * @param location The location of the fan
+     * @return A view of the new fan
+     */
+    public Fan addFan(String location) {
+        return new Fan(this, allocateFan(location));
+    }
+
+    /**
+     * Adds a stereo that is off, set to CD at volume 0
+     * @param location The location of the stereo
+     * @return A view of the new stereo
+     */
+    public Stereo addStereo(String location) {
+        return new Stereo(this, allocateStereo(location));
+    }
+
+    /**
+     * Gets a view of an existing light
+     * @param index The light number, in the order lights were added
+     * @return A view of the light
+     */
+    public Light light(int index) {
+        return new Light(this, checkIndex(index, lightCount));
+    }
+
+    /**
+     * Gets a view of an existing fan
+     * @param index The fan number, in the order fans were added
+     * @return A view of the fan
+     */
+    public Fan fan(int index) {
+        return new Fan(this, checkIndex(index, fanCount));
+    }
+
+    /**
+     * Gets a view of an existing stereo
+     * @param index The stereo number, in the order stereos were added
+     * @return A view of the stereo
+     */
+    public Stereo stereo(int index) {
+        return new Stereo(this, checkIndex(index, stereoCount));
+    }
+
+    /**
+     * Sets where the devices of this registry report their state changes
+     * @param eventSink The sink, e.g. {@link DeviceEventSink#NO_OP} to report nothing
+     */
+    public void setEventSink(DeviceEventSink eventSink) {
+        if (eventSink == null) {
+            throw new IllegalArgumentException("Event sink must not be null");
+        }
+        this.eventSink = eventSink;
+    }
+
+    /**
+     * Gets the sink the devices of this registry report to
+     * @return The event sink
+     */
+    public DeviceEventSink getEventSink() {
+        return eventSink;
+    }
+
+    /**
+     * Gets the number of lights added so far
+     * @return The light count
+     */
+    public int getLightCount() {
+        return lightCount;
+    }
+
+    /**
+     * Gets the number of fans added so far
+     * @return The fan count
+     */
+    public int getFanCount() {
+        return fanCount;
+    }
+
+    /**
+     * Gets the number of stereos added so far
+     * @return The stereo count
+     */
+    public int getStereoCount() {
+        return stereoCount;
+    }
+
+    int allocateLight(String location) {
+        if (lightCount == lightLocations.length) {
+            lightLocations = Arrays.copyOf(lightLocations, grow(lightCount));
+            lightOn = Arrays.copyOf(lightOn, lightLocations.length);
+        }
+        lightLocations[lightCount] = locationId(location);
+        return lightCount++;
+    }
+
+    int allocateFan(String location) {
+        if (fanCount == fanLocations.length) {
+            fanLocations = Arrays.copyOf(fanLocations, grow(fanCount));
+            fanSpeeds = Arrays.copyOf(fanSpeeds, fanLocations.length);
+        }
+        fanLocations[fanCount] = locationId(location);
+        return fanCount++;
+    }
+
+    int allocateStereo(String location) {
+        if (stereoCount == stereoLocations.length) {
+            int capacity = grow(stereoCount);
+            stereoLocations = Arrays.copyOf(stereoLocations, capacity);
+            stereoOn = Arrays.copyOf(stereoOn, capacity);
+            stereoSources = Arrays.copyOf(stereoSources, capacity);
+            stereoVolumes = Arrays.copyOf(stereoVolumes, capacity);
+            stereoFrequencies = Arrays.copyOf(stereoFrequencies, capacity);
+        }
+        stereoLocations[stereoCount] = locationId(location);
+        stereoFrequencies[stereoCount] = DEFAULT_FREQUENCY;
+        return stereoCount++;
+    }
+
+    void emit(DeviceEvent event, String location, double value) {
+        eventSink.onEvent(event, location, value);
+    }
+
+    String lightLocation(int index) {
+        return locations[lightLocations[index]];
+    }
+
+    boolean isLightOn(int index) {
+        return lightOn[index];
+    }
+
+    void setLightOn(int index, boolean on) {
+        lightOn[index] = on;
+    }
+
+    String fanLocation(int index) {
+        return locations[fanLocations[index]];
+    }
+
+    int fanSpeed(int index) {
+        return fanSpeeds[index] & 0x0F;
+    }
+
+    int fanPrevSpeed(int index) {
+        return fanSpeeds[index] >>> 4 & 0x0F;
+    }
+
+    /**
+     * Sets a fan's speed, remembering the current speed as the previous one
+     */
+    void setFanSpeed(int index, int speed) {
+        setFanSpeeds(index, speed, fanSpeed(index));
+    }
+
+    void setFanSpeeds(int index, int speed, int prevSpeed) {
+        fanSpeeds[index] = (byte) ((speed & 0x0F) | (prevSpeed & 0x0F) << 4);
+    }
+
+    String stereoLocation(int index) {
+        return locations[stereoLocations[index]];
+    }
+
+    boolean isStereoOn(int index) {
+        return stereoOn[index];
+    }
+
+    void setStereoOn(int index, boolean on) {
+        stereoOn[index] = on;
+    }
+
+    String stereoSource(int index) {
+        return SOURCES[stereoSources[index]];
+    }
+
+    void setStereoSource(int index, String source) {
+        for (byte i = 0; i < SOURCES.length; i++) {
+            if (SOURCES[i].equals(source)) {
+                stereoSources[index] = i;
+                return;
+            }
+        }
+        throw new IllegalArgumentException("Unknown source: " + source);
+    }
+
+    int stereoVolume(int index) {
+        return stereoVolumes[index];
+    }
+
+    void setStereoVolume(int index, int volume) {
+        stereoVolumes[index] = (byte) volume;
+    }
+
+    double stereoFrequency(int index) {
+        return stereoFrequencies[index] / 100.0;
+    }
+
+    void setStereoFrequency(int index, double frequency) {
+        stereoFrequencies[index] = (short) Math.round(frequency * 100);
+    }
+
+    private int locationId(String location) {
+        if (locationIds == null) {
+            if (locationCount == 0) {
+                return addLocation(location);
+            }
+            if (Objects.equals(locations[0], location)) {
+                return 0;
+            }
+            locationIds = new HashMap<>();
+            locationIds.put(locations[0], 0);
+        }
+        Integer id = locationIds.get(location);
+        if (id == null) {
+            id = addLocation(location);
+            locationIds.put(location, id);
+        }
+        return id;
+    }
+
+    private int addLocation(String location) {
+        if (locationCount == locations.length) {
+            locations = Arrays.copyOf(locations, grow(locationCount));
+        }
+        locations[locationCount] = location;
+        return locationCount++;
+    }
+
+    private static int grow(int count) {
+        return Math.max(1, count * 2);
+    }
+
+    private static int checkIndex(int index, int count) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("No such device: " + index);
+        }
+        return index;
+    }
+}
@@ -0,0 +1,108 @@
+package behavioral.command;
+
+/**
+ * Packs the state of a Light, Fan or Stereo into a single long and back
+ *
+ * Used by {@link CommandJournal} so that every journal record has the same fixed
+ * size. Layouts, from the least significant bit:
+ * <ul>
+ *   <li>Light: bit 0 on</li>
+ *   <li>Fan: bits 0-7 speed, bits 8-15 previous speed</li>
+ *   <li>Stereo: bit 0 on, bits 1-2 source, bits 8-15 volume, bits 16-31 frequency in hundredths of MHz</li>
+ * </ul>
+ */
+final class DeviceState {
+    static final byte LIGHT = 1;
+    static final byte FAN = 2;
+    static final byte STEREO = 3;
+
+    private static final String[] SOURCES = {"CD", "DVD", "Radio"};
+
+    private DeviceState() {
+    }
+
+    /**
+     * Gets the kind code of a device
+     * @param device A Light, Fan or Stereo
+     * @return LIGHT, FAN or STEREO
+     */
+    static byte kindOf(Object device) {
+        if (device instanceof Light) {
+            return LIGHT;
+        } else if (device instanceof Fan) {
+            return FAN;
+        } else if (device instanceof Stereo) {
+            return STEREO;
+        }
+        throw new IllegalArgumentException("Unsupported device: " + device);
+    }
+
+    /**
+     * Gets the location a device is known by
+     * @param device A Light, Fan or Stereo
+     * @return The device location
+     */
+    static String locationOf(Object device) {
+        switch (kindOf(device)) {
+            case LIGHT:
+                return ((Light) device).getLocation();
+            case FAN:
+                return ((Fan) device).getLocation();
+            default:
+                return ((Stereo) device).getLocation();
+        }
+    }
+
+    /**
+     * Encodes the current state of a device
+     * @param device A Light, Fan or Stereo
+     * @return The packed state
+     */
+    static long encode(Object device) {
+        switch (kindOf(device)) {
+            case LIGHT:
+                return ((Light) device).isOn() ? 1L : 0L;
+            case FAN: {
+                Fan fan = (Fan) device;
+                return (fan.getSpeed() & 0xFF) | (fan.getPrevSpeed() & 0xFF) << 8;
+            }
+            default: {
+                Stereo stereo = (Stereo) device;
+                return (stereo.isOn() ? 1L : 0L)
+                        | (long) sourceCode(stereo.getSource()) << 1
+                        | (long) (stereo.getVolume() & 0xFF) << 8
+                        | (Math.round(stereo.getFrequency() * 100) & 0xFFFFL) << 16;
+            }
+        }
+    }
+
+    /**
+     * Puts a device into an encoded state without announcing the change
+     * @param device A Light, Fan or Stereo
+     * @param state A state produced by {@link #encode(Object)} for the same kind of device
+     */
+    static void restore(Object device, long state) {
+        switch (kindOf(device)) {
+            case LIGHT:
+                ((Light) device).restoreState((state & 1) != 0);
+                break;
+            case FAN:
+                ((Fan) device).restoreState((int) (state & 0xFF), (int) (state >>> 8 & 0xFF));
+                break;
+            default:
+                ((Stereo) device).restoreState((state & 1) != 0,
+                        SOURCES[(int) (state >>> 1 & 0x3)],
+                        (int) (state >>> 8 & 0xFF),
+                        (state >>> 16 & 0xFFFF) / 100.0);
+        }
+    }
+
+    private static int sourceCode(String source) {
+        for (int i = 0; i < SOURCES.length; i++) {
+            if (SOURCES[i].equals(source)) {
+                return i;
+            }
+        }
+        return 0;
+    }
+}
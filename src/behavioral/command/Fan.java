@@ -3,6 +3,12 @@ package behavioral.command;
 /**
  * Receiver class for fan operations
  * Demonstrates a more complex receiver with multiple states
+ *
+ * The state itself is kept in a {@link DeviceRegistry}; a Fan is a view of one
+ * entry. Equality follows the entry: fans are equal, with equal hash codes, when
+ * they view the same index of the same registry, not only when they are the same
+ * object. setEventSink() is a registry setting and affects every device of the
+ * registry; a fan created with its public constructor is alone in its registry.
  */
 public class Fan {
     public static final int OFF = 0;
@@ -10,18 +16,21 @@ public class Fan {
     public static final int MEDIUM = 2;
     public static final int HIGH = 3;
     
-    private String location;
-    private int speed;    // 0 = off, 1 = low, 2 = medium, 3 = high
-    private int prevSpeed;
+    private final DeviceRegistry registry;
+    private final int index;
 
     /**
      * Creates a new Fan with a specific location
      * @param location The location of the fan
      */
     public Fan(String location) {
-        this.location = location;
-        this.speed = OFF;
-        this.prevSpeed = OFF;
+        this.registry = new DeviceRegistry();
+        this.index = registry.allocateFan(location);
+    }
+
+    Fan(DeviceRegistry registry, int index) {
+        this.registry = registry;
+        this.index = index;
     }
 
     /**
@@ -29,36 +38,51 @@ public class Fan {
      * Cycles through off -> low -> medium -> high
      */
     public void high() {
-        prevSpeed = speed;
-        speed = HIGH;
-        System.out.println(location + " fan is on high");
+        registry.setFanSpeed(index, HIGH);
+        registry.emit(DeviceEvent.FAN_SPEED, getLocation(), HIGH);
     }
 
     /**
      * Sets the fan to medium speed
      */
     public void medium() {
-        prevSpeed = speed;
-        speed = MEDIUM;
-        System.out.println(location + " fan is on medium");
+        registry.setFanSpeed(index, MEDIUM);
+        registry.emit(DeviceEvent.FAN_SPEED, getLocation(), MEDIUM);
     }
 
     /**
      * Sets the fan to low speed
      */
     public void low() {
-        prevSpeed = speed;
-        speed = LOW;
-        System.out.println(location + " fan is on low");
+        registry.setFanSpeed(index, LOW);
+        registry.emit(DeviceEvent.FAN_SPEED, getLocation(), LOW);
     }
 
     /**
      * Turns the fan off
      */
     public void off() {
-        prevSpeed = speed;
-        speed = OFF;
-        System.out.println(location + " fan is off");
+        registry.setFanSpeed(index, OFF);
+        registry.emit(DeviceEvent.FAN_SPEED, getLocation(), OFF);
+    }
+
+    /**
+     * Sets where this fan reports its state changes
+     * Applies to every device sharing its {@link DeviceRegistry}
+     * @param eventSink The sink, e.g. {@link DeviceEventSink#NO_OP} to report nothing
+     */
+    public void setEventSink(DeviceEventSink eventSink) {
+        registry.setEventSink(eventSink);
+    }
+
+    /**
+     * Puts the fan back into a previously recorded state without announcing it
+     * Used when recovering device state from a {@link CommandJournal}
+     * @param speed Current speed (0-3)
+     * @param prevSpeed Speed before the last change (0-3)
+     */
+    void restoreState(int speed, int prevSpeed) {
+        registry.setFanSpeeds(index, speed, prevSpeed);
     }
 
     /**
@@ -66,7 +90,7 @@ public class Fan {
      * @return Current speed (0-3)
      */
     public int getSpeed() {
-        return speed;
+        return registry.fanSpeed(index);
     }
 
     /**
@@ -74,7 +98,7 @@ public class Fan {
      * @return Previous speed (0-3)
      */
     public int getPrevSpeed() {
-        return prevSpeed;
+        return registry.fanPrevSpeed(index);
     }
 
     /**
@@ -82,6 +106,16 @@ public class Fan {
      * @return The location string
      */
     public String getLocation() {
-        return location;
+        return registry.fanLocation(index);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof Fan && ((Fan) other).registry == registry && ((Fan) other).index == index;
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(registry) * 31 + index;
     }
 }
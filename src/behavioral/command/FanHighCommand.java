@@ -4,7 +4,7 @@ package behavioral.command;
  * Concrete Command for setting a fan to high speed
  * Demonstrates command pattern with state tracking for undo
  */
-public class FanHighCommand implements Command {
+public class FanHighCommand implements CoalescableCommand {
     private Fan fan;
 
     /**
@@ -43,4 +43,19 @@ public class FanHighCommand implements Command {
                 break;
         }
     }
+
+    @Override
+    public Object getReceiver() {
+        return fan;
+    }
+
+    @Override
+    public String getProperty() {
+        return "speed";
+    }
+
+    @Override
+    public boolean isNoOp() {
+        return fan.getSpeed() == Fan.HIGH;
+    }
 }
@@ -0,0 +1,60 @@
+package behavioral.command;
+
+/**
+ * Concrete Command for setting a fan to low speed
+ * Demonstrates command pattern with state tracking for undo
+ */
+public class FanLowCommand implements CoalescableCommand {
+    private final Fan fan;
+
+    /**
+     * Creates a new command for setting fan to low speed
+     * @param fan The fan to control
+     */
+    public FanLowCommand(Fan fan) {
+        this.fan = fan;
+    }
+
+    /**
+     * Executes the command by setting fan to low speed
+     */
+    @Override
+    public void execute() {
+        fan.low();
+    }
+
+    /**
+     * Undoes the command by restoring previous speed
+     */
+    @Override
+    public void undo() {
+        switch (fan.getPrevSpeed()) {
+            case Fan.HIGH:
+                fan.high();
+                break;
+            case Fan.MEDIUM:
+                fan.medium();
+                break;
+            case Fan.LOW:
+                fan.low();
+                break;
+            default:
+                fan.off();
+        }
+    }
+
+    @Override
+    public Object getReceiver() {
+        return fan;
+    }
+
+    @Override
+    public String getProperty() {
+        return "speed";
+    }
+
+    @Override
+    public boolean isNoOp() {
+        return fan.getSpeed() == Fan.LOW;
+    }
+}
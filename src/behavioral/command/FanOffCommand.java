@@ -3,7 +3,7 @@ package behavioral.command;
 /**
  * Concrete Command for turning off a fan
  */
-public class FanOffCommand implements Command {
+public class FanOffCommand implements CoalescableCommand {
     private Fan fan;
     private int prevSpeed;
 
@@ -44,4 +44,19 @@ public class FanOffCommand implements Command {
                 fan.off();
         }
     }
+
+    @Override
+    public Object getReceiver() {
+        return fan;
+    }
+
+    @Override
+    public String getProperty() {
+        return "speed";
+    }
+
+    @Override
+    public boolean isNoOp() {
+        return fan.getSpeed() == Fan.OFF;
+    }
 }
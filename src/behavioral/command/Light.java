@@ -6,18 +6,30 @@ package behavioral.command;
  * 
  * The Receiver knows how to perform the actual operations
  * It contains the business logic for carrying out the command requests
+ *
+ * The state itself is kept in a {@link DeviceRegistry}; a Light is a view of one
+ * entry. equals() and hashCode() compare the registry and the entry rather than
+ * the object, so two views of the same light are equal; a light made with the
+ * public constructor has a registry of its own and is only equal to itself.
+ * setEventSink() changes the sink of the whole registry, so it re-routes the
+ * events of every device created through it.
  */
 public class Light {
-    private String location;
-    private boolean isOn;
+    private final DeviceRegistry registry;
+    private final int index;
 
     /**
      * Creates a new Light with a specific location
      * @param location The location of the light (e.g., "Living Room", "Kitchen")
      */
     public Light(String location) {
-        this.location = location;
-        this.isOn = false;
+        this.registry = new DeviceRegistry();
+        this.index = registry.allocateLight(location);
+    }
+
+    Light(DeviceRegistry registry, int index) {
+        this.registry = registry;
+        this.index = index;
     }
 
     /**
@@ -25,8 +37,8 @@ public class Light {
      * This is one of the actions that can be executed by commands
      */
     public void turnOn() {
-        isOn = true;
-        System.out.println(location + " light is now ON");
+        registry.setLightOn(index, true);
+        registry.emit(DeviceEvent.LIGHT_ON, getLocation(), 0);
     }
 
     /**
@@ -34,8 +46,26 @@ public class Light {
      * This is one of the actions that can be executed by commands
      */
     public void turnOff() {
-        isOn = false;
-        System.out.println(location + " light is now OFF");
+        registry.setLightOn(index, false);
+        registry.emit(DeviceEvent.LIGHT_OFF, getLocation(), 0);
+    }
+
+    /**
+     * Sets where this light reports its state changes
+     * Applies to every device sharing its {@link DeviceRegistry}
+     * @param eventSink The sink, e.g. {@link DeviceEventSink#NO_OP} to report nothing
+     */
+    public void setEventSink(DeviceEventSink eventSink) {
+        registry.setEventSink(eventSink);
+    }
+
+    /**
+     * Puts the light back into a previously recorded state without announcing it
+     * Used when recovering device state from a {@link CommandJournal}
+     * @param on Whether the light is on
+     */
+    void restoreState(boolean on) {
+        registry.setLightOn(index, on);
     }
 
     /**
@@ -43,7 +73,7 @@ public class Light {
      * @return true if the light is on, false otherwise
      */
     public boolean isOn() {
-        return isOn;
+        return registry.isLightOn(index);
     }
 
     /**
@@ -51,6 +81,16 @@ public class Light {
      * @return The location string
      */
     public String getLocation() {
-        return location;
+        return registry.lightLocation(index);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof Light && ((Light) other).registry == registry && ((Light) other).index == index;
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(registry) * 31 + index;
     }
 }
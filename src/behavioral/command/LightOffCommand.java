@@ -4,7 +4,7 @@ package behavioral.command;
  * Concrete Command for turning off the light
  * Encapsulates all information needed to perform the action
  */
-public class LightOffCommand implements Command {
+public class LightOffCommand implements CoalescableCommand {
     private Light light;
 
     public LightOffCommand(Light light) {
@@ -20,4 +20,19 @@ public class LightOffCommand implements Command {
     public void undo() {
         light.turnOn();
     }
+
+    @Override
+    public Object getReceiver() {
+        return light;
+    }
+
+    @Override
+    public String getProperty() {
+        return "power";
+    }
+
+    @Override
+    public boolean isNoOp() {
+        return !light.isOn();
+    }
 }
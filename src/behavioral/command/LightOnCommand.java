@@ -9,7 +9,7 @@ package behavioral.command;
  * 2. Implements execute() to delegate to receiver
  * 3. Implements undo() for reversible operations
  */
-public class LightOnCommand implements Command {
+public class LightOnCommand implements CoalescableCommand {
     private final Light light;
     
     /**
@@ -37,4 +37,19 @@ public class LightOnCommand implements Command {
     public void undo() {
         light.turnOff();
     }
+
+    @Override
+    public Object getReceiver() {
+        return light;
+    }
+
+    @Override
+    public String getProperty() {
+        return "power";
+    }
+
+    @Override
+    public boolean isNoOp() {
+        return light.isOn();
+    }
 }
@@ -0,0 +1,114 @@
+package behavioral.command;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Slot sequencing for a bounded lock-free multi-producer, single-consumer ring
+ *
+ * The ring only hands out positions; the entries themselves live in arrays of
+ * the same capacity owned by the caller, indexed by {@link #index(long)}.
+ * Producers claim a position with a single CAS on the tail counter, fill the
+ * entry and publish it by advancing the slot's sequence number. Only one thread
+ * consumes, so the head is written by that thread alone and taking an entry
+ * needs no CAS.
+ *
+ * Used by {@link CommandQueue} and {@link AsyncEventSink}, with
+ * {@link RingDrainer} running the consumer.
+ */
+final class MpscRing {
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+
+    /**
+     * Creates an empty ring
+     * @param capacity Number of entries, must be a power of two
+     */
+    MpscRing(int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        this.mask = capacity - 1;
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Claims the next free position for a producer
+     * The entry must be filled and then passed to {@link #publish(long)}
+     * @return The claimed position, or -1 if the ring is full
+     */
+    long claim() {
+        long position = tail.get();
+        while (true) {
+            long difference = sequences.get(index(position)) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    return position;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return -1;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Makes a filled entry visible to the consumer
+     * @param position A position returned by {@link #claim()}
+     */
+    void publish(long position) {
+        sequences.lazySet(index(position), position + 1);
+    }
+
+    /**
+     * Gets the position of the entry at the head if it has been published
+     * Must only be called by the consumer
+     * @return The head position, or -1 if the ring is empty
+     */
+    long peek() {
+        long position = head;
+        return sequences.get(index(position)) == position + 1 ? position : -1;
+    }
+
+    /**
+     * Frees the slot of the head entry for producers and advances the head
+     * Must only be called by the consumer, once it has read the entry
+     * @param position The position returned by {@link #peek()}
+     */
+    void release(long position) {
+        head = position + 1;
+        sequences.lazySet(index(position), position + mask + 1);
+    }
+
+    /**
+     * Gets the array index of a position
+     * @param position A ring position
+     * @return The index of its entry
+     */
+    int index(long position) {
+        return (int) (position & mask);
+    }
+
+    /**
+     * Gets the number of entries ever claimed by producers
+     * @return The tail position
+     */
+    long producerPosition() {
+        return tail.get();
+    }
+
+    /**
+     * Gets the number of entries ever taken by the consumer
+     * @return The head position
+     */
+    long consumerPosition() {
+        return head;
+    }
+}
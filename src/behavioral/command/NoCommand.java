@@ -0,0 +1,13 @@
+package behavioral.command;
+
+/**
+ * No-op command for initialization
+ * Implements the null object pattern to avoid null checks
+ */
+class NoCommand implements Command {
+    @Override
+    public void execute() {}
+
+    @Override
+    public void undo() {}
+}
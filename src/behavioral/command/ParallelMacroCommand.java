@@ -0,0 +1,282 @@
+package behavioral.command;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Macro command that runs independent commands in parallel
+ *
+ * The commands form a dependency graph: a command starts only after every command
+ * it depends on has finished, and commands without a path between them run
+ * concurrently on a ForkJoinPool. A macro touching many unrelated devices therefore
+ * takes about as long as its slowest chain of dependent commands.
+ *
+ * undo() walks the same graph backwards, so a command is undone only after
+ * everything that depended on it has been undone. It only undoes commands whose
+ * execute() completed and that have not been undone since.
+ *
+ * If a command throws, no further commands are started. The commands already
+ * running are allowed to finish, and then the exception is rethrown from execute()
+ * or undo(); a following undo() reverses exactly the commands that did execute.
+ */
+public class ParallelMacroCommand implements Command {
+    private final Command[] commands;
+    private final int[][] dependents;
+    private final int[][] prerequisites;
+    private final ForkJoinPool pool;
+    // Which commands have executed and not been undone, written by the steps of a run
+    // and read by the next run after pool.invoke() has returned
+    private final boolean[] executed;
+
+    private ParallelMacroCommand(ParallelMacroCommandBuilder builder, int[][] dependents, int[][] prerequisites) {
+        this.commands = builder.commands.toArray(new Command[0]);
+        this.dependents = dependents;
+        this.prerequisites = prerequisites;
+        this.pool = builder.pool;
+        this.executed = new boolean[commands.length];
+    }
+
+    /**
+     * Executes every command once its dependencies have finished
+     */
+    @Override
+    public void execute() {
+        run(prerequisites, dependents, false);
+    }
+
+    /**
+     * Undoes every command once the commands depending on it have been undone
+     */
+    @Override
+    public void undo() {
+        run(dependents, prerequisites, true);
+    }
+
+    /**
+     * Gets the number of commands in the macro
+     * @return The command count
+     */
+    public int size() {
+        return commands.length;
+    }
+
+    private void run(int[][] waitsFor, int[][] unblocks, boolean undo) {
+        AtomicIntegerArray pending = new AtomicIntegerArray(commands.length);
+        for (int i = 0; i < commands.length; i++) {
+            pending.set(i, waitsFor[i].length);
+        }
+        Run run = new Run(waitsFor, unblocks, pending, undo);
+        pool.invoke(run);
+        Throwable failure = run.failure.get();
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        if (failure != null) {
+            throw new RuntimeException(failure);
+        }
+    }
+
+    /**
+     * Root task of one execute() or undo(), completed once every step has finished
+     *
+     * Steps fork the dependents they unblock instead of joining them, so the stack
+     * depth stays the same however long a chain of dependent commands is. Each
+     * step adds itself to the root's pending count before it is forked, and the
+     * root completes when that count drops back to zero.
+     *
+     * A step that fails records its exception here instead of completing the root
+     * exceptionally, so the root still waits for the steps that are running.
+     */
+    private final class Run extends CountedCompleter<Void> {
+        private static final long serialVersionUID = 1L;
+
+        private final int[][] waitsFor;
+        private final int[][] unblocks;
+        private final AtomicIntegerArray pending;
+        private final boolean undo;
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        Run(int[][] waitsFor, int[][] unblocks, AtomicIntegerArray pending, boolean undo) {
+            this.waitsFor = waitsFor;
+            this.unblocks = unblocks;
+            this.pending = pending;
+            this.undo = undo;
+        }
+
+        @Override
+        public void compute() {
+            for (int i = 0; i < commands.length; i++) {
+                if (waitsFor[i].length == 0) {
+                    addToPendingCount(1);
+                    new Step(this, i).fork();
+                }
+            }
+            tryComplete();
+        }
+    }
+
+    /**
+     * Runs one command, then forks the dependents it was the last prerequisite of
+     */
+    private final class Step extends CountedCompleter<Void> {
+        private static final long serialVersionUID = 1L;
+
+        private final Run run;
+        private final int index;
+
+        Step(Run run, int index) {
+            super(run);
+            this.run = run;
+            this.index = index;
+        }
+
+        @Override
+        public void compute() {
+            // Once a command has failed do not start more commands
+            if (run.failure.get() == null) {
+                try {
+                    if (!run.undo) {
+                        commands[index].execute();
+                        executed[index] = true;
+                    } else if (executed[index]) {
+                        commands[index].undo();
+                        executed[index] = false;
+                    }
+                    for (int next : run.unblocks[index]) {
+                        if (run.pending.decrementAndGet(next) == 0) {
+                            run.addToPendingCount(1);
+                            new Step(run, next).fork();
+                        }
+                    }
+                } catch (Throwable e) {
+                    fail(e);
+                }
+            }
+            tryComplete();
+        }
+
+        private void fail(Throwable e) {
+            if (!run.failure.compareAndSet(null, e)) {
+                Throwable first = run.failure.get();
+                if (first != e) {
+                    first.addSuppressed(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Builder for ParallelMacroCommand
+     * Commands run on the common ForkJoinPool unless another pool is set
+     */
+    public static class ParallelMacroCommandBuilder {
+        private final List<Command> commands = new ArrayList<>();
+        private final Map<Command, Integer> indexes = new IdentityHashMap<>();
+        private final List<int[]> edges = new ArrayList<>();
+        private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+        /**
+         * Adds a command with no dependencies yet
+         * @param command The command to add; each instance may be added once
+         */
+        public ParallelMacroCommandBuilder addCommand(Command command) {
+            if (command == null) {
+                throw new IllegalArgumentException("Command must not be null");
+            }
+            if (indexes.putIfAbsent(command, commands.size()) != null) {
+                throw new IllegalArgumentException("Command added twice: " + command);
+            }
+            commands.add(command);
+            return this;
+        }
+
+        /**
+         * Declares that one command must finish before another starts
+         * Both commands must have been added already
+         * @param before The command that runs first
+         * @param after The command that waits for it
+         */
+        public ParallelMacroCommandBuilder addDependency(Command before, Command after) {
+            edges.add(new int[] {indexOf(before), indexOf(after)});
+            return this;
+        }
+
+        /**
+         * Sets the pool the commands are run on
+         * @param pool The pool to use
+         */
+        public ParallelMacroCommandBuilder setPool(ForkJoinPool pool) {
+            this.pool = pool;
+            return this;
+        }
+
+        /**
+         * Builds the macro
+         * @throws IllegalArgumentException if the dependencies contain a cycle
+         */
+        public ParallelMacroCommand build() {
+            int count = commands.size();
+            int[] outDegree = new int[count];
+            int[] inDegree = new int[count];
+            for (int[] edge : edges) {
+                outDegree[edge[0]]++;
+                inDegree[edge[1]]++;
+            }
+            int[][] dependents = new int[count][];
+            int[][] prerequisites = new int[count][];
+            for (int i = 0; i < count; i++) {
+                dependents[i] = new int[outDegree[i]];
+                prerequisites[i] = new int[inDegree[i]];
+            }
+            int[] outFill = new int[count];
+            int[] inFill = new int[count];
+            for (int[] edge : edges) {
+                dependents[edge[0]][outFill[edge[0]]++] = edge[1];
+                prerequisites[edge[1]][inFill[edge[1]]++] = edge[0];
+            }
+            checkAcyclic(dependents, inDegree);
+            return new ParallelMacroCommand(this, dependents, prerequisites);
+        }
+
+        private int indexOf(Command command) {
+            Integer index = indexes.get(command);
+            if (index == null) {
+                throw new IllegalArgumentException("Command not added to the macro: " + command);
+            }
+            return index;
+        }
+
+        private static void checkAcyclic(int[][] dependents, int[] inDegree) {
+            int[] remaining = inDegree.clone();
+            ArrayDeque<Integer> ready = new ArrayDeque<>();
+            for (int i = 0; i < remaining.length; i++) {
+                if (remaining[i] == 0) {
+                    ready.add(i);
+                }
+            }
+            int visited = 0;
+            while (!ready.isEmpty()) {
+                int node = ready.poll();
+                visited++;
+                for (int next : dependents[node]) {
+                    if (--remaining[next] == 0) {
+                        ready.add(next);
+                    }
+                }
+            }
+            if (visited != remaining.length) {
+                throw new IllegalArgumentException("Command dependencies contain a cycle");
+            }
+        }
+    }
+}
@@ -1,7 +1,5 @@
 package behavioral.command;
 
-import java.util.Stack;
-
 /**
  * Invoker class in the Command Pattern
  * Represents a remote control that can execute commands
@@ -10,11 +8,17 @@ import java.util.Stack;
  * 1. Holds commands but knows nothing about their implementation
  * 2. Maintains command history for undo operations
  * 3. Can execute commands and track their history
+ *
+ * The history is a fixed-capacity ring, so a long session keeps at most the
+ * configured number of undoable commands and pushing buttons allocates nothing.
  */
 public class RemoteControl {
+    public static final int DEFAULT_HISTORY_CAPACITY = 64;
+
     private Command[] onCommands;
     private Command[] offCommands;
-    private Command undoCommand;
+    private final CommandHistory history;
+    private final Command noCommand;
     private static final int NUM_COMMANDS = 7;
 
     /**
@@ -22,15 +26,23 @@ public class RemoteControl {
      * Initializes all slots with a no-operation command
      */
     public RemoteControl() {
+        this(DEFAULT_HISTORY_CAPACITY);
+    }
+
+    /**
+     * Creates a new remote control that remembers a limited number of commands
+     * @param historyCapacity Maximum number of commands that can be undone
+     */
+    public RemoteControl(int historyCapacity) {
+        history = new CommandHistory(historyCapacity);
         onCommands = new Command[NUM_COMMANDS];
         offCommands = new Command[NUM_COMMANDS];
 
-        Command noCommand = new NoCommand();
+        noCommand = new NoCommand();
         for (int i = 0; i < NUM_COMMANDS; i++) {
             onCommands[i] = noCommand;
             offCommands[i] = noCommand;
         }
-        undoCommand = noCommand;
     }
 
     /**
@@ -50,7 +62,7 @@ public class RemoteControl {
      */
     public void onButtonWasPushed(int slot) {
         onCommands[slot].execute();
-        undoCommand = onCommands[slot];
+        history.push(onCommands[slot]);
     }
 
     /**
@@ -59,15 +71,88 @@ public class RemoteControl {
      */
     public void offButtonWasPushed(int slot) {
         offCommands[slot].execute();
-        undoCommand = offCommands[slot];
+        history.push(offCommands[slot]);
     }
 
     /**
-     * Undoes the last command that was executed
-     * Uses the command history stack
+     * Executes a command that is not bound to a slot and records it for undo
+     * @param command The command to execute
+     */
+    public void execute(Command command) {
+        command.execute();
+        history.push(command);
+    }
+
+    /**
+     * Gets the "on" command bound to a slot
+     * @param slot The slot number (0-6)
+     * @return The command, a no-op if the slot is empty
+     */
+    public Command getOnCommand(int slot) {
+        return onCommands[slot];
+    }
+
+    /**
+     * Gets the "off" command bound to a slot
+     * @param slot The slot number (0-6)
+     * @return The command, a no-op if the slot is empty
+     */
+    public Command getOffCommand(int slot) {
+        return offCommands[slot];
+    }
+
+    /**
+     * Undoes the last command that was executed and not yet undone
+     * Does nothing once the history is exhausted
      */
     public void undoButtonWasPushed() {
-        undoCommand.undo();
+        Command command = history.undo();
+        if (command != null) {
+            command.undo();
+        }
+    }
+
+    /**
+     * Executes again the command that was undone most recently
+     * Does nothing if no command has been undone since the last button push
+     */
+    public void redoButtonWasPushed() {
+        Command command = history.redo();
+        if (command != null) {
+            command.execute();
+        }
+    }
+
+    /**
+     * Gets the number of commands that can currently be undone
+     * @return The undo depth, at most the history capacity
+     */
+    public int getUndoDepth() {
+        return history.undoCount();
+    }
+
+    /**
+     * Gets the number of undone commands that can currently be redone
+     * @return The redo depth
+     */
+    public int getRedoDepth() {
+        return history.redoCount();
+    }
+
+    /**
+     * Gets the maximum number of commands kept for undo
+     * @return The history capacity
+     */
+    public int getHistoryCapacity() {
+        return history.capacity();
+    }
+
+    /**
+     * Gets the number of command slots on this remote
+     * @return The slot count
+     */
+    public int getSlotCount() {
+        return NUM_COMMANDS;
     }
 
     /**
@@ -85,19 +170,8 @@ public class RemoteControl {
                      .append(offCommands[i].getClass().getSimpleName())
                      .append("\n");
         }
-        stringBuff.append("[undo] ").append(undoCommand.getClass().getSimpleName());
+        Command undoCommand = history.peekUndo();
+        stringBuff.append("[undo] ").append((undoCommand != null ? undoCommand : noCommand).getClass().getSimpleName());
         return stringBuff.toString();
     }
 }
-
-/**
- * No-op command for initialization
- * Implements the null object pattern to avoid null checks
- */
-class NoCommand implements Command {
-    @Override
-    public void execute() {}
-
-    @Override
-    public void undo() {}
-}
@@ -0,0 +1,170 @@
+package behavioral.command;
+
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Consumer thread of an {@link MpscRing}, with the close protocol shared by
+ * {@link CommandDispatcher} and {@link AsyncEventSink}
+ *
+ * The thread takes entries while any are published and parks briefly when the
+ * ring is empty. After close() it finishes the entries already queued and
+ * exits; from then on the owner handles entries on the calling thread through
+ * {@link #runAfterClose(Runnable)}, which first drains whatever a racing
+ * producer still queued. The same fallback applies if the thread died because
+ * an entry threw an Error, see {@link #isStopped()}. Draining outside the thread
+ * is serialized with a lock, so the ring keeps a single consumer at any time.
+ */
+final class RingDrainer {
+    private static final long IDLE_PARK_NANOS = 100_000L;
+    private static final long WAIT_PARK_NANOS = 10_000L;
+
+    private final MpscRing ring;
+    private final BooleanSupplier consumeNext;
+    private final Thread thread;
+    private final Object closeLock = new Object();
+
+    private volatile long consumedUpTo;
+    private volatile boolean closed;
+
+    /**
+     * Creates the consumer and starts its thread
+     * @param ring The ring to consume
+     * @param threadName Name of the consumer thread
+     * @param consumeNext Takes and handles the entry at the head; returns false if
+     *                    the ring is empty. An Error it throws ends the thread.
+     */
+    RingDrainer(MpscRing ring, String threadName, BooleanSupplier consumeNext) {
+        this.ring = ring;
+        this.consumeNext = consumeNext;
+        this.thread = new Thread(this::drainLoop, threadName);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Checks whether close() has been called
+     * @return true once closing has started
+     */
+    boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Checks whether producers must handle entries themselves
+     * True once close() has been called or the consumer thread has died
+     * @return true if queued entries would no longer be consumed by the thread
+     */
+    boolean isStopped() {
+        return closed || !thread.isAlive();
+    }
+
+    /**
+     * Wakes the consumer and waits a moment for a producer that found the ring full
+     */
+    void awaitSpace() {
+        LockSupport.unpark(thread);
+        LockSupport.parkNanos(WAIT_PARK_NANOS);
+    }
+
+    /**
+     * To be called by a producer after publishing an entry
+     * Handles the entry itself if the consumer thread exited before it could see it
+     */
+    void published() {
+        if (!thread.isAlive()) {
+            drainRemaining();
+        }
+    }
+
+    /**
+     * Runs an action on the calling thread after everything queued has been consumed
+     * Used for entries that arrive once the drainer is stopped
+     * @param action The action to run
+     */
+    void runAfterClose(Runnable action) {
+        awaitExit();
+        synchronized (closeLock) {
+            drainRemainingLocked();
+            action.run();
+        }
+    }
+
+    /**
+     * Waits until every entry claimed before this call has been consumed
+     */
+    void flush() {
+        long target = ring.producerPosition();
+        LockSupport.unpark(thread);
+        while (consumedUpTo < target && thread.isAlive()) {
+            LockSupport.parkNanos(WAIT_PARK_NANOS);
+        }
+        if (!thread.isAlive()) {
+            // Closed with a racing producer, or the thread died on an Error
+            drainRemaining();
+        }
+    }
+
+    /**
+     * Consumes all queued entries and stops the consumer thread
+     */
+    void close() {
+        closed = true;
+        awaitExit();
+        drainRemaining();
+    }
+
+    private void drainLoop() {
+        while (true) {
+            boolean closing = closed;
+            boolean consumed = false;
+            while (consumeNext()) {
+                consumed = true;
+            }
+            if (!consumed) {
+                if (closing) {
+                    return;
+                }
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    private void drainRemaining() {
+        synchronized (closeLock) {
+            drainRemainingLocked();
+        }
+    }
+
+    private void drainRemainingLocked() {
+        while (consumeNext()) {
+            // Keep going until the ring is empty
+        }
+    }
+
+    private boolean consumeNext() {
+        if (!consumeNext.getAsBoolean()) {
+            return false;
+        }
+        consumedUpTo = ring.consumerPosition();
+        return true;
+    }
+
+    private void awaitExit() {
+        if (Thread.currentThread() == thread) {
+            return;
+        }
+        LockSupport.unpark(thread);
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
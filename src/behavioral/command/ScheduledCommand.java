@@ -0,0 +1,112 @@
+package behavioral.command;
+
+/**
+ * Handle for a command waiting in a {@link CommandScheduler}
+ *
+ * The handle can cancel runs that have not happened yet, and undo the last run
+ * that did happen.
+ */
+public final class ScheduledCommand {
+    final Command command;
+    final long periodTicks;
+    long deadline;
+    int bucket = -1;
+    ScheduledCommand prev;
+    ScheduledCommand next;
+
+    private final CommandScheduler scheduler;
+    private volatile boolean cancelled;
+    private volatile boolean done;
+    private volatile long runCount;
+    // Run count at the last undo, guarded by the scheduler's lock
+    private long undoneRunCount;
+
+    ScheduledCommand(CommandScheduler scheduler, Command command, long deadline, long periodTicks) {
+        this.scheduler = scheduler;
+        this.command = command;
+        this.deadline = deadline;
+        this.periodTicks = periodTicks;
+    }
+
+    /**
+     * Prevents any further runs of the command
+     * A run that has already started is not interrupted
+     * @return true if a run was still pending, false if the command had finished or was already cancelled
+     */
+    public boolean cancel() {
+        return scheduler.cancel(this);
+    }
+
+    /**
+     * Cancels further runs and undoes the most recent run, if there was one
+     * The undo is itself scheduled for the next tick, so it runs on the same
+     * thread and through the same remote control as the command did
+     * @return true if a run was undone, false if there was no run or the last one has already been undone
+     */
+    public boolean undo() {
+        return scheduler.undo(this);
+    }
+
+    /**
+     * Gets the command this handle schedules
+     * @return The command
+     */
+    public Command getCommand() {
+        return command;
+    }
+
+    /**
+     * Checks whether the command has been cancelled
+     * @return true if cancel() or undo() was called before the last run
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Checks whether a one-off command has run
+     * @return true once the command has started running, false while it is pending and for periodic commands
+     */
+    public boolean isDone() {
+        return done;
+    }
+
+    /**
+     * Checks whether the command recurs
+     * @return true if it was scheduled with a period
+     */
+    public boolean isPeriodic() {
+        return periodTicks > 0;
+    }
+
+    /**
+     * Gets the number of times the command has run so far
+     * @return The run count
+     */
+    public long getRunCount() {
+        return runCount;
+    }
+
+    void markCancelled() {
+        cancelled = true;
+    }
+
+    void markRun() {
+        runCount++;
+        if (periodTicks == 0) {
+            done = true;
+        }
+    }
+
+    /**
+     * Records that the most recent run is being undone
+     * @return false if there has been no run since the last undo
+     */
+    boolean markUndone() {
+        if (undoneRunCount == runCount) {
+            return false;
+        }
+        undoneRunCount = runCount;
+        return true;
+    }
+}
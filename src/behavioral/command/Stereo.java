@@ -3,49 +3,57 @@ package behavioral.command;
 /**
  * Receiver class for stereo operations
  * Demonstrates a complex receiver with multiple states and operations
+ *
+ * The state itself is kept in a {@link DeviceRegistry}; a Stereo is a view of one
+ * entry. The radio frequency is kept to a hundredth of a MHz, enough for the
+ * 50 kHz channel steps used in some regions.
+ *
+ * equals() and hashCode() are based on the registry and the index of the entry,
+ * so separately obtained views of one stereo are equal. Setting the event sink of
+ * a stereo sets it for its registry, and so for all other devices in it as well;
+ * the public constructor gives the stereo a registry of its own.
  */
 public class Stereo {
-    private String location;
-    private boolean isOn;
-    private String source;  // CD, DVD, Radio
-    private int volume;     // 0-100
-    private double frequency; // For radio
+    private final DeviceRegistry registry;
+    private final int index;
 
     /**
      * Creates a new Stereo with a specific location
      * @param location The location of the stereo
      */
     public Stereo(String location) {
-        this.location = location;
-        this.isOn = false;
-        this.source = "CD";
-        this.volume = 0;
-        this.frequency = 87.5; // Default FM frequency
+        this.registry = new DeviceRegistry();
+        this.index = registry.allocateStereo(location);
+    }
+
+    Stereo(DeviceRegistry registry, int index) {
+        this.registry = registry;
+        this.index = index;
     }
 
     /**
      * Turns the stereo on
      */
     public void on() {
-        isOn = true;
-        System.out.println(location + " stereo is ON");
+        registry.setStereoOn(index, true);
+        registry.emit(DeviceEvent.STEREO_ON, getLocation(), 0);
     }
 
     /**
      * Turns the stereo off
      */
     public void off() {
-        isOn = false;
-        System.out.println(location + " stereo is OFF");
+        registry.setStereoOn(index, false);
+        registry.emit(DeviceEvent.STEREO_OFF, getLocation(), 0);
     }
 
     /**
      * Sets the stereo to play a CD
      */
     public void setCD() {
-        if (isOn) {
-            source = "CD";
-            System.out.println(location + " stereo is set for CD input");
+        if (isOn()) {
+            registry.setStereoSource(index, "CD");
+            registry.emit(DeviceEvent.STEREO_CD, getLocation(), 0);
         }
     }
 
@@ -53,9 +61,9 @@ public class Stereo {
      * Sets the stereo to play a DVD
      */
     public void setDVD() {
-        if (isOn) {
-            source = "DVD";
-            System.out.println(location + " stereo is set for DVD input");
+        if (isOn()) {
+            registry.setStereoSource(index, "DVD");
+            registry.emit(DeviceEvent.STEREO_DVD, getLocation(), 0);
         }
     }
 
@@ -63,10 +71,9 @@ public class Stereo {
      * Sets the stereo to radio mode
      */
     public void setRadio() {
-        if (isOn) {
-            source = "Radio";
-            System.out.println(location + " stereo is set for Radio input");
-            System.out.println("Current frequency: " + frequency + " MHz");
+        if (isOn()) {
+            registry.setStereoSource(index, "Radio");
+            registry.emit(DeviceEvent.STEREO_RADIO, getLocation(), getFrequency());
         }
     }
 
@@ -75,9 +82,9 @@ public class Stereo {
      * @param level Volume level (0-100)
      */
     public void setVolume(int level) {
-        if (isOn && level >= 0 && level <= 100) {
-            volume = level;
-            System.out.println(location + " stereo volume set to " + volume);
+        if (isOn() && level >= 0 && level <= 100) {
+            registry.setStereoVolume(index, level);
+            registry.emit(DeviceEvent.STEREO_VOLUME, getLocation(), level);
         }
     }
 
@@ -86,18 +93,42 @@ public class Stereo {
      * @param freq Radio frequency in MHz (87.5-108.0)
      */
     public void setFrequency(double freq) {
-        if (isOn && source.equals("Radio") && freq >= 87.5 && freq <= 108.0) {
-            frequency = freq;
-            System.out.println(location + " radio frequency set to " + frequency + " MHz");
+        if (isOn() && getSource().equals("Radio") && freq >= 87.5 && freq <= 108.0) {
+            registry.setStereoFrequency(index, freq);
+            registry.emit(DeviceEvent.STEREO_FREQUENCY, getLocation(), getFrequency());
         }
     }
 
+    /**
+     * Sets where this stereo reports its state changes
+     * Applies to every device sharing its {@link DeviceRegistry}
+     * @param eventSink The sink, e.g. {@link DeviceEventSink#NO_OP} to report nothing
+     */
+    public void setEventSink(DeviceEventSink eventSink) {
+        registry.setEventSink(eventSink);
+    }
+
+    /**
+     * Puts the stereo back into a previously recorded state without announcing it
+     * Used when recovering device state from a {@link CommandJournal}
+     * @param on Whether the stereo is on
+     * @param source Input source (CD, DVD, Radio)
+     * @param volume Volume level (0-100)
+     * @param frequency Radio frequency in MHz
+     */
+    void restoreState(boolean on, String source, int volume, double frequency) {
+        registry.setStereoOn(index, on);
+        registry.setStereoSource(index, source);
+        registry.setStereoVolume(index, volume);
+        registry.setStereoFrequency(index, frequency);
+    }
+
     /**
      * Gets the current state of the stereo
      * @return true if the stereo is on
      */
     public boolean isOn() {
-        return isOn;
+        return registry.isStereoOn(index);
     }
 
     /**
@@ -105,7 +136,7 @@ public class Stereo {
      * @return Current input source
      */
     public String getSource() {
-        return source;
+        return registry.stereoSource(index);
     }
 
     /**
@@ -113,7 +144,7 @@ public class Stereo {
      * @return Volume level (0-100)
      */
     public int getVolume() {
-        return volume;
+        return registry.stereoVolume(index);
     }
 
     /**
@@ -121,7 +152,7 @@ public class Stereo {
      * @return Radio frequency in MHz
      */
     public double getFrequency() {
-        return frequency;
+        return registry.stereoFrequency(index);
     }
 
     /**
@@ -129,6 +160,16 @@ public class Stereo {
      * @return The location string
      */
     public String getLocation() {
-        return location;
+        return registry.stereoLocation(index);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof Stereo && ((Stereo) other).registry == registry && ((Stereo) other).index == index;
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(registry) * 31 + index;
     }
 }
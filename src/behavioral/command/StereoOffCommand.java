@@ -3,7 +3,7 @@ package behavioral.command;
 /**
  * Concrete Command for turning off stereo
  */
-public class StereoOffCommand implements Command {
+public class StereoOffCommand implements CoalescableCommand {
     private Stereo stereo;
     private String previousSource;
     private int previousVolume;
@@ -42,4 +42,19 @@ public class StereoOffCommand implements Command {
         }
         stereo.setVolume(previousVolume);
     }
+
+    @Override
+    public Object getReceiver() {
+        return stereo;
+    }
+
+    @Override
+    public String getProperty() {
+        return "power";
+    }
+
+    @Override
+    public boolean isNoOp() {
+        return !stereo.isOn();
+    }
 }
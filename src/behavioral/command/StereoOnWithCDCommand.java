@@ -4,7 +4,7 @@ package behavioral.command;
  * Concrete Command for turning on stereo with CD
  * Demonstrates command that executes multiple operations in sequence
  */
-public class StereoOnWithCDCommand implements Command {
+public class StereoOnWithCDCommand implements CoalescableCommand {
     private Stereo stereo;
     private int previousVolume;
 
@@ -38,4 +38,19 @@ public class StereoOnWithCDCommand implements Command {
             stereo.off();
         }
     }
+
+    @Override
+    public Object getReceiver() {
+        return stereo;
+    }
+
+    @Override
+    public String getProperty() {
+        return "power";
+    }
+
+    @Override
+    public boolean isNoOp() {
+        return stereo.isOn() && "CD".equals(stereo.getSource()) && stereo.getVolume() == 11;
+    }
 }
@@ -0,0 +1,54 @@
+package behavioral.command;
+
+/**
+ * Concrete Command for changing the volume of a stereo
+ * Remembers the volume it replaced so that undo can restore it
+ */
+public class StereoVolumeCommand implements CoalescableCommand {
+    private final Stereo stereo;
+    private final int level;
+    private int previousVolume;
+
+    /**
+     * Creates a new command for setting the stereo volume
+     * @param stereo The stereo to control
+     * @param level Volume level (0-100)
+     */
+    public StereoVolumeCommand(Stereo stereo, int level) {
+        this.stereo = stereo;
+        this.level = level;
+    }
+
+    /**
+     * Executes the command by setting the volume
+     */
+    @Override
+    public void execute() {
+        previousVolume = stereo.getVolume();
+        stereo.setVolume(level);
+    }
+
+    /**
+     * Undoes the command by restoring the previous volume
+     */
+    @Override
+    public void undo() {
+        stereo.setVolume(previousVolume);
+    }
+
+    @Override
+    public Object getReceiver() {
+        return stereo;
+    }
+
+    @Override
+    public String getProperty() {
+        return "volume";
+    }
+
+    @Override
+    public boolean isNoOp() {
+        // Stereo ignores volume changes while off or out of range
+        return !stereo.isOn() || level < 0 || level > 100 || stereo.getVolume() == level;
+    }
+}
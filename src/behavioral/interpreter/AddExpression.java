@@ -13,4 +13,22 @@ public class AddExpression implements Expression {
     public int interpret() {
         return left.interpret() + right.interpret();
     }
+
+    @Override
+    public long interpretLong(boolean exact) {
+        return Arithmetic.add(left.interpretLong(exact), right.interpretLong(exact), exact);
+    }
+
+    @Override
+    public long interpretDecimal(int scale, boolean exact) {
+        return Arithmetic.add(left.interpretDecimal(scale, exact), right.interpretDecimal(scale, exact), exact);
+    }
+
+    Expression getLeft() {
+        return left;
+    }
+
+    Expression getRight() {
+        return right;
+    }
 }
@@ -0,0 +1,105 @@
+package behavioral.interpreter;
+
+import java.math.BigInteger;
+
+/**
+ * Long and fixed-point decimal operations shared by the expression classes, each
+ * either wrapping on overflow like the Java operators or checked like Math.addExact
+ */
+final class Arithmetic {
+    private static final long[] POWERS_OF_TEN = new long[19];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private Arithmetic() {
+    }
+
+    static long add(long left, long right, boolean exact) {
+        return exact ? Math.addExact(left, right) : left + right;
+    }
+
+    static long subtract(long left, long right, boolean exact) {
+        return exact ? Math.subtractExact(left, right) : left - right;
+    }
+
+    static long multiply(long left, long right, boolean exact) {
+        return exact ? Math.multiplyExact(left, right) : left * right;
+    }
+
+    static long divide(long left, long right, boolean exact) {
+        if (exact && left == Long.MIN_VALUE && right == -1) {
+            throw new ArithmeticException("long overflow");
+        }
+        return left / right;
+    }
+
+    static long negate(long value, boolean exact) {
+        return exact ? Math.negateExact(value) : -value;
+    }
+
+    /**
+     * Multiplies two decimals of the same scale
+     * Only the scaled result has to fit in a long; the raw product may be wider
+     */
+    static long multiplyDecimal(long left, long right, int scale, boolean exact) {
+        long power = powerOfTen(scale);
+        long product = left * right;
+        // The overflow test of Math.multiplyExact, without the exception
+        if (left == 0 || product / left == right && !(left == -1 && right == Long.MIN_VALUE)) {
+            return product / power;
+        }
+        return narrow(BigInteger.valueOf(left).multiply(BigInteger.valueOf(right))
+                .divide(BigInteger.valueOf(power)), exact);
+    }
+
+    /**
+     * Divides two decimals of the same scale
+     * Only the quotient has to fit in a long; the dividend times 10^scale may be wider
+     */
+    static long divideDecimal(long left, long right, int scale, boolean exact) {
+        if (right == 0) {
+            throw new ArithmeticException("/ by zero");
+        }
+        long power = powerOfTen(scale);
+        // Both bounds are checked, since Math.abs(Long.MIN_VALUE) is still negative
+        if (left <= Long.MAX_VALUE / power && left >= Long.MIN_VALUE / power) {
+            return divide(left * power, right, exact);
+        }
+        return narrow(BigInteger.valueOf(left).multiply(BigInteger.valueOf(power))
+                .divide(BigInteger.valueOf(right)), exact);
+    }
+
+    /**
+     * Converts a decimal to another scale, truncating digits that are dropped;
+     * this is where the scale requested from the leaves of a tree is checked
+     */
+    static long rescale(long unscaled, int from, int to, boolean exact) {
+        powerOfTen(to);
+        if (to >= from) {
+            return multiply(unscaled, powerOfTen(to - from), exact);
+        }
+        return unscaled / powerOfTen(from - to);
+    }
+
+    /**
+     * Slow path for results computed through a wider intermediate
+     */
+    private static long narrow(BigInteger value, boolean exact) {
+        if (exact && value.bitLength() > 63) {
+            throw new ArithmeticException("long overflow");
+        }
+        return value.longValue();
+    }
+
+    static long powerOfTen(int scale) {
+        if (scale < 0 || scale >= POWERS_OF_TEN.length) {
+            throw new IllegalArgumentException("Scale must be between 0 and " + (POWERS_OF_TEN.length - 1));
+        }
+        return POWERS_OF_TEN[scale];
+    }
+}
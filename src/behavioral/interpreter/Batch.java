@@ -0,0 +1,80 @@
+package behavioral.interpreter;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Input columns for {@link BatchEvaluator}: one array of values per variable name,
+ * with one element per row
+ *
+ * The arrays are used as they are, not copied, so they can be refilled and the
+ * batch evaluated again. Columns may be longer than the batch; only the first
+ * rows elements are read. A batch is not thread-safe while columns are bound.
+ */
+public final class Batch {
+    private final int rows;
+    private final Map<String, int[]> intColumns = new HashMap<>();
+    private final Map<String, long[]> longColumns = new HashMap<>();
+
+    /**
+     * Creates a batch without columns
+     * @param rows The number of rows
+     */
+    public Batch(int rows) {
+        if (rows < 0) {
+            throw new IllegalArgumentException("Row count must not be negative");
+        }
+        this.rows = rows;
+    }
+
+    /**
+     * Binds a variable to a column of int values, replacing any column bound before
+     * @param name The variable name
+     * @param column The values, at least one per row
+     */
+    public void bind(String name, int[] column) {
+        checkColumn(name, column == null ? -1 : column.length);
+        longColumns.remove(name);
+        intColumns.put(name, column);
+    }
+
+    /**
+     * Binds a variable to a column of long values, replacing any column bound before.
+     * Expressions compute with int, so each value is used as if cast to int.
+     * @param name The variable name
+     * @param column The values, at least one per row
+     */
+    public void bind(String name, long[] column) {
+        checkColumn(name, column == null ? -1 : column.length);
+        intColumns.remove(name);
+        longColumns.put(name, column);
+    }
+
+    /**
+     * Gets the number of rows
+     * @return The row count
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    int[] intColumn(String name) {
+        return intColumns.get(name);
+    }
+
+    long[] longColumn(String name) {
+        return longColumns.get(name);
+    }
+
+    private void checkColumn(String name, int length) {
+        if (name == null) {
+            throw new IllegalArgumentException("Variable name must not be null");
+        }
+        if (length < 0) {
+            throw new IllegalArgumentException("Column must not be null");
+        }
+        if (length < rows) {
+            throw new IllegalArgumentException("Column " + name + " has " + length + " values for " + rows + " rows");
+        }
+    }
+}
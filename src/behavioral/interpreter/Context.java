@@ -0,0 +1,102 @@
+package behavioral.interpreter;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Values of the variables used by {@link VariableExpression}
+ *
+ * Each variable name gets a slot number the first time it is used, so an
+ * expression looks its variables up by index rather than by name. Change a
+ * binding with {@link #set(String, int)} and interpret the same expression again
+ * to evaluate a formula for new inputs. Every set() gives the slot a new version
+ * number, which caches use to tell whether a value may have changed. A context
+ * is not thread-safe.
+ */
+public class Context {
+    private final Map<String, Integer> slots = new HashMap<>();
+    private String[] names = new String[8];
+    private int[] values = new int[8];
+    private boolean[] bound = new boolean[8];
+    private long[] versions = new long[8];
+    private long version;
+
+    /**
+     * Binds a variable to a value
+     * @param name The variable name
+     * @param value The new value
+     */
+    public void set(String name, int value) {
+        int slot = slotOf(name);
+        values[slot] = value;
+        bound[slot] = true;
+        versions[slot] = ++version;
+    }
+
+    /**
+     * Gets the value of a variable
+     * @param name The variable name
+     * @return The bound value
+     * @throws IllegalStateException if the variable has no value
+     */
+    public int get(String name) {
+        return valueAt(slotOf(name));
+    }
+
+    /**
+     * Checks whether a variable has a value
+     * @param name The variable name
+     * @return true if set() was called for the variable
+     */
+    public boolean isBound(String name) {
+        Integer slot = slots.get(name);
+        return slot != null && bound[slot];
+    }
+
+    /**
+     * Gets the number of distinct variable names used with this context
+     * @return The variable count
+     */
+    public int getVariableCount() {
+        return slots.size();
+    }
+
+    int slotOf(String name) {
+        if (name == null) {
+            throw new IllegalArgumentException("Variable name must not be null");
+        }
+        Integer slot = slots.get(name);
+        if (slot == null) {
+            slot = slots.size();
+            if (slot == values.length) {
+                names = Arrays.copyOf(names, slot * 2);
+                values = Arrays.copyOf(values, slot * 2);
+                bound = Arrays.copyOf(bound, slot * 2);
+                versions = Arrays.copyOf(versions, slot * 2);
+            }
+            names[slot] = name;
+            slots.put(name, slot);
+        }
+        return slot;
+    }
+
+    int valueAt(int slot) {
+        if (!bound[slot]) {
+            throw new IllegalStateException("Variable " + names[slot] + " is not bound");
+        }
+        return values[slot];
+    }
+
+    long versionAt(int slot) {
+        return versions[slot];
+    }
+
+    /**
+     * Gets the version given by the latest set(), so a cache can tell that no slot has changed
+     * @return The highest version of any slot, 0 before the first set()
+     */
+    long latestVersion() {
+        return version;
+    }
+}
@@ -2,4 +2,27 @@ package behavioral.interpreter;
 
 public interface Expression {
     int interpret();
+
+    /**
+     * Evaluates the expression with long arithmetic. The default widens the result
+     * of interpret(); it is used by expressions that only compute with int, such as
+     * the results of ExpressionOptimizer and ExpressionCompiler.
+     * @param exact Whether to throw ArithmeticException on overflow instead of wrapping
+     * @return The value
+     */
+    default long interpretLong(boolean exact) {
+        return interpret();
+    }
+
+    /**
+     * Evaluates the expression with fixed-point decimal arithmetic: every value is a
+     * long holding the decimal value times 10^scale, so 12.34 at scale 2 is 1234.
+     * Multiplication and division truncate toward zero at the given scale.
+     * @param scale The number of decimal places, from 0 to 18
+     * @param exact Whether to throw ArithmeticException on overflow instead of wrapping
+     * @return The value times 10^scale
+     */
+    default long interpretDecimal(int scale, boolean exact) {
+        return Arithmetic.rescale(interpretLong(exact), 0, scale, exact);
+    }
 }
@@ -0,0 +1,457 @@
+package behavioral.interpreter;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compiles an expression tree into a generated class
+ *
+ * The tree is translated into JVM bytecode that pushes the numbers and applies
+ * the arithmetic operators directly, so evaluating it is straight-line code
+ * without virtual calls, which the JIT compiles like any hand-written method.
+ * Variables and expressions of types the compiler does not know are kept and
+ * called through interpret(). A subexpression shared by the {@link ExpressionOptimizer}
+ * is computed once per generated method and kept in a local variable for its
+ * other uses there.
+ *
+ * HotSpot does not JIT-compile methods longer than 8000 bytes of bytecode, so
+ * large trees are split into several methods that call each other. The constant
+ * pool of a class file limits a compiled tree to about 60,000 distinct numbers
+ * outside the 16-bit range; larger trees are rejected.
+ *
+ * The generated class is defined in a class loader of its own, so it can be
+ * unloaded once the compiled expression is no longer used.
+ */
+public final class ExpressionCompiler {
+    // ineg, iadd, isub, imul, idiv, irem by FlatExpression kind
+    private static final int[] OPCODES = {0, 0, 0, 0x74, 0x60, 0x64, 0x68, 0x6c, 0x70};
+
+    // Stay well below HotSpot's 8000-byte limit for compiling a method
+    private static final int METHOD_BUDGET = 7000;
+    private static final int CALL_COST = 4;
+    // dup and istore with a wide index
+    private static final int STORE_COST = 5;
+
+    private static final String EXPRESSION = "behavioral/interpreter/Expression";
+    private static final String OPAQUE_DESCRIPTOR = "[L" + EXPRESSION + ";";
+    private static final String PART_DESCRIPTOR = "(" + OPAQUE_DESCRIPTOR + ")I";
+    private static final AtomicLong CLASS_COUNTER = new AtomicLong();
+
+    private ExpressionCompiler() {
+    }
+
+    /**
+     * Compiles an expression
+     * @param expression The expression tree to compile
+     * @return An expression with the same result, evaluated by generated code
+     * @throws IllegalArgumentException if the tree is too large for a class file
+     */
+    public static Expression compile(Expression expression) {
+        if (expression == null) {
+            throw new IllegalArgumentException("Expression must not be null");
+        }
+        String className = "behavioral/interpreter/CompiledExpression$" + CLASS_COUNTER.incrementAndGet();
+        ClassFileWriter writer = new ClassFileWriter(FlatExpression.flatten(expression), className);
+        byte[] classFile = writer.write();
+        Class<?> compiled = new CompiledExpressionLoader().define(className.replace('/', '.'), classFile);
+        try {
+            Expression[] opaque = writer.opaque.toArray(new Expression[0]);
+            return (Expression) compiled.getConstructor(Expression[].class).newInstance((Object) opaque);
+        } catch (InstantiationException | IllegalAccessException | NoSuchMethodException
+                | InvocationTargetException e) {
+            throw new IllegalStateException("Cannot instantiate compiled expression", e);
+        }
+    }
+
+    /**
+     * Writes a Java 8 class file implementing Expression for one tree
+     */
+    private static final class ClassFileWriter {
+        private final FlatExpression tree;
+        private final String className;
+        private final List<Expression> opaque = new ArrayList<>();
+        private final int[] opaqueIndexes;
+        private final ConstantPool pool = new ConstantPool();
+        private final boolean[] split;
+        private final int[] methodOf;
+        private final List<Integer> methodRoots = new ArrayList<>();
+        private final int[] uses;
+        // Local variable holding the value of a shared node in the method being written, 0 if none
+        private final int[] localOf;
+
+        ClassFileWriter(FlatExpression tree, String className) {
+            this.tree = tree;
+            this.className = className;
+            this.opaqueIndexes = new int[tree.size];
+            for (int id = 0; id < tree.size; id++) {
+                if (tree.kinds[id] == FlatExpression.VARIABLE || tree.kinds[id] == FlatExpression.OPAQUE) {
+                    opaqueIndexes[id] = opaque.size();
+                    opaque.add(tree.nodes[id]);
+                }
+            }
+            this.split = new boolean[tree.size];
+            this.methodOf = new int[tree.size];
+            this.uses = tree.useCounts();
+            this.localOf = new int[tree.size];
+            splitIntoMethods();
+        }
+
+        /**
+         * Moves subtrees into methods of their own until every method fits the budget
+         * The costs count every use of a shared node in full, so they never fall short
+         * of the code written
+         */
+        private void splitIntoMethods() {
+            int[] cost = new int[tree.size];
+            for (int id = 0; id < tree.size; id++) {
+                switch (tree.kinds[id]) {
+                    case FlatExpression.NUMBER:
+                        cost[id] = pushCost(tree.values[id]);
+                        break;
+                    case FlatExpression.VARIABLE:
+                    case FlatExpression.OPAQUE:
+                        cost[id] = 7 + pushCost(opaqueIndexes[id]);
+                        break;
+                    case FlatExpression.NEGATE:
+                        int operand = tree.lefts[id];
+                        if (cost[operand] + 1 > METHOD_BUDGET) {
+                            split[operand] = true;
+                            cost[operand] = CALL_COST;
+                        }
+                        cost[id] = cost[operand] + 1;
+                        break;
+                    default:
+                        int left = tree.lefts[id];
+                        int right = tree.rights[id];
+                        if (cost[left] + cost[right] + 1 > METHOD_BUDGET) {
+                            int larger = cost[left] >= cost[right] ? left : right;
+                            split[larger] = true;
+                            cost[larger] = CALL_COST;
+                        }
+                        if (cost[left] + cost[right] + 1 > METHOD_BUDGET) {
+                            int other = split[left] ? right : left;
+                            split[other] = true;
+                            cost[other] = CALL_COST;
+                        }
+                        cost[id] = cost[left] + cost[right] + 1;
+                }
+                if (isCached(id)) {
+                    cost[id] += STORE_COST;
+                }
+            }
+            Arrays.fill(methodOf, -1);
+            int root = tree.size - 1;
+            methodOf[root] = 0;
+            methodRoots.add(root);
+            for (int id = 0; id < tree.size; id++) {
+                if (split[id]) {
+                    methodOf[id] = methodRoots.size();
+                    methodRoots.add(id);
+                }
+            }
+        }
+
+        byte[] write() {
+            int thisClass = pool.classRef(className);
+            int objectClass = pool.classRef("java/lang/Object");
+            int expressionClass = pool.classRef(EXPRESSION);
+            int opaqueField = pool.fieldRef(className, "opaque", OPAQUE_DESCRIPTOR);
+            int objectInit = pool.methodRef("java/lang/Object", "<init>", "()V");
+            int interpret = pool.interfaceMethodRef(EXPRESSION, "interpret", "()I");
+            int code = pool.utf8("Code");
+            int fieldName = pool.utf8("opaque");
+            int fieldDescriptor = pool.utf8(OPAQUE_DESCRIPTOR);
+
+            List<byte[]> methods = new ArrayList<>();
+            Bytes init = new Bytes()
+                    .u1(0x2a).u1(0xb7).u2(objectInit)          // aload_0; invokespecial Object.<init>
+                    .u1(0x2a).u1(0x2b).u1(0xb5).u2(opaqueField) // aload_0; aload_1; putfield opaque
+                    .u1(0xb1);                                  // return
+            methods.add(method(0x0001, "<init>", "(" + OPAQUE_DESCRIPTOR + ")V", code, init, 2, 2));
+            Bytes entry = new Bytes()
+                    .u1(0x2a).u1(0xb4).u2(opaqueField)          // aload_0; getfield opaque
+                    .u1(0xb8).u2(partRef(0))                    // invokestatic part0
+                    .u1(0xac);                                  // ireturn
+            methods.add(method(0x0001, "interpret", "()I", code, entry, 1, 1));
+            for (int part = 0; part < methodRoots.size(); part++) {
+                methods.add(part(part, code, interpret));
+            }
+
+            if (pool.count() > 0xFFFF || methods.size() > 0xFFFF) {
+                throw new IllegalArgumentException("Expression is too large to compile: " + tree.size + " nodes");
+            }
+            Bytes out = new Bytes()
+                    .u4(0xCAFEBABE).u2(0).u2(52)
+                    .u2(pool.count() + 1).bytes(pool.bytes())
+                    .u2(0x0031)                                 // public final super
+                    .u2(thisClass).u2(objectClass)
+                    .u2(1).u2(expressionClass)
+                    .u2(1).u2(0x0012).u2(fieldName).u2(fieldDescriptor).u2(0)
+                    .u2(methods.size());
+            for (byte[] method : methods) {
+                out.bytes(method);
+            }
+            return out.u2(0).toByteArray();
+        }
+
+        private int partRef(int part) {
+            return pool.methodRef(className, "part" + part, PART_DESCRIPTOR);
+        }
+
+        /**
+         * Emits the bytecode of one method, walking its subtree with an explicit stack
+         */
+        private byte[] part(int part, int code, int interpret) {
+            int root = methodRoots.get(part);
+            Bytes body = new Bytes();
+            int height = 0;
+            int maxHeight = 1;
+            List<Integer> cached = new ArrayList<>();
+            int[] work = new int[16];
+            int top = 0;
+            work[top++] = root;
+            while (top > 0) {
+                int item = work[--top];
+                if (item < 0) {
+                    body.u1(OPCODES[tree.kinds[~item]]);
+                    if (tree.kinds[~item] != FlatExpression.NEGATE) {
+                        height--;
+                    }
+                    if (~item != root) {
+                        maxHeight = Math.max(maxHeight, store(body, ~item, cached, height));
+                    }
+                    continue;
+                }
+                if (localOf[item] > 0) {
+                    localInstruction(body, 0x15, localOf[item]);   // iload
+                    maxHeight = Math.max(maxHeight, ++height);
+                    continue;
+                }
+                if (item != root && split[item]) {
+                    body.u1(0x2a).u1(0xb8).u2(partRef(methodOf[item]));
+                    maxHeight = Math.max(maxHeight, height + 1);
+                    height++;
+                    maxHeight = Math.max(maxHeight, store(body, item, cached, height));
+                } else if (tree.kinds[item] == FlatExpression.NUMBER) {
+                    pushInt(body, tree.values[item]);
+                    maxHeight = Math.max(maxHeight, ++height);
+                } else if (tree.kinds[item] == FlatExpression.VARIABLE || tree.kinds[item] == FlatExpression.OPAQUE) {
+                    body.u1(0x2a);
+                    pushInt(body, opaqueIndexes[item]);
+                    body.u1(0x32).u1(0xb9).u2(interpret).u1(1).u1(0); // aaload; invokeinterface
+                    maxHeight = Math.max(maxHeight, height + 2);
+                    height++;
+                    maxHeight = Math.max(maxHeight, store(body, item, cached, height));
+                } else {
+                    if (top + 3 > work.length) {
+                        work = Arrays.copyOf(work, work.length * 2);
+                    }
+                    work[top++] = ~item;
+                    if (tree.kinds[item] != FlatExpression.NEGATE) {
+                        work[top++] = tree.rights[item];
+                    }
+                    work[top++] = tree.lefts[item];
+                }
+            }
+            body.u1(0xac);
+            int maxLocals = 1 + cached.size();
+            for (int id : cached) {
+                localOf[id] = 0;
+            }
+            return method(0x000A, "part" + part, PART_DESCRIPTOR, code, body, maxHeight, maxLocals);
+        }
+
+        private boolean isCached(int id) {
+            return uses[id] > 1 && tree.kinds[id] != FlatExpression.NUMBER;
+        }
+
+        /**
+         * Copies the value just computed for a shared node into a new local variable
+         * @return The stack height needed for the copy
+         */
+        private int store(Bytes body, int id, List<Integer> cached, int height) {
+            if (!isCached(id)) {
+                return height;
+            }
+            cached.add(id);
+            localOf[id] = cached.size();
+            body.u1(0x59);                                      // dup
+            localInstruction(body, 0x36, localOf[id]);          // istore
+            return height + 1;
+        }
+
+        private static void localInstruction(Bytes body, int opcode, int local) {
+            if (local <= 3) {
+                body.u1((opcode == 0x15 ? 0x1a : 0x3b) + local); // iload_<n>, istore_<n>
+            } else if (local <= 0xFF) {
+                body.u1(opcode).u1(local);
+            } else {
+                body.u1(0xc4).u1(opcode).u2(local);             // wide
+            }
+        }
+
+        private void pushInt(Bytes body, int value) {
+            if (value >= -1 && value <= 5) {
+                body.u1(0x03 + value);                          // iconst_<n>
+            } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                body.u1(0x10).u1(value);                        // bipush
+            } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                body.u1(0x11).u2(value);                        // sipush
+            } else {
+                body.u1(0x13).u2(pool.integer(value));          // ldc_w
+            }
+        }
+
+        private static int pushCost(int value) {
+            if (value >= -1 && value <= 5) {
+                return 1;
+            }
+            return value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE ? 2 : 3;
+        }
+
+        private byte[] method(int access, String name, String descriptor, int code, Bytes body,
+                              int maxStack, int maxLocals) {
+            byte[] instructions = body.toByteArray();
+            return new Bytes()
+                    .u2(access).u2(pool.utf8(name)).u2(pool.utf8(descriptor))
+                    .u2(1)
+                    .u2(code).u4(12 + instructions.length)
+                    .u2(maxStack).u2(maxLocals).u4(instructions.length).bytes(instructions)
+                    .u2(0).u2(0)                                // no exception table, no attributes
+                    .toByteArray();
+        }
+    }
+
+    /**
+     * Constant pool with deduplicated entries
+     */
+    private static final class ConstantPool {
+        private final Bytes bytes = new Bytes();
+        private final Map<String, Integer> indexes = new HashMap<>();
+        private int count;
+
+        int utf8(String value) {
+            Integer index = indexes.get("U" + value);
+            if (index == null) {
+                bytes.u1(1).utf(value);
+                index = add("U" + value);
+            }
+            return index;
+        }
+
+        int integer(int value) {
+            Integer index = indexes.get("I" + value);
+            if (index == null) {
+                bytes.u1(3).u4(value);
+                index = add("I" + value);
+            }
+            return index;
+        }
+
+        int classRef(String name) {
+            return reference("C", 7, utf8(name), -1);
+        }
+
+        int fieldRef(String owner, String name, String descriptor) {
+            return reference("F", 9, classRef(owner), nameAndType(name, descriptor));
+        }
+
+        int methodRef(String owner, String name, String descriptor) {
+            return reference("M", 10, classRef(owner), nameAndType(name, descriptor));
+        }
+
+        int interfaceMethodRef(String owner, String name, String descriptor) {
+            return reference("N", 11, classRef(owner), nameAndType(name, descriptor));
+        }
+
+        private int nameAndType(String name, String descriptor) {
+            return reference("T", 12, utf8(name), utf8(descriptor));
+        }
+
+        private int reference(String prefix, int tag, int first, int second) {
+            String key = prefix + first + ":" + second;
+            Integer index = indexes.get(key);
+            if (index == null) {
+                bytes.u1(tag).u2(first);
+                if (second >= 0) {
+                    bytes.u2(second);
+                }
+                index = add(key);
+            }
+            return index;
+        }
+
+        private int add(String key) {
+            int index = ++count;
+            indexes.put(key, index);
+            return index;
+        }
+
+        int count() {
+            return count;
+        }
+
+        byte[] bytes() {
+            return bytes.toByteArray();
+        }
+    }
+
+    /**
+     * Growable big-endian byte buffer
+     */
+    private static final class Bytes {
+        private byte[] data = new byte[64];
+        private int length;
+
+        Bytes u1(int value) {
+            if (length == data.length) {
+                data = Arrays.copyOf(data, length * 2);
+            }
+            data[length++] = (byte) value;
+            return this;
+        }
+
+        Bytes u2(int value) {
+            return u1(value >>> 8).u1(value);
+        }
+
+        Bytes u4(int value) {
+            return u2(value >>> 16).u2(value);
+        }
+
+        Bytes bytes(byte[] values) {
+            for (byte value : values) {
+                u1(value);
+            }
+            return this;
+        }
+
+        Bytes utf(String value) {
+            // Class file names and descriptors here are plain ASCII
+            u2(value.length());
+            for (int i = 0; i < value.length(); i++) {
+                u1(value.charAt(i));
+            }
+            return this;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(data, length);
+        }
+    }
+
+    private static final class CompiledExpressionLoader extends ClassLoader {
+        CompiledExpressionLoader() {
+            super(Expression.class.getClassLoader());
+        }
+
+        Class<?> define(String name, byte[] classFile) {
+            return defineClass(name, classFile, 0, classFile.length);
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package behavioral.interpreter;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Rewrites an expression tree into a smaller one with the same result
+ *
+ * <ul>
+ *   <li>Constant folding: subtrees without variables are replaced by their value,
+ *       except divisions by zero, which are left to fail when interpreted</li>
+ *   <li>Identities: x + 0, x - 0, x * 1 and x / 1 become x, x * -1 and 0 - x
+ *       become -x, and --x becomes x</li>
+ *   <li>Reassociation: constants are collected, so (x + 1) - 3 becomes x + -2
+ *       and (x * 2) * 3 becomes x * 6; int arithmetic wraps, so this never
+ *       changes a result</li>
+ *   <li>Common subexpressions: structurally equal subtrees are hash-consed into
+ *       one node, with the operands of + and * put in a canonical order, so the
+ *       result is a DAG in which each distinct subexpression appears once</li>
+ * </ul>
+ * Rules that would drop a subtree, such as x * 0 or x - x, are only applied when
+ * the dropped subtree cannot throw: it contains no variable that might be
+ * unbound, no unknown expression and no division by a non-constant.
+ *
+ * When a subexpression is used more than once, the returned expression
+ * evaluates it only once per call to interpret(); evaluations of such an
+ * expression are serialized. Without shared subexpressions, the result is a
+ * plain tree of the usual expression classes. {@link BatchEvaluator},
+ * {@link PostfixExpression}, {@link MemoizedExpression} and {@link ExpressionCompiler}
+ * look through the sharing wrappers and also compute a shared subexpression once
+ * per evaluation rather than once per use.
+ *
+ * The rewrites assume int arithmetic: the result matches interpret() of the
+ * original, but not necessarily interpretLong() or interpretDecimal().
+ */
+public final class ExpressionOptimizer {
+    private ExpressionOptimizer() {
+    }
+
+    /**
+     * Optimizes an expression
+     * @param expression The expression tree to optimize; it is not modified
+     * @return An expression with the same result
+     */
+    public static Expression optimize(Expression expression) {
+        if (expression == null) {
+            throw new IllegalArgumentException("Expression must not be null");
+        }
+        FlatExpression flat = FlatExpression.flatten(expression);
+        Builder builder = new Builder(flat.size);
+        int[] canonical = new int[flat.size];
+        for (int id = 0; id < flat.size; id++) {
+            byte kind = flat.kinds[id];
+            switch (kind) {
+                case FlatExpression.NUMBER:
+                    canonical[id] = builder.constant(flat.values[id]);
+                    break;
+                case FlatExpression.VARIABLE:
+                    VariableExpression variable = (VariableExpression) flat.nodes[id];
+                    canonical[id] = builder.leaf(kind, variable.getSlot(), variable.getContext(), variable);
+                    break;
+                case FlatExpression.OPAQUE:
+                    canonical[id] = builder.leaf(kind, 0, flat.nodes[id], flat.nodes[id]);
+                    break;
+                case FlatExpression.NEGATE:
+                    canonical[id] = builder.negate(canonical[flat.lefts[id]]);
+                    break;
+                default:
+                    canonical[id] = builder.binary(kind, canonical[flat.lefts[id]], canonical[flat.rights[id]]);
+            }
+        }
+        return builder.build(canonical[flat.size - 1]);
+    }
+
+    /**
+     * Table of hash-consed nodes; a node's children always have smaller numbers than the node
+     */
+    private static final class Builder {
+        private byte[] kinds;
+        private int[] values;
+        private int[] lefts;
+        private int[] rights;
+        private Expression[] leaves;
+        private boolean[] canFail;
+        private int size;
+        private final Map<NodeKey, Integer> interned = new HashMap<>();
+
+        Builder(int capacity) {
+            int initial = Math.max(16, capacity);
+            kinds = new byte[initial];
+            values = new int[initial];
+            lefts = new int[initial];
+            rights = new int[initial];
+            leaves = new Expression[initial];
+            canFail = new boolean[initial];
+        }
+
+        int constant(int value) {
+            return intern(FlatExpression.NUMBER, value, 0, null, null);
+        }
+
+        int leaf(byte kind, int value, Object identity, Expression node) {
+            return intern(kind, value, 0, identity, node);
+        }
+
+        int negate(int operand) {
+            if (isConstant(operand)) {
+                return constant(-values[operand]);
+            }
+            if (kinds[operand] == FlatExpression.NEGATE) {
+                return lefts[operand];
+            }
+            return intern(FlatExpression.NEGATE, operand, 0, null, null);
+        }
+
+        int binary(byte kind, int left, int right) {
+            if (isConstant(left) && isConstant(right)) {
+                int divisor = values[right];
+                boolean division = kind == FlatExpression.DIVIDE || kind == FlatExpression.MODULO;
+                if (!division || divisor != 0) {
+                    return constant(apply(kind, values[left], divisor));
+                }
+            }
+            switch (kind) {
+                case FlatExpression.ADD:
+                    if (isConstant(left) || !isConstant(right) && left > right) {
+                        int swap = left;
+                        left = right;
+                        right = swap;
+                    }
+                    if (isConstant(right)) {
+                        if (values[right] == 0) {
+                            return left;
+                        }
+                        if (kinds[left] == FlatExpression.ADD && isConstant(rights[left])) {
+                            return binary(kind, lefts[left], constant(values[rights[left]] + values[right]));
+                        }
+                    }
+                    break;
+                case FlatExpression.SUBTRACT:
+                    if (isConstant(right)) {
+                        return binary(FlatExpression.ADD, left, constant(-values[right]));
+                    }
+                    if (left == right && !canFail[left]) {
+                        return constant(0);
+                    }
+                    if (isConstant(left) && values[left] == 0) {
+                        return negate(right);
+                    }
+                    break;
+                case FlatExpression.MULTIPLY:
+                    if (isConstant(left) || !isConstant(right) && left > right) {
+                        int swap = left;
+                        left = right;
+                        right = swap;
+                    }
+                    if (isConstant(right)) {
+                        int factor = values[right];
+                        if (factor == 1) {
+                            return left;
+                        }
+                        if (factor == -1) {
+                            return negate(left);
+                        }
+                        if (factor == 0 && !canFail[left]) {
+                            return constant(0);
+                        }
+                        if (kinds[left] == FlatExpression.MULTIPLY && isConstant(rights[left])) {
+                            return binary(kind, lefts[left], constant(values[rights[left]] * factor));
+                        }
+                    }
+                    break;
+                case FlatExpression.DIVIDE:
+                    if (isConstant(right) && values[right] == 1) {
+                        return left;
+                    }
+                    if (isConstant(right) && values[right] == -1) {
+                        return negate(left);
+                    }
+                    break;
+                default:
+                    if (isConstant(right) && (values[right] == 1 || values[right] == -1) && !canFail[left]) {
+                        return constant(0);
+                    }
+            }
+            return intern(kind, left, right, null, null);
+        }
+
+        /**
+         * Turns the nodes reachable from the root back into expression objects
+         */
+        Expression build(int root) {
+            int[] uses = new int[size];
+            boolean[] reachable = new boolean[size];
+            reachable[root] = true;
+            for (int id = root; id >= 0; id--) {
+                if (reachable[id] && kinds[id] >= FlatExpression.NEGATE) {
+                    reachable[lefts[id]] = true;
+                    uses[lefts[id]]++;
+                    if (FlatExpression.isBinary(kinds[id])) {
+                        reachable[rights[id]] = true;
+                        uses[rights[id]]++;
+                    }
+                }
+            }
+
+            SharingExpression sharing = null;
+            Expression[] built = new Expression[size];
+            for (int id = 0; id <= root; id++) {
+                if (!reachable[id]) {
+                    continue;
+                }
+                Expression node = create(id, built);
+                if (uses[id] > 1 && kinds[id] >= FlatExpression.NEGATE) {
+                    if (sharing == null) {
+                        sharing = new SharingExpression();
+                    }
+                    node = new SharedExpression(node, sharing);
+                }
+                built[id] = node;
+            }
+            if (sharing == null) {
+                return built[root];
+            }
+            sharing.setRoot(built[root]);
+            return sharing;
+        }
+
+        private Expression create(int id, Expression[] built) {
+            switch (kinds[id]) {
+                case FlatExpression.NUMBER:
+                    return new NumberExpression(values[id]);
+                case FlatExpression.VARIABLE:
+                case FlatExpression.OPAQUE:
+                    return leaves[id];
+                case FlatExpression.NEGATE:
+                    return new NegateExpression(built[lefts[id]]);
+                case FlatExpression.ADD:
+                    return new AddExpression(built[lefts[id]], built[rights[id]]);
+                case FlatExpression.SUBTRACT:
+                    return new SubtractExpression(built[lefts[id]], built[rights[id]]);
+                case FlatExpression.MULTIPLY:
+                    return new MultiplyExpression(built[lefts[id]], built[rights[id]]);
+                case FlatExpression.DIVIDE:
+                    return new DivideExpression(built[lefts[id]], built[rights[id]]);
+                default:
+                    return new ModuloExpression(built[lefts[id]], built[rights[id]]);
+            }
+        }
+
+        private boolean isConstant(int id) {
+            return kinds[id] == FlatExpression.NUMBER;
+        }
+
+        private int intern(byte kind, int left, int right, Object identity, Expression leaf) {
+            NodeKey key = new NodeKey(kind, left, right, identity);
+            Integer existing = interned.get(key);
+            if (existing != null) {
+                return existing;
+            }
+            if (size == kinds.length) {
+                int capacity = size * 2;
+                kinds = Arrays.copyOf(kinds, capacity);
+                values = Arrays.copyOf(values, capacity);
+                lefts = Arrays.copyOf(lefts, capacity);
+                rights = Arrays.copyOf(rights, capacity);
+                leaves = Arrays.copyOf(leaves, capacity);
+                canFail = Arrays.copyOf(canFail, capacity);
+            }
+            int id = size++;
+            kinds[id] = kind;
+            switch (kind) {
+                case FlatExpression.NUMBER:
+                    values[id] = left;
+                    break;
+                case FlatExpression.VARIABLE:
+                case FlatExpression.OPAQUE:
+                    leaves[id] = leaf;
+                    canFail[id] = true;
+                    break;
+                case FlatExpression.NEGATE:
+                    lefts[id] = left;
+                    canFail[id] = canFail[left];
+                    break;
+                default:
+                    lefts[id] = left;
+                    rights[id] = right;
+                    boolean division = kind == FlatExpression.DIVIDE || kind == FlatExpression.MODULO;
+                    canFail[id] = canFail[left] || canFail[right]
+                            || division && !(isConstant(right) && values[right] != 0);
+            }
+            interned.put(key, id);
+            return id;
+        }
+
+        private static int apply(byte kind, int left, int right) {
+            switch (kind) {
+                case FlatExpression.ADD:
+                    return left + right;
+                case FlatExpression.SUBTRACT:
+                    return left - right;
+                case FlatExpression.MULTIPLY:
+                    return left * right;
+                case FlatExpression.DIVIDE:
+                    return left / right;
+                default:
+                    return left % right;
+            }
+        }
+    }
+}
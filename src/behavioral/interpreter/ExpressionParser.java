@@ -0,0 +1,156 @@
+package behavioral.interpreter;
+
+/**
+ * Parses formula text such as {@code (price - discount) * quantity} into an Expression tree
+ *
+ * Supports integer literals, variables, parentheses, unary + and -, and the
+ * binary operators + - * / %, with the usual precedence and left
+ * associativity. Arithmetic follows Java int semantics, including overflow,
+ * division truncating towards zero and % taking the sign of the dividend.
+ *
+ * The parser is a Pratt (top-down operator precedence) parser reading the text
+ * in a single pass: a run of operators of the same precedence is handled in a
+ * loop, and only parentheses and operators of higher precedence recurse.
+ * Parentheses and unary operators may be nested at most {@value #MAX_NESTING}
+ * deep, so a hostile formula is rejected instead of overflowing the stack.
+ */
+public final class ExpressionParser {
+    private static final int UNARY_PRECEDENCE = 3;
+    static final int MAX_NESTING = 1000;
+
+    private final ExpressionTokenizer tokenizer;
+    private final Context context;
+    private int nesting;
+
+    private ExpressionParser(String text, Context context) {
+        this.tokenizer = new ExpressionTokenizer(text);
+        this.context = context;
+    }
+
+    /**
+     * Parses a formula without variables
+     * @param text The formula
+     * @return The expression tree
+     * @throws IllegalArgumentException if the text is not a valid formula or uses a variable
+     */
+    public static Expression parse(String text) {
+        return parse(text, null);
+    }
+
+    /**
+     * Parses a formula whose variables are looked up in a context
+     * @param text The formula
+     * @param context The context the variables are bound through, or null if the formula has none
+     * @return The expression tree
+     * @throws IllegalArgumentException if the text is not a valid formula
+     */
+    public static Expression parse(String text, Context context) {
+        if (text == null) {
+            throw new IllegalArgumentException("Text must not be null");
+        }
+        ExpressionParser parser = new ExpressionParser(text, context);
+        Expression expression = parser.parseExpression(0);
+        if (parser.tokenizer.type() != ExpressionTokenizer.END) {
+            throw parser.tokenizer.error("Unexpected token");
+        }
+        return expression;
+    }
+
+    private Expression parseExpression(int minPrecedence) {
+        Expression left = parseOperand();
+        while (true) {
+            int operator = tokenizer.type();
+            int precedence = precedence(operator);
+            if (precedence <= minPrecedence) {
+                return left;
+            }
+            tokenizer.next();
+            left = combine(operator, left, parseExpression(precedence));
+        }
+    }
+
+    private Expression parseOperand() {
+        switch (tokenizer.type()) {
+            case ExpressionTokenizer.NUMBER:
+                if (tokenizer.number() > Integer.MAX_VALUE) {
+                    throw tokenizer.error("Number too large");
+                }
+                Expression number = new NumberExpression((int) tokenizer.number());
+                tokenizer.next();
+                return number;
+            case ExpressionTokenizer.IDENTIFIER:
+                if (context == null) {
+                    throw tokenizer.error("Variable without a context");
+                }
+                Expression variable = new VariableExpression(tokenizer.identifier(), context);
+                tokenizer.next();
+                return variable;
+            case ExpressionTokenizer.MINUS:
+                tokenizer.next();
+                if (tokenizer.type() == ExpressionTokenizer.NUMBER
+                        && tokenizer.number() == ExpressionTokenizer.MAX_LITERAL) {
+                    tokenizer.next();
+                    return new NumberExpression(Integer.MIN_VALUE);
+                }
+                Expression operand = parseNested(UNARY_PRECEDENCE);
+                if (operand instanceof NumberExpression) {
+                    return new NumberExpression(-((NumberExpression) operand).getNumber());
+                }
+                return new NegateExpression(operand);
+            case ExpressionTokenizer.PLUS:
+                tokenizer.next();
+                return parseNested(UNARY_PRECEDENCE);
+            case ExpressionTokenizer.LEFT_PAREN:
+                tokenizer.next();
+                Expression inner = parseNested(0);
+                if (tokenizer.type() != ExpressionTokenizer.RIGHT_PAREN) {
+                    throw tokenizer.error("Expected ')'");
+                }
+                tokenizer.next();
+                return inner;
+            case ExpressionTokenizer.END:
+                throw tokenizer.error("Unexpected end of formula");
+            default:
+                throw tokenizer.error("Expected a number, variable or '('");
+        }
+    }
+
+    private Expression parseNested(int minPrecedence) {
+        if (nesting == MAX_NESTING) {
+            throw tokenizer.error("Formula nested too deeply");
+        }
+        nesting++;
+        Expression expression = parseExpression(minPrecedence);
+        nesting--;
+        return expression;
+    }
+
+    private static int precedence(int operator) {
+        switch (operator) {
+            case ExpressionTokenizer.PLUS:
+            case ExpressionTokenizer.MINUS:
+                return 1;
+            case ExpressionTokenizer.STAR:
+            case ExpressionTokenizer.SLASH:
+            case ExpressionTokenizer.PERCENT:
+                return 2;
+            default:
+                return 0;
+        }
+    }
+
+    private static Expression combine(int operator, Expression left, Expression right) {
+        switch (operator) {
+            case ExpressionTokenizer.PLUS:
+                return new AddExpression(left, right);
+            case ExpressionTokenizer.MINUS:
+                return new SubtractExpression(left, right);
+            case ExpressionTokenizer.STAR:
+                return new MultiplyExpression(left, right);
+            case ExpressionTokenizer.SLASH:
+                return new DivideExpression(left, right);
+            default:
+                return new ModuloExpression(left, right);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package behavioral.interpreter;
+
+/**
+ * Splits formula text into tokens for {@link ExpressionParser}
+ *
+ * The tokenizer does not create token objects: it holds only the current token's
+ * type, position and value, and next() moves on to the following token.
+ * Identifiers are the only tokens turned into strings, when the parser asks for
+ * their text.
+ */
+final class ExpressionTokenizer {
+    static final int END = 0;
+    static final int NUMBER = 1;
+    static final int IDENTIFIER = 2;
+    static final int PLUS = 3;
+    static final int MINUS = 4;
+    static final int STAR = 5;
+    static final int SLASH = 6;
+    static final int PERCENT = 7;
+    static final int LEFT_PAREN = 8;
+    static final int RIGHT_PAREN = 9;
+
+    // Largest literal accepted, so that -2147483648 can be written
+    static final long MAX_LITERAL = -(long) Integer.MIN_VALUE;
+
+    private final String text;
+    private int position;
+    private int type;
+    private int start;
+    private long number;
+
+    ExpressionTokenizer(String text) {
+        this.text = text;
+        next();
+    }
+
+    /**
+     * Moves to the next token
+     */
+    void next() {
+        int length = text.length();
+        while (position < length && Character.isWhitespace(text.charAt(position))) {
+            position++;
+        }
+        start = position;
+        if (position == length) {
+            type = END;
+            return;
+        }
+        char c = text.charAt(position++);
+        switch (c) {
+            case '+': type = PLUS; return;
+            case '-': type = MINUS; return;
+            case '*': type = STAR; return;
+            case '/': type = SLASH; return;
+            case '%': type = PERCENT; return;
+            case '(': type = LEFT_PAREN; return;
+            case ')': type = RIGHT_PAREN; return;
+            default:
+        }
+        if (c >= '0' && c <= '9') {
+            long value = c - '0';
+            while (position < length && (c = text.charAt(position)) >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+                if (value > MAX_LITERAL) {
+                    throw error("Number too large");
+                }
+                position++;
+            }
+            number = value;
+            type = NUMBER;
+        } else if (isIdentifierStart(c)) {
+            while (position < length && isIdentifierPart(text.charAt(position))) {
+                position++;
+            }
+            type = IDENTIFIER;
+        } else {
+            throw error("Unexpected character '" + c + "'");
+        }
+    }
+
+    int type() {
+        return type;
+    }
+
+    long number() {
+        return number;
+    }
+
+    String identifier() {
+        return text.substring(start, position);
+    }
+
+    IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at position " + start + " in: " + text);
+    }
+
+    private static boolean isIdentifierStart(char c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c == '_';
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return isIdentifierStart(c) || c >= '0' && c <= '9';
+    }
+}
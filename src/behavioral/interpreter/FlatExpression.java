@@ -0,0 +1,240 @@
+package behavioral.interpreter;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Expression tree flattened into arrays in post-order, so that the children of a
+ * node always come before it and the root is the last node
+ *
+ * Flattening uses an explicit stack rather than recursion, so trees of any depth
+ * can be processed. The {@link SharingExpression} and {@link SharedExpression}
+ * wrappers added by the {@link ExpressionOptimizer} are looked through rather
+ * than treated as opaque leaves. A shared subexpression gets a single id, which
+ * every node using it refers to, so the arrays describe a DAG in which a node can
+ * have several parents; {@link #useCounts()} tells how many. Other subtrees that
+ * are referenced more than once are flattened once per reference.
+ */
+final class FlatExpression {
+    static final byte NUMBER = 0;
+    static final byte VARIABLE = 1;
+    static final byte OPAQUE = 2;
+    static final byte NEGATE = 3;
+    static final byte ADD = 4;
+    static final byte SUBTRACT = 5;
+    static final byte MULTIPLY = 6;
+    static final byte DIVIDE = 7;
+    static final byte MODULO = 8;
+
+    final int size;
+    final byte[] kinds;
+    /** The value of NUMBER nodes */
+    final int[] values;
+    /** The only child of NEGATE nodes, the left child of binary nodes */
+    final int[] lefts;
+    final int[] rights;
+    /** The original node */
+    final Expression[] nodes;
+
+    private FlatExpression(int size, byte[] kinds, int[] values, int[] lefts, int[] rights, Expression[] nodes) {
+        this.size = size;
+        this.kinds = Arrays.copyOf(kinds, size);
+        this.values = Arrays.copyOf(values, size);
+        this.lefts = Arrays.copyOf(lefts, size);
+        this.rights = Arrays.copyOf(rights, size);
+        this.nodes = Arrays.copyOf(nodes, size);
+    }
+
+    static FlatExpression flatten(Expression root) {
+        return new Flattening().run(root);
+    }
+
+    /**
+     * Counts how many operands refer to each node
+     * @return For each id, the number of parents using it; 0 for the root, more than 1 for shared nodes
+     */
+    int[] useCounts() {
+        int[] uses = new int[size];
+        for (int id = 0; id < size; id++) {
+            if (kinds[id] >= NEGATE) {
+                uses[lefts[id]]++;
+                if (isBinary(kinds[id])) {
+                    uses[rights[id]]++;
+                }
+            }
+        }
+        return uses;
+    }
+
+    static boolean isBinary(byte kind) {
+        return kind >= ADD;
+    }
+
+    static byte kindOf(Expression node) {
+        if (node instanceof NumberExpression) {
+            return NUMBER;
+        } else if (node instanceof VariableExpression) {
+            return VARIABLE;
+        } else if (node instanceof NegateExpression) {
+            return NEGATE;
+        } else if (node instanceof AddExpression) {
+            return ADD;
+        } else if (node instanceof SubtractExpression) {
+            return SUBTRACT;
+        } else if (node instanceof MultiplyExpression) {
+            return MULTIPLY;
+        } else if (node instanceof DivideExpression) {
+            return DIVIDE;
+        } else if (node instanceof ModuloExpression) {
+            return MODULO;
+        } else if (node == null) {
+            throw new IllegalArgumentException("Expression tree contains null");
+        }
+        return OPAQUE;
+    }
+
+    private static Expression operandOf(Expression node) {
+        if (node instanceof NegateExpression) {
+            return ((NegateExpression) node).getOperand();
+        } else if (node instanceof AddExpression) {
+            return ((AddExpression) node).getLeft();
+        } else if (node instanceof SubtractExpression) {
+            return ((SubtractExpression) node).getLeft();
+        } else if (node instanceof MultiplyExpression) {
+            return ((MultiplyExpression) node).getLeft();
+        } else if (node instanceof DivideExpression) {
+            return ((DivideExpression) node).getLeft();
+        }
+        return ((ModuloExpression) node).getLeft();
+    }
+
+    private static Expression rightOperandOf(Expression node) {
+        if (node instanceof AddExpression) {
+            return ((AddExpression) node).getRight();
+        } else if (node instanceof SubtractExpression) {
+            return ((SubtractExpression) node).getRight();
+        } else if (node instanceof MultiplyExpression) {
+            return ((MultiplyExpression) node).getRight();
+        } else if (node instanceof DivideExpression) {
+            return ((DivideExpression) node).getRight();
+        }
+        return ((ModuloExpression) node).getRight();
+    }
+
+    /**
+     * Post-order walk with an explicit stack that numbers each node when its
+     * operands are done
+     */
+    private static final class Flattening {
+        private byte[] kinds = new byte[16];
+        private int[] values = new int[16];
+        private int[] lefts = new int[16];
+        private int[] rights = new int[16];
+        private Expression[] nodes = new Expression[16];
+        private int count;
+        private final Map<SharedExpression, Integer> sharedIds = new IdentityHashMap<>();
+
+        // Stack of nodes whose operands are being flattened
+        private Expression[] pending = new Expression[16];
+        private SharedExpression[] pendingShared = new SharedExpression[16];
+        private byte[] states = new byte[16];
+        private int[] leftIds = new int[16];
+        private int[] rightIds = new int[16];
+        private int top;
+
+        FlatExpression run(Expression root) {
+            enter(root);
+            while (top > 0) {
+                int frame = top - 1;
+                Expression node = pending[frame];
+                byte kind = kindOf(node);
+                if (states[frame] == 1 && kind != NEGATE) {
+                    states[frame] = 2;
+                    enter(rightOperandOf(node));
+                } else if (states[frame] == 0) {
+                    states[frame] = 1;
+                    enter(operandOf(node));
+                } else {
+                    top--;
+                    finished(add(kind, node, pendingShared[frame], leftIds[frame], rightIds[frame]));
+                }
+            }
+            return new FlatExpression(count, kinds, values, lefts, rights, nodes);
+        }
+
+        /**
+         * Starts on an operand: leaves and shared nodes seen before are finished at
+         * once, operators are pushed to have their own operands flattened first
+         */
+        private void enter(Expression node) {
+            SharedExpression shared = null;
+            while (true) {
+                if (node instanceof SharingExpression) {
+                    node = ((SharingExpression) node).getRoot();
+                } else if (node instanceof SharedExpression) {
+                    Integer id = sharedIds.get(node);
+                    if (id != null) {
+                        finished(id);
+                        return;
+                    }
+                    shared = (SharedExpression) node;
+                    node = shared.getExpression();
+                } else {
+                    break;
+                }
+            }
+            byte kind = kindOf(node);
+            if (kind < NEGATE) {
+                finished(add(kind, node, shared, 0, 0));
+                return;
+            }
+            if (top == pending.length) {
+                pending = Arrays.copyOf(pending, top * 2);
+                pendingShared = Arrays.copyOf(pendingShared, top * 2);
+                states = Arrays.copyOf(states, top * 2);
+                leftIds = Arrays.copyOf(leftIds, top * 2);
+                rightIds = Arrays.copyOf(rightIds, top * 2);
+            }
+            pending[top] = node;
+            pendingShared[top] = shared;
+            states[top++] = 0;
+        }
+
+        /**
+         * Hands the id of a finished operand to the node waiting for it
+         */
+        private void finished(int id) {
+            if (top == 0) {
+                return;
+            }
+            if (states[top - 1] == 1) {
+                leftIds[top - 1] = id;
+            } else {
+                rightIds[top - 1] = id;
+            }
+        }
+
+        private int add(byte kind, Expression node, SharedExpression shared, int left, int right) {
+            if (count == kinds.length) {
+                kinds = Arrays.copyOf(kinds, count * 2);
+                values = Arrays.copyOf(values, count * 2);
+                lefts = Arrays.copyOf(lefts, count * 2);
+                rights = Arrays.copyOf(rights, count * 2);
+                nodes = Arrays.copyOf(nodes, count * 2);
+            }
+            int id = count++;
+            kinds[id] = kind;
+            nodes[id] = node;
+            if (kind == NUMBER) {
+                values[id] = ((NumberExpression) node).getNumber();
+            }
+            lefts[id] = left;
+            rights[id] = right;
+            if (shared != null) {
+                sharedIds.put(shared, id);
+            }
+            return id;
+        }
+    }
+}
@@ -21,5 +21,14 @@ public class InterpreterDemo {
         Expression subtract2 = new SubtractExpression(twenty, add2);
         
         System.out.println("20 - (4 + 6) = " + subtract2.interpret());
+        
+        // Parse a formula with variables
+        Context context = new Context();
+        Expression total = ExpressionParser.parse("(price - discount) * quantity", context);
+        context.set("price", 120);
+        context.set("discount", 20);
+        context.set("quantity", 3);
+        
+        System.out.println("(price - discount) * quantity = " + total.interpret());
     }
 }
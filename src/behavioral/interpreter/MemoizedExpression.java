@@ -0,0 +1,406 @@
+package behavioral.interpreter;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Expression that remembers the results of its larger subtrees between calls to
+ * interpret(), so that after a few variables change only the subtrees that use
+ * them are evaluated again
+ *
+ * Structurally equal subtrees share one cache entry, whether they appear several
+ * times in one evaluation or in later ones. Each evaluation first compares the
+ * {@link Context} version of every variable with the one it saw last time and,
+ * for each variable that has been set since, stamps the variable and all
+ * subtrees above it with the evaluation's number. An entry is used only while it
+ * was stored no earlier than the latest stamp of its subtree, so the bookkeeping
+ * is one number per subtree however many variables it contains. Subtrees with
+ * fewer than {@value #MIN_CACHED_SIZE} nodes are cheaper to evaluate than to
+ * look up and are never cached, nor are subtrees containing expressions of
+ * unknown types, whose values can change without a version. At most capacity
+ * results are kept; when the cache is full the least recently used one is
+ * dropped.
+ *
+ * Evaluation uses explicit stacks, so deep trees do not overflow the call
+ * stack. Evaluations are serialized, because they update the cache.
+ */
+public final class MemoizedExpression implements Expression {
+    /** Smallest subtree, counted in nodes of the original tree, whose result is cached */
+    static final int MIN_CACHED_SIZE = 16;
+    private static final int NONE = -1;
+    private static final long NOT_STORED = -1L;
+
+    private final byte[] kinds;
+    private final int[] values;
+    private final int[] lefts;
+    private final int[] rights;
+    private final Expression[] leaves;
+    private final Context[] contexts;
+    private final int[] slots;
+    private final boolean[] cacheable;
+    private final int root;
+    private final int capacity;
+
+    // Reverse edges: the parents of node n are parents[parentStarts[n]] up to parentStarts[n + 1]
+    private final int[] parentStarts;
+    private final int[] parents;
+
+    // Change tracking
+    private final Context[] watched;
+    private final long[] watchedVersions;
+    private final int[] variables;
+    private final long[] seenVersions;
+    /** The number of the latest evaluation that found a variable of the subtree changed */
+    private final long[] changedAt;
+    private long evaluation;
+
+    // Evaluation stacks, as deep as the tree
+    private final int[] frameNodes;
+    private final byte[] frameStates;
+    private final int[] operands;
+    private final int[] marked;
+
+    // Cached results in a doubly linked list, most recently used first
+    private final int[] results;
+    /** The number of the evaluation that stored the result; NOT_STORED while not cached */
+    private final long[] storedAt;
+    private final int[] newer;
+    private final int[] older;
+    private int newest = NONE;
+    private int oldest = NONE;
+    private int size;
+    private long hits;
+    private long misses;
+
+    /**
+     * Creates a memoizing wrapper
+     * @param expression The expression tree; it is not modified
+     * @param capacity The largest number of subtree results to keep
+     */
+    public MemoizedExpression(Expression expression, int capacity) {
+        if (expression == null) {
+            throw new IllegalArgumentException("Expression must not be null");
+        }
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.capacity = capacity;
+        FlatExpression flat = FlatExpression.flatten(expression);
+        int count = flat.size;
+        byte[] kinds = new byte[count];
+        int[] values = new int[count];
+        int[] lefts = new int[count];
+        int[] rights = new int[count];
+        Expression[] leaves = new Expression[count];
+        Context[] contexts = new Context[count];
+        int[] slots = new int[count];
+        int[] sizes = new int[count];
+        int[] heights = new int[count];
+        boolean[] opaque = new boolean[count];
+        int[] parentCounts = new int[count + 1];
+        int[] variables = new int[count];
+        int variableCount = 0;
+        Map<Context, Boolean> watched = new IdentityHashMap<>();
+
+        // Hash-cons the tree into a DAG of distinct subtrees; children get lower numbers than parents
+        Map<NodeKey, Integer> interned = new HashMap<>();
+        int[] canonical = new int[count];
+        int distinct = 0;
+        for (int id = 0; id < count; id++) {
+            byte kind = flat.kinds[id];
+            int left = kind >= FlatExpression.NEGATE ? canonical[flat.lefts[id]] : 0;
+            int right = FlatExpression.isBinary(kind) ? canonical[flat.rights[id]] : 0;
+            NodeKey key;
+            if (kind == FlatExpression.NUMBER) {
+                key = new NodeKey(kind, flat.values[id], 0, null);
+            } else if (kind == FlatExpression.VARIABLE) {
+                VariableExpression variable = (VariableExpression) flat.nodes[id];
+                key = new NodeKey(kind, variable.getSlot(), 0, variable.getContext());
+            } else if (kind == FlatExpression.OPAQUE) {
+                key = new NodeKey(kind, 0, 0, flat.nodes[id]);
+            } else {
+                key = new NodeKey(kind, left, right, null);
+            }
+            Integer existing = interned.get(key);
+            if (existing != null) {
+                canonical[id] = existing;
+                continue;
+            }
+            int node = distinct++;
+            interned.put(key, node);
+            canonical[id] = node;
+            kinds[node] = kind;
+            switch (kind) {
+                case FlatExpression.NUMBER:
+                    values[node] = flat.values[id];
+                    sizes[node] = 1;
+                    heights[node] = 1;
+                    break;
+                case FlatExpression.VARIABLE:
+                    VariableExpression variable = (VariableExpression) flat.nodes[id];
+                    leaves[node] = variable;
+                    contexts[node] = variable.getContext();
+                    slots[node] = variable.getSlot();
+                    variables[variableCount++] = node;
+                    watched.put(variable.getContext(), Boolean.TRUE);
+                    sizes[node] = 1;
+                    heights[node] = 1;
+                    break;
+                case FlatExpression.OPAQUE:
+                    leaves[node] = flat.nodes[id];
+                    sizes[node] = 1;
+                    heights[node] = 1;
+                    opaque[node] = true;
+                    break;
+                case FlatExpression.NEGATE:
+                    lefts[node] = left;
+                    parentCounts[left]++;
+                    sizes[node] = Math.min(MIN_CACHED_SIZE, sizes[left] + 1);
+                    heights[node] = heights[left] + 1;
+                    opaque[node] = opaque[left];
+                    break;
+                default:
+                    lefts[node] = left;
+                    rights[node] = right;
+                    parentCounts[left]++;
+                    if (right != left) {
+                        parentCounts[right]++;
+                    }
+                    sizes[node] = Math.min(MIN_CACHED_SIZE, sizes[left] + sizes[right] + 1);
+                    heights[node] = Math.max(heights[left], heights[right]) + 1;
+                    opaque[node] = opaque[left] || opaque[right];
+            }
+        }
+        boolean[] cacheable = new boolean[distinct];
+        for (int node = 0; node < distinct; node++) {
+            cacheable[node] = kinds[node] >= FlatExpression.NEGATE && sizes[node] >= MIN_CACHED_SIZE && !opaque[node];
+        }
+
+        // Turn the parent counts into offsets and fill in the reverse edges
+        int[] parentStarts = new int[distinct + 1];
+        for (int node = 0; node < distinct; node++) {
+            parentStarts[node + 1] = parentStarts[node] + parentCounts[node];
+        }
+        int[] parents = new int[parentStarts[distinct]];
+        int[] next = Arrays.copyOf(parentStarts, distinct);
+        for (int node = 0; node < distinct; node++) {
+            if (kinds[node] >= FlatExpression.NEGATE) {
+                parents[next[lefts[node]]++] = node;
+                if (FlatExpression.isBinary(kinds[node]) && rights[node] != lefts[node]) {
+                    parents[next[rights[node]]++] = node;
+                }
+            }
+        }
+
+        this.kinds = Arrays.copyOf(kinds, distinct);
+        this.values = Arrays.copyOf(values, distinct);
+        this.lefts = Arrays.copyOf(lefts, distinct);
+        this.rights = Arrays.copyOf(rights, distinct);
+        this.leaves = Arrays.copyOf(leaves, distinct);
+        this.contexts = Arrays.copyOf(contexts, distinct);
+        this.slots = Arrays.copyOf(slots, distinct);
+        this.cacheable = cacheable;
+        this.root = canonical[count - 1];
+        this.parentStarts = parentStarts;
+        this.parents = parents;
+        this.watched = watched.keySet().toArray(new Context[0]);
+        this.watchedVersions = new long[this.watched.length];
+        Arrays.fill(this.watchedVersions, -1L);
+        this.variables = Arrays.copyOf(variables, variableCount);
+        this.seenVersions = new long[variableCount];
+        this.changedAt = new long[distinct];
+        int height = heights[this.root];
+        this.frameNodes = new int[height];
+        this.frameStates = new byte[height];
+        this.operands = new int[height + 1];
+        this.marked = new int[distinct];
+        this.results = new int[distinct];
+        this.storedAt = new long[distinct];
+        Arrays.fill(this.storedAt, NOT_STORED);
+        this.newer = new int[distinct];
+        this.older = new int[distinct];
+    }
+
+    @Override
+    public synchronized int interpret() {
+        evaluation++;
+        findChanges();
+        return evaluate();
+    }
+
+    /**
+     * Gets the number of times a cached subtree result was used instead of evaluating the subtree
+     * @return The hit count
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * Gets the number of times a cacheable subtree had to be evaluated
+     * @return The miss count
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * Gets the number of subtree results in the cache
+     * @return The entry count, at most the capacity
+     */
+    public synchronized int getCachedCount() {
+        return size;
+    }
+
+    private void findChanges() {
+        boolean changed = false;
+        for (int i = 0; i < watched.length; i++) {
+            long latest = watched[i].latestVersion();
+            if (latest != watchedVersions[i]) {
+                watchedVersions[i] = latest;
+                changed = true;
+            }
+        }
+        if (!changed) {
+            return;
+        }
+        for (int i = 0; i < variables.length; i++) {
+            int variable = variables[i];
+            long version = contexts[variable].versionAt(slots[variable]);
+            if (version != seenVersions[i]) {
+                seenVersions[i] = version;
+                markChanged(variable);
+            }
+        }
+    }
+
+    private void markChanged(int variable) {
+        if (changedAt[variable] == evaluation) {
+            return;
+        }
+        changedAt[variable] = evaluation;
+        int count = 0;
+        marked[count++] = variable;
+        while (count > 0) {
+            int node = marked[--count];
+            for (int i = parentStarts[node]; i < parentStarts[node + 1]; i++) {
+                int parent = parents[i];
+                // A subtree already stamped by this evaluation has had its ancestors stamped too
+                if (changedAt[parent] != evaluation) {
+                    changedAt[parent] = evaluation;
+                    marked[count++] = parent;
+                }
+            }
+        }
+    }
+
+    private int evaluate() {
+        int frames = 0;
+        int depth = 0;
+        frameNodes[frames] = root;
+        frameStates[frames++] = 0;
+        while (frames > 0) {
+            int node = frameNodes[frames - 1];
+            byte kind = kinds[node];
+            byte state = frameStates[frames - 1];
+            if (state == 0) {
+                if (storedAt[node] != NOT_STORED && storedAt[node] >= changedAt[node]) {
+                    hits++;
+                    unlink(node);
+                    linkNewest(node);
+                    operands[depth++] = results[node];
+                    frames--;
+                    continue;
+                }
+                if (kind < FlatExpression.NEGATE) {
+                    operands[depth++] = kind == FlatExpression.NUMBER ? values[node] : leaves[node].interpret();
+                    frames--;
+                    continue;
+                }
+                frameStates[frames - 1] = 1;
+                frameNodes[frames] = lefts[node];
+                frameStates[frames++] = 0;
+                continue;
+            }
+            if (state == 1 && kind != FlatExpression.NEGATE) {
+                frameStates[frames - 1] = 2;
+                frameNodes[frames] = rights[node];
+                frameStates[frames++] = 0;
+                continue;
+            }
+            frames--;
+            int value;
+            if (kind == FlatExpression.NEGATE) {
+                value = -operands[--depth];
+            } else {
+                int right = operands[--depth];
+                int left = operands[--depth];
+                switch (kind) {
+                    case FlatExpression.ADD:
+                        value = left + right;
+                        break;
+                    case FlatExpression.SUBTRACT:
+                        value = left - right;
+                        break;
+                    case FlatExpression.MULTIPLY:
+                        value = left * right;
+                        break;
+                    case FlatExpression.DIVIDE:
+                        value = left / right;
+                        break;
+                    default:
+                        value = left % right;
+                }
+            }
+            if (cacheable[node]) {
+                misses++;
+                store(node, value);
+            }
+            operands[depth++] = value;
+        }
+        return operands[0];
+    }
+
+    private void store(int node, int value) {
+        if (storedAt[node] == NOT_STORED) {
+            if (size == capacity) {
+                int evicted = oldest;
+                unlink(evicted);
+                storedAt[evicted] = NOT_STORED;
+                size--;
+            }
+            size++;
+        } else {
+            unlink(node);
+        }
+        linkNewest(node);
+        storedAt[node] = evaluation;
+        results[node] = value;
+    }
+
+    private void unlink(int node) {
+        if (newer[node] == NONE) {
+            newest = older[node];
+        } else {
+            older[newer[node]] = older[node];
+        }
+        if (older[node] == NONE) {
+            oldest = newer[node];
+        } else {
+            newer[older[node]] = newer[node];
+        }
+    }
+
+    private void linkNewest(int node) {
+        newer[node] = NONE;
+        older[node] = newest;
+        if (newest == NONE) {
+            oldest = node;
+        } else {
+            newer[newest] = node;
+        }
+        newest = node;
+    }
+}
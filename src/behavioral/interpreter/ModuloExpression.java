@@ -0,0 +1,34 @@
+package behavioral.interpreter;
+
+public class ModuloExpression implements Expression {
+    private Expression left;
+    private Expression right;
+    
+    public ModuloExpression(Expression left, Expression right) {
+        this.left = left;
+        this.right = right;
+    }
+    
+    @Override
+    public int interpret() {
+        return left.interpret() % right.interpret();
+    }
+
+    @Override
+    public long interpretLong(boolean exact) {
+        return left.interpretLong(exact) % right.interpretLong(exact);
+    }
+
+    @Override
+    public long interpretDecimal(int scale, boolean exact) {
+        return left.interpretDecimal(scale, exact) % right.interpretDecimal(scale, exact);
+    }
+
+    Expression getLeft() {
+        return left;
+    }
+
+    Expression getRight() {
+        return right;
+    }
+}
@@ -0,0 +1,35 @@
+package behavioral.interpreter;
+
+public class MultiplyExpression implements Expression {
+    private Expression left;
+    private Expression right;
+    
+    public MultiplyExpression(Expression left, Expression right) {
+        this.left = left;
+        this.right = right;
+    }
+    
+    @Override
+    public int interpret() {
+        return left.interpret() * right.interpret();
+    }
+
+    @Override
+    public long interpretLong(boolean exact) {
+        return Arithmetic.multiply(left.interpretLong(exact), right.interpretLong(exact), exact);
+    }
+
+    @Override
+    public long interpretDecimal(int scale, boolean exact) {
+        return Arithmetic.multiplyDecimal(left.interpretDecimal(scale, exact),
+                right.interpretDecimal(scale, exact), scale, exact);
+    }
+
+    Expression getLeft() {
+        return left;
+    }
+
+    Expression getRight() {
+        return right;
+    }
+}
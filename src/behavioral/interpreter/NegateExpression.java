@@ -0,0 +1,28 @@
+package behavioral.interpreter;
+
+public class NegateExpression implements Expression {
+    private Expression operand;
+    
+    public NegateExpression(Expression operand) {
+        this.operand = operand;
+    }
+    
+    @Override
+    public int interpret() {
+        return -operand.interpret();
+    }
+
+    @Override
+    public long interpretLong(boolean exact) {
+        return Arithmetic.negate(operand.interpretLong(exact), exact);
+    }
+
+    @Override
+    public long interpretDecimal(int scale, boolean exact) {
+        return Arithmetic.negate(operand.interpretDecimal(scale, exact), exact);
+    }
+
+    Expression getOperand() {
+        return operand;
+    }
+}
@@ -0,0 +1,36 @@
+package behavioral.interpreter;
+
+/**
+ * Structural identity of a hash-consed node: its kind and the numbers of its
+ * children, its value for constants, or the context and slot for variables
+ */
+final class NodeKey {
+    private final byte kind;
+    private final int left;
+    private final int right;
+    private final Object identity;
+
+    NodeKey(byte kind, int left, int right, Object identity) {
+        this.kind = kind;
+        this.left = left;
+        this.right = right;
+        this.identity = identity;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof NodeKey)) {
+            return false;
+        }
+        NodeKey key = (NodeKey) other;
+        return kind == key.kind && left == key.left && right == key.right && identity == key.identity;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = kind;
+        hash = hash * 31 + left;
+        hash = hash * 31 + right;
+        return hash * 31 + System.identityHashCode(identity);
+    }
+}
@@ -2,13 +2,51 @@ package behavioral.interpreter;
 
 public class NumberExpression implements Expression {
     private int number;
+    private long value;
+    private int scale;
     
     public NumberExpression(int number) {
         this.number = number;
+        this.value = number;
+    }
+
+    /**
+     * Creates a long constant; interpret() returns it cast to int
+     * @param value The value
+     */
+    public NumberExpression(long value) {
+        this(value, 0);
+    }
+
+    /**
+     * Creates a fixed-point decimal constant, such as 12.34 from 1234 and 2.
+     * interpret() and interpretLong() return its integer part.
+     * @param unscaled The value times 10^scale
+     * @param scale The number of decimal places, from 0 to 18
+     */
+    public NumberExpression(long unscaled, int scale) {
+        Arithmetic.powerOfTen(scale);
+        this.value = unscaled;
+        this.scale = scale;
+        this.number = (int) Arithmetic.rescale(unscaled, scale, 0, false);
     }
     
     @Override
     public int interpret() {
         return number;
     }
+
+    @Override
+    public long interpretLong(boolean exact) {
+        return Arithmetic.rescale(value, scale, 0, exact);
+    }
+
+    @Override
+    public long interpretDecimal(int scale, boolean exact) {
+        return Arithmetic.rescale(value, this.scale, scale, exact);
+    }
+
+    int getNumber() {
+        return number;
+    }
 }
@@ -0,0 +1,256 @@
+package behavioral.interpreter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Expression evaluated from a postfix instruction array instead of by recursion
+ *
+ * The tree is translated once into a flat program of fixed-width instructions,
+ * an opcode array and a parallel operand array: numbers are pushed on an int
+ * operand stack and operators pop their operands and push the result. An
+ * operator whose right operand is a number takes it as its operand, so the
+ * common "left side op constant" case needs no push at all. Both the
+ * translation and the evaluation are loops over arrays, without recursion or
+ * boxing, so trees of any depth can be evaluated; the operand stack only grows
+ * for right-deep trees.
+ *
+ * Variables and expressions of types that are not known are evaluated through
+ * their interpret() method. A subexpression shared by the {@link ExpressionOptimizer}
+ * is computed once per evaluation: its value is stored in a slot and loaded
+ * again for the other uses. Instances are immutable and can be used by several
+ * threads at once.
+ */
+public final class PostfixExpression implements Expression {
+    private static final byte PUSH = 0;
+    private static final byte LOAD = 1;
+    private static final byte NEGATE = 2;
+    // Binary operators, in the order of the FlatExpression kinds
+    private static final byte ADD = 3;
+    private static final byte SUBTRACT = 4;
+    private static final byte MULTIPLY = 5;
+    private static final byte DIVIDE = 6;
+    private static final byte MODULO = 7;
+    // The same operators with a constant right operand as the operand
+    private static final byte ADD_CONSTANT = 8;
+    private static final byte SUBTRACT_CONSTANT = 9;
+    private static final byte MULTIPLY_CONSTANT = 10;
+    private static final byte DIVIDE_CONSTANT = 11;
+    private static final byte MODULO_CONSTANT = 12;
+    // Copy the top of the stack into a slot, and push the value of a slot
+    private static final byte STORE = 13;
+    private static final byte RECALL = 14;
+
+    private final byte[] opcodes;
+    private final int[] operands;
+    private final Expression[] leaves;
+    private final int maxDepth;
+    private final int slotCount;
+
+    /**
+     * Translates an expression tree into a postfix program
+     * @param expression The expression tree; it is not modified
+     */
+    public PostfixExpression(Expression expression) {
+        if (expression == null) {
+            throw new IllegalArgumentException("Expression must not be null");
+        }
+        Translation translation = new Translation();
+        translation.translate(expression);
+        this.opcodes = Arrays.copyOf(translation.opcodes, translation.length);
+        this.operands = Arrays.copyOf(translation.operands, translation.length);
+        this.leaves = translation.leaves.toArray(new Expression[0]);
+        this.maxDepth = translation.maxDepth;
+        this.slotCount = translation.slotCount;
+    }
+
+    @Override
+    public int interpret() {
+        byte[] opcodes = this.opcodes;
+        int[] operands = this.operands;
+        // The top of the stack is kept in a local variable, the rest in the array
+        int[] stack = new int[maxDepth];
+        int[] slots = new int[slotCount];
+        int top = -1;
+        int value = 0;
+        for (int pc = 0; pc < opcodes.length; pc++) {
+            switch (opcodes[pc]) {
+                case PUSH:
+                    stack[++top] = value;
+                    value = operands[pc];
+                    break;
+                case LOAD:
+                    stack[++top] = value;
+                    value = leaves[operands[pc]].interpret();
+                    break;
+                case NEGATE:
+                    value = -value;
+                    break;
+                case ADD:
+                    value = stack[top--] + value;
+                    break;
+                case SUBTRACT:
+                    value = stack[top--] - value;
+                    break;
+                case MULTIPLY:
+                    value = stack[top--] * value;
+                    break;
+                case DIVIDE:
+                    value = stack[top--] / value;
+                    break;
+                case MODULO:
+                    value = stack[top--] % value;
+                    break;
+                case ADD_CONSTANT:
+                    value += operands[pc];
+                    break;
+                case SUBTRACT_CONSTANT:
+                    value -= operands[pc];
+                    break;
+                case MULTIPLY_CONSTANT:
+                    value *= operands[pc];
+                    break;
+                case DIVIDE_CONSTANT:
+                    value /= operands[pc];
+                    break;
+                case MODULO_CONSTANT:
+                    value %= operands[pc];
+                    break;
+                case STORE:
+                    slots[operands[pc]] = value;
+                    break;
+                default:
+                    stack[++top] = value;
+                    value = slots[operands[pc]];
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Gets the number of instructions in the program
+     * @return The program length
+     */
+    int getCodeLength() {
+        return opcodes.length;
+    }
+
+    /**
+     * Gets the largest number of values on the operand stack during an evaluation
+     * @return The stack depth
+     */
+    int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Post-order walk of the flattened tree with an explicit stack, emitting instructions
+     */
+    private static final class Translation {
+        byte[] opcodes = new byte[64];
+        int[] operands = new int[64];
+        int length;
+        final List<Expression> leaves = new ArrayList<>();
+        int depth;
+        int maxDepth;
+        int slotCount;
+
+        void translate(Expression root) {
+            FlatExpression flat = FlatExpression.flatten(root);
+            int[] uses = flat.useCounts();
+            // 1 + the slot holding a shared node's value once it has been computed
+            int[] slotOf = new int[flat.size];
+            int[] ids = new int[64];
+            byte[] states = new byte[64];
+            int top = 0;
+            ids[0] = flat.size - 1;
+            while (top >= 0) {
+                int id = ids[top];
+                byte kind = flat.kinds[id];
+                if (slotOf[id] > 0) {
+                    emit(RECALL, slotOf[id] - 1);
+                    push(1);
+                    top--;
+                    continue;
+                }
+                if (kind == FlatExpression.NUMBER) {
+                    emit(PUSH, flat.values[id]);
+                    push(1);
+                    top--;
+                    continue;
+                }
+                if (kind == FlatExpression.VARIABLE || kind == FlatExpression.OPAQUE) {
+                    emit(LOAD, leaves.size());
+                    leaves.add(flat.nodes[id]);
+                    push(1);
+                    store(id, uses, slotOf);
+                    top--;
+                    continue;
+                }
+                int next = -1;
+                if (states[top] == 0) {
+                    states[top] = 1;
+                    next = flat.lefts[id];
+                } else if (states[top] == 1 && kind != FlatExpression.NEGATE) {
+                    states[top] = 2;
+                    int right = flat.rights[id];
+                    if (flat.kinds[right] != FlatExpression.NUMBER) {
+                        next = right;
+                    }
+                }
+                if (next >= 0) {
+                    if (++top == ids.length) {
+                        ids = Arrays.copyOf(ids, top * 2);
+                        states = Arrays.copyOf(states, top * 2);
+                    }
+                    ids[top] = next;
+                    states[top] = 0;
+                    continue;
+                }
+                if (kind == FlatExpression.NEGATE) {
+                    emit(NEGATE);
+                } else {
+                    int operator = ADD + kind - FlatExpression.ADD;
+                    int right = flat.rights[id];
+                    if (flat.kinds[right] == FlatExpression.NUMBER) {
+                        emit(operator - ADD + ADD_CONSTANT, flat.values[right]);
+                    } else {
+                        emit(operator);
+                        push(-1);
+                    }
+                }
+                store(id, uses, slotOf);
+                top--;
+            }
+        }
+
+        /**
+         * Keeps the value just computed for a node with several uses
+         */
+        private void store(int id, int[] uses, int[] slotOf) {
+            if (uses[id] > 1) {
+                emit(STORE, slotCount);
+                slotOf[id] = ++slotCount;
+            }
+        }
+
+        private void push(int change) {
+            depth += change;
+            maxDepth = Math.max(maxDepth, depth);
+        }
+
+        private void emit(int opcode) {
+            emit(opcode, 0);
+        }
+
+        private void emit(int opcode, int operand) {
+            if (length == opcodes.length) {
+                opcodes = Arrays.copyOf(opcodes, length * 2);
+                operands = Arrays.copyOf(operands, length * 2);
+            }
+            opcodes[length] = (byte) opcode;
+            operands[length++] = operand;
+        }
+    }
+}
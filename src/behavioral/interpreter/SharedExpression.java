@@ -0,0 +1,33 @@
+package behavioral.interpreter;
+
+/**
+ * Subexpression used more than once in an optimized expression
+ *
+ * It is evaluated at most once per evaluation of its {@link SharingExpression};
+ * further uses in the same evaluation return the remembered value.
+ */
+final class SharedExpression implements Expression {
+    private final Expression expression;
+    private final SharingExpression owner;
+    private long evaluatedIn = -1;
+    private int value;
+
+    SharedExpression(Expression expression, SharingExpression owner) {
+        this.expression = expression;
+        this.owner = owner;
+    }
+
+    Expression getExpression() {
+        return expression;
+    }
+
+    @Override
+    public int interpret() {
+        long evaluation = owner.currentEvaluation();
+        if (evaluatedIn != evaluation) {
+            value = expression.interpret();
+            evaluatedIn = evaluation;
+        }
+        return value;
+    }
+}
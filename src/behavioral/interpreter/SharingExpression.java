@@ -0,0 +1,31 @@
+package behavioral.interpreter;
+
+/**
+ * Root of an optimized expression containing {@link SharedExpression} nodes
+ *
+ * Each call to interpret() starts a new evaluation, so shared subexpressions are
+ * computed again with the current variable values. Evaluations are serialized,
+ * because the shared nodes remember their value for the running evaluation.
+ */
+final class SharingExpression implements Expression {
+    private Expression root;
+    private long evaluation;
+
+    void setRoot(Expression root) {
+        this.root = root;
+    }
+
+    Expression getRoot() {
+        return root;
+    }
+
+    long currentEvaluation() {
+        return evaluation;
+    }
+
+    @Override
+    public synchronized int interpret() {
+        evaluation++;
+        return root.interpret();
+    }
+}
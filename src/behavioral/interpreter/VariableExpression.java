@@ -0,0 +1,42 @@
+package behavioral.interpreter;
+
+/**
+ * Expression whose value is looked up in a {@link Context} each time it is interpreted
+ */
+public class VariableExpression implements Expression {
+    private final String name;
+    private final Context context;
+    private final int slot;
+
+    /**
+     * Creates a variable bound to a context
+     * @param name The variable name
+     * @param context The context holding the variable's value
+     */
+    public VariableExpression(String name, Context context) {
+        this.name = name;
+        this.context = context;
+        this.slot = context.slotOf(name);
+    }
+
+    @Override
+    public int interpret() {
+        return context.valueAt(slot);
+    }
+
+    /**
+     * Gets the variable name
+     * @return The name
+     */
+    public String getName() {
+        return name;
+    }
+
+    Context getContext() {
+        return context;
+    }
+
+    int getSlot() {
+        return slot;
+    }
+}
@@ -0,0 +1,14 @@
+package behavioral.iterator;
+
+/**
+ * Container of int values for the Iterator pattern
+ * The primitive counterpart of {@link Container}, for large collections of
+ * numbers that should not be boxed
+ */
+public interface IntContainer {
+    /**
+     * Creates and returns an iterator for traversing the container's elements
+     * @return IntIterator instance for this container
+     */
+    IntIterator getIterator();
+}
@@ -0,0 +1,26 @@
+package behavioral.iterator;
+
+/**
+ * Iterator over int values, without boxing them
+ * Unlike {@link Iterator}, which returns null past the end, next() fails
+ * because there is no int value to mark the end
+ */
+public interface IntIterator {
+    /**
+     * Checks if there are more elements to iterate
+     * @return true if there are more elements, false otherwise
+     */
+    boolean hasNext();
+
+    /**
+     * Returns the next element in the iteration
+     * @return the next element
+     * @throws java.util.NoSuchElementException if there are no more elements
+     */
+    int next();
+
+    /**
+     * Resets the iterator to the beginning of the collection
+     */
+    void reset();
+}
@@ -0,0 +1,81 @@
+package behavioral.iterator;
+
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Container over an int array, iterated and streamed without boxing
+ * The array is not copied, so it must not be changed while it is traversed.
+ */
+public class IntList implements IntContainer {
+    private final int[] values;
+
+    public IntList(int[] values) {
+        if (values == null) {
+            throw new IllegalArgumentException("Values must not be null");
+        }
+        this.values = values;
+    }
+
+    @Override
+    public IntIterator getIterator() {
+        return new ValueIterator();
+    }
+
+    /**
+     * Creates a spliterator that splits the remaining range in halves
+     * @return Spliterator over the values
+     */
+    public Spliterator.OfInt spliterator() {
+        return Spliterators.spliterator(values, Spliterator.ORDERED | Spliterator.IMMUTABLE);
+    }
+
+    /**
+     * Creates a sequential stream of the values
+     * @return IntStream over the values
+     */
+    public IntStream stream() {
+        return StreamSupport.intStream(spliterator(), false);
+    }
+
+    /**
+     * Creates a parallel stream of the values, split by {@link #spliterator()}
+     * @return Parallel IntStream over the values
+     */
+    public IntStream parallelStream() {
+        return StreamSupport.intStream(spliterator(), true);
+    }
+
+    /**
+     * Returns the number of values
+     * @return the size
+     */
+    public int size() {
+        return values.length;
+    }
+
+    private class ValueIterator implements IntIterator {
+        private int currentPosition = 0;
+
+        @Override
+        public boolean hasNext() {
+            return currentPosition < values.length;
+        }
+
+        @Override
+        public int next() {
+            if (hasNext()) {
+                return values[currentPosition++];
+            }
+            throw new NoSuchElementException();
+        }
+
+        @Override
+        public void reset() {
+            currentPosition = 0;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package behavioral.iterator;
+
+/**
+ * Container of long values for the Iterator pattern
+ * The primitive counterpart of {@link Container}, for large collections of
+ * numbers that should not be boxed
+ */
+public interface LongContainer {
+    /**
+     * Creates and returns an iterator for traversing the container's elements
+     * @return LongIterator instance for this container
+     */
+    LongIterator getIterator();
+}
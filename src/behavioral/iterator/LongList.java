@@ -0,0 +1,81 @@
+package behavioral.iterator;
+
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Container over a long array, iterated and streamed without boxing
+ * The array is not copied, so it must not be changed while it is traversed.
+ */
+public class LongList implements LongContainer {
+    private final long[] values;
+
+    public LongList(long[] values) {
+        if (values == null) {
+            throw new IllegalArgumentException("Values must not be null");
+        }
+        this.values = values;
+    }
+
+    @Override
+    public LongIterator getIterator() {
+        return new ValueIterator();
+    }
+
+    /**
+     * Creates a spliterator that splits the remaining range in halves
+     * @return Spliterator over the values
+     */
+    public Spliterator.OfLong spliterator() {
+        return Spliterators.spliterator(values, Spliterator.ORDERED | Spliterator.IMMUTABLE);
+    }
+
+    /**
+     * Creates a sequential stream of the values
+     * @return LongStream over the values
+     */
+    public LongStream stream() {
+        return StreamSupport.longStream(spliterator(), false);
+    }
+
+    /**
+     * Creates a parallel stream of the values, split by {@link #spliterator()}
+     * @return Parallel LongStream over the values
+     */
+    public LongStream parallelStream() {
+        return StreamSupport.longStream(spliterator(), true);
+    }
+
+    /**
+     * Returns the number of values
+     * @return the size
+     */
+    public int size() {
+        return values.length;
+    }
+
+    private class ValueIterator implements LongIterator {
+        private int currentPosition = 0;
+
+        @Override
+        public boolean hasNext() {
+            return currentPosition < values.length;
+        }
+
+        @Override
+        public long next() {
+            if (hasNext()) {
+                return values[currentPosition++];
+            }
+            throw new NoSuchElementException();
+        }
+
+        @Override
+        public void reset() {
+            currentPosition = 0;
+        }
+    }
+}
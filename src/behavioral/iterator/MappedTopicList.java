@@ -0,0 +1,281 @@
+package behavioral.iterator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Topic list read from a memory-mapped UTF-8 file instead of a String[] in the heap
+ *
+ * Opening the list only maps the file, so it takes the same time for any file
+ * size. Topics are decoded one at a time as an iterator advances and the bytes
+ * stay in the page cache, so iterating a catalog of several gigabytes needs
+ * almost no heap. The file is mapped in regions of at most 1 GiB; a topic may
+ * span two regions.
+ *
+ * Random access with {@link #get(long)} and {@link #size()} uses an offsets index
+ * built by one pass over the file on first use. It keeps the offset of every
+ * {@value #INDEX_INTERVAL}th topic, so it is 64 times smaller than a full index,
+ * and get() skips at most {@value #INDEX_INTERVAL} - 1 topics from the nearest
+ * indexed one.
+ *
+ * The file must not change while the list is in use. A malformed file is only
+ * detected when the broken entry is reached, with an IllegalStateException.
+ * Java 8 cannot unmap a file explicitly; the mapping is released when the list
+ * and its iterators are garbage collected.
+ */
+public class MappedTopicList implements Container<String>, Iterable<String> {
+    /**
+     * How topics are separated in the file
+     */
+    public enum Format {
+        /** One topic per line, ended by "\n" or "\r\n"; the last line needs no line break */
+        LINES,
+        /** Each topic preceded by its length in bytes as a 4-byte big-endian int */
+        LENGTH_PREFIXED
+    }
+
+    static final int INDEX_INTERVAL = 64;
+    private static final int REGION_BITS = 30;
+
+    private final Format format;
+    private final int regionBits;
+    private final long regionMask;
+    private final long length;
+    private final MappedByteBuffer[] regions;
+    private long[] index;
+    private long size = -1;
+
+    /**
+     * Maps a topic file
+     * @param file The file to read
+     * @param format How the topics are separated
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    public MappedTopicList(Path file, Format format) throws IOException {
+        this(file, format, REGION_BITS);
+    }
+
+    MappedTopicList(Path file, Format format, int regionBits) throws IOException {
+        if (file == null || format == null) {
+            throw new IllegalArgumentException("File and format must not be null");
+        }
+        this.format = format;
+        this.regionBits = regionBits;
+        this.regionMask = (1L << regionBits) - 1;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            this.length = channel.size();
+            this.regions = new MappedByteBuffer[(int) ((length + regionMask) >>> regionBits)];
+            for (int i = 0; i < regions.length; i++) {
+                long start = (long) i << regionBits;
+                regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(regionMask + 1, length - start));
+            }
+        }
+    }
+
+    @Override
+    public Iterator<String> getIterator() {
+        return new MappedTopicIterator();
+    }
+
+    /**
+     * Creates a standard iterator, which also allows for-each loops
+     * Unlike {@link #getIterator()}, its next() fails past the end instead of returning null
+     * @return java.util.Iterator over the topics
+     */
+    @Override
+    public java.util.Iterator<String> iterator() {
+        return new java.util.Iterator<String>() {
+            private final Cursor cursor = new Cursor();
+
+            @Override
+            public boolean hasNext() {
+                return cursor.hasNext();
+            }
+
+            @Override
+            public String next() {
+                if (!cursor.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return cursor.next();
+            }
+        };
+    }
+
+    /**
+     * Gets a topic by its position, building the offsets index on first use
+     * @param position The topic number, starting at 0
+     * @return The topic
+     * @throws IndexOutOfBoundsException if there is no topic at that position
+     */
+    public String get(long position) {
+        long[] index = index();
+        if (position < 0 || position >= size) {
+            throw new IndexOutOfBoundsException("Topic " + position + " of " + size);
+        }
+        Cursor cursor = new Cursor();
+        cursor.position = index[(int) (position / INDEX_INTERVAL)];
+        for (long skipped = position % INDEX_INTERVAL; skipped > 0; skipped--) {
+            cursor.skip();
+        }
+        return cursor.next();
+    }
+
+    /**
+     * Counts the topics, building the offsets index on first use
+     * @return The number of topics in the file
+     */
+    public long size() {
+        index();
+        return size;
+    }
+
+    private synchronized long[] index() {
+        if (index == null) {
+            long[] offsets = new long[16];
+            int count = 0;
+            long topics = 0;
+            Cursor cursor = new Cursor();
+            while (cursor.hasNext()) {
+                if (topics % INDEX_INTERVAL == 0) {
+                    if (count == offsets.length) {
+                        offsets = Arrays.copyOf(offsets, count * 2);
+                    }
+                    offsets[count++] = cursor.position;
+                }
+                cursor.skip();
+                topics++;
+            }
+            size = topics;
+            index = Arrays.copyOf(offsets, count);
+        }
+        return index;
+    }
+
+    private class MappedTopicIterator implements Iterator<String> {
+        private final Cursor cursor = new Cursor();
+
+        @Override
+        public boolean hasNext() {
+            return cursor.hasNext();
+        }
+
+        @Override
+        public String next() {
+            if (hasNext()) {
+                return cursor.next();
+            }
+            return null;
+        }
+
+        @Override
+        public void reset() {
+            cursor.position = 0;
+        }
+    }
+
+    /**
+     * Reading position in the file, with its own views of the mapped regions so
+     * that cursors can be used by different threads
+     */
+    private final class Cursor {
+        private final ByteBuffer[] views = new ByteBuffer[regions.length];
+        private byte[] bytes = new byte[64];
+        long position;
+
+        Cursor() {
+            for (int i = 0; i < regions.length; i++) {
+                views[i] = regions[i].duplicate();
+            }
+        }
+
+        boolean hasNext() {
+            return position < length;
+        }
+
+        String next() {
+            long start = contentStart();
+            long end = contentEnd(start);
+            int count = (int) (end - start);
+            if (format == Format.LINES && count > 0 && byteAt(end - 1) == '\r') {
+                count--;
+            }
+            if (count > bytes.length) {
+                bytes = new byte[Math.max(count, bytes.length * 2)];
+            }
+            copy(start, count);
+            position = format == Format.LINES ? Math.min(end + 1, length) : end;
+            return new String(bytes, 0, count, StandardCharsets.UTF_8);
+        }
+
+        void skip() {
+            long end = contentEnd(contentStart());
+            position = format == Format.LINES ? Math.min(end + 1, length) : end;
+        }
+
+        private long contentStart() {
+            if (format == Format.LINES) {
+                return position;
+            }
+            if (length - position < 4) {
+                throw corrupt();
+            }
+            return position + 4;
+        }
+
+        private long contentEnd(long start) {
+            if (format == Format.LENGTH_PREFIXED) {
+                int count = (byteAt(position) & 0xff) << 24 | (byteAt(position + 1) & 0xff) << 16
+                        | (byteAt(position + 2) & 0xff) << 8 | byteAt(position + 3) & 0xff;
+                if (count < 0 || count > length - start) {
+                    throw corrupt();
+                }
+                return start + count;
+            }
+            long end = start;
+            while (end < length) {
+                // Scan to the end of the region holding the current byte before looking up the next one
+                ByteBuffer view = views[(int) (end >>> regionBits)];
+                int from = (int) (end & regionMask);
+                int limit = view.limit();
+                int i = from;
+                while (i < limit && view.get(i) != '\n') {
+                    i++;
+                }
+                end += i - from;
+                if (i < limit) {
+                    break;
+                }
+            }
+            return end;
+        }
+
+        private byte byteAt(long offset) {
+            return views[(int) (offset >>> regionBits)].get((int) (offset & regionMask));
+        }
+
+        private void copy(long offset, int count) {
+            int copied = 0;
+            while (copied < count) {
+                ByteBuffer view = views[(int) (offset >>> regionBits)];
+                int start = (int) (offset & regionMask);
+                int chunk = Math.min(count - copied, view.capacity() - start);
+                view.position(start);
+                view.get(bytes, copied, chunk);
+                copied += chunk;
+                offset += chunk;
+            }
+        }
+
+        private IllegalStateException corrupt() {
+            return new IllegalStateException("Malformed topic file at offset " + position);
+        }
+    }
+}
@@ -1,6 +1,12 @@
 package behavioral.iterator;
 
-public class TopicList implements Container<String> {
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+public class TopicList implements Container<String>, Iterable<String> {
     private String[] topics;
     private int position;
 
@@ -14,6 +20,42 @@ public class TopicList implements Container<String> {
         return new TopicIterator();
     }
 
+    /**
+     * Creates a standard iterator, which also allows for-each loops
+     * Unlike {@link #getIterator()}, its next() fails past the end instead of returning null
+     * @return java.util.Iterator over the topics
+     */
+    @Override
+    public java.util.Iterator<String> iterator() {
+        return new StrictTopicIterator();
+    }
+
+    /**
+     * Creates a spliterator that splits the remaining range in halves,
+     * so parallel streams get balanced parts
+     * @return Spliterator over the topics
+     */
+    @Override
+    public Spliterator<String> spliterator() {
+        return Spliterators.spliterator(topics, Spliterator.ORDERED | Spliterator.IMMUTABLE);
+    }
+
+    /**
+     * Creates a sequential stream of the topics
+     * @return Stream over the topics
+     */
+    public Stream<String> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Creates a parallel stream of the topics, split by {@link #spliterator()}
+     * @return Parallel stream over the topics
+     */
+    public Stream<String> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
     private class TopicIterator implements Iterator<String> {
         private int currentPosition = 0;
 
@@ -35,4 +77,21 @@ public class TopicList implements Container<String> {
             currentPosition = 0;
         }
     }
+
+    private class StrictTopicIterator implements java.util.Iterator<String> {
+        private int currentPosition = 0;
+
+        @Override
+        public boolean hasNext() {
+            return currentPosition < topics.length;
+        }
+
+        @Override
+        public String next() {
+            if (hasNext()) {
+                return topics[currentPosition++];
+            }
+            throw new NoSuchElementException();
+        }
+    }
 }
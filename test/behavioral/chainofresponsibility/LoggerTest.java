@@ -0,0 +1,773 @@
+package behavioral.chainofresponsibility;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class LoggerTest {
+
+    /**
+     * Logger that remembers what it was asked to write
+     */
+    static class RecordingLogger extends Logger {
+        final List<String> messages = Collections.synchronizedList(new ArrayList<>());
+
+        RecordingLogger(LogLevel level) {
+            super(level);
+        }
+
+        @Override
+        protected void writeMessage(String message) {
+            messages.add(message);
+        }
+    }
+
+    /**
+     * Logger whose writes wait until the test releases them
+     */
+    static class BlockedLogger extends RecordingLogger {
+        final CountDownLatch release = new CountDownLatch(1);
+
+        BlockedLogger(LogLevel level) {
+            super(level);
+        }
+
+        @Override
+        protected void writeMessage(String message) {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            super.writeMessage(message);
+        }
+    }
+
+    @Test
+    void testSynchronousChainFiltersByLevel() {
+        RecordingLogger info = new RecordingLogger(LogLevel.INFO);
+        RecordingLogger error = new RecordingLogger(LogLevel.ERROR);
+        info.setNext(error);
+
+        info.logMessage("debug", LogLevel.DEBUG);
+        info.logMessage("error", LogLevel.ERROR);
+
+        assertEquals(Arrays.asList("debug", "error"), info.messages);
+        assertEquals(Arrays.asList("error"), error.messages);
+    }
+
+    @Test
+    void testParameterizedMessagesAreRendered() {
+        RecordingLogger info = new RecordingLogger(LogLevel.INFO);
+
+        info.logMessage("user {} logged in", "alice", LogLevel.INFO);
+        info.logMessage("{} + {}", 1, 2L, LogLevel.INFO);
+        info.logMessage("took {} ms", 42, LogLevel.INFO);
+        info.logMessage("offset {}", 7L, LogLevel.INFO);
+        info.logMessage("ratio {}", 0.5, LogLevel.INFO);
+        info.logMessage("{}-{}-{}", new Object[] {"a", null, 3}, LogLevel.INFO);
+        info.logMessage("missing {} and {}", "one", LogLevel.INFO);
+        info.logMessage(() -> "supplied", LogLevel.INFO);
+
+        assertEquals(Arrays.asList("user alice logged in", "1 + 2", "took 42 ms", "offset 7",
+                "ratio 0.5", "a-null-3", "missing one and {}", "supplied"), info.messages);
+    }
+
+    @Test
+    void testArgumentThatLogsWhileRendering() {
+        RecordingLogger inner = new RecordingLogger(LogLevel.INFO);
+        RecordingLogger outer = new RecordingLogger(LogLevel.INFO);
+        Object noisy = new Object() {
+            @Override
+            public String toString() {
+                inner.logMessage("inner {} {}", "a", 42, LogLevel.INFO);
+                return "x";
+            }
+        };
+        Object failing = new Object() {
+            @Override
+            public String toString() {
+                throw new IllegalStateException("toString failed");
+            }
+        };
+
+        outer.logMessage("outer {} and {}", noisy, noisy, LogLevel.INFO);
+        assertThrows(IllegalStateException.class, () -> outer.logMessage("lost {}", failing, LogLevel.INFO));
+        outer.logMessage("after {}", 1, LogLevel.INFO);
+
+        assertEquals(Arrays.asList("outer x and x", "after 1"), outer.messages);
+        assertEquals(Arrays.asList("inner a 42", "inner a 42"), inner.messages);
+    }
+
+    @Test
+    void testDisabledParameterizedMessagesAreNotRendered() {
+        RecordingLogger error = new RecordingLogger(LogLevel.ERROR);
+
+        error.logMessage(() -> {
+            throw new AssertionError("supplier must not run for a disabled level");
+        }, LogLevel.INFO);
+        error.logMessage("value {}", 5, LogLevel.DEBUG);
+
+        assertFalse(error.isEnabled(LogLevel.DEBUG));
+        assertTrue(error.messages.isEmpty());
+    }
+
+    @Test
+    void testDisabledLevelsAllocateNothing() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+        RecordingLogger error = new RecordingLogger(LogLevel.ERROR);
+        error.setNext(new RecordingLogger(LogLevel.ERROR));
+        Object user = "alice";
+        long threadId = Thread.currentThread().getId();
+
+        for (int warmup = 0; warmup < 3; warmup++) {
+            logDisabled(error, user, 100_000);
+        }
+        long before = threads.getThreadAllocatedBytes(threadId);
+        logDisabled(error, user, 1_000_000);
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        // Leave room for the measurement itself, far below one object per call
+        assertTrue(allocated < 1024, "disabled logging allocated " + allocated + " bytes");
+    }
+
+    private static void logDisabled(Logger logger, Object user, int iterations) {
+        for (int i = 0; i < iterations; i++) {
+            logger.logMessage("request {} took {} ms", user, user, LogLevel.DEBUG);
+            logger.logMessage("took {} ms", i, LogLevel.INFO);
+            logger.logMessage("offset {}", (long) i, LogLevel.DEBUG);
+            logger.logMessage("ratio {}", i * 0.5, LogLevel.INFO);
+            logger.logMessage("user {}", user, LogLevel.INFO);
+            logger.logMessage(() -> "never built", LogLevel.DEBUG);
+        }
+    }
+
+    @Test
+    void testCompiledChainMatchesRecursiveWalk() {
+        RecordingLogger info = new RecordingLogger(LogLevel.INFO);
+        RecordingLogger error = new RecordingLogger(LogLevel.ERROR);
+        RecordingLogger debug = new RecordingLogger(LogLevel.DEBUG);
+        info.setNext(error).setNext(debug);
+        CompiledLoggerChain compiled = CompiledLoggerChain.compile(info);
+
+        for (LogLevel level : LogLevel.values()) {
+            compiled.logMessage(level.name(), level);
+        }
+
+        assertEquals(Arrays.asList("INFO", "DEBUG", "ERROR"), info.messages);
+        assertEquals(Arrays.asList("ERROR"), error.messages);
+        assertEquals(Arrays.asList("DEBUG", "ERROR"), debug.messages);
+        assertEquals(1, compiled.getLoggerCount(LogLevel.INFO));
+        assertEquals(3, compiled.getLoggerCount(LogLevel.ERROR));
+    }
+
+    @Test
+    void testCompiledChainHonoursCustomFilters() {
+        RecordingLogger first = new RecordingLogger(LogLevel.INFO);
+        // Writes ERROR messages and stops everything below ERROR from going further
+        RecordingLogger gate = new RecordingLogger(LogLevel.ERROR) {
+            @Override
+            protected boolean passes(LogLevel level) {
+                return level == LogLevel.ERROR;
+            }
+        };
+        RecordingLogger last = new RecordingLogger(LogLevel.INFO);
+        first.setNext(gate).setNext(last);
+        CompiledLoggerChain compiled = CompiledLoggerChain.compile(first);
+
+        for (LogLevel level : LogLevel.values()) {
+            compiled.logMessage(level.name(), level);
+        }
+
+        assertTrue(gate.isFilter());
+        assertFalse(first.isFilter());
+        assertEquals(Arrays.asList("INFO", "DEBUG", "ERROR"), first.messages);
+        assertEquals(Arrays.asList("ERROR"), gate.messages);
+        assertEquals(Arrays.asList("ERROR"), last.messages);
+        assertEquals(2, compiled.getLoggerCount(LogLevel.DEBUG));
+        assertEquals(3, compiled.getLoggerCount(LogLevel.ERROR));
+    }
+
+    @Test
+    void testCompiledChainRejectsCycles() {
+        RecordingLogger first = new RecordingLogger(LogLevel.INFO);
+        RecordingLogger second = new RecordingLogger(LogLevel.INFO);
+        first.setNext(second).setNext(first);
+
+        assertThrows(IllegalArgumentException.class, () -> CompiledLoggerChain.compile(first));
+    }
+
+    @Test
+    void testThrottlingLoggerRateLimitsDownstream() {
+        RecordingLogger before = new RecordingLogger(LogLevel.INFO);
+        ThrottlingLogger throttle = new ThrottlingLogger.ThrottlingLoggerBuilder()
+                .setRateLimit(LogLevel.DEBUG, 1.0 / 3600, 3)
+                .build();
+        RecordingLogger after = new RecordingLogger(LogLevel.INFO);
+        before.setNext(throttle).setNext(after);
+
+        for (int i = 0; i < 10; i++) {
+            before.logMessage("debug " + i, LogLevel.DEBUG);
+        }
+        before.logMessage("error", LogLevel.ERROR);
+
+        assertEquals(11, before.messages.size());
+        assertEquals(Arrays.asList("debug 0", "debug 1", "debug 2", "error"), after.messages);
+        assertEquals(3, throttle.getPassedCount(LogLevel.DEBUG));
+        assertEquals(7, throttle.getDroppedCount(LogLevel.DEBUG));
+        assertEquals(1, throttle.getPassedCount(LogLevel.ERROR));
+    }
+
+    @Test
+    void testThrottlingLoggerRejectsOverflowingBurst() {
+        ThrottlingLogger.ThrottlingLoggerBuilder builder = new ThrottlingLogger.ThrottlingLoggerBuilder();
+
+        assertThrows(IllegalArgumentException.class,
+                () -> builder.setRateLimit(LogLevel.INFO, 1e-9, Integer.MAX_VALUE));
+        assertThrows(IllegalArgumentException.class, () -> builder.setRateLimit(LogLevel.INFO, Double.NaN, 1));
+        builder.setRateLimit(LogLevel.INFO, 1.0, Integer.MAX_VALUE);
+    }
+
+    @Test
+    void testThrottlingLoggerSampling() {
+        ThrottlingLogger throttle = new ThrottlingLogger.ThrottlingLoggerBuilder()
+                .setSampleRate(LogLevel.INFO, 0.0)
+                .setSampleRate(LogLevel.DEBUG, 0.5)
+                .build();
+        RecordingLogger after = new RecordingLogger(LogLevel.INFO);
+        throttle.setNext(after);
+
+        for (int i = 0; i < 10_000; i++) {
+            throttle.logMessage("info", LogLevel.INFO);
+            throttle.logMessage("debug {}", i, LogLevel.DEBUG);
+        }
+
+        assertEquals(10_000, throttle.getDroppedCount(LogLevel.INFO));
+        long debugPassed = throttle.getPassedCount(LogLevel.DEBUG);
+        assertTrue(debugPassed > 4_000 && debugPassed < 6_000, "passed " + debugPassed);
+        assertEquals(debugPassed, after.messages.size());
+        assertEquals(20_000 - debugPassed, throttle.getDroppedCount());
+    }
+
+    @Test
+    void testThrottlingLoggerInCompiledAndAsyncChains() {
+        ThrottlingLogger throttle = new ThrottlingLogger.ThrottlingLoggerBuilder()
+                .setRateLimit(LogLevel.INFO, 1.0 / 3600, 2)
+                .build();
+        RecordingLogger after = new RecordingLogger(LogLevel.INFO);
+        throttle.setNext(after);
+
+        CompiledLoggerChain compiled = CompiledLoggerChain.compile(throttle);
+        for (int i = 0; i < 5; i++) {
+            compiled.logMessage("compiled " + i, LogLevel.INFO);
+        }
+        try (AsyncLogger async = new AsyncLogger(throttle)) {
+            for (int i = 0; i < 5; i++) {
+                async.logMessage("async " + i, LogLevel.INFO);
+            }
+        }
+
+        assertEquals(Arrays.asList("compiled 0", "compiled 1"), after.messages);
+        assertEquals(8, throttle.getDroppedCount(LogLevel.INFO));
+        assertEquals(1, compiled.getLoggerCount(LogLevel.INFO));
+    }
+
+    @Test
+    void testThrottlingLoggerCountsUnderContention() throws InterruptedException {
+        ThrottlingLogger throttle = new ThrottlingLogger.ThrottlingLoggerBuilder()
+                .setRateLimit(LogLevel.INFO, 1.0 / 3600, 100)
+                .build();
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    throttle.logMessage("message", LogLevel.INFO);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(100, throttle.getPassedCount(LogLevel.INFO));
+        assertEquals(79_900, throttle.getDroppedCount(LogLevel.INFO));
+    }
+
+    @Test
+    void testLoggerChainReconfiguration() {
+        RecordingLogger info = new RecordingLogger(LogLevel.INFO);
+        RecordingLogger error = new RecordingLogger(LogLevel.ERROR);
+        info.setNext(error);
+        LoggerChain chain = LoggerChain.from(info);
+
+        chain.logMessage("debug 1", LogLevel.DEBUG);
+        chain.setLevel(error, LogLevel.DEBUG);
+        chain.logMessage("debug 2", LogLevel.DEBUG);
+
+        RecordingLogger added = new RecordingLogger(LogLevel.INFO);
+        chain.insert(0, added);
+        assertTrue(chain.remove(info));
+        assertFalse(chain.remove(info));
+        chain.logMessage(() -> "debug 3", LogLevel.DEBUG);
+
+        assertEquals(Arrays.asList("debug 1", "debug 2"), info.messages);
+        assertEquals(Arrays.asList("debug 2", "debug 3"), error.messages);
+        assertEquals(Arrays.asList("debug 3"), added.messages);
+        assertEquals(Arrays.asList(added, error), chain.getLoggers());
+        assertEquals(LogLevel.DEBUG, error.getLevel());
+        assertThrows(IllegalArgumentException.class, () -> chain.setLevel(info, LogLevel.ERROR));
+    }
+
+    @Test
+    void testLoggerChainRejectsDuplicateAndNullLoggers() {
+        RecordingLogger info = new RecordingLogger(LogLevel.INFO);
+
+        assertThrows(IllegalArgumentException.class, () -> new LoggerChain(info, info));
+        assertThrows(IllegalArgumentException.class, () -> new LoggerChain(info, null));
+        assertThrows(IllegalArgumentException.class, () -> new LoggerChain(info).add(null));
+    }
+
+    @Test
+    void testLoggerChainReconfiguredWhileLogging() throws InterruptedException {
+        RecordingLogger stable = new RecordingLogger(LogLevel.INFO);
+        RecordingLogger toggled = new RecordingLogger(LogLevel.ERROR);
+        LoggerChain chain = new LoggerChain(stable);
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        Thread[] writers = new Thread[4];
+        for (int t = 0; t < writers.length; t++) {
+            writers[t] = new Thread(() -> {
+                try {
+                    while (running.get()) {
+                        chain.logMessage("m", LogLevel.DEBUG);
+                    }
+                } catch (Throwable e) {
+                    failure.set(e);
+                }
+            });
+            writers[t].start();
+        }
+        for (int i = 0; i < 500; i++) {
+            chain.add(toggled);
+            chain.setLevel(toggled, i % 2 == 0 ? LogLevel.INFO : LogLevel.ERROR);
+            chain.remove(toggled);
+        }
+        running.set(false);
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        assertNull(failure.get());
+        assertEquals(Arrays.asList(stable), chain.getLoggers());
+        assertFalse(stable.messages.isEmpty());
+    }
+
+    @Test
+    void testAsyncLoggerDeliversInOrder() {
+        RecordingLogger info = new RecordingLogger(LogLevel.INFO);
+        RecordingLogger debug = new RecordingLogger(LogLevel.DEBUG);
+        info.setNext(debug);
+
+        List<String> expectedDebug = new ArrayList<>();
+        try (AsyncLogger logger = new AsyncLogger(info, 64, OverflowPolicy.BLOCK, 8)) {
+            for (int i = 0; i < 1000; i++) {
+                LogLevel level = i % 2 == 0 ? LogLevel.INFO : LogLevel.DEBUG;
+                logger.logMessage("m" + i, level);
+                if (level == LogLevel.DEBUG) {
+                    expectedDebug.add("m" + i);
+                }
+            }
+        }
+
+        assertEquals(1000, info.messages.size());
+        assertEquals("m0", info.messages.get(0));
+        assertEquals("m999", info.messages.get(999));
+        assertEquals(expectedDebug, debug.messages);
+    }
+
+    @Test
+    void testAsyncLoggerFlush() {
+        RecordingLogger info = new RecordingLogger(LogLevel.INFO);
+        try (AsyncLogger logger = new AsyncLogger(info)) {
+            logger.logMessage("first", LogLevel.INFO);
+            logger.logMessage("second", LogLevel.ERROR);
+            logger.flush();
+            assertEquals(Arrays.asList("first", "second"), info.messages);
+        }
+    }
+
+    @Test
+    void testAsyncLoggerDropNewest() throws InterruptedException {
+        BlockedLogger blocked = new BlockedLogger(LogLevel.INFO);
+        AsyncLogger logger = new AsyncLogger(blocked, 4, OverflowPolicy.DROP_NEWEST, 1);
+
+        // The drain thread takes the first message and then stalls inside the logger
+        logger.logMessage("taken", LogLevel.INFO);
+        while (logger.getQueuedCount() > 0) {
+            Thread.sleep(1);
+        }
+        for (int i = 0; i < 10; i++) {
+            logger.logMessage("queued" + i, LogLevel.INFO);
+        }
+        blocked.release.countDown();
+        logger.close();
+
+        assertEquals(6, logger.getDroppedCount());
+        assertEquals(Arrays.asList("taken", "queued0", "queued1", "queued2", "queued3"), blocked.messages);
+    }
+
+    @Test
+    void testAsyncLoggerDropOldest() throws InterruptedException {
+        BlockedLogger blocked = new BlockedLogger(LogLevel.INFO);
+        AsyncLogger logger = new AsyncLogger(blocked, 4, OverflowPolicy.DROP_OLDEST, 1);
+
+        logger.logMessage("taken", LogLevel.INFO);
+        while (logger.getQueuedCount() > 0) {
+            Thread.sleep(1);
+        }
+        for (int i = 0; i < 10; i++) {
+            logger.logMessage("queued" + i, LogLevel.INFO);
+        }
+        blocked.release.countDown();
+        logger.close();
+
+        assertEquals(6, logger.getDroppedCount());
+        assertEquals(Arrays.asList("taken", "queued6", "queued7", "queued8", "queued9"), blocked.messages);
+    }
+
+    @Test
+    void testAsyncLoggerBlockFallsBackWhenDrainThreadDies() {
+        RecordingLogger info = new RecordingLogger(LogLevel.INFO) {
+            @Override
+            protected void writeMessage(String message) {
+                if (message.equals("poison")) {
+                    throw new AssertionError("logger failed");
+                }
+                super.writeMessage(message);
+            }
+        };
+        AsyncLogger logger = new AsyncLogger(info, 4, OverflowPolicy.BLOCK, 1);
+        List<String> expected = new ArrayList<>();
+
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            logger.logMessage("poison", LogLevel.INFO);
+            // Far more than the ring holds: without a live drain thread this would wait forever
+            for (int i = 0; i < 20; i++) {
+                logger.logMessage("after" + i, LogLevel.INFO);
+                expected.add("after" + i);
+            }
+            logger.close();
+        });
+
+        assertEquals(expected, info.messages);
+    }
+
+    @Test
+    void testAsyncLoggerWritesSynchronouslyAfterClose() {
+        RecordingLogger info = new RecordingLogger(LogLevel.INFO);
+        AsyncLogger logger = new AsyncLogger(info);
+        logger.close();
+
+        logger.logMessage("late", LogLevel.INFO);
+
+        assertEquals(Arrays.asList("late"), info.messages);
+    }
+
+    @Test
+    void testFileLoggerPersistsToMappedSegments(@TempDir Path directory) throws IOException {
+        MappedLogWriter writer = new MappedLogWriter.MappedLogWriterBuilder(directory)
+                .setBaseName("test")
+                .setFsyncPolicy(FsyncPolicy.PER_BATCH)
+                .build();
+        try (FileLogger logger = new FileLogger(LogLevel.DEBUG, writer)) {
+            logger.logMessage("ignored", LogLevel.INFO);
+            logger.logMessage("debug message", LogLevel.DEBUG);
+            logger.logMessage("caf\u00e9 \u2603 \ud83d\ude00", LogLevel.ERROR);
+        }
+
+        Path segment = directory.resolve("test-000001.log");
+        assertEquals(Arrays.asList("debug message", "caf\u00e9 \u2603 \ud83d\ude00"),
+                Files.readAllLines(segment, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testMappedLogWriterRollsOnSize(@TempDir Path directory) throws IOException {
+        MappedLogWriter writer = new MappedLogWriter.MappedLogWriterBuilder(directory)
+                .setBaseName("roll")
+                .setSegmentSize(16)
+                .build();
+        try (FileLogger logger = new FileLogger(LogLevel.INFO, writer)) {
+            logger.writeBatch(new String[] {"aaaaaaa", "bbbbbbb", "ccccccc"},
+                    new LogLevel[] {LogLevel.INFO, LogLevel.INFO, LogLevel.INFO}, 3);
+        }
+
+        assertEquals(Arrays.asList("aaaaaaa", "bbbbbbb"), Files.readAllLines(directory.resolve("roll-000001.log")));
+        assertEquals(Arrays.asList("ccccccc"), Files.readAllLines(directory.resolve("roll-000002.log")));
+    }
+
+    @Test
+    void testFileLoggerSkipsOversizedMessageInBatch(@TempDir Path directory) throws IOException {
+        MappedLogWriter writer = new MappedLogWriter.MappedLogWriterBuilder(directory)
+                .setBaseName("big")
+                .setSegmentSize(16)
+                .build();
+        try (FileLogger logger = new FileLogger(LogLevel.INFO, writer)) {
+            assertThrows(IllegalArgumentException.class, () ->
+                    logger.writeBatch(new String[] {"aaaaaaa", "far too long for a segment", "bbbbbbb"},
+                            new LogLevel[] {LogLevel.INFO, LogLevel.INFO, LogLevel.INFO}, 3));
+        }
+
+        assertEquals(Arrays.asList("aaaaaaa", "bbbbbbb"), Files.readAllLines(directory.resolve("big-000001.log")));
+    }
+
+    @Test
+    void testMappedLogWriterKeepsSegmentWhenRollFails(@TempDir Path directory) throws IOException {
+        MappedLogWriter writer = new MappedLogWriter.MappedLogWriterBuilder(directory)
+                .setBaseName("taken")
+                .setSegmentSize(16)
+                .build();
+        writer.append("aaaaaaa");
+        // Another process grabbed the next segment name
+        Files.createFile(directory.resolve("taken-000002.log"));
+
+        assertThrows(IOException.class, () -> writer.append("bbbbbbbbbbb"));
+        assertEquals(directory.resolve("taken-000001.log"), writer.getCurrentSegment());
+        writer.append("bbbbbbb");
+        writer.append("ccccccc");
+        writer.close();
+
+        assertEquals(Arrays.asList("aaaaaaa", "bbbbbbb"), Files.readAllLines(directory.resolve("taken-000001.log")));
+        assertEquals(Arrays.asList("ccccccc"), Files.readAllLines(directory.resolve("taken-000003.log")));
+    }
+
+    @Test
+    void testMappedLogWriterReplacesUnpairedSurrogates(@TempDir Path directory) throws IOException {
+        MappedLogWriter writer = new MappedLogWriter.MappedLogWriterBuilder(directory).setBaseName("bad").build();
+        writer.append("a\ud800b\udc00");
+        writer.close();
+
+        assertEquals(Arrays.asList("a\ufffdb\ufffd"),
+                Files.readAllLines(directory.resolve("bad-000001.log"), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testMappedLogWriterRollsOnTime(@TempDir Path directory) throws Exception {
+        MappedLogWriter writer = new MappedLogWriter.MappedLogWriterBuilder(directory)
+                .setBaseName("timed")
+                .setRollIntervalMillis(20)
+                .build();
+        writer.append("first");
+        Thread.sleep(50);
+        writer.append("second");
+        writer.close();
+
+        assertEquals(Arrays.asList("first"), Files.readAllLines(directory.resolve("timed-000001.log")));
+        assertEquals(Arrays.asList("second"), Files.readAllLines(directory.resolve("timed-000002.log")));
+    }
+
+    @Test
+    void testIdleAsyncLoggerRollsSegmentOnTime(@TempDir Path directory) throws Exception {
+        MappedLogWriter writer = new MappedLogWriter.MappedLogWriterBuilder(directory)
+                .setBaseName("idle")
+                .setRollIntervalMillis(20)
+                .build();
+        try (FileLogger file = new FileLogger(LogLevel.INFO, writer);
+             AsyncLogger logger = new AsyncLogger(file)) {
+            logger.logMessage("only", LogLevel.INFO);
+            logger.flush();
+            Path second = directory.resolve("idle-000002.log");
+            long deadline = System.currentTimeMillis() + 5000;
+            while (!Files.exists(second) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+
+            assertTrue(Files.exists(second));
+            assertEquals(Arrays.asList("only"), Files.readAllLines(directory.resolve("idle-000001.log")));
+        }
+    }
+
+    @Test
+    void testIdleAsyncLoggerDoesNotPoll() throws InterruptedException {
+        AtomicInteger idleCalls = new AtomicInteger();
+        RecordingLogger info = new RecordingLogger(LogLevel.INFO) {
+            @Override
+            protected long onIdle() {
+                idleCalls.incrementAndGet();
+                return super.onIdle();
+            }
+        };
+        try (AsyncLogger logger = new AsyncLogger(info)) {
+            // Long enough for the park timeout to have grown well beyond 100 ms
+            Thread.sleep(1000);
+            // Once when the queue ran empty; nothing is due after that
+            assertEquals(1, idleCalls.get());
+
+            // The parked drain thread is woken up by the producer, not by a timeout
+            long start = System.nanoTime();
+            logger.logMessage("wake", LogLevel.INFO);
+            while (info.messages.isEmpty() && System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5)) {
+                Thread.sleep(1);
+            }
+            assertEquals(Arrays.asList("wake"), info.messages);
+            assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(100), "message waited for a timeout");
+            logger.flush();
+            Thread.sleep(50);
+            assertEquals(2, idleCalls.get());
+        }
+    }
+
+    @Test
+    void testMappedLogWriterContinuesNumbering(@TempDir Path directory) throws IOException {
+        new MappedLogWriter.MappedLogWriterBuilder(directory).setBaseName("app").build().close();
+        MappedLogWriter writer = new MappedLogWriter.MappedLogWriterBuilder(directory).setBaseName("app").build();
+
+        assertEquals(directory.resolve("app-000002.log"), writer.getCurrentSegment());
+        writer.close();
+    }
+
+    @Test
+    void testBinaryLoggerRoundTrip() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BinaryLogEncoder encoder = new BinaryLogEncoder(bytes);
+        RecordingLogger text = new RecordingLogger(LogLevel.INFO);
+        BinaryLogger binary = new BinaryLogger(LogLevel.DEBUG, "audit", encoder);
+        text.setNext(binary);
+
+        text.logMessage("startup", LogLevel.INFO);
+        text.logMessage("user {} took {} ms", "alice", 42L, LogLevel.DEBUG);
+        text.logMessage("retry {}", -3, LogLevel.ERROR);
+        text.logMessage("flags {} {} {}", new Object[] {true, null, 1.5}, LogLevel.ERROR);
+        text.logMessage("plain \u00e9", LogLevel.ERROR);
+        binary.close();
+
+        assertEquals(Arrays.asList("startup", "user alice took 42 ms", "retry -3", "flags true null 1.5",
+                "plain \u00e9"), text.messages);
+
+        List<String> decoded = new ArrayList<>();
+        try (BinaryLogReader reader = new BinaryLogReader(new ByteArrayInputStream(bytes.toByteArray()))) {
+            LogEvent event;
+            while ((event = reader.readEvent()) != null) {
+                String line = reader.format(event);
+                decoded.add(line.substring(line.indexOf(' ') + 1));
+            }
+            assertEquals(4, reader.getDictionary().size());
+        }
+        assertEquals(Arrays.asList("DEBUG [audit] user alice took 42 ms", "ERROR [audit] retry -3",
+                "ERROR [audit] flags true null 1.5", "ERROR [audit] plain \u00e9"), decoded);
+    }
+
+    @Test
+    void testBinaryLogReaderReadsStreamsSharingADictionary() throws IOException {
+        TemplateDictionary shared = new TemplateDictionary();
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        try (BinaryLogEncoder a = new BinaryLogEncoder(first, shared);
+             BinaryLogEncoder b = new BinaryLogEncoder(second, shared)) {
+            a.encode(1, LogLevel.INFO, a.registerLogger("a"), "only in a {}", new Object[] {1});
+            b.encode(2, LogLevel.INFO, b.registerLogger("b"), "only in b {}", new Object[] {2});
+        }
+
+        try (BinaryLogReader reader = new BinaryLogReader(new ByteArrayInputStream(second.toByteArray()))) {
+            LogEvent event = reader.readEvent();
+            assertEquals(1, event.getTemplateId());
+            assertTrue(reader.format(event).endsWith("[b] only in b 2"));
+            assertNull(reader.readEvent());
+        }
+    }
+
+    @Test
+    void testAsyncBinaryLoggerKeepsLogTime() throws IOException, InterruptedException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BlockedLogger blocked = new BlockedLogger(LogLevel.INFO);
+        BinaryLogger binary = new BinaryLogger(LogLevel.INFO, "audit", new BinaryLogEncoder(bytes));
+        blocked.setNext(binary);
+        AsyncLogger logger = new AsyncLogger(blocked);
+
+        logger.logMessage("early", LogLevel.INFO);
+        long loggedBy = System.currentTimeMillis();
+        // The binary logger only receives the batch once the blocked logger is released
+        Thread.sleep(50);
+        blocked.release.countDown();
+        logger.close();
+        binary.close();
+
+        try (BinaryLogReader reader = new BinaryLogReader(new ByteArrayInputStream(bytes.toByteArray()))) {
+            LogEvent event = reader.readEvent();
+            assertTrue(event.getTimestamp() <= loggedBy, "event stamped after it was logged");
+        }
+    }
+
+    @Test
+    void testBinaryEventsAreSmallerThanText() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BinaryLogEncoder encoder = new BinaryLogEncoder(bytes);
+        int loggerId = encoder.registerLogger("app");
+        int before = 0;
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 1000; i++) {
+            encoder.encode(now + i, LogLevel.INFO, loggerId, "request {} took {} ms", new Object[] {i, 17L});
+            if (i == 0) {
+                encoder.flush();
+                before = bytes.size();
+            }
+        }
+        encoder.flush();
+
+        double perEvent = (bytes.size() - before) / 999.0;
+        assertTrue(perEvent < 12, "binary event took " + perEvent + " bytes");
+    }
+
+    @Test
+    void testBinaryLogReaderRejectsCorruptRecords() {
+        // Event at level ordinal 9
+        assertCorrupt(BinaryLogEncoder.RECORD_EVENT, 0, 9, 0, 0, 0);
+        // Template with a length beyond the int range
+        assertCorrupt(BinaryLogEncoder.RECORD_TEMPLATE, 0, 0xFF, 0xFF, 0xFF, 0xFF, 0x0F);
+        // Logger with a huge length but only a few bytes behind it
+        assertCorrupt(BinaryLogEncoder.RECORD_LOGGER, 0, 0xFF, 0xFF, 0xFF, 0xFF, 0x07, 'a', 'b');
+        // Logger id that skips ahead
+        assertCorrupt(BinaryLogEncoder.RECORD_LOGGER, 0x7F, 1, 'a');
+        // Template id beyond what an encoder assigns
+        assertCorrupt(BinaryLogEncoder.RECORD_TEMPLATE, 0xFF, 0xFF, 0xFF, 0xFF, 0x07, 0);
+    }
+
+    private static void assertCorrupt(int... record) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(BinaryLogEncoder.MAGIC, 0, BinaryLogEncoder.MAGIC.length);
+        bytes.write(BinaryLogEncoder.VERSION);
+        for (int b : record) {
+            bytes.write(b);
+        }
+        assertThrows(IOException.class, () -> {
+            try (BinaryLogReader reader = new BinaryLogReader(new ByteArrayInputStream(bytes.toByteArray()))) {
+                reader.readEvent();
+            }
+        });
+    }
+}
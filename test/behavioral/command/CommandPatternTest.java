@@ -1,13 +1,36 @@
 package behavioral.command;
 
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
 import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
 
 /**
  * Unit tests for Command Pattern implementation
  */
 public class CommandPatternTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     private RemoteControl remote;
     private Light livingRoomLight;
     private Fan ceilingFan;
@@ -108,4 +131,832 @@ public class CommandPatternTest {
         assertEquals(Fan.OFF, ceilingFan.getSpeed());
         assertFalse(stereo.isOn());
     }
+
+    @Test
+    public void testScheduledCommandRunsAfterDelayAndCanBeUndone() {
+        AtomicLong clock = new AtomicLong();
+        CommandScheduler scheduler = new CommandScheduler(remote::execute, TimeUnit.SECONDS.toNanos(1), clock::get, false);
+        livingRoomLight.turnOn();
+        scheduler.schedule(new LightOffCommand(livingRoomLight), 30, TimeUnit.MINUTES);
+
+        clock.set(TimeUnit.MINUTES.toNanos(30) - 1);
+        scheduler.advance();
+        assertTrue(livingRoomLight.isOn());
+
+        clock.set(TimeUnit.MINUTES.toNanos(30));
+        scheduler.advance();
+        assertFalse(livingRoomLight.isOn());
+        assertEquals(0, scheduler.getPendingCount());
+
+        remote.undoButtonWasPushed();
+        assertTrue(livingRoomLight.isOn());
+    }
+
+    @Test
+    public void testScheduledCommandsRunExactlyAtTheirDeadlines() {
+        AtomicLong clock = new AtomicLong();
+        CommandScheduler scheduler = new CommandScheduler(Command::execute, 1, clock::get, false);
+        Random random = new Random(42);
+        TreeSet<Long> deadlines = new TreeSet<>();
+        while (deadlines.size() < 2_000) {
+            // Spread the delays over several levels of the wheel
+            deadlines.add(1 + (long) Math.pow(2, random.nextDouble() * 40));
+        }
+        List<String> log = new ArrayList<>();
+        for (long deadline : deadlines) {
+            scheduler.schedule(new RecordingCommand(log, "run"), deadline, TimeUnit.NANOSECONDS);
+        }
+
+        int expected = 0;
+        for (long deadline : deadlines) {
+            clock.set(deadline - 1);
+            scheduler.advance();
+            assertEquals(expected, log.size());
+            clock.set(deadline);
+            scheduler.advance();
+            assertEquals(++expected, log.size());
+        }
+        assertEquals(0, scheduler.getPendingCount());
+    }
+
+    @Test
+    public void testRecurringScheduledCommandStopsWhenCancelled() {
+        AtomicLong clock = new AtomicLong();
+        CommandScheduler scheduler = new CommandScheduler(remote::execute, 1, clock::get, false);
+        List<String> log = new ArrayList<>();
+        ScheduledCommand handle = scheduler.scheduleAtFixedRate(new RecordingCommand(log, "tick"), 10, 10, TimeUnit.NANOSECONDS);
+
+        for (long now = 1; now <= 35; now++) {
+            clock.set(now);
+            scheduler.advance();
+        }
+        assertEquals(3, handle.getRunCount());
+
+        assertTrue(handle.cancel());
+        assertFalse(handle.cancel());
+        clock.set(100);
+        scheduler.advance();
+        assertEquals(Arrays.asList("tick", "tick", "tick"), log);
+        assertEquals(0, scheduler.getPendingCount());
+    }
+
+    @Test
+    public void testScheduledCommandHandleUndoesLastRun() {
+        AtomicLong clock = new AtomicLong();
+        CommandScheduler scheduler = new CommandScheduler(remote::execute, 1, clock::get, false);
+        ScheduledCommand on = scheduler.schedule(new LightOnCommand(livingRoomLight), 5, TimeUnit.NANOSECONDS);
+        ScheduledCommand fanHigh = scheduler.schedule(new FanHighCommand(ceilingFan), 50, TimeUnit.NANOSECONDS);
+
+        clock.set(5);
+        scheduler.advance();
+        assertTrue(livingRoomLight.isOn());
+        assertTrue(on.isDone());
+
+        assertTrue(on.undo());
+        assertFalse(fanHigh.undo());
+        assertTrue(fanHigh.isCancelled());
+        clock.set(100);
+        scheduler.advance();
+        assertFalse(livingRoomLight.isOn());
+        assertEquals(Fan.OFF, ceilingFan.getSpeed());
+    }
+
+    @Test
+    public void testScheduledCommandIsUndoneOnlyOnce() {
+        AtomicLong clock = new AtomicLong();
+        CommandScheduler scheduler = new CommandScheduler(remote::execute, 1, clock::get, false);
+        ceilingFan.low();
+        ScheduledCommand fanHigh = scheduler.schedule(new FanHighCommand(ceilingFan), 5, TimeUnit.NANOSECONDS);
+
+        clock.set(5);
+        scheduler.advance();
+        assertEquals(Fan.HIGH, ceilingFan.getSpeed());
+
+        assertTrue(fanHigh.undo());
+        assertFalse(fanHigh.undo());
+        clock.set(10);
+        scheduler.advance();
+        assertEquals(Fan.LOW, ceilingFan.getSpeed());
+        assertEquals(0, scheduler.getPendingCount());
+    }
+
+    @Test
+    public void testSchedulerTimerThreadRunsDueCommands() throws InterruptedException {
+        CountDownLatch ran = new CountDownLatch(1);
+        try (CommandScheduler scheduler = new CommandScheduler(remote, 1)) {
+            scheduler.schedule(new LightOnCommand(livingRoomLight) {
+                @Override
+                public void execute() {
+                    super.execute();
+                    ran.countDown();
+                }
+            }, 20, TimeUnit.MILLISECONDS);
+            assertTrue(ran.await(5, TimeUnit.SECONDS));
+        }
+        assertTrue(livingRoomLight.isOn());
+    }
+
+    @Test
+    public void testConsoleSinkPrintsTheFamiliarMessages() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        stereo.setEventSink(new ConsoleEventSink(new PrintStream(bytes, true)));
+        stereo.on();
+        stereo.setRadio();
+        stereo.setFrequency(101.3);
+        stereo.setVolume(7);
+
+        String separator = System.lineSeparator();
+        assertEquals("Living Room stereo is ON" + separator
+                + "Living Room stereo is set for Radio input" + separator
+                + "Current frequency: 87.5 MHz" + separator
+                + "Living Room radio frequency set to 101.3 MHz" + separator
+                + "Living Room stereo volume set to 7" + separator, bytes.toString());
+    }
+
+    @Test
+    public void testBufferedSinkForwardsEventsInBatches() {
+        List<String> events = new ArrayList<>();
+        BufferedEventSink buffered = new BufferedEventSink(
+                (event, location, value) -> events.add(event + " " + location + " " + (int) value), 3);
+        ceilingFan.setEventSink(buffered);
+        Command fanHigh = new FanHighCommand(ceilingFan);
+        Command fanOff = new FanOffCommand(ceilingFan);
+
+        fanHigh.execute();
+        fanOff.execute();
+        assertTrue(events.isEmpty());
+        assertEquals(2, buffered.size());
+
+        fanOff.undo();
+        assertEquals(Arrays.asList("FAN_SPEED Living Room 3", "FAN_SPEED Living Room 0", "FAN_SPEED Living Room 3"), events);
+        assertEquals(0, buffered.size());
+    }
+
+    @Test
+    public void testAsyncSinkDeliversEventsInOrder() {
+        List<DeviceEvent> events = new ArrayList<>();
+        try (AsyncEventSink async = new AsyncEventSink((event, location, value) -> events.add(event), 4)) {
+            livingRoomLight.setEventSink(async);
+            for (int i = 0; i < 1000; i++) {
+                livingRoomLight.turnOn();
+                livingRoomLight.turnOff();
+            }
+            async.flush();
+            assertEquals(2000, events.size());
+            for (int i = 0; i < events.size(); i++) {
+                assertEquals(i % 2 == 0 ? DeviceEvent.LIGHT_ON : DeviceEvent.LIGHT_OFF, events.get(i));
+            }
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void testAsyncSinkFallsBackWhenDeliveryThreadDies() {
+        List<DeviceEvent> events = new ArrayList<>();
+        boolean[] failed = new boolean[1];
+        DeviceEventSink failing = (event, location, value) -> {
+            if (!failed[0]) {
+                failed[0] = true;
+                throw new AssertionError("sink failed");
+            }
+            events.add(event);
+        };
+        try (AsyncEventSink async = new AsyncEventSink(failing, 4)) {
+            livingRoomLight.setEventSink(async);
+            // Far more than the buffer holds: without a live delivery thread this would wait forever
+            for (int i = 0; i < 10; i++) {
+                livingRoomLight.turnOn();
+                livingRoomLight.turnOff();
+            }
+            async.flush();
+        }
+
+        // Only the event that killed the delivery thread is lost
+        assertEquals(19, events.size());
+        for (int i = 0; i < events.size(); i++) {
+            assertEquals(i % 2 == 0 ? DeviceEvent.LIGHT_OFF : DeviceEvent.LIGHT_ON, events.get(i));
+        }
+    }
+
+    @Test
+    public void testRegistryViewsShareStateAndWorkWithCommands() {
+        DeviceRegistry registry = new DeviceRegistry();
+        for (int i = 0; i < 100_000; i++) {
+            registry.addLight("Room " + (i % 100));
+            registry.addFan("Room " + (i % 100));
+            registry.addStereo("Room " + (i % 100));
+        }
+        Light light = registry.light(70_000);
+        Fan fan = registry.fan(99_999);
+        Stereo radio = registry.stereo(12_345);
+
+        remote.setCommand(0, new LightOnCommand(light), new LightOffCommand(light));
+        remote.setCommand(1, new FanHighCommand(fan), new FanOffCommand(fan));
+        remote.setCommand(2, new StereoOnWithCDCommand(radio), new StereoOffCommand(radio));
+        remote.onButtonWasPushed(0);
+        remote.onButtonWasPushed(1);
+        remote.offButtonWasPushed(1);
+        remote.undoButtonWasPushed();
+        remote.onButtonWasPushed(2);
+        radio.setRadio();
+        radio.setFrequency(101.3);
+
+        assertEquals(light, registry.light(70_000));
+        assertTrue(registry.light(70_000).isOn());
+        assertFalse(registry.light(70_001).isOn());
+        assertEquals(Fan.HIGH, registry.fan(99_999).getSpeed());
+        assertEquals(Fan.OFF, registry.fan(99_998).getSpeed());
+        assertEquals("Radio", registry.stereo(12_345).getSource());
+        assertEquals(11, registry.stereo(12_345).getVolume());
+        assertEquals(101.3, registry.stereo(12_345).getFrequency(), 1e-9);
+        assertEquals("Room 45", radio.getLocation());
+        assertEquals(100_000, registry.getLightCount());
+    }
+
+    @Test
+    public void testRegistryDevicesChangeIndependentlyAcrossThreads() throws InterruptedException {
+        final int threads = 4;
+        final int devices = 64;
+        DeviceRegistry registry = new DeviceRegistry();
+        registry.setEventSink((event, location, value) -> { });
+        for (int i = 0; i < devices; i++) {
+            registry.addLight("Room " + i);
+            registry.addStereo("Room " + i);
+        }
+        AtomicLong lostUpdates = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int owner = t;
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int round = 0; round < 20_000; round++) {
+                    boolean on = round % 2 == 0;
+                    // Interleave the devices of all threads so neighbours belong to other threads
+                    for (int i = owner; i < devices; i += threads) {
+                        if (on) {
+                            registry.light(i).turnOn();
+                            registry.stereo(i).on();
+                        } else {
+                            registry.light(i).turnOff();
+                            registry.stereo(i).off();
+                        }
+                    }
+                    for (int i = owner; i < devices; i += threads) {
+                        if (registry.light(i).isOn() != on || registry.stereo(i).isOn() != on) {
+                            lostUpdates.incrementAndGet();
+                        }
+                    }
+                }
+            });
+            workers[t].start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        assertEquals(0, lostUpdates.get());
+    }
+
+    @Test
+    public void testCoalescerKeepsLastVolumeAndUndoesWholeBurst() {
+        stereo.on();
+        stereo.setVolume(20);
+        CommandCoalescer coalescer = new CommandCoalescer(remote, 60_000);
+        for (int level = 21; level <= 60; level++) {
+            coalescer.submit(new StereoVolumeCommand(stereo, level));
+        }
+        assertEquals(20, stereo.getVolume());
+        assertEquals(1, coalescer.getPendingCount());
+
+        coalescer.flush();
+        assertEquals(60, stereo.getVolume());
+        assertEquals(39, coalescer.getCollapsedCount());
+        assertEquals(1, remote.getUndoDepth());
+
+        coalescer.undoButtonWasPushed();
+        assertEquals(20, stereo.getVolume());
+    }
+
+    @Test
+    public void testCoalescerCancelsOnOffPairs() {
+        remote.setCommand(0, new LightOnCommand(livingRoomLight), new LightOffCommand(livingRoomLight));
+        remote.setCommand(1, new FanHighCommand(ceilingFan), new FanOffCommand(ceilingFan));
+        CommandCoalescer coalescer = new CommandCoalescer(remote, 60_000);
+
+        coalescer.onButtonWasPushed(0);
+        coalescer.offButtonWasPushed(0);
+        coalescer.onButtonWasPushed(1);
+        coalescer.submit(new FanMediumCommand(ceilingFan));
+        coalescer.submit(new FanLowCommand(ceilingFan));
+        coalescer.flush();
+
+        assertFalse(livingRoomLight.isOn());
+        assertEquals(Fan.LOW, ceilingFan.getSpeed());
+        assertEquals(4, coalescer.getCollapsedCount());
+        assertEquals(1, remote.getUndoDepth());
+
+        coalescer.undoButtonWasPushed();
+        assertEquals(Fan.OFF, ceilingFan.getSpeed());
+        assertFalse(livingRoomLight.isOn());
+    }
+
+    @Test
+    public void testCoalescerDoesNotMergeAcrossOtherCommands() {
+        CommandCoalescer coalescer = new CommandCoalescer(remote, 60_000);
+
+        coalescer.submit(new FanHighCommand(ceilingFan));
+        coalescer.submit(new MacroCommand(new Command[] {new FanOffCommand(ceilingFan)}));
+        coalescer.submit(new FanLowCommand(ceilingFan));
+        // The macro may turn the light on, so this pair must not cancel out
+        coalescer.submit(new MacroCommand(new Command[] {new LightOnCommand(livingRoomLight)}));
+        coalescer.submit(new LightOnCommand(livingRoomLight));
+        coalescer.submit(new LightOffCommand(livingRoomLight));
+        coalescer.flush();
+
+        assertEquals(Fan.LOW, ceilingFan.getSpeed());
+        assertFalse(livingRoomLight.isOn());
+        assertEquals(1, coalescer.getCollapsedCount());
+        assertEquals(5, remote.getUndoDepth());
+    }
+
+    @Test
+    public void testCoalescerOnlyMergesWithinWindow() {
+        CommandCoalescer coalescer = new CommandCoalescer(remote, 100);
+        long start = 1_000_000_000L;
+        coalescer.submit(new FanHighCommand(ceilingFan), start);
+        coalescer.submit(new FanMediumCommand(ceilingFan), start + 50_000_000L);
+        assertEquals(Fan.OFF, ceilingFan.getSpeed());
+
+        // The held command has waited the whole window, so it runs before the next one is held
+        coalescer.submit(new FanLowCommand(ceilingFan), start + 150_000_000L);
+        assertEquals(Fan.MEDIUM, ceilingFan.getSpeed());
+        assertEquals(1, coalescer.getCollapsedCount());
+
+        coalescer.flushExpired(start + 300_000_000L);
+        assertEquals(Fan.LOW, ceilingFan.getSpeed());
+        assertEquals(0, coalescer.getPendingCount());
+    }
+
+    @Test
+    public void testJournalRestoresDeviceStateAfterRestart() throws IOException {
+        File directory = temporaryFolder.newFolder("journal");
+        try (CommandJournal journal = new CommandJournal.CommandJournalBuilder(directory.toPath()).build()) {
+            journal.register(livingRoomLight);
+            journal.register(ceilingFan);
+            journal.register(stereo);
+            remote.setCommand(0, journal.journaled(new LightOnCommand(livingRoomLight), livingRoomLight),
+                    journal.journaled(new LightOffCommand(livingRoomLight), livingRoomLight));
+            remote.setCommand(1, journal.journaled(new FanHighCommand(ceilingFan), ceilingFan),
+                    journal.journaled(new FanOffCommand(ceilingFan), ceilingFan));
+            remote.setCommand(2, journal.journaled(new StereoOnWithCDCommand(stereo), stereo),
+                    journal.journaled(new StereoOffCommand(stereo), stereo));
+
+            remote.onButtonWasPushed(0);
+            remote.onButtonWasPushed(1);
+            remote.offButtonWasPushed(1);
+            remote.undoButtonWasPushed();
+            remote.onButtonWasPushed(2);
+        }
+
+        Light light = new Light("Living Room");
+        Fan fan = new Fan("Living Room");
+        Stereo restoredStereo = new Stereo("Living Room");
+        try (CommandJournal journal = new CommandJournal.CommandJournalBuilder(directory.toPath()).build()) {
+            journal.register(light);
+            journal.register(fan);
+            journal.register(restoredStereo);
+
+            assertEquals(5, journal.getRecoveredRecordCount());
+            assertTrue(light.isOn());
+            assertEquals(Fan.HIGH, fan.getSpeed());
+            assertEquals(Fan.OFF, fan.getPrevSpeed());
+            assertTrue(restoredStereo.isOn());
+            assertEquals("CD", restoredStereo.getSource());
+            assertEquals(11, restoredStereo.getVolume());
+        }
+    }
+
+    @Test
+    public void testJournalKeepsFiftyKilohertzSteps() throws IOException {
+        File directory = temporaryFolder.newFolder("journal");
+        stereo.on();
+        stereo.setRadio();
+        stereo.setFrequency(88.05);
+        assertEquals(88.05, stereo.getFrequency(), 1e-9);
+        try (CommandJournal journal = new CommandJournal.CommandJournalBuilder(directory.toPath()).build()) {
+            journal.register(stereo);
+            journal.journaled(new StereoVolumeCommand(stereo, 7), stereo).execute();
+        }
+
+        Stereo restoredStereo = new Stereo("Living Room");
+        assertEquals(87.5, restoredStereo.getFrequency(), 1e-9);
+        try (CommandJournal journal = new CommandJournal.CommandJournalBuilder(directory.toPath()).build()) {
+            journal.register(restoredStereo);
+
+            assertEquals("Radio", restoredStereo.getSource());
+            assertEquals(88.05, restoredStereo.getFrequency(), 1e-9);
+        }
+    }
+
+    @Test
+    public void testJournalSnapshotsWhenFileIsFull() throws IOException {
+        File directory = temporaryFolder.newFolder("journal");
+        try (CommandJournal journal = new CommandJournal.CommandJournalBuilder(directory.toPath())
+                .setFileSize(1024)
+                .setSyncOnCommit(false)
+                .build()) {
+            journal.register(ceilingFan);
+            Command high = journal.journaled(new FanHighCommand(ceilingFan), ceilingFan);
+            Command off = journal.journaled(new FanOffCommand(ceilingFan), ceilingFan);
+            for (int i = 0; i < 1000; i++) {
+                high.execute();
+                off.execute();
+            }
+            high.execute();
+            assertTrue(journal.getGeneration() > 1);
+        }
+
+        Fan fan = new Fan("Living Room");
+        try (CommandJournal journal = new CommandJournal.CommandJournalBuilder(directory.toPath())
+                .setFileSize(1024)
+                .build()) {
+            journal.register(fan);
+            assertEquals(Fan.HIGH, fan.getSpeed());
+        }
+        String[] journals = directory.list((dir, name) -> name.startsWith("journal-"));
+        assertEquals(1, journals.length);
+    }
+
+    @Test
+    public void testParallelMacroRespectsDependencies() {
+        List<String> log = Collections.synchronizedList(new ArrayList<>());
+        Command power = new RecordingCommand(log, "power");
+        Command light = new RecordingCommand(log, "light");
+        Command stereoOn = new RecordingCommand(log, "stereo");
+        Command volume = new RecordingCommand(log, "volume");
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            ParallelMacroCommand macro = new ParallelMacroCommand.ParallelMacroCommandBuilder()
+                    .addCommand(power)
+                    .addCommand(light)
+                    .addCommand(stereoOn)
+                    .addCommand(volume)
+                    .addDependency(power, light)
+                    .addDependency(power, stereoOn)
+                    .addDependency(stereoOn, volume)
+                    .setPool(pool)
+                    .build();
+
+            macro.execute();
+            assertEquals(4, log.size());
+            assertEquals("power", log.get(0));
+            assertTrue(log.indexOf("stereo") < log.indexOf("volume"));
+
+            log.clear();
+            macro.undo();
+            assertEquals(4, log.size());
+            assertEquals("undo power", log.get(3));
+            assertTrue(log.indexOf("undo volume") < log.indexOf("undo stereo"));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testParallelMacroRunsIndependentBranchesConcurrently() {
+        final int branches = 8;
+        final long sleepMillis = 100;
+        ForkJoinPool pool = new ForkJoinPool(branches);
+        try {
+            ParallelMacroCommand.ParallelMacroCommandBuilder builder =
+                    new ParallelMacroCommand.ParallelMacroCommandBuilder().setPool(pool);
+            for (int i = 0; i < branches; i++) {
+                builder.addCommand(new SleepingCommand(sleepMillis));
+            }
+            ParallelMacroCommand macro = builder.build();
+
+            long start = System.nanoTime();
+            macro.execute();
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+            // Sequential execution would take branches * sleepMillis
+            assertTrue("took " + elapsedMillis + " ms", elapsedMillis < branches * sleepMillis / 2);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testParallelMacroRunsLongDependencyChain() {
+        final int length = 100_000;
+        List<String> log = Collections.synchronizedList(new ArrayList<>());
+        ParallelMacroCommand.ParallelMacroCommandBuilder builder =
+                new ParallelMacroCommand.ParallelMacroCommandBuilder();
+        Command previous = null;
+        for (int i = 0; i < length; i++) {
+            Command command = new RecordingCommand(log, "c" + i);
+            builder.addCommand(command);
+            if (previous != null) {
+                builder.addDependency(previous, command);
+            }
+            previous = command;
+        }
+
+        // Running each dependent inside its prerequisite's task would overflow the stack
+        builder.build().execute();
+        assertEquals(length, log.size());
+        assertEquals("c0", log.get(0));
+        assertEquals("c" + (length - 1), log.get(length - 1));
+    }
+
+    @Test
+    public void testParallelMacroFailureWaitsForRunningCommands() {
+        List<String> log = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch slowStarted = new CountDownLatch(1);
+        Command slow = new RecordingCommand(log, "slow") {
+            @Override
+            public void execute() {
+                slowStarted.countDown();
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.execute();
+            }
+        };
+        Command failing = new RecordingCommand(log, "failing") {
+            @Override
+            public void execute() {
+                try {
+                    slowStarted.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new IllegalStateException("device offline");
+            }
+        };
+        Command after = new RecordingCommand(log, "after");
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            ParallelMacroCommand macro = new ParallelMacroCommand.ParallelMacroCommandBuilder()
+                    .addCommand(slow)
+                    .addCommand(failing)
+                    .addCommand(after)
+                    .addDependency(failing, after)
+                    .setPool(pool)
+                    .build();
+
+            try {
+                macro.execute();
+                fail("expected the failure to be rethrown");
+            } catch (IllegalStateException e) {
+                assertEquals("device offline", e.getMessage());
+            }
+            // The slow branch was already running and finished before execute() returned
+            assertEquals(Arrays.asList("slow"), log);
+
+            macro.undo();
+            assertEquals(Arrays.asList("slow", "undo slow"), log);
+            macro.undo();
+            assertEquals(2, log.size());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParallelMacroRejectsCycles() {
+        Command first = new NoCommand();
+        Command second = new NoCommand();
+        new ParallelMacroCommand.ParallelMacroCommandBuilder()
+                .addCommand(first)
+                .addCommand(second)
+                .addDependency(first, second)
+                .addDependency(second, first)
+                .build();
+    }
+
+    @Test
+    public void testMultiLevelUndoAndRedo() {
+        remote.setCommand(0, new LightOnCommand(livingRoomLight), new LightOffCommand(livingRoomLight));
+        remote.setCommand(1, new FanHighCommand(ceilingFan), new FanOffCommand(ceilingFan));
+
+        remote.onButtonWasPushed(0);
+        remote.onButtonWasPushed(1);
+        remote.undoButtonWasPushed();
+        remote.undoButtonWasPushed();
+        assertFalse(livingRoomLight.isOn());
+        assertEquals(Fan.OFF, ceilingFan.getSpeed());
+        assertEquals(2, remote.getRedoDepth());
+
+        remote.redoButtonWasPushed();
+        assertTrue(livingRoomLight.isOn());
+        assertEquals(Fan.OFF, ceilingFan.getSpeed());
+
+        // A new push discards what is left to redo
+        remote.offButtonWasPushed(0);
+        remote.redoButtonWasPushed();
+        assertFalse(livingRoomLight.isOn());
+        assertEquals(Fan.OFF, ceilingFan.getSpeed());
+        assertEquals(0, remote.getRedoDepth());
+        assertEquals(2, remote.getUndoDepth());
+    }
+
+    @Test
+    public void testHistoryKeepsOnlyMostRecentCommands() {
+        RemoteControl small = new RemoteControl(2);
+        List<String> log = new ArrayList<>();
+        for (int slot = 0; slot < 3; slot++) {
+            small.setCommand(slot, new RecordingCommand(log, "slot " + slot), new NoCommand());
+            small.onButtonWasPushed(slot);
+        }
+        for (int i = 0; i < 3; i++) {
+            small.undoButtonWasPushed();
+        }
+
+        assertEquals(2, small.getHistoryCapacity());
+        assertEquals(0, small.getUndoDepth());
+        assertEquals(Arrays.asList("slot 0", "slot 1", "slot 2", "undo slot 2", "undo slot 1"), log);
+    }
+
+    @Test
+    public void testMillionOperationsKeepHeapFlat() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+        RemoteControl session = new RemoteControl(1024);
+        session.setCommand(0, new NoCommand(), new NoCommand());
+        long threadId = Thread.currentThread().getId();
+
+        // Warm up long enough for the loop to be compiled before measuring
+        pushUndoRedo(session, 1_000_000);
+        long before = threads.getThreadAllocatedBytes(threadId);
+        pushUndoRedo(session, 1_000_000);
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertEquals(1024, session.getUndoDepth());
+        // Leave room for the measurement itself, far below one object per operation
+        assertTrue("history allocated " + allocated + " bytes", allocated < 1024);
+    }
+
+    private static void pushUndoRedo(RemoteControl session, int operations) {
+        for (int i = 0; i < operations; i++) {
+            session.onButtonWasPushed(0);
+            session.offButtonWasPushed(0);
+            if (i % 4 == 0) {
+                session.undoButtonWasPushed();
+                session.redoButtonWasPushed();
+            }
+        }
+    }
+
+    @Test
+    public void testDispatcherUndoesLastExecutedCommand() {
+        try (CommandDispatcher dispatcher = new CommandDispatcher(remote)) {
+            dispatcher.setCommand(0, new LightOnCommand(livingRoomLight), new LightOffCommand(livingRoomLight));
+            dispatcher.onButtonWasPushed(0);
+            dispatcher.offButtonWasPushed(0);
+            dispatcher.undoButtonWasPushed();
+            dispatcher.flush();
+
+            assertTrue(livingRoomLight.isOn());
+            assertEquals(0, dispatcher.getQueuedCount());
+        }
+    }
+
+    @Test
+    public void testDispatcherKeepsPerSlotOrderUnderContention() throws InterruptedException {
+        final int producers = 4;
+        final int pushesPerProducer = 20_000;
+        final List<List<String>> executed = new ArrayList<>();
+        try (CommandDispatcher dispatcher = new CommandDispatcher(remote, 64)) {
+            for (int slot = 0; slot < producers; slot++) {
+                List<String> log = new ArrayList<>();
+                executed.add(log);
+                dispatcher.setCommand(slot, new RecordingCommand(log, "on"), new RecordingCommand(log, "off"));
+            }
+            Thread[] threads = new Thread[producers];
+            for (int p = 0; p < producers; p++) {
+                final int slot = p;
+                threads[p] = new Thread(() -> {
+                    for (int i = 0; i < pushesPerProducer; i++) {
+                        if (i % 2 == 0) {
+                            dispatcher.onButtonWasPushed(slot);
+                        } else {
+                            dispatcher.offButtonWasPushed(slot);
+                        }
+                    }
+                });
+                threads[p].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            dispatcher.flush();
+        }
+
+        for (List<String> log : executed) {
+            assertEquals(pushesPerProducer, log.size());
+            for (int i = 0; i < log.size(); i++) {
+                assertEquals(i % 2 == 0 ? "on" : "off", log.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void testDispatcherRunsSynchronouslyAfterClose() {
+        CommandDispatcher dispatcher = new CommandDispatcher(remote);
+        dispatcher.setCommand(0, new LightOnCommand(livingRoomLight), new LightOffCommand(livingRoomLight));
+        dispatcher.close();
+
+        dispatcher.onButtonWasPushed(0);
+        assertTrue(dispatcher.isClosed());
+        assertTrue(livingRoomLight.isOn());
+    }
+
+    @Test(timeout = 10_000)
+    public void testDispatcherFallsBackWhenExecutorThreadDies() {
+        List<String> log = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        try (CommandDispatcher dispatcher = new CommandDispatcher(remote, 4)) {
+            dispatcher.execute(new NoCommand() {
+                @Override
+                public void execute() {
+                    throw new AssertionError("command failed");
+                }
+            });
+            // Far more than the queue holds: without a live executor thread this would wait forever
+            for (int i = 0; i < 10; i++) {
+                dispatcher.execute(new RecordingCommand(log, "after" + i));
+                expected.add("after" + i);
+            }
+            dispatcher.flush();
+
+            assertEquals(expected, log);
+            assertEquals(0, dispatcher.getQueuedCount());
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testDispatcherRejectsUnknownSlot() {
+        try (CommandDispatcher dispatcher = new CommandDispatcher(remote)) {
+            dispatcher.onButtonWasPushed(remote.getSlotCount());
+        }
+    }
+
+    /**
+     * Command that records its executions; only ever run by one thread at a time
+     */
+    private static class RecordingCommand implements Command {
+        private final List<String> log;
+        private final String name;
+
+        RecordingCommand(List<String> log, String name) {
+            this.log = log;
+            this.name = name;
+        }
+
+        @Override
+        public void execute() {
+            log.add(name);
+        }
+
+        @Override
+        public void undo() {
+            log.add("undo " + name);
+        }
+    }
+
+    /**
+     * Command that stands in for a slow device
+     */
+    private static class SleepingCommand implements Command {
+        private final long millis;
+
+        SleepingCommand(long millis) {
+            this.millis = millis;
+        }
+
+        @Override
+        public void execute() {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void undo() {
+            execute();
+        }
+    }
 }
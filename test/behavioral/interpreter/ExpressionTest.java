@@ -1,6 +1,9 @@
 package behavioral.interpreter;
 
 import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class ExpressionTest {
@@ -60,4 +63,509 @@ public class ExpressionTest {
         
         assertEquals(0, subtract.interpret());
     }
+
+    @Test
+    void testCompiledExpressionMatchesInterpreter() {
+        Expression expression = new SubtractExpression(
+                new AddExpression(new NumberExpression(15), new NumberExpression(5)),
+                new AddExpression(new NumberExpression(100_000), new NumberExpression(-2)));
+
+        Expression compiled = ExpressionCompiler.compile(expression);
+
+        assertEquals(expression.interpret(), compiled.interpret());
+    }
+
+    @Test
+    void testCompilerSplitsLargeTrees() {
+        // Deep enough on both sides to need several generated methods
+        Expression expression = new NumberExpression(1);
+        for (int i = 0; i < 20_000; i++) {
+            Expression leaf = new NumberExpression(i * 31);
+            expression = i % 2 == 0 ? new AddExpression(expression, leaf) : new SubtractExpression(leaf, expression);
+        }
+        int expected = 1;
+        for (int i = 0; i < 20_000; i++) {
+            expected = i % 2 == 0 ? expected + i * 31 : i * 31 - expected;
+        }
+
+        assertEquals(expected, ExpressionCompiler.compile(expression).interpret());
+    }
+
+    @Test
+    void testCompilerCallsUnknownExpressions() {
+        Expression custom = () -> 42;
+        Expression expression = new SubtractExpression(custom, new NumberExpression(2));
+
+        assertEquals(40, ExpressionCompiler.compile(expression).interpret());
+    }
+
+    @Test
+    void testParserFollowsPrecedenceAndAssociativity() {
+        assertEquals(2 + 3 * 4 - 10 / 3 % 2, ExpressionParser.parse("2 + 3 * 4 - 10 / 3 % 2").interpret());
+        assertEquals(3, ExpressionParser.parse("8 - 3 - 2").interpret());
+        assertEquals(2, ExpressionParser.parse("16 / 4 / 2").interpret());
+        assertEquals(6, ExpressionParser.parse("-2 * -3").interpret());
+        assertEquals(-25, ExpressionParser.parse("-(2 + 3) * +5").interpret());
+        assertEquals(Integer.MIN_VALUE, ExpressionParser.parse("-2147483648").interpret());
+    }
+
+    @Test
+    void testParsedVariablesAreReadFromContext() {
+        Context context = new Context();
+        Expression total = ExpressionParser.parse("(price - discount) * quantity", context);
+        context.set("price", 120);
+        context.set("discount", 20);
+        context.set("quantity", 3);
+
+        assertEquals(300, total.interpret());
+
+        context.set("quantity", 5);
+        assertEquals(500, total.interpret());
+        assertEquals(3, context.getVariableCount());
+    }
+
+    @Test
+    void testUnboundVariableFails() {
+        Expression expression = ExpressionParser.parse("x + 1", new Context());
+
+        assertThrows(IllegalStateException.class, expression::interpret);
+    }
+
+    @Test
+    void testParserRejectsInvalidFormulas() {
+        for (String text : new String[] {"", "1 +", "(1 + 2", "1 2", "1 + * 2", "2147483648", "3 $ 4", "x"}) {
+            assertThrows(IllegalArgumentException.class, () -> ExpressionParser.parse(text), text);
+        }
+    }
+
+    @Test
+    void testParserRejectsDeeplyNestedFormulas() {
+        int limit = ExpressionParser.MAX_NESTING;
+        assertEquals(1, ExpressionParser.parse(nested("(", limit, "1", ")")).interpret());
+        assertEquals(1, ExpressionParser.parse(nested("-", limit, "1", "")).interpret());
+
+        for (String text : new String[] {nested("(", 5000, "1", ")"), nested("-", 5000, "1", ""),
+                nested("+(", 5000, "1", ")")}) {
+            IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> ExpressionParser.parse(text));
+            assertTrue(e.getMessage().startsWith("Formula nested too deeply at position "), e.getMessage());
+        }
+    }
+
+    private static String nested(String prefix, int depth, String operand, String suffix) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < depth; i++) {
+            text.append(prefix);
+        }
+        text.append(operand);
+        for (int i = 0; i < depth; i++) {
+            text.append(suffix);
+        }
+        return text.toString();
+    }
+
+    @Test
+    void testCompiledFormulaMatchesInterpreter() {
+        Context context = new Context();
+        Expression expression = ExpressionParser.parse("-(a * 7 - b) / 3 + a % 4 * -b", context);
+        Expression compiled = ExpressionCompiler.compile(expression);
+
+        for (int a = -20; a <= 20; a += 7) {
+            context.set("a", a);
+            context.set("b", a * 3 + 1);
+            assertEquals(expression.interpret(), compiled.interpret());
+        }
+    }
+
+    @Test
+    void testOptimizerFoldsConstantsAndIdentities() {
+        Context context = new Context();
+        context.set("x", 7);
+
+        Expression folded = ExpressionOptimizer.optimize(ExpressionParser.parse("2 * 3 + 4 * (5 - 1)"));
+        assertTrue(folded instanceof NumberExpression);
+        assertEquals(22, folded.interpret());
+
+        assertTrue(ExpressionOptimizer.optimize(ExpressionParser.parse("(x + 0) * 1 - 0", context)) instanceof VariableExpression);
+        assertTrue(ExpressionOptimizer.optimize(ExpressionParser.parse("--x / 1", context)) instanceof VariableExpression);
+        assertEquals(5, ExpressionOptimizer.optimize(ExpressionParser.parse("(x + 1) - 3", context)).interpret());
+    }
+
+    @Test
+    void testOptimizerKeepsSubtreesThatCanFail() {
+        Expression unbound = ExpressionOptimizer.optimize(ExpressionParser.parse("y * 0 + (y - y)", new Context()));
+        assertThrows(IllegalStateException.class, unbound::interpret);
+
+        Expression divisionByZero = ExpressionOptimizer.optimize(ExpressionParser.parse("5 / (3 - 3)"));
+        assertThrows(ArithmeticException.class, divisionByZero::interpret);
+    }
+
+    @Test
+    void testOptimizerEvaluatesCommonSubexpressionsOnce() {
+        int[] calls = new int[1];
+        Expression counted = () -> {
+            calls[0]++;
+            return 3;
+        };
+        Expression expression = new MultiplyExpression(
+                new AddExpression(counted, new NumberExpression(1)),
+                new AddExpression(new NumberExpression(1), counted));
+
+        Expression optimized = ExpressionOptimizer.optimize(expression);
+
+        assertEquals(16, optimized.interpret());
+        assertEquals(1, calls[0]);
+        assertEquals(16, optimized.interpret());
+        assertEquals(2, calls[0]);
+    }
+
+    @Test
+    void testOptimizedFormulasMatchInterpreter() {
+        Random random = new Random(7);
+        Context context = new Context();
+        String[] operands = {"a", "b", "c", "0", "1", "-1", "2", "3"};
+        String[] operators = {" + ", " - ", " * ", " / ", " % "};
+        for (int formula = 0; formula < 200; formula++) {
+            String text = operands[random.nextInt(operands.length)];
+            for (int i = 0; i < 12; i++) {
+                String operand = operands[random.nextInt(operands.length)];
+                String operator = operators[random.nextInt(operators.length)];
+                text = random.nextBoolean() ? "(" + text + operator + operand + ")" : "(" + operand + operator + text + ")";
+            }
+            Expression expression = ExpressionParser.parse(text, context);
+            Expression optimized = ExpressionOptimizer.optimize(expression);
+            for (int binding = 0; binding < 5; binding++) {
+                context.set("a", random.nextInt(21) - 10);
+                context.set("b", random.nextInt(21) - 10);
+                context.set("c", random.nextInt(1000));
+                assertEquals(evaluate(expression), evaluate(optimized), text);
+            }
+        }
+    }
+
+    @Test
+    void testPostfixMatchesInterpreter() {
+        Context context = new Context();
+        Expression expression = ExpressionParser.parse("-(a * 7 - b) / 3 + a % (4 - b) * -b - (2 - (a - (b - 1)))", context);
+        Expression postfix = new PostfixExpression(expression);
+
+        for (int a = -20; a <= 20; a += 3) {
+            context.set("a", a);
+            context.set("b", a * 3 + 1);
+            assertEquals(evaluate(expression), evaluate(postfix));
+        }
+    }
+
+    @Test
+    void testPostfixEvaluatesTenMillionNodes() {
+        // Far too deep for the recursive interpret(): five million operators,
+        // each with a leaf, sharing one NumberExpression to keep the heap small
+        Expression one = new NumberExpression(1);
+        Expression expression = one;
+        for (int i = 0; i < 5_000_000; i++) {
+            expression = i % 3 == 0 ? new SubtractExpression(expression, one) : new AddExpression(expression, one);
+        }
+        int expected = 1 + 5_000_000 - 2 * ((5_000_000 + 2) / 3);
+
+        PostfixExpression postfix = new PostfixExpression(expression);
+
+        assertEquals(expected, postfix.interpret());
+        assertEquals(1, postfix.getMaxDepth());
+    }
+
+    @Test
+    void testPostfixEvaluatesRightDeepTrees() {
+        Expression expression = new NumberExpression(0);
+        for (int i = 0; i < 1_000_000; i++) {
+            expression = new SubtractExpression(new NumberExpression(i), expression);
+        }
+        int expected = 0;
+        for (int i = 0; i < 1_000_000; i++) {
+            expected = i - expected;
+        }
+
+        assertEquals(expected, new PostfixExpression(expression).interpret());
+    }
+
+    @Test
+    void testBatchMatchesInterpreterPerRow() {
+        Context context = new Context();
+        Expression expression = ExpressionParser.parse("-(a * 7 - b) / 3 + a % (4 - c) * -b - (2 * 5 - (a - (b - 1)))", context);
+        Random random = new Random(11);
+        int rows = 3000;
+        int[] a = new int[rows];
+        long[] b = new long[rows];
+        for (int row = 0; row < rows; row++) {
+            a[row] = random.nextInt();
+            b[row] = random.nextLong();
+        }
+        context.set("c", 1);
+        Batch batch = new Batch(rows);
+        batch.bind("a", a);
+        batch.bind("b", b);
+
+        int[] results = new BatchEvaluator(expression).evaluate(batch);
+
+        for (int row = 0; row < rows; row++) {
+            context.set("a", a[row]);
+            context.set("b", (int) b[row]);
+            assertEquals(expression.interpret(), results[row]);
+        }
+    }
+
+    @Test
+    void testBatchHandlesConstantsAndPlainColumns() {
+        Context context = new Context();
+        context.set("k", 6);
+        Batch batch = new Batch(3);
+        batch.bind("x", new int[] {1, 2, 3, 4});
+        int[] output = new int[3];
+
+        new BatchEvaluator(ExpressionParser.parse("k * 7", context)).evaluate(batch, output);
+        assertArrayEquals(new int[] {42, 42, 42}, output);
+
+        new BatchEvaluator(ExpressionParser.parse("x", context)).evaluate(batch, output);
+        assertArrayEquals(new int[] {1, 2, 3}, output);
+    }
+
+    @Test
+    void testBatchFailsLikeInterpreter() {
+        Context context = new Context();
+        Batch batch = new Batch(2);
+        batch.bind("x", new int[] {5, 0});
+
+        assertThrows(ArithmeticException.class,
+                () -> new BatchEvaluator(ExpressionParser.parse("10 / x", context)).evaluate(batch));
+        assertThrows(IllegalStateException.class,
+                () -> new BatchEvaluator(ExpressionParser.parse("x + y", context)).evaluate(batch));
+        assertThrows(IllegalArgumentException.class, () -> batch.bind("y", new int[1]));
+    }
+
+    @Test
+    void testBatchEvaluatesOptimizedExpressions() {
+        Context context = new Context();
+        Expression optimized = ExpressionOptimizer.optimize(ExpressionParser.parse("(x + 1) * (x + 1)", context));
+        Batch batch = new Batch(3);
+        batch.bind("x", new int[] {1, 2, 3});
+
+        // x is only bound in the batch; the shared x + 1 must be read from the column
+        assertArrayEquals(new int[] {4, 9, 16}, new BatchEvaluator(optimized).evaluate(batch));
+        context.set("x", 100);
+        assertArrayEquals(new int[] {4, 9, 16}, new BatchEvaluator(optimized).evaluate(batch));
+    }
+
+    @Test
+    void testFlatFormsSeeThroughSharedSubexpressions() {
+        Context context = new Context();
+        Expression optimized = ExpressionOptimizer.optimize(
+                ExpressionParser.parse("(a * b - 3) * (a * b - 3) + (a * b - 3) % 5", context));
+        PostfixExpression postfix = new PostfixExpression(optimized);
+        Expression compiled = ExpressionCompiler.compile(optimized);
+        Expression memoized = new MemoizedExpression(optimized, 16);
+
+        // Compiled to instructions rather than one call back into the optimized tree
+        assertTrue(postfix.getCodeLength() > 1);
+        for (int a = -10; a <= 10; a += 4) {
+            context.set("a", a);
+            context.set("b", 7 - a);
+            int expected = (a * (7 - a) - 3) * (a * (7 - a) - 3) + (a * (7 - a) - 3) % 5;
+            assertEquals(expected, optimized.interpret());
+            assertEquals(expected, postfix.interpret());
+            assertEquals(expected, compiled.interpret());
+            assertEquals(expected, memoized.interpret());
+        }
+    }
+
+    @Test
+    void testSharedSubexpressionsAreFlattenedOnce() {
+        Context context = new Context();
+        context.set("x", 3);
+        // Each level uses the one below twice; per use that would be 2^60 nodes
+        SharingExpression sharing = new SharingExpression();
+        Expression level = new VariableExpression("x", context);
+        for (int i = 0; i < 60; i++) {
+            level = new SharedExpression(new ModuloExpression(
+                    new AddExpression(level, level), new NumberExpression(1_000_003)), sharing);
+        }
+        sharing.setRoot(new AddExpression(level, new NumberExpression(1)));
+        int expected = sharing.interpret();
+
+        // x twice, as it is not shared, three nodes per level and the final + 1
+        assertEquals(2 + 60 * 3 + 2, FlatExpression.flatten(sharing).size);
+        assertEquals(expected, new PostfixExpression(sharing).interpret());
+        assertEquals(expected, ExpressionCompiler.compile(sharing).interpret());
+        assertEquals(expected, new MemoizedExpression(sharing, 16).interpret());
+        assertEquals(expected, ExpressionOptimizer.optimize(sharing).interpret());
+        Batch batch = new Batch(2);
+        batch.bind("x", new int[] {3, 3});
+        assertArrayEquals(new int[] {expected, expected}, new BatchEvaluator(sharing).evaluate(batch));
+    }
+
+    @Test
+    void testLongModeDoesNotOverflowLikeInt() {
+        Context context = new Context();
+        context.set("x", Integer.MAX_VALUE);
+        Expression expression = ExpressionParser.parse("x * 4 + x - -x / 2", context);
+
+        long expected = Integer.MAX_VALUE * 4L + Integer.MAX_VALUE + Integer.MAX_VALUE / 2;
+        assertEquals(expected, expression.interpretLong(false));
+        assertEquals(expected, expression.interpretLong(true));
+        assertEquals((int) expected, expression.interpret());
+    }
+
+    @Test
+    void testExactModesReportOverflow() {
+        Expression sum = new AddExpression(new NumberExpression(Long.MAX_VALUE), new NumberExpression(1));
+
+        assertEquals(Long.MIN_VALUE, sum.interpretLong(false));
+        assertThrows(ArithmeticException.class, () -> sum.interpretLong(true));
+        assertThrows(ArithmeticException.class,
+                () -> new DivideExpression(new NumberExpression(Long.MIN_VALUE), new NumberExpression(-1)).interpretLong(true));
+        assertThrows(ArithmeticException.class,
+                () -> new NumberExpression(Long.MAX_VALUE / 10).interpretDecimal(2, true));
+    }
+
+    @Test
+    void testDecimalMode() {
+        // 12.34 + 0.066 - 3 = 9.406, then * 2.5 = 23.515, then / 4 = 5.87875
+        Expression sum = new SubtractExpression(
+                new AddExpression(new NumberExpression(1234, 2), new NumberExpression(66, 3)),
+                new NumberExpression(3));
+        Expression quotient = new DivideExpression(
+                new MultiplyExpression(sum, new NumberExpression(25, 1)), new NumberExpression(4));
+
+        assertEquals(9406, sum.interpretDecimal(3, true));
+        assertEquals(940, sum.interpretDecimal(2, false));
+        assertEquals(587875, quotient.interpretDecimal(5, true));
+        assertEquals(5878, quotient.interpretDecimal(3, true));
+        assertEquals(-587, new NegateExpression(quotient).interpretDecimal(2, true));
+        assertEquals(9, sum.interpret());
+        assertThrows(IllegalArgumentException.class, () -> sum.interpretDecimal(19, false));
+    }
+
+    @Test
+    void testDecimalModeWidensIntermediateProducts() {
+        // 1,000,000.0000 squared: the unscaled product 1e20 does not fit in a long, the result does
+        NumberExpression million = new NumberExpression(10_000_000_000L, 4);
+        Expression square = new MultiplyExpression(million, million);
+        Expression quotient = new DivideExpression(million, new NumberExpression(4));
+
+        assertEquals(1_000_000_000_000_0000L, square.interpretDecimal(4, true));
+        assertEquals(1_000_000_000_000_0000L, square.interpretDecimal(4, false));
+        // 1e10 * 10^9 is beyond a long before the division by 4 at scale 9
+        assertEquals(250_000_000_000_000L, quotient.interpretDecimal(9, true));
+        assertEquals(-250_000_000_000_000L, new NegateExpression(quotient).interpretDecimal(9, false));
+        // A result that really overflows is still reported
+        assertThrows(ArithmeticException.class,
+                () -> new MultiplyExpression(square, million).interpretDecimal(4, true));
+    }
+
+    @Test
+    void testMemoizedMatchesInterpreter() {
+        Random random = new Random(5);
+        Context context = new Context();
+        String[] operands = {"a", "b", "c", "d", "1", "2", "7"};
+        String[] operators = {" + ", " - ", " * ", " / ", " % "};
+        for (int formula = 0; formula < 50; formula++) {
+            String text = operands[random.nextInt(operands.length)];
+            for (int i = 0; i < 40; i++) {
+                String operand = operands[random.nextInt(operands.length)];
+                String operator = operators[random.nextInt(operators.length)];
+                text = random.nextBoolean() ? "(" + text + operator + operand + ")" : "(" + operand + operator + text + ")";
+            }
+            for (String name : new String[] {"a", "b", "c", "d"}) {
+                context.set(name, random.nextInt(21) - 10);
+            }
+            Expression expression = ExpressionParser.parse(text, context);
+            Expression memoized = new MemoizedExpression(expression, 1 + random.nextInt(8));
+            for (int change = 0; change < 20; change++) {
+                context.set(operands[random.nextInt(4)], random.nextInt(21) - 10);
+                assertEquals(evaluate(expression), evaluate(memoized), text);
+            }
+        }
+    }
+
+    @Test
+    void testMemoizedReevaluatesOnlyChangedSubtrees() {
+        Context context = new Context();
+        String left = "(a * 3 + 1) % 7 - (a * 5 - 2) / 3 + (a - 4) * (a + 4)";
+        String right = "(b * 3 + 1) % 7 - (b * 5 - 2) / 3 + (b - 4) * (b + 4)";
+        Expression expression = ExpressionParser.parse("(" + left + ") * (" + right + ")", context);
+        context.set("a", 10);
+        context.set("b", 20);
+        MemoizedExpression memoized = new MemoizedExpression(expression, 16);
+
+        assertEquals(expression.interpret(), memoized.interpret());
+        assertEquals(0, memoized.getHitCount());
+        assertEquals(3, memoized.getMissCount());
+
+        context.set("a", 11);
+        assertEquals(expression.interpret(), memoized.interpret());
+        // The root and the left half are evaluated again, the right half is reused
+        assertEquals(1, memoized.getHitCount());
+        assertEquals(5, memoized.getMissCount());
+
+        context.set("b", 20);
+        assertEquals(expression.interpret(), memoized.interpret());
+        assertEquals(2, memoized.getHitCount());
+    }
+
+    @Test
+    void testMemoizedCacheEvictsLeastRecentlyUsed() {
+        Context context = new Context();
+        StringBuilder text = new StringBuilder("0");
+        for (int i = 0; i < 20; i++) {
+            text.append(" + (x").append(i).append(" * 2 + 1) * (x").append(i).append(" - 3) % 5 + 9");
+            context.set("x" + i, i);
+        }
+        Expression expression = ExpressionParser.parse(text.toString(), context);
+        MemoizedExpression memoized = new MemoizedExpression(expression, 4);
+
+        for (int i = 0; i < 20; i++) {
+            context.set("x" + i, i * 7);
+            assertEquals(expression.interpret(), memoized.interpret());
+            assertTrue(memoized.getCachedCount() <= 4);
+        }
+        assertEquals(4, memoized.getCachedCount());
+        assertThrows(IllegalArgumentException.class, () -> new MemoizedExpression(expression, 0));
+    }
+
+    @Test
+    void testMemoizedHandlesManyVariablesInADeepTree() {
+        int count = 20_000;
+        Context context = new Context();
+        StringBuilder text = new StringBuilder("v0 * 3");
+        int expected = 0;
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                text.append(" + v").append(i).append(" * 3");
+            }
+            context.set("v" + i, i);
+            expected += i * 3;
+        }
+        // A left-deep chain of sums, each of them depending on every variable to its left
+        MemoizedExpression memoized = new MemoizedExpression(ExpressionParser.parse(text.toString(), context), 16);
+
+        assertEquals(expected, memoized.interpret());
+        long misses = memoized.getMissCount();
+
+        context.set("v" + (count - 1), 0);
+        expected -= (count - 1) * 3;
+        assertEquals(expected, memoized.interpret());
+        // Only the root is evaluated again, the sum below it is reused
+        assertEquals(1, memoized.getHitCount());
+        assertEquals(misses + 1, memoized.getMissCount());
+
+        context.set("v0", 100);
+        expected += 300;
+        assertEquals(expected, memoized.interpret());
+        assertEquals(misses * 2 + 1, memoized.getMissCount());
+    }
+
+    private static String evaluate(Expression expression) {
+        try {
+            return String.valueOf(expression.interpret());
+        } catch (ArithmeticException e) {
+            return "division by zero";
+        }
+    }
 }
@@ -0,0 +1,92 @@
+package behavioral.iterator;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MappedTopicListTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void testLinesFile() throws IOException {
+        Path file = directory.resolve("topics.txt");
+        Files.write(file, "Java\r\nDesign Patterns\n\n\u041a\u0430\u0444\u043a\u0430\n".getBytes(StandardCharsets.UTF_8));
+        MappedTopicList topics = new MappedTopicList(file, MappedTopicList.Format.LINES);
+
+        Iterator<String> iterator = topics.getIterator();
+        assertEquals("Java", iterator.next());
+        assertEquals("Design Patterns", iterator.next());
+        assertEquals("", iterator.next());
+        assertEquals("\u041a\u0430\u0444\u043a\u0430", iterator.next());
+        assertFalse(iterator.hasNext());
+        assertNull(iterator.next());
+
+        iterator.reset();
+        assertEquals("Java", iterator.next());
+        assertEquals(4, topics.size());
+        assertEquals("\u041a\u0430\u0444\u043a\u0430", topics.get(3));
+    }
+
+    @Test
+    void testLengthPrefixedFileWithTopicsSpanningRegions() throws IOException {
+        List<String> expected = new ArrayList<>();
+        Path file = directory.resolve("topics.bin");
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(file))) {
+            for (int i = 0; i < 1000; i++) {
+                String topic = "Topic " + i + " \u00fcn\u00efc\u00f6d\u00e9\n";
+                byte[] bytes = topic.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+                expected.add(topic);
+            }
+        }
+        // 16-byte regions, so most topics and many length prefixes span two of them
+        MappedTopicList topics = new MappedTopicList(file, MappedTopicList.Format.LENGTH_PREFIXED, 4);
+
+        List<String> actual = new ArrayList<>();
+        for (String topic : topics) {
+            actual.add(topic);
+        }
+        assertEquals(expected, actual);
+        assertEquals(1000, topics.size());
+        for (int i = 0; i < 1000; i += 37) {
+            assertEquals(expected.get(i), topics.get(i));
+        }
+        assertThrows(IndexOutOfBoundsException.class, () -> topics.get(1000));
+    }
+
+    @Test
+    void testEmptyFile() throws IOException {
+        Path file = directory.resolve("empty.txt");
+        Files.write(file, new byte[0]);
+        MappedTopicList topics = new MappedTopicList(file, MappedTopicList.Format.LINES);
+
+        assertFalse(topics.getIterator().hasNext());
+        assertThrows(NoSuchElementException.class, () -> topics.iterator().next());
+        assertEquals(0, topics.size());
+    }
+
+    @Test
+    void testMalformedLengthPrefix() throws IOException {
+        Path file = directory.resolve("broken.bin");
+        try (OutputStream out = Files.newOutputStream(file)) {
+            out.write(new byte[] {0, 0, 0, 2, 'o', 'k', 0, 0, 0, 99, 'x'});
+        }
+        Iterator<String> iterator = new MappedTopicList(file, MappedTopicList.Format.LENGTH_PREFIXED).getIterator();
+
+        assertEquals("ok", iterator.next());
+        assertThrows(IllegalStateException.class, iterator::next);
+    }
+}
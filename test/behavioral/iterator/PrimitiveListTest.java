@@ -0,0 +1,61 @@
+package behavioral.iterator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PrimitiveListTest {
+
+    @Test
+    void testIntIterator() {
+        IntIterator iterator = new IntList(new int[]{3, 1, 4}).getIterator();
+
+        assertEquals(3, iterator.next());
+        assertEquals(1, iterator.next());
+        assertEquals(4, iterator.next());
+        assertFalse(iterator.hasNext());
+        assertThrows(NoSuchElementException.class, iterator::next);
+
+        iterator.reset();
+        assertEquals(3, iterator.next());
+    }
+
+    @Test
+    void testLongIterator() {
+        LongIterator iterator = new LongList(new long[]{Long.MAX_VALUE, -1}).getIterator();
+
+        assertEquals(Long.MAX_VALUE, iterator.next());
+        assertEquals(-1, iterator.next());
+        assertThrows(NoSuchElementException.class, iterator::next);
+    }
+
+    @Test
+    void testEmptyLists() {
+        assertFalse(new IntList(new int[0]).getIterator().hasNext());
+        assertFalse(new LongList(new long[0]).getIterator().hasNext());
+        assertThrows(IllegalArgumentException.class, () -> new IntList(null));
+    }
+
+    @Test
+    void testParallelStreamsMatchSequential() {
+        int[] ints = new int[1_000_000];
+        long[] longs = new long[ints.length];
+        for (int i = 0; i < ints.length; i++) {
+            ints[i] = i % 1000;
+            longs[i] = (long) i * i;
+        }
+        IntList intList = new IntList(ints);
+        LongList longList = new LongList(longs);
+
+        assertEquals(intList.stream().asLongStream().sum(), intList.parallelStream().asLongStream().sum());
+        assertEquals(longList.stream().sum(), longList.parallelStream().sum());
+        assertArrayEquals(ints, intList.parallelStream().toArray());
+
+        Spliterator.OfInt second = intList.spliterator();
+        Spliterator.OfInt first = second.trySplit();
+        assertEquals(first.estimateSize(), second.estimateSize());
+    }
+}
@@ -2,6 +2,13 @@ package behavioral.iterator;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class TopicListTest {
@@ -55,4 +62,50 @@ public class TopicListTest {
         assertFalse(emptyIterator.hasNext());
         assertNull(emptyIterator.next());
     }
+
+    @Test
+    void testStandardIteratorFailsPastEnd() {
+        List<String> visited = new ArrayList<>();
+        for (String topic : topicList) {
+            visited.add(topic);
+        }
+        assertArrayEquals(topics, visited.toArray());
+
+        java.util.Iterator<String> standard = topicList.iterator();
+        while (standard.hasNext()) {
+            standard.next();
+        }
+        assertThrows(NoSuchElementException.class, standard::next);
+    }
+
+    @Test
+    void testSpliteratorSplitsInHalves() {
+        String[] many = new String[1000];
+        for (int i = 0; i < many.length; i++) {
+            many[i] = "Topic " + i;
+        }
+        Spliterator<String> second = new TopicList(many).spliterator();
+        Spliterator<String> first = second.trySplit();
+
+        assertEquals(500, first.estimateSize());
+        assertEquals(500, second.estimateSize());
+        assertTrue(second.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.ORDERED));
+        first.tryAdvance(topic -> assertEquals("Topic 0", topic));
+        second.tryAdvance(topic -> assertEquals("Topic 500", topic));
+    }
+
+    @Test
+    void testParallelStreamKeepsOrder() {
+        String[] many = new String[100_000];
+        for (int i = 0; i < many.length; i++) {
+            many[i] = String.valueOf(i);
+        }
+        TopicList list = new TopicList(many);
+
+        List<String> collected = list.parallelStream().collect(Collectors.toList());
+
+        assertArrayEquals(many, collected.toArray());
+        assertEquals(list.stream().mapToInt(String::length).sum(),
+                list.parallelStream().mapToInt(String::length).sum());
+    }
 }